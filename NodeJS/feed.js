@@ -0,0 +1,200 @@
+// Encodes data.csv into the binary policy feed read by the app, see PolicyFeedCodec.java.
+//
+// A frame is a schema header followed by one fixed-width chunk per column. Snapshot frames carry
+// every row, delta frames only the rows added or changed since a base version (matched by
+// policyID) plus the ids of removed rows. Versions are only comparable within one epoch, which the
+// server picks at random when it starts. All numbers are big-endian.
+
+const MAGIC = 0x50464431; // "PFD1"
+const FORMAT_VERSION = 2;
+const SNAPSHOT = 0;
+const DELTA = 1;
+const NO_VERSION = -1;
+// Dictionary codes and string lengths are unsigned 16 bit.
+const MAX_DICTIONARY_SIZE = 0xffff;
+const MAX_STRING_BYTES = 0xffff;
+
+const INT32 = 1;
+const FLOAT32 = 2;
+const FLOAT64 = 3;
+const DICTIONARY16 = 4;
+
+const COLUMNS = [
+	{name: 'policyID', type: INT32},
+	{name: 'county', type: DICTIONARY16},
+	{name: 'eq_site_limit', type: FLOAT64},
+	{name: 'hu_site_limit', type: FLOAT64},
+	{name: 'fl_site_limit', type: FLOAT64},
+	{name: 'fr_site_limit', type: FLOAT64},
+	{name: 'tiv_2011', type: FLOAT64},
+	{name: 'tiv_2012', type: FLOAT64},
+	{name: 'point_latitude', type: FLOAT32},
+	{name: 'point_longitude', type: FLOAT32},
+	{name: 'line', type: DICTIONARY16},
+	{name: 'construction', type: DICTIONARY16},
+];
+
+const WIDTHS = {[INT32]: 4, [FLOAT32]: 4, [FLOAT64]: 8, [DICTIONARY16]: 2};
+
+// Splits one CSV line, honouring quoted fields.
+function splitLine(line) {
+	const fields = [];
+	let field = '';
+	let quoted = false;
+	for (let i = 0; i < line.length; i++) {
+		const c = line[i];
+		if (quoted) {
+			if (c === '"' && line[i + 1] === '"') {
+				field += '"';
+				i++;
+			} else if (c === '"') {
+				quoted = false;
+			} else {
+				field += c;
+			}
+		} else if (c === '"') {
+			quoted = true;
+		} else if (c === ',') {
+			fields.push(field);
+			field = '';
+		} else {
+			field += c;
+		}
+	}
+	fields.push(field);
+	return fields;
+}
+
+// Parses the uploaded CSV, whatever its line endings, into one array per feed column.
+function parseCsv(text) {
+	const lines = text.replace(/^\uFEFF/, '').split(/\r\n|\r|\n/).filter(line => line.length > 0);
+	const header = splitLine(lines[0]).map(name => name.trim());
+	const indices = COLUMNS.map(column => header.indexOf(column.name));
+	const table = {size: lines.length - 1, columns: COLUMNS.map(() => [])};
+	for (let row = 1; row < lines.length; row++) {
+		const fields = splitLine(lines[row]);
+		COLUMNS.forEach((column, c) => {
+			const value = indices[c] >= 0 && indices[c] < fields.length ? fields[indices[c]] : '';
+			table.columns[c].push(column.type === DICTIONARY16 ? value : Number(value) || 0);
+		});
+	}
+	return table;
+}
+
+function rowKey(table, row) {
+	return table.columns.map(values => values[row]).join('\u0000');
+}
+
+function stringBytes(value) {
+	const bytes = Buffer.from(value, 'utf8');
+	if (bytes.length > MAX_STRING_BYTES) {
+		throw new Error(`A ${bytes.length} byte value does not fit the feed`);
+	}
+	const length = Buffer.alloc(2);
+	length.writeUInt16BE(bytes.length, 0);
+	return Buffer.concat([length, bytes]);
+}
+
+function encode(type, epoch, version, baseVersion, table, rows, removedIds) {
+	const parts = [];
+	const header = Buffer.alloc(4 + 1 + 1 + 4 + 4 + 4 + 4 + 2);
+	let offset = header.writeUInt32BE(MAGIC, 0);
+	offset = header.writeUInt8(FORMAT_VERSION, offset);
+	offset = header.writeUInt8(type, offset);
+	offset = header.writeInt32BE(epoch, offset);
+	offset = header.writeInt32BE(version, offset);
+	offset = header.writeInt32BE(baseVersion, offset);
+	offset = header.writeInt32BE(rows.length, offset);
+	header.writeUInt16BE(COLUMNS.length, offset);
+	parts.push(header);
+
+	// Dictionary columns only list the values used by the rows in this frame.
+	const codes = COLUMNS.map((column, c) => {
+		if (column.type !== DICTIONARY16) {
+			return null;
+		}
+		const entries = new Map();
+		rows.forEach(row => {
+			const value = table.columns[c][row];
+			if (!entries.has(value)) {
+				entries.set(value, entries.size);
+			}
+		});
+		if (entries.size > MAX_DICTIONARY_SIZE) {
+			throw new Error(
+				`${column.name} has ${entries.size} distinct values, at most ${MAX_DICTIONARY_SIZE} fit`);
+		}
+		return entries;
+	});
+
+	COLUMNS.forEach((column, c) => {
+		parts.push(Buffer.from([column.type]), stringBytes(column.name));
+		if (column.type === DICTIONARY16) {
+			const count = Buffer.alloc(2);
+			count.writeUInt16BE(codes[c].size, 0);
+			parts.push(count);
+			codes[c].forEach((code, value) => parts.push(stringBytes(value)));
+		}
+	});
+
+	COLUMNS.forEach((column, c) => {
+		const chunk = Buffer.alloc(rows.length * WIDTHS[column.type]);
+		const values = table.columns[c];
+		rows.forEach((row, i) => {
+			switch (column.type) {
+				case INT32:
+					chunk.writeInt32BE(values[row], i * 4);
+					break;
+				case FLOAT32:
+					chunk.writeFloatBE(values[row], i * 4);
+					break;
+				case FLOAT64:
+					chunk.writeDoubleBE(values[row], i * 8);
+					break;
+				default:
+					chunk.writeUInt16BE(codes[c].get(values[row]), i * 2);
+			}
+		});
+		parts.push(chunk);
+	});
+
+	if (type === DELTA) {
+		const removed = Buffer.alloc(4 + removedIds.length * 4);
+		removed.writeInt32BE(removedIds.length, 0);
+		removedIds.forEach((id, i) => removed.writeInt32BE(id, 4 + i * 4));
+		parts.push(removed);
+	}
+	return Buffer.concat(parts);
+}
+
+function encodeSnapshot(table, epoch, version) {
+	const rows = [];
+	for (let row = 0; row < table.size; row++) {
+		rows.push(row);
+	}
+	return encode(SNAPSHOT, epoch, version, NO_VERSION, table, rows, []);
+}
+
+// Encodes the rows of `current` that are new or differ from `base`, keyed by policyID.
+// Both versions belong to `epoch`.
+function encodeDelta(base, baseVersion, current, epoch, version) {
+	const baseRows = new Map();
+	for (let row = 0; row < base.size; row++) {
+		baseRows.set(base.columns[0][row], rowKey(base, row));
+	}
+	const rows = [];
+	const kept = new Set();
+	for (let row = 0; row < current.size; row++) {
+		const id = current.columns[0][row];
+		if (baseRows.has(id)) {
+			kept.add(id);
+		}
+		if (baseRows.get(id) !== rowKey(current, row)) {
+			rows.push(row);
+		}
+	}
+	const removedIds = base.columns[0].filter(id => !kept.has(id));
+	return encode(DELTA, epoch, version, baseVersion, current, rows, removedIds);
+}
+
+module.exports = {parseCsv, encodeSnapshot, encodeDelta, NO_VERSION};
@@ -3,6 +3,10 @@ const app = express();
 const port = 3000;
 const multer = require('multer');
 const path = require('path');
+const fs = require('fs');
+const zlib = require('zlib');
+const crypto = require('crypto');
+const feed = require('./feed');
 
 var storage = multer.diskStorage({
   destination: function (req, file, cb) {
@@ -15,6 +19,52 @@ var storage = multer.diskStorage({
 
 var upload = multer({storage: storage});
 
+// The binary feed of public/data.csv served to the app, rebuilt on every upload.
+// Frames are compressed once here rather than on every request. Versions restart at 1 with the
+// server, so each run gets a random epoch and clients holding a version of another run are sent a
+// snapshot.
+var feedState = {
+	epoch: crypto.randomBytes(4).readInt32BE(0),
+	version: 0,
+	table: null,
+	snapshot: null,
+	deltaBaseVersion: feed.NO_VERSION,
+	delta: null
+};
+
+function rebuildFeed() {
+	const csvPath = path.join(__dirname, 'public/data.csv');
+	if (!fs.existsSync(csvPath)) {
+		return;
+	}
+	const table = feed.parseCsv(fs.readFileSync(csvPath, 'utf8'));
+	const version = feedState.version + 1;
+	const previous = feedState.table;
+	const epoch = feedState.epoch;
+	let snapshot;
+	let delta;
+	try {
+		snapshot = feed.encodeSnapshot(table, epoch, version);
+		delta = previous ? feed.encodeDelta(previous, feedState.version, table, epoch, version) : null;
+	} catch (error) {
+		// Keep serving the last dataset that fit the format.
+		console.log(`feed not updated: ${error.message}`);
+		return;
+	}
+	feedState = {
+		epoch: epoch,
+		version: version,
+		table: table,
+		snapshot: {raw: snapshot, gzip: zlib.gzipSync(snapshot)},
+		deltaBaseVersion: previous ? feedState.version : feed.NO_VERSION,
+		delta: delta ? {raw: delta, gzip: zlib.gzipSync(delta)} : null
+	};
+	console.log(`feed version ${version}: ${snapshot.length} byte snapshot` +
+		(delta ? `, ${delta.length} byte delta` : ''));
+}
+
+rebuildFeed();
+
 app.use(express.static('public'))
 
 app.listen(port, () => console.log(`app listening on port ${port}`));
@@ -30,5 +80,31 @@ app.get('/upload', function (req, res) {
 
 app.post('/', upload.single("file"), function (req, res) {
 	console.log(req.file);
+	rebuildFeed();
 	res.redirect('/');
+})
+
+// Binary policy feed, see feed.js. Clients pass the version and epoch they have as ?since= and
+// ?epoch= and get nothing if it is current, a delta if they are one upload behind, and a snapshot
+// otherwise.
+app.get('/feed', function (req, res) {
+	if (!feedState.snapshot) {
+		res.sendStatus(404);
+		return;
+	}
+	const since = parseInt(req.query.epoch, 10) === feedState.epoch ?
+		parseInt(req.query.since, 10) : feed.NO_VERSION;
+	if (since !== feed.NO_VERSION && since === feedState.version) {
+		res.sendStatus(304);
+		return;
+	}
+	const isDeltaBase = since !== feed.NO_VERSION && since === feedState.deltaBaseVersion;
+	const frame = feedState.delta && isDeltaBase ? feedState.delta : feedState.snapshot;
+	res.set('Content-Type', 'application/octet-stream');
+	if (req.acceptsEncodings('gzip')) {
+		res.set('Content-Encoding', 'gzip');
+		res.send(frame.gzip);
+	} else {
+		res.send(frame.raw);
+	}
 })
\ No newline at end of file
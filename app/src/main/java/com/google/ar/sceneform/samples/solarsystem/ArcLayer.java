@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Node that draws a set of great-circle arcs over the globe with a single renderable.
+ *
+ * <p>The node sits at the centre of the globe. Every arc is merged into one {@link ArcMesh}, so a
+ * layer costs one draw call however many arcs it shows. Changing the arcs rebuilds the mesh on a
+ * background executor and only swaps in the finished renderable on the UI thread.
+ */
+public class ArcLayer extends Node {
+  private static final String TAG = "SOHACKS";
+
+  private final Context context;
+  private final GeoProjection projection;
+  private final Color color;
+  private final float halfWidth;
+  private final Executor mainExecutor;
+
+  private CompletableFuture<Material> materialStage;
+  // Incremented for every update so that a slow, stale mesh build never replaces a newer one.
+  private int generation;
+
+  /**
+   * @param projection places the arc endpoints on the globe
+   * @param halfWidth half the width of each arc, in meters
+   */
+  public ArcLayer(Context context, GeoProjection projection, Color color, float halfWidth) {
+    this.context = context;
+    this.projection = projection;
+    this.color = color;
+    this.halfWidth = halfWidth;
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    this.mainExecutor = mainHandler::post;
+  }
+
+  /**
+   * Replaces the arcs shown by this layer.
+   *
+   * @param endpoints packed latitude, longitude of the start and then the end of each arc, in
+   *     degrees
+   * @param count number of arcs in {@code endpoints}
+   * @param executor where the mesh is generated
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  public void setArcs(float[] endpoints, int count, Executor executor) {
+    int buildGeneration = ++generation;
+    if (count == 0) {
+      setRenderable(null);
+      return;
+    }
+
+    if (materialStage == null) {
+      materialStage = MaterialFactory.makeOpaqueWithColor(context, color);
+    }
+
+    CompletableFuture.supplyAsync(
+            () -> ArcMesh.build(endpoints, count, projection, halfWidth), executor)
+        .thenCombineAsync(materialStage, ArcLayer::toDefinition, executor)
+        .thenComposeAsync(
+            definition -> ModelRenderable.builder().setSource(definition).build(), mainExecutor)
+        .thenAccept(
+            renderable -> {
+              if (buildGeneration != generation) {
+                return;
+              }
+              renderable.setShadowCaster(false);
+              renderable.setShadowReceiver(false);
+              setRenderable(renderable);
+            })
+        .exceptionally(
+            throwable -> {
+              Log.e(TAG, "Unable to build arcs", throwable);
+              return null;
+            });
+  }
+
+  private static RenderableDefinition toDefinition(ArcMesh mesh, Material material) {
+    float[] positions = mesh.getPositions();
+    float[] normals = mesh.getNormals();
+    List<Vertex> vertices = new ArrayList<>(mesh.getVertexCount());
+    for (int i = 0; i < mesh.getVertexCount(); i++) {
+      vertices.add(
+          Vertex.builder()
+              .setPosition(new Vector3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+              .setNormal(new Vector3(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]))
+              .build());
+    }
+
+    int[] indices = mesh.getTriangleIndices();
+    List<Integer> triangleIndices = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      triangleIndices.add(index);
+    }
+
+    RenderableDefinition.Submesh submesh =
+        RenderableDefinition.Submesh.builder()
+            .setTriangleIndices(triangleIndices)
+            .setMaterial(material)
+            .build();
+    return RenderableDefinition.builder()
+        .setVertices(vertices)
+        .setSubmeshes(Collections.singletonList(submesh))
+        .build();
+  }
+}
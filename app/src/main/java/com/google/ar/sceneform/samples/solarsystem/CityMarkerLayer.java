@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Node that renders a marker for a set of cities on the globe with a single renderable.
+ *
+ * <p>The node sits at the centre of the globe. All markers are merged into one {@link MarkerMesh},
+ * so the number of cities doesn't change the number of nodes or draw calls. Taps are resolved to a
+ * city index by casting the tap ray against the globe once and looking the hit up in a {@link
+ * CitySpatialIndex}, instead of hit testing a collider per marker.
+ */
+public class CityMarkerLayer extends Node {
+  public static final int NO_MARKER = -1;
+
+  private static final float DEFAULT_MARKER_HALF_SIZE = 0.006f;
+  // How far from a marker, in meters along the surface of the globe, a tap still selects it.
+  private static final float PICK_RADIUS = 0.03f;
+  private static final Color DEFAULT_MARKER_COLOR = new Color(0.91f, 0.27f, 0.23f);
+
+  private final Context context;
+  private final float globeRadius;
+  private final Color markerColor;
+  private final float markerHalfSize;
+  private final Executor mainExecutor;
+
+  private CompletableFuture<Material> materialStage;
+  @Nullable private CitySpatialIndex spatialIndex;
+  private int[] markerIds = new int[0];
+  // Incremented for every update so that a slow, stale mesh build never replaces a newer one.
+  private int generation;
+
+  public CityMarkerLayer(Context context, float globeRadius) {
+    this(context, globeRadius, DEFAULT_MARKER_COLOR, DEFAULT_MARKER_HALF_SIZE);
+  }
+
+  /**
+   * @param markerColor color of every marker in the layer
+   * @param markerHalfSize distance from the centre of a marker to its tips, in meters
+   */
+  public CityMarkerLayer(
+      Context context, float globeRadius, Color markerColor, float markerHalfSize) {
+    this.context = context;
+    this.globeRadius = globeRadius;
+    this.markerColor = markerColor;
+    this.markerHalfSize = markerHalfSize;
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    this.mainExecutor = mainHandler::post;
+  }
+
+  /**
+   * Replaces the markers shown by this layer.
+   *
+   * <p>The mesh is generated on {@code executor}, only the final upload happens on the UI thread.
+   *
+   * @param positions packed xyz marker positions relative to the centre of the globe
+   * @param ids the id of each marker, such as a city index, returned by {@link #pick(Ray)}
+   * @param count number of markers in {@code positions}
+   */
+  public void setMarkers(float[] positions, int[] ids, int count, Executor executor) {
+    setMarkers(positions, null, ids, count, executor);
+  }
+
+  /**
+   * Replaces the markers shown by this layer, giving each its own size.
+   *
+   * @param halfSizes distance from the centre of each marker to its tips, or null to use the size
+   *     of the layer
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  public void setMarkers(
+      float[] positions,
+      @Nullable float[] halfSizes,
+      int[] ids,
+      int count,
+      Executor executor) {
+    int buildGeneration = ++generation;
+    spatialIndex = null;
+    markerIds = ids;
+
+    if (count == 0) {
+      setRenderable(null);
+      return;
+    }
+
+    CompletableFuture.supplyAsync(() -> CitySpatialIndex.build(positions, count), executor)
+        .thenAcceptAsync(
+            index -> {
+              if (buildGeneration == generation) {
+                spatialIndex = index;
+              }
+            },
+            mainExecutor);
+
+    if (materialStage == null) {
+      materialStage = MaterialFactory.makeOpaqueWithColor(context, markerColor);
+    }
+
+    CompletableFuture.supplyAsync(
+            () -> MarkerMesh.build(positions, halfSizes, count, markerHalfSize), executor)
+        .thenCombineAsync(materialStage, CityMarkerLayer::toDefinition, executor)
+        .thenComposeAsync(
+            definition -> ModelRenderable.builder().setSource(definition).build(), mainExecutor)
+        .thenAccept(
+            renderable -> {
+              if (buildGeneration != generation) {
+                return;
+              }
+              renderable.setShadowCaster(false);
+              renderable.setShadowReceiver(false);
+              setRenderable(renderable);
+            })
+        .exceptionally(
+            throwable -> {
+              throw new AssertionError("Could not build city markers.", throwable);
+            });
+  }
+
+  /**
+   * Returns the id of the marker closest to where {@code worldRay} hits the globe, or {@link
+   * #NO_MARKER} if the ray misses the globe or no marker is close enough.
+   */
+  public int pick(Ray worldRay) {
+    if (spatialIndex == null) {
+      return NO_MARKER;
+    }
+
+    // Work in units of the globe's radius, which is what the spatial index expects.
+    Vector3 origin = worldToLocalPoint(worldRay.getOrigin()).scaled(1 / globeRadius);
+    Vector3 direction = worldToLocalDirection(worldRay.getDirection()).normalized();
+    int nearest =
+        spatialIndex.nearestToRay(
+            origin.x,
+            origin.y,
+            origin.z,
+            direction.x,
+            direction.y,
+            direction.z,
+            PICK_RADIUS / globeRadius);
+    return nearest == CitySpatialIndex.NOT_FOUND ? NO_MARKER : markerIds[nearest];
+  }
+
+  private static RenderableDefinition toDefinition(MarkerMesh mesh, Material material) {
+    float[] positions = mesh.getPositions();
+    float[] normals = mesh.getNormals();
+    List<Vertex> vertices = new ArrayList<>(mesh.getVertexCount());
+    for (int i = 0; i < mesh.getVertexCount(); i++) {
+      vertices.add(
+          Vertex.builder()
+              .setPosition(new Vector3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+              .setNormal(new Vector3(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]))
+              .build());
+    }
+
+    int[] indices = mesh.getTriangleIndices();
+    List<Integer> triangleIndices = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      triangleIndices.add(index);
+    }
+
+    RenderableDefinition.Submesh submesh =
+        RenderableDefinition.Submesh.builder()
+            .setTriangleIndices(triangleIndices)
+            .setMaterial(material)
+            .build();
+    return RenderableDefinition.builder()
+        .setVertices(vertices)
+        .setSubmeshes(Collections.singletonList(submesh))
+        .build();
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads cities from the worldcities.bin asset.
+ *
+ * <p>The asset is the {@link CityIndex} compiled from worldcities.csv at build time. It is memory
+ * mapped on a background executor and bulk read into primitive columns, so no text is parsed at
+ * startup.
+ */
+public class CityRepository {
+  private static final String TAG = "SOHACKS";
+  private static final String CITIES_ASSET = "worldcities.bin";
+
+  private final AssetManager assets;
+  private final Executor executor;
+  private final SceneMetrics metrics;
+
+  public CityRepository(AssetManager assets, Executor executor, SceneMetrics metrics) {
+    this.assets = assets;
+    this.executor = executor;
+    this.metrics = metrics;
+  }
+
+  /** Asynchronously loads every city in the dataset. */
+  @SuppressWarnings("AndroidApiChecker")
+  // CompletableFuture requires api level 24
+  public CompletableFuture<CityIndex> loadIndex() {
+    return CompletableFuture.supplyAsync(this::readIndexTimed, executor);
+  }
+
+  private CityIndex readIndexTimed() {
+    long start = System.nanoTime();
+    CityIndex index = readIndex();
+    metrics.recordSince(SceneMetrics.Metric.CITY_LOAD, start);
+    Log.i(
+        TAG,
+        "Read index of "
+            + index.size()
+            + " cities in "
+            + (System.nanoTime() - start) / 1000
+            + "us");
+    return index;
+  }
+
+  private CityIndex readIndex() {
+    // The asset is stored uncompressed (see aaptOptions in build.gradle), so it can be mapped.
+    try (AssetFileDescriptor descriptor = assets.openFd(CITIES_ASSET);
+        FileInputStream in = descriptor.createInputStream();
+        FileChannel channel = in.getChannel()) {
+      ByteBuffer mapped =
+          channel.map(
+              FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+      return CityIndex.read(mapped);
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to map " + CITIES_ASSET + ", reading it instead", e);
+    }
+
+    try (InputStream in = assets.open(CITIES_ASSET)) {
+      return CityIndex.read(in);
+    } catch (IOException e) {
+      throw new CompletionException("Unable to read " + CITIES_ASSET, e);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Spins the globe about its own centre until a chosen point on it faces the camera.
+ *
+ * <p>The globe only turns about its polar axis, so north stays up and the point ends up on the
+ * meridian facing the viewer. The globe node's origin need not be its centre: its position is
+ * adjusted every step so that the centre stays put while it turns.
+ */
+public class GlobeFlyTo {
+  private static final float DURATION_SECONDS = 1.0f;
+
+  private final Node globe;
+  // Centre of the globe in the globe node's local space.
+  private final Vector3 centre;
+
+  private Quaternion startRotation;
+  private Quaternion endRotation;
+  // Centre of the globe in the parent's space, held fixed while turning.
+  private Vector3 pivot;
+  private float elapsedSeconds;
+  private boolean flying;
+
+  public GlobeFlyTo(Node globe, Vector3 centre) {
+    this.globe = globe;
+    this.centre = centre;
+  }
+
+  /**
+   * Starts turning the globe so that {@code point} faces {@code cameraWorldPosition}.
+   *
+   * @param point position on the globe relative to its centre, in the globe node's local space
+   */
+  public void flyTo(Vector3 point, Vector3 cameraWorldPosition) {
+    Node parent = globe.getParent();
+    if (parent == null) {
+      return;
+    }
+    pivot = parent.worldToLocalPoint(globe.localToWorldPoint(centre));
+    Vector3 camera = Vector3.subtract(parent.worldToLocalPoint(cameraWorldPosition), pivot);
+    startRotation = globe.getLocalRotation();
+    Vector3 current = Quaternion.rotateVector(startRotation, point);
+
+    float degrees =
+        (float)
+            Math.toDegrees(Math.atan2(camera.x, camera.z) - Math.atan2(current.x, current.z));
+    // Take the short way round.
+    degrees = ((degrees % 360 + 540) % 360) - 180;
+    endRotation = Quaternion.multiply(Quaternion.axisAngle(Vector3.up(), degrees), startRotation);
+    elapsedSeconds = 0;
+    flying = true;
+  }
+
+  public boolean isFlying() {
+    return flying;
+  }
+
+  /** Advances the turn, to be called once per frame. */
+  public void onUpdate(float deltaSeconds) {
+    if (!flying) {
+      return;
+    }
+    elapsedSeconds += deltaSeconds;
+    float t = Math.min(elapsedSeconds / DURATION_SECONDS, 1);
+    // Ease in and out.
+    float eased = t * t * (3 - 2 * t);
+    Quaternion rotation = Quaternion.slerp(startRotation, endRotation, eased);
+
+    Vector3 scale = globe.getLocalScale();
+    Vector3 offset = new Vector3(centre.x * scale.x, centre.y * scale.y, centre.z * scale.z);
+    globe.setLocalRotation(rotation);
+    globe.setLocalPosition(Vector3.subtract(pivot, Quaternion.rotateVector(rotation, offset)));
+    flying = t < 1;
+  }
+}
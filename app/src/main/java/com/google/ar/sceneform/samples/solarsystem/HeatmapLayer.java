@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Texture;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Node that drapes density heatmaps over the globe.
+ *
+ * <p>The node sits at the centre of the globe and renders a slightly larger, transparent sphere.
+ * Each source is a {@link HeatmapBaker} with its own tint; the bakers are only ever touched on the
+ * background executor, where their intensities are composed into one bitmap. The UI thread just
+ * uploads the finished bitmap as a texture, reusing the same sphere and material every time.
+ */
+public class HeatmapLayer extends Node {
+  private static final String TAG = "SOHACKS";
+  private static final int TEXTURE_WIDTH = 512;
+  private static final int TEXTURE_HEIGHT = 256;
+  private static final int SPHERE_SLICES = 64;
+  private static final int SPHERE_STACKS = 32;
+  // Lifts the overlay off the surface so it doesn't z-fight with the globe.
+  private static final float OVERLAY_RADIUS_SCALE = 1.01f;
+  private static final float MAX_ALPHA = 0.75f;
+
+  private final Context context;
+  private final GeoProjection overlayProjection;
+  private final Executor executor;
+  private final Executor mainExecutor;
+
+  // Only accessed on the executor. Each source keeps its last intensities, so only the sources
+  // that changed are baked again.
+  private final List<HeatmapBaker> bakers = new ArrayList<>();
+  private final List<Color> tints = new ArrayList<>();
+  private final List<float[]> intensities = new ArrayList<>();
+  private final float[] red = new float[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+  private final float[] green = new float[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+  private final float[] blue = new float[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+  private final float[] alpha = new float[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+  private final int[] pixels = new int[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+
+  private int sourceCount;
+  @Nullable private Material material;
+  @Nullable private Texture latestTexture;
+  private boolean isBuildingRenderable;
+  // Incremented for every upload so that a stale texture never replaces a newer one.
+  private int generation;
+
+  /**
+   * @param projection the projection used for the globe, the overlay is placed just above it
+   * @param executor where the heatmaps are baked; must run tasks one at a time
+   */
+  public HeatmapLayer(Context context, GeoProjection projection, Executor executor) {
+    this.context = context;
+    this.overlayProjection =
+        new GeoProjection(
+            projection.getRadius() * OVERLAY_RADIUS_SCALE, projection.getLongitudeOffsetDegrees());
+    this.executor = executor;
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    this.mainExecutor = mainHandler::post;
+  }
+
+  /**
+   * Adds a source drawn in {@code tint} and returns its index.
+   *
+   * @param latitudes latitude of each point, in degrees
+   * @param longitudes longitude of each point, in degrees
+   * @param weights initial weight of each point
+   */
+  public int addSource(
+      float[] latitudes, float[] longitudes, double[] weights, int count, Color tint) {
+    int source = sourceCount++;
+    updateSource(
+        source,
+        baker -> {
+          tints.add(tint);
+          baker.setPoints(latitudes, longitudes, count);
+          baker.setWeights(weights);
+        });
+    return source;
+  }
+
+  /** Replaces the points of a source, for example after its dataset was reloaded. */
+  public void setPoints(
+      int source, float[] latitudes, float[] longitudes, double[] weights, int count) {
+    updateSource(
+        source,
+        baker -> {
+          baker.setPoints(latitudes, longitudes, count);
+          baker.setWeights(weights);
+        });
+  }
+
+  /** Changes the weight column of a source and rebakes it. */
+  public void setWeights(int source, double[] weights) {
+    updateSource(source, baker -> baker.setWeights(weights));
+  }
+
+  /** Changes which points of a source contribute and rebakes it. */
+  public void setFilter(int source, boolean[] included) {
+    updateSource(source, baker -> baker.setFilter(included));
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void updateSource(int source, Consumer<HeatmapBaker> update) {
+    CompletableFuture.supplyAsync(
+            () -> {
+              while (bakers.size() <= source) {
+                bakers.add(new HeatmapBaker(TEXTURE_WIDTH, TEXTURE_HEIGHT));
+                intensities.add(new float[TEXTURE_WIDTH * TEXTURE_HEIGHT]);
+              }
+              update.accept(bakers.get(source));
+              return bake();
+            },
+            executor)
+        .thenAcceptAsync(
+            bitmap -> {
+              if (bitmap != null) {
+                upload(bitmap);
+              }
+            },
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e(TAG, "Unable to bake heatmap", throwable);
+              return null;
+            });
+  }
+
+  /** Composes every source into one bitmap, or returns null if nothing changed. */
+  @Nullable
+  private Bitmap bake() {
+    boolean anyDirty = false;
+    for (HeatmapBaker baker : bakers) {
+      anyDirty |= baker.isDirty();
+    }
+    if (!anyDirty) {
+      return null;
+    }
+
+    long start = System.nanoTime();
+    Arrays.fill(red, 0);
+    Arrays.fill(green, 0);
+    Arrays.fill(blue, 0);
+    Arrays.fill(alpha, 0);
+    for (int source = 0; source < bakers.size(); source++) {
+      HeatmapBaker baker = bakers.get(source);
+      float[] sourceIntensities = intensities.get(source);
+      if (baker.isDirty()) {
+        baker.bake(sourceIntensities);
+        Log.i(
+            TAG,
+            "Baked heatmap " + source + " in " + baker.getLastBakeNanos() / 1000 + "us");
+      }
+      Color tint = tints.get(source);
+      for (int i = 0; i < pixels.length; i++) {
+        float intensity = sourceIntensities[i];
+        red[i] += tint.r * intensity;
+        green[i] += tint.g * intensity;
+        blue[i] += tint.b * intensity;
+        alpha[i] = Math.max(alpha[i], intensity);
+      }
+    }
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] =
+          (toByte(alpha[i] * MAX_ALPHA) << 24)
+              | (toByte(red[i]) << 16)
+              | (toByte(green[i]) << 8)
+              | toByte(blue[i]);
+    }
+    Bitmap bitmap =
+        Bitmap.createBitmap(pixels, TEXTURE_WIDTH, TEXTURE_HEIGHT, Bitmap.Config.ARGB_8888);
+    Log.i(TAG, "Composed heatmap in " + (System.nanoTime() - start) / 1000 + "us");
+    return bitmap;
+  }
+
+  private static int toByte(float value) {
+    return Math.min(Math.max((int) (value * 255), 0), 255);
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void upload(Bitmap bitmap) {
+    int uploadGeneration = ++generation;
+    Texture.builder()
+        .setSource(bitmap)
+        .build()
+        .thenAccept(
+            texture -> {
+              if (uploadGeneration != generation) {
+                return;
+              }
+              latestTexture = texture;
+              if (material != null) {
+                material.setTexture(MaterialFactory.MATERIAL_TEXTURE, texture);
+              } else if (!isBuildingRenderable) {
+                buildRenderable(texture);
+              }
+            })
+        .exceptionally(
+            throwable -> {
+              Log.e(TAG, "Unable to upload heatmap", throwable);
+              return null;
+            });
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void buildRenderable(Texture texture) {
+    isBuildingRenderable = true;
+    CompletableFuture<OverlaySphereMesh> meshStage =
+        CompletableFuture.supplyAsync(
+            () -> OverlaySphereMesh.build(overlayProjection, SPHERE_SLICES, SPHERE_STACKS),
+            executor);
+    MaterialFactory.makeTransparentWithTexture(context, texture)
+        .thenCombineAsync(
+            meshStage,
+            (newMaterial, mesh) -> {
+              // Textures baked while the material was being made are only applied now.
+              if (latestTexture != texture) {
+                newMaterial.setTexture(MaterialFactory.MATERIAL_TEXTURE, latestTexture);
+              }
+              material = newMaterial;
+              return toDefinition(mesh, newMaterial);
+            },
+            mainExecutor)
+        .thenCompose(definition -> ModelRenderable.builder().setSource(definition).build())
+        .thenAccept(
+            renderable -> {
+              renderable.setShadowCaster(false);
+              renderable.setShadowReceiver(false);
+              setRenderable(renderable);
+            })
+        .exceptionally(
+            throwable -> {
+              Log.e(TAG, "Unable to build heatmap overlay", throwable);
+              return null;
+            });
+  }
+
+  private static RenderableDefinition toDefinition(OverlaySphereMesh mesh, Material material) {
+    float[] positions = mesh.getPositions();
+    float[] normals = mesh.getNormals();
+    float[] uvs = mesh.getUvs();
+    List<Vertex> vertices = new ArrayList<>(mesh.getVertexCount());
+    for (int i = 0; i < mesh.getVertexCount(); i++) {
+      vertices.add(
+          Vertex.builder()
+              .setPosition(new Vector3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+              .setNormal(new Vector3(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]))
+              .setUvCoordinate(new Vertex.UvCoordinate(uvs[i * 2], uvs[i * 2 + 1]))
+              .build());
+    }
+
+    int[] indices = mesh.getTriangleIndices();
+    List<Integer> triangleIndices = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      triangleIndices.add(index);
+    }
+
+    RenderableDefinition.Submesh submesh =
+        RenderableDefinition.Submesh.builder()
+            .setTriangleIndices(triangleIndices)
+            .setMaterial(material)
+            .build();
+    return RenderableDefinition.builder()
+        .setVertices(vertices)
+        .setSubmeshes(Collections.singletonList(submesh))
+        .build();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.util.Log;
+import android.widget.TextView;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.ViewRenderable;
+
+/**
+ * A single info card that is shared by every city.
+ *
+ * <p>Instead of every city inflating its own card up front, this one node is moved onto whichever
+ * city is selected and its text is swapped. The Android View behind it is only inflated the first
+ * time the card is shown, so cities that are never tapped cost nothing. The card is kept facing the
+ * camera by a {@link SceneModelSystem}, under whichever city it is on.
+ *
+ * <p>To measure it, load the full dataset, select the same cities in the same order on each build
+ * being compared, then run {@code adb shell dumpsys meminfo
+ * com.google.ar.sceneform.samples.solarsystem}. The Views and ViewRootImpl counts grow with every
+ * selected city when each has its own card and stay at one here, and TOTAL PSS shows what those
+ * cards cost. Pausing the app writes {@code scene-metrics.csv}, see {@link SceneMetrics}, to its
+ * external files directory; its {@code city activation} and {@code info card build} rows give the
+ * time per selected city and for the one inflation.
+ */
+public class InfoCard extends Node {
+  private static final String TAG = "SOHACKS";
+  private static final float CARD_HEIGHT = 0.05f;
+  private static final float CARD_SCALE = 0.5f;
+
+  private final Context context;
+  private final SceneMetrics metrics;
+  private ViewRenderable cardRenderable;
+  private boolean isBuilding = false;
+  private CharSequence text = "";
+
+  public InfoCard(Context context, SceneModelSystem sceneModel, SceneMetrics metrics) {
+    this.context = context;
+    this.metrics = metrics;
+    setEnabled(false);
+    setLocalPosition(new Vector3(0.0f, CARD_HEIGHT, 0.0f));
+    setLocalScale(new Vector3(CARD_SCALE, CARD_SCALE, CARD_SCALE));
+    sceneModel.addBillboard(sceneModel.add(this, SceneModel.NO_PARENT));
+  }
+
+  /** Moves the card onto {@code target} and shows {@code text} on it. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  public void show(Node target, CharSequence text) {
+    this.text = text;
+    if (getParent() != target) {
+      setParent(target);
+    }
+    setEnabled(true);
+
+    if (cardRenderable != null) {
+      ((TextView) cardRenderable.getView()).setText(text);
+      return;
+    }
+
+    if (isBuilding) {
+      // The text is applied once the renderable is ready.
+      return;
+    }
+
+    isBuilding = true;
+    long start = System.nanoTime();
+    ViewRenderable.builder()
+        .setView(context, R.layout.planet_card_view)
+        .build()
+        .thenAccept(
+            (renderable) -> {
+              metrics.recordSince(SceneMetrics.Metric.INFO_CARD_BUILD, start);
+              Log.i(TAG, "Info card built in " + (System.nanoTime() - start) / 1000000 + "ms");
+              cardRenderable = renderable;
+              setRenderable(renderable);
+              ((TextView) renderable.getView()).setText(this.text);
+            })
+        .exceptionally(
+            (throwable) -> {
+              throw new AssertionError("Could not load plane card view.", throwable);
+            });
+  }
+
+  public void hide() {
+    setEnabled(false);
+  }
+}
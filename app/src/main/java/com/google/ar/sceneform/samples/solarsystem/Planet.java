@@ -18,10 +18,8 @@ package com.google.ar.sceneform.samples.solarsystem;
 import android.content.Context;
 import android.view.MotionEvent;
 import android.widget.TextView;
-import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.HitTestResult;
 import com.google.ar.sceneform.Node;
-import com.google.ar.sceneform.math.Quaternion;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.ModelRenderable;
 import com.google.ar.sceneform.rendering.ViewRenderable;
@@ -38,7 +36,8 @@ import com.google.ar.sceneform.rendering.ViewRenderable;
  * </ul>
  *
  * The planet is rendered by a child instead of this node so that the spinning of the planet doesn't
- * make the info card spin as well.
+ * make the info card spin as well. The planet and its children are views over entities of a {@link
+ * SceneModelSystem}, which turns them.
  */
 public class Planet extends Node implements Node.OnTapListener {
   private final String planetName;
@@ -46,7 +45,9 @@ public class Planet extends Node implements Node.OnTapListener {
   private final float orbitDegreesPerSecond;
   private final float axisTilt;
   private final ModelRenderable planetRenderable;
-  private final SolarSettings solarSettings;
+  private final OrbitalClock orbitalClock;
+  private final SceneModelSystem sceneModel;
+  private final int entity;
 
   private Node infoCard;
   private RotatingNode planetVisual;
@@ -61,17 +62,25 @@ public class Planet extends Node implements Node.OnTapListener {
       float orbitDegreesPerSecond,
       float axisTilt,
       ModelRenderable planetRenderable,
-      SolarSettings solarSettings) {
+      OrbitalClock orbitalClock,
+      SceneModelSystem sceneModel,
+      int parent) {
     this.context = context;
     this.planetName = planetName;
     this.planetScale = planetScale;
     this.orbitDegreesPerSecond = orbitDegreesPerSecond;
     this.axisTilt = axisTilt;
     this.planetRenderable = planetRenderable;
-    this.solarSettings = solarSettings;
+    this.orbitalClock = orbitalClock;
+    this.sceneModel = sceneModel;
+    entity = sceneModel.add(this, parent);
     setOnTapListener(this);
   }
 
+  public int getEntity() {
+    return entity;
+  }
+
   @Override
   @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
   public void onActivate() {
@@ -85,6 +94,7 @@ public class Planet extends Node implements Node.OnTapListener {
       infoCard.setParent(this);
       infoCard.setEnabled(false);
       infoCard.setLocalPosition(new Vector3(0.0f, planetScale * INFO_CARD_Y_POS_COEFF, 0.0f));
+      sceneModel.addBillboard(sceneModel.add(infoCard, entity));
 
       ViewRenderable.builder()
           .setView(context, R.layout.planet_card_view)
@@ -105,14 +115,17 @@ public class Planet extends Node implements Node.OnTapListener {
       // Put a rotator to counter the effects of orbit, and allow the planet orientation to remain
       // of planets like Uranus (which has high tilt) to keep tilted towards the same direction
       // wherever it is in its orbit.
-      RotatingNode counterOrbit = new RotatingNode(solarSettings, true, true, 0f);
+      RotatingNode counterOrbit =
+          new RotatingNode(sceneModel, entity, orbitalClock, true, true, 0f);
       counterOrbit.setDegreesPerSecond(orbitDegreesPerSecond);
       counterOrbit.setParent(this);
 
-      planetVisual = new RotatingNode(solarSettings, false, false, axisTilt);
+      planetVisual =
+          new RotatingNode(
+              sceneModel, counterOrbit.getEntity(), orbitalClock, false, false, axisTilt);
       planetVisual.setParent(counterOrbit);
       planetVisual.setRenderable(planetRenderable);
-      planetVisual.setLocalScale(new Vector3(planetScale, planetScale, planetScale));
+      sceneModel.setLocalScale(planetVisual.getEntity(), planetScale);
     }
   }
 
@@ -124,24 +137,4 @@ public class Planet extends Node implements Node.OnTapListener {
 
     infoCard.setEnabled(!infoCard.isEnabled());
   }
-
-  @Override
-  public void onUpdate(FrameTime frameTime) {
-    if (infoCard == null) {
-      return;
-    }
-
-    // Typically, getScene() will never return null because onUpdate() is only called when the node
-    // is in the scene.
-    // However, if onUpdate is called explicitly or if the node is removed from the scene on a
-    // different thread during onUpdate, then getScene may be null.
-    if (getScene() == null) {
-      return;
-    }
-    Vector3 cameraPosition = getScene().getCamera().getWorldPosition();
-    Vector3 cardPosition = infoCard.getWorldPosition();
-    Vector3 direction = Vector3.subtract(cameraPosition, cardPosition);
-    Quaternion lookRotation = Quaternion.lookRotation(direction, Vector3.up());
-    infoCard.setWorldRotation(lookRotation);
-  }
 }
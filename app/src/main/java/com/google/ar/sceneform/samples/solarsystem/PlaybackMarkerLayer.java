@@ -0,0 +1,280 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Node that animates the markers of a set of policy clusters between the years of a {@link
+ * PolicyTimeline}.
+ *
+ * <p>Like {@link CityMarkerLayer}, all markers are merged into one {@link MarkerMesh}, but here the
+ * mesh is kept once built. Every frame the markers are resized in place from the timeline's
+ * interpolated values, copied into the same vertices and uploaded with {@link
+ * ModelRenderable#updateFromDefinition}, so animating doesn't create any objects. Sceneform's
+ * color materials have one color each, so markers are shaded by sorting their triangles into a
+ * few submeshes along a color ramp; those only change when a marker moves to another shade.
+ */
+public class PlaybackMarkerLayer extends Node {
+  private static final int SHADES = 8;
+  private static final Color LOW_COLOR = new Color(0.16f, 0.5f, 0.9f);
+  private static final Color HIGH_COLOR = new Color(1.0f, 0.4f, 0.15f);
+
+  private final Context context;
+  private final Executor mainExecutor;
+
+  private CompletableFuture<List<Material>> materialsStage;
+  @Nullable private Markers markers;
+  // Incremented for every update so that a slow, stale mesh build never replaces a newer one.
+  private int generation;
+
+  public PlaybackMarkerLayer(Context context) {
+    this.context = context;
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    this.mainExecutor = mainHandler::post;
+  }
+
+  /**
+   * Replaces the markers animated by this layer. The mesh is generated on {@code executor}, and
+   * the markers keep their full size until the first {@link #animate} after it is uploaded.
+   *
+   * @param timeline the keyframes that {@code ids} index
+   * @param positions packed xyz marker positions relative to the centre of the globe
+   * @param halfSizes size of each marker when its scale is 1
+   * @param ids the cluster of each marker
+   * @param count number of markers in {@code positions}
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  public void setMarkers(
+      PolicyTimeline timeline,
+      float[] positions,
+      float[] halfSizes,
+      int[] ids,
+      int count,
+      Executor executor) {
+    int buildGeneration = ++generation;
+    if (count == 0) {
+      markers = null;
+      setRenderable(null);
+      return;
+    }
+
+    if (materialsStage == null) {
+      materialsStage = makeShadeMaterials();
+    }
+
+    CompletableFuture.supplyAsync(
+            () -> MarkerMesh.build(positions, halfSizes, count, 0), executor)
+        .thenCombineAsync(
+            materialsStage,
+            (mesh, materials) -> new Markers(timeline, positions, halfSizes, ids, mesh, materials),
+            executor)
+        .thenComposeAsync(
+            built ->
+                ModelRenderable.builder()
+                    .setSource(built.definition)
+                    .build()
+                    .thenApply(
+                        renderable -> {
+                          built.renderable = renderable;
+                          return built;
+                        }),
+            mainExecutor)
+        .thenAccept(
+            built -> {
+              if (buildGeneration != generation) {
+                return;
+              }
+              built.renderable.setShadowCaster(false);
+              built.renderable.setShadowReceiver(false);
+              markers = built;
+              setRenderable(built.renderable);
+            })
+        .exceptionally(
+            throwable -> {
+              throw new AssertionError("Could not build playback markers.", throwable);
+            });
+  }
+
+  /**
+   * Resizes and shades every marker from {@code values}, as evaluated from the timeline's track.
+   * Does nothing if the markers shown were built for another timeline.
+   */
+  public void animate(PolicyTimeline timeline, float[] values) {
+    if (markers == null || markers.timeline != timeline) {
+      return;
+    }
+    markers.apply(values);
+    markers.renderable.updateFromDefinition(markers.definition);
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private CompletableFuture<List<Material>> makeShadeMaterials() {
+    List<CompletableFuture<Material>> stages = new ArrayList<>(SHADES);
+    for (int shade = 0; shade < SHADES; shade++) {
+      float t = shade / (float) (SHADES - 1);
+      Color color =
+          new Color(
+              LOW_COLOR.r + (HIGH_COLOR.r - LOW_COLOR.r) * t,
+              LOW_COLOR.g + (HIGH_COLOR.g - LOW_COLOR.g) * t,
+              LOW_COLOR.b + (HIGH_COLOR.b - LOW_COLOR.b) * t);
+      stages.add(MaterialFactory.makeOpaqueWithColor(context, color));
+    }
+    return CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            notUsed -> {
+              List<Material> materials = new ArrayList<>(SHADES);
+              for (CompletableFuture<Material> stage : stages) {
+                materials.add(stage.join());
+              }
+              return materials;
+            });
+  }
+
+  /** One mesh of markers and the Sceneform objects it is uploaded through, reused every frame. */
+  private static final class Markers {
+    private final PolicyTimeline timeline;
+    private final float[] centers;
+    private final float[] halfSizes;
+    private final int[] ids;
+    private final MarkerMesh mesh;
+    private final List<Vertex> vertices;
+    // Boxed once, the submeshes take their indices as a List<Integer>.
+    private final Integer[] boxedIndices;
+    private final List<List<Integer>> shadeIndices = new ArrayList<>(SHADES);
+    private final List<RenderableDefinition.Submesh> shadeSubmeshes = new ArrayList<>(SHADES);
+    // The submeshes of the shades that have any markers.
+    private final List<RenderableDefinition.Submesh> submeshes = new ArrayList<>(SHADES);
+    private final int[] shades;
+    private final RenderableDefinition definition;
+    private ModelRenderable renderable;
+
+    Markers(
+        PolicyTimeline timeline,
+        float[] centers,
+        float[] halfSizes,
+        int[] ids,
+        MarkerMesh mesh,
+        List<Material> materials) {
+      this.timeline = timeline;
+      this.centers = centers;
+      this.halfSizes = halfSizes;
+      this.ids = ids;
+      this.mesh = mesh;
+      this.shades = new int[mesh.getMarkerCount()];
+
+      float[] positions = mesh.getPositions();
+      float[] normals = mesh.getNormals();
+      vertices = new ArrayList<>(mesh.getVertexCount());
+      boxedIndices = new Integer[mesh.getVertexCount()];
+      for (int i = 0; i < mesh.getVertexCount(); i++) {
+        vertices.add(
+            Vertex.builder()
+                .setPosition(
+                    new Vector3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+                .setNormal(new Vector3(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]))
+                .build());
+        boxedIndices[i] = i;
+      }
+
+      for (int shade = 0; shade < SHADES; shade++) {
+        List<Integer> indices = new ArrayList<>();
+        shadeIndices.add(indices);
+        shadeSubmeshes.add(
+            RenderableDefinition.Submesh.builder()
+                .setTriangleIndices(indices)
+                .setMaterial(materials.get(shade))
+                .build());
+      }
+      // Everything starts in the first shade until the first frame sorts the markers.
+      sortTriangles();
+      definition =
+          RenderableDefinition.builder().setVertices(vertices).setSubmeshes(submeshes).build();
+    }
+
+    void apply(float[] values) {
+      int channels = timeline.getTrack().getChannelCount();
+      boolean reshaded = false;
+      for (int marker = 0; marker < shades.length; marker++) {
+        int entity = ids[marker] * channels;
+        mesh.setMarker(
+            marker,
+            centers[marker * 3],
+            centers[marker * 3 + 1],
+            centers[marker * 3 + 2],
+            halfSizes[marker] * values[entity + PolicyTimeline.SCALE]);
+        int shade = (int) (values[entity + PolicyTimeline.SHADE] * SHADES);
+        shade = Math.min(Math.max(shade, 0), SHADES - 1);
+        if (shade != shades[marker]) {
+          shades[marker] = shade;
+          reshaded = true;
+        }
+      }
+
+      float[] positions = mesh.getPositions();
+      for (int i = 0; i < vertices.size(); i++) {
+        vertices
+            .get(i)
+            .getPosition()
+            .set(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+      }
+      if (reshaded) {
+        sortTriangles();
+        definition.setSubmeshes(submeshes);
+      }
+    }
+
+    /** Rebuilds the triangle lists of every shade from {@link #shades}. */
+    private void sortTriangles() {
+      for (List<Integer> indices : shadeIndices) {
+        indices.clear();
+      }
+      int[] triangleIndices = mesh.getTriangleIndices();
+      for (int marker = 0; marker < shades.length; marker++) {
+        List<Integer> indices = shadeIndices.get(shades[marker]);
+        int base = marker * MarkerMesh.INDICES_PER_MARKER;
+        for (int i = base; i < base + MarkerMesh.INDICES_PER_MARKER; i++) {
+          indices.add(boxedIndices[triangleIndices[i]]);
+        }
+      }
+      submeshes.clear();
+      for (int shade = 0; shade < SHADES; shade++) {
+        if (!shadeIndices.get(shade).isEmpty()) {
+          RenderableDefinition.Submesh submesh = shadeSubmeshes.get(shade);
+          submesh.setTriangleIndices(shadeIndices.get(shade));
+          submeshes.add(submesh);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the policy exposure dataset.
+ *
+ * <p>The build copies the CSV last uploaded to the NodeJS server into the app's assets as
+ * policies.csv, which is parsed into a {@link PolicyStore} on a background executor.
+ */
+public class PolicyRepository {
+  private static final String TAG = "SOHACKS";
+  private static final String POLICIES_ASSET = "policies.csv";
+
+  private final AssetManager assets;
+  private final Executor executor;
+  private final SceneMetrics metrics;
+
+  public PolicyRepository(AssetManager assets, Executor executor, SceneMetrics metrics) {
+    this.assets = assets;
+    this.executor = executor;
+    this.metrics = metrics;
+  }
+
+  /** Asynchronously loads every policy in the bundled dataset. */
+  @SuppressWarnings("AndroidApiChecker")
+  // CompletableFuture requires api level 24
+  public CompletableFuture<PolicyStore> loadStore() {
+    return CompletableFuture.supplyAsync(this::readStore, executor);
+  }
+
+  private PolicyStore readStore() {
+    long start = System.nanoTime();
+    PolicyStore store;
+    try (InputStream in = assets.open(POLICIES_ASSET)) {
+      store = PolicyStore.read(in);
+    } catch (IOException e) {
+      throw new CompletionException("Unable to read " + POLICIES_ASSET, e);
+    }
+    metrics.recordSince(SceneMetrics.Metric.POLICY_PARSE, start);
+    Log.i(
+        TAG,
+        "Read "
+            + store.size()
+            + " policies in "
+            + (System.nanoTime() - start) / 1000
+            + "us");
+    return store;
+  }
+}
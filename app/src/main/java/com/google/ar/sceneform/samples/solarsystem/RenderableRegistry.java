@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads and caches the ModelRenderables of the scene by asset URI.
+ *
+ * <p>Critical assets are needed before the scene can be placed and start loading immediately.
+ * Secondary assets only start once every critical asset has settled, so they never compete with
+ * them for the loader; nodes that use them attach the renderable whenever it arrives. Loading the
+ * same URI again returns the cached future, so placing the scene again reuses the renderables.
+ *
+ * <p>Must only be used from the UI thread.
+ */
+public class RenderableRegistry {
+  private static final String TAG = "SOHACKS";
+
+  /** How soon an asset is needed. */
+  public enum Priority {
+    CRITICAL,
+    SECONDARY
+  }
+
+  /** Notified on the UI thread every time an asset finishes loading, successfully or not. */
+  public interface OnProgressListener {
+    void onProgress(String uri, int settledCount, int totalCount);
+  }
+
+  private final Context context;
+  private final Executor mainExecutor;
+  private final Map<String, CompletableFuture<ModelRenderable>> renderables = new HashMap<>();
+
+  // Completes once every critical asset requested so far has loaded.
+  private CompletableFuture<Void> criticalStage;
+  private int settledCount;
+  @Nullable private OnProgressListener progressListener;
+
+  @SuppressWarnings("AndroidApiChecker")
+  // CompletableFuture requires api level 24
+  public RenderableRegistry(Context context) {
+    this.context = context;
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    this.mainExecutor = mainHandler::post;
+    this.criticalStage = CompletableFuture.completedFuture(null);
+  }
+
+  public void setOnProgressListener(@Nullable OnProgressListener listener) {
+    this.progressListener = listener;
+  }
+
+  /**
+   * Returns the renderable for {@code uri}, loading it with the given priority unless it was
+   * already requested.
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  public CompletableFuture<ModelRenderable> load(String uri, Priority priority) {
+    CompletableFuture<ModelRenderable> cached = renderables.get(uri);
+    if (cached != null) {
+      return cached;
+    }
+
+    long requested = System.nanoTime();
+    CompletableFuture<ModelRenderable> stage;
+    if (priority == Priority.CRITICAL) {
+      stage = build(uri);
+      criticalStage = CompletableFuture.allOf(criticalStage, stage);
+    } else {
+      // Wait for the critical assets whether or not they load, then start on the UI thread.
+      stage =
+          criticalStage
+              .handle((notUsed, throwable) -> null)
+              .thenComposeAsync(notUsed -> build(uri), mainExecutor);
+    }
+    renderables.put(uri, stage);
+
+    stage.handleAsync(
+        (renderable, throwable) -> {
+          settledCount++;
+          if (throwable != null) {
+            Log.e(TAG, "Unable to load " + uri, throwable);
+          } else {
+            Log.i(
+                TAG,
+                "Loaded "
+                    + uri
+                    + " ("
+                    + priority
+                    + ") in "
+                    + (System.nanoTime() - requested) / 1000000
+                    + "ms");
+          }
+          if (progressListener != null) {
+            progressListener.onProgress(uri, settledCount, renderables.size());
+          }
+          return null;
+        },
+        mainExecutor);
+    return stage;
+  }
+
+  private CompletableFuture<ModelRenderable> build(String uri) {
+    return ModelRenderable.builder().setSource(context, Uri.parse(uri)).build();
+  }
+
+  /** Completes once every critical asset requested so far has loaded, or fails with the first. */
+  public CompletableFuture<Void> whenCriticalReady() {
+    return criticalStage;
+  }
+
+  /** Whether {@code uri} has loaded successfully. */
+  @SuppressWarnings("AndroidApiChecker")
+  // CompletableFuture requires api level 24
+  public boolean isReady(String uri) {
+    CompletableFuture<ModelRenderable> stage = renderables.get(uri);
+    return stage != null && stage.isDone() && !stage.isCompletedExceptionally();
+  }
+
+  /** Fraction of the requested assets that have finished loading, successfully or not. */
+  public float getProgress() {
+    return renderables.isEmpty() ? 1.0f : (float) settledCount / renderables.size();
+  }
+}
@@ -15,142 +15,72 @@
  */
 package com.google.ar.sceneform.samples.solarsystem;
 
-import android.animation.ObjectAnimator;
-import android.support.annotation.Nullable;
-import android.view.animation.LinearInterpolator;
-import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.Node;
-import com.google.ar.sceneform.math.Quaternion;
-import com.google.ar.sceneform.math.QuaternionEvaluator;
-import com.google.ar.sceneform.math.Vector3;
 
-/** Node demonstrating rotation and transformations. */
+/**
+ * Node demonstrating rotation and transformations.
+ *
+ * <p>The node is a view over an entity of a {@link SceneModelSystem}. Its rotation is computed into
+ * that entity by an {@link OrbitalClock}, which drives every rotating node in the scene in one pass
+ * while this node is active, and copied back out once per frame.
+ */
 public class RotatingNode extends Node {
-  // We'll use Property Animation to make this node rotate.
-  @Nullable private ObjectAnimator orbitAnimation = null;
   private float degreesPerSecond = 90.0f;
 
-  private final SolarSettings solarSettings;
+  private final OrbitalClock orbitalClock;
   private final boolean isOrbit;
   private final boolean clockwise;
   private final float axisTiltDeg;
-  private float lastSpeedMultiplier = 1.0f;
-
+  private final int entity;
+  private final OrbitalClock.Target target;
+  private boolean isRegistered = false;
+
+  /**
+   * Adds the node to {@code sceneModel}.
+   *
+   * @param parent the entity of the node this one will be a child of, or {@link
+   *     SceneModel#NO_PARENT} if that node is not in the model
+   */
   public RotatingNode(
-      SolarSettings solarSettings, boolean isOrbit, boolean clockwise, float axisTiltDeg) {
-    this.solarSettings = solarSettings;
+      SceneModelSystem sceneModel,
+      int parent,
+      OrbitalClock orbitalClock,
+      boolean isOrbit,
+      boolean clockwise,
+      float axisTiltDeg) {
+    this.orbitalClock = orbitalClock;
     this.isOrbit = isOrbit;
     this.clockwise = clockwise;
     this.axisTiltDeg = axisTiltDeg;
+    entity = sceneModel.add(this, parent);
+    target = sceneModel.getModel().rotationTarget(entity);
   }
 
-  @Override
-  public void onUpdate(FrameTime frameTime) {
-    super.onUpdate(frameTime);
-
-    // Animation hasn't been set up.
-    if (orbitAnimation == null) {
-      return;
-    }
-
-    // Check if we need to change the speed of rotation.
-    float speedMultiplier = getSpeedMultiplier();
-
-    // Nothing has changed. Continue rotating at the same speed.
-    if (lastSpeedMultiplier == speedMultiplier) {
-      return;
-    }
-
-    if (speedMultiplier == 0.0f) {
-      orbitAnimation.pause();
-    } else {
-      orbitAnimation.resume();
-
-      float animatedFraction = orbitAnimation.getAnimatedFraction();
-      orbitAnimation.setDuration(getAnimationDuration());
-      orbitAnimation.setCurrentFraction(animatedFraction);
-    }
-    lastSpeedMultiplier = speedMultiplier;
+  public int getEntity() {
+    return entity;
   }
 
   /** Sets rotation speed */
   public void setDegreesPerSecond(float degreesPerSecond) {
     this.degreesPerSecond = degreesPerSecond;
+    if (isRegistered) {
+      register();
+    }
   }
 
   @Override
   public void onActivate() {
-    startAnimation();
+    register();
   }
 
   @Override
   public void onDeactivate() {
-    stopAnimation();
-  }
-
-  private long getAnimationDuration() {
-    return (long) (1000 * 360 / (degreesPerSecond * getSpeedMultiplier()));
+    orbitalClock.remove(target);
+    isRegistered = false;
   }
 
-  private float getSpeedMultiplier() {
-    if (isOrbit) {
-      return solarSettings.getOrbitSpeedMultiplier();
-    } else {
-      return solarSettings.getRotationSpeedMultiplier();
-    }
-  }
-
-  private void startAnimation() {
-    if (orbitAnimation != null) {
-      return;
-    }
-
-    orbitAnimation = createAnimator(clockwise, axisTiltDeg);
-    orbitAnimation.setTarget(this);
-    orbitAnimation.setDuration(getAnimationDuration());
-    orbitAnimation.start();
-  }
-
-  private void stopAnimation() {
-    if (orbitAnimation == null) {
-      return;
-    }
-    orbitAnimation.cancel();
-    orbitAnimation = null;
-  }
-
-  /** Returns an ObjectAnimator that makes this node rotate. */
-  private static ObjectAnimator createAnimator(boolean clockwise, float axisTiltDeg) {
-    // Node's setLocalRotation method accepts Quaternions as parameters.
-    // First, set up orientations that will animate a circle.
-    Quaternion[] orientations = new Quaternion[4];
-    // Rotation to apply first, to tilt its axis.
-    Quaternion baseOrientation = Quaternion.axisAngle(new Vector3(1.0f, 0f, 0.0f), axisTiltDeg);
-    for (int i = 0; i < orientations.length; i++) {
-      float angle = i * 360 / (orientations.length - 1);
-      if (clockwise) {
-        angle = 360 - angle;
-      }
-      Quaternion orientation = Quaternion.axisAngle(new Vector3(0.0f, 1.0f, 0.0f), angle);
-      orientations[i] = Quaternion.multiply(baseOrientation, orientation);
-    }
-
-    ObjectAnimator orbitAnimation = new ObjectAnimator();
-    // Cast to Object[] to make sure the varargs overload is called.
-    orbitAnimation.setObjectValues((Object[]) orientations);
-
-    // Next, give it the localRotation property.
-    orbitAnimation.setPropertyName("localRotation");
-
-    // Use Sceneform's QuaternionEvaluator.
-    orbitAnimation.setEvaluator(new QuaternionEvaluator());
-
-    //  Allow orbitAnimation to repeat forever
-    orbitAnimation.setRepeatCount(ObjectAnimator.INFINITE);
-    orbitAnimation.setRepeatMode(ObjectAnimator.RESTART);
-    orbitAnimation.setInterpolator(new LinearInterpolator());
-    orbitAnimation.setAutoCancel(true);
-
-    return orbitAnimation;
+  private void register() {
+    orbitalClock.add(target, degreesPerSecond, isOrbit, clockwise, axisTiltDeg);
+    isRegistered = true;
   }
 }
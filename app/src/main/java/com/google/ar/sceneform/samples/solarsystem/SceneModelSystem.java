@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes Sceneform nodes views over the entities of a {@link SceneModel}, which runs their per-frame
+ * logic.
+ *
+ * <p>Each node added gets an entity starting from its local transform. Orbits, spins and
+ * billboards turn the entities, and every frame the rotations that changed are copied out to the
+ * nodes. Positions and scales only change through this class, which sets them on both. Nodes are
+ * still enabled and disabled as usual, and the entities follow.
+ *
+ * <p>A node added without a parent entity, like the info card that moves between cities, sits under
+ * whatever node its Sceneform parent is at the time: an extra entity is placed at that parent's
+ * world matrix every frame. Matrices are read straight out of the nodes and rotations are written
+ * through scratch storage, so a steady-state frame does not allocate.
+ */
+public class SceneModelSystem {
+  private final Scene scene;
+  private final SceneModel model = new SceneModel();
+
+  // Node of each entity, null for the entities placed at a Sceneform parent.
+  private final ArrayList<Node> nodes = new ArrayList<>();
+  private final Map<Node, Integer> entities = new HashMap<>();
+  // parentEntities[i] is placed at the Sceneform parent of parentedNodes.get(i).
+  private int[] parentEntities = new int[8];
+  private final ArrayList<Node> parentedNodes = new ArrayList<>();
+  // Rotation last written to the node of each entity, packed xyzw.
+  private float[] nodeRotations = new float[8 * 4];
+
+  private final float[] scratchRotation = new float[4];
+  private final Quaternion scratchQuaternion = new Quaternion();
+  private final Vector3 scratchVector = new Vector3();
+
+  public SceneModelSystem(Scene scene) {
+    this.scene = scene;
+  }
+
+  public SceneModel getModel() {
+    return model;
+  }
+
+  /**
+   * Gives {@code node} an entity under {@code parent}, starting from the node's local transform.
+   *
+   * @param parent the entity of the node's Sceneform parent, or {@link SceneModel#NO_PARENT} to
+   *     follow whichever node its parent is
+   * @return the node's entity
+   */
+  public int add(Node node, int parent) {
+    if (entities.containsKey(node)) {
+      throw new IllegalArgumentException("Node added twice");
+    }
+    if (parent == SceneModel.NO_PARENT) {
+      parent = addEntity(null, SceneModel.NO_PARENT);
+      int index = parentedNodes.size();
+      if (parentEntities.length <= index) {
+        parentEntities = Arrays.copyOf(parentEntities, parentEntities.length * 2);
+      }
+      parentEntities[index] = parent;
+      parentedNodes.add(node);
+    } else if (parent < 0 || parent >= nodes.size() || nodes.get(parent) == null) {
+      throw new IllegalArgumentException("Not the entity of a node: " + parent);
+    }
+
+    int entity = addEntity(node, parent);
+    entities.put(node, entity);
+    Vector3 position = node.getLocalPosition();
+    model.setLocalPosition(entity, position.x, position.y, position.z);
+    // Sceneform scales each axis, the model only uniformly.
+    model.setLocalScale(entity, node.getLocalScale().x);
+    Quaternion rotation = node.getLocalRotation();
+    model.setLocalRotation(entity, rotation.x, rotation.y, rotation.z, rotation.w);
+    model.getLocalRotation(entity, scratchRotation);
+    System.arraycopy(scratchRotation, 0, nodeRotations, entity * 4, 4);
+    return entity;
+  }
+
+  /** The entity of {@code node}, or {@link SceneModel#NO_PARENT} if it was never added. */
+  public int getEntity(Node node) {
+    Integer entity = entities.get(node);
+    return entity == null ? SceneModel.NO_PARENT : entity;
+  }
+
+  /** Keeps the node of {@code entity} facing the camera, like an info card. */
+  public void addBillboard(int entity) {
+    model.addBillboard(entity);
+  }
+
+  public void setLocalPosition(int entity, float x, float y, float z) {
+    model.setLocalPosition(entity, x, y, z);
+    scratchVector.set(x, y, z);
+    nodes.get(entity).setLocalPosition(scratchVector);
+  }
+
+  public void setLocalScale(int entity, float scale) {
+    model.setLocalScale(entity, scale);
+    scratchVector.set(scale, scale, scale);
+    nodes.get(entity).setLocalScale(scratchVector);
+  }
+
+  /**
+   * Runs the model for one frame, after the {@link OrbitalClock} has advanced, and copies the
+   * rotations that changed out to the nodes.
+   */
+  public void update() {
+    // Indexed loops, an iterator would be an allocation per frame.
+    for (int i = 0; i < parentedNodes.size(); i++) {
+      Node parent = parentedNodes.get(i).getParent();
+      boolean isActive = parent != null && parent.isActive();
+      model.setEnabled(parentEntities[i], isActive);
+      if (isActive) {
+        model.setWorldMatrix(parentEntities[i], parent.getWorldModelMatrix().data, 0);
+      }
+    }
+    for (int entity = 0; entity < nodes.size(); entity++) {
+      Node node = nodes.get(entity);
+      if (node != null) {
+        model.setEnabled(entity, node.isEnabled());
+      }
+    }
+
+    float[] camera = scene.getCamera().getWorldModelMatrix().data;
+    model.update(camera[12], camera[13], camera[14]);
+
+    for (int entity = 0; entity < nodes.size(); entity++) {
+      Node node = nodes.get(entity);
+      if (node == null || !model.isActive(entity)) {
+        continue;
+      }
+      model.getLocalRotation(entity, scratchRotation);
+      int index = entity * 4;
+      if (scratchRotation[0] == nodeRotations[index]
+          && scratchRotation[1] == nodeRotations[index + 1]
+          && scratchRotation[2] == nodeRotations[index + 2]
+          && scratchRotation[3] == nodeRotations[index + 3]) {
+        // Setting it anyway would make Sceneform recompute the world matrices below the node.
+        continue;
+      }
+      System.arraycopy(scratchRotation, 0, nodeRotations, index, 4);
+      scratchQuaternion.set(
+          scratchRotation[0], scratchRotation[1], scratchRotation[2], scratchRotation[3]);
+      node.setLocalRotation(scratchQuaternion);
+    }
+  }
+
+  private int addEntity(Node node, int parent) {
+    int entity = model.add(parent);
+    nodes.add(node);
+    if (nodeRotations.length < (entity + 1) * 4) {
+      nodeRotations = Arrays.copyOf(nodeRotations, nodeRotations.length * 2);
+    }
+    return entity;
+  }
+}
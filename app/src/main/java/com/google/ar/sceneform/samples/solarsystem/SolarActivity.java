@@ -15,22 +15,33 @@
  */
 package com.google.ar.sceneform.samples.solarsystem;
 
-import android.net.Uri;
+import android.arch.lifecycle.ViewModelProvider;
+import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 import com.google.ar.core.Anchor;
 import com.google.ar.core.Frame;
 import com.google.ar.core.HitResult;
 import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
 import com.google.ar.core.Session;
 import com.google.ar.core.Trackable;
 import com.google.ar.core.TrackingState;
@@ -38,22 +49,30 @@ import com.google.ar.core.exceptions.CameraNotAvailableException;
 import com.google.ar.core.exceptions.UnavailableException;
 import com.google.ar.sceneform.AnchorNode;
 import com.google.ar.sceneform.ArSceneView;
+import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.HitTestResult;
 import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.collision.Ray;
 import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
 import com.google.ar.sceneform.rendering.ModelRenderable;
 import com.google.ar.sceneform.rendering.ViewRenderable;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import org.apache.commons.csv.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -71,12 +90,22 @@ public class SolarActivity extends AppCompatActivity {
 
   private ArSceneView arSceneView;
 
+  // Holds the datasets, models and executors, and the placed scene while the activity is
+  // recreated.
+  private SolarViewModel model;
+
+  // The placed scene, kept when the activity is recreated, and the node anchoring it.
+  private Node solarSystem;
+  private AnchorNode sceneAnchorNode;
+  // Where the scene was relative to the camera when last seen, to anchor it there again.
+  private final float[] cameraToScene = {0.0f, -0.5f, -1.0f};
+  // When the app was resumed with a scene already built, until it is anchored and tracking again.
+  private long restoreStartNanos;
+
   private ModelRenderable sunRenderable;
   private ModelRenderable mercuryRenderable;
   private ModelRenderable venusRenderable;
   private ModelRenderable earthRenderable;
-  private ModelRenderable lunaRenderable;
-  private ModelRenderable marsRenderable;
   private ModelRenderable markerRenderable;
   private ModelRenderable jupiterRenderable;
   private ModelRenderable saturnRenderable;
@@ -84,8 +113,92 @@ public class SolarActivity extends AppCompatActivity {
   private ModelRenderable neptuneRenderable;
   private ViewRenderable solarControlsRenderable;
 
+  // Loads the models by priority and keeps them for when the scene is placed again.
+  private RenderableRegistry renderables;
+
+  // Cities to place on the globe, loaded in the background while the renderables build. Only the
+  // selected city has a node of its own.
+  private CityTable cityTable;
+
+  // Renders the city markers chosen by cityLevelOfDetail, and the city the user last tapped.
+  private CityMarkerLayer cityMarkers;
+  private CityLevelOfDetail cityLevelOfDetail;
+  private City selectedCity;
+  // One card shared by every city, created the first time a city is tapped.
+  private InfoCard cityInfoCard;
+
+  // Finds cities by name as the user types, built in the background once the cities have loaded.
+  private CitySearchIndex citySearchIndex;
+  private ListView searchResults;
+  private ArrayAdapter<String> searchResultsAdapter;
+  private final int[] searchMatches = new int[MAX_SEARCH_RESULTS];
+  // Turns the globe to bring a city found by searching into view.
+  private GlobeFlyTo globeFlyTo;
+
+  // Restricts the city and policy markers to those matching the filter box, see AttributeIndex.
+  // The policy attributes are built along with the clusters, for the same store.
+  private AttributeIndex cityAttributes;
+  private AttributeIndex policyAttributes;
+  private String filterText = "";
+
+  // Policies uploaded through the NodeJS server, plotted once both they and the globe are ready.
+  private PolicyStore policyStore;
+  private float[] policyPositions;
+  // Policies are drawn as clusters that split as the camera gets closer, see ClusterLevelOfDetail.
+  private CityMarkerLayer policyMarkers;
+  private ClusterLevelOfDetail policyLevelOfDetail;
+
+  // Animates the policy clusters between the years of the dataset, shown instead of policyMarkers
+  // while playing. The keyframes are built with the clusters they describe.
+  private PlaybackMarkerLayer playbackMarkers;
+  private PolicyTimeline policyTimeline;
+  private float[] playbackValues = new float[0];
+  private boolean isPlaying;
+  private float playbackYear = PolicyTimeline.FIRST_YEAR;
+  private float playbackDirection = 1;
+  private Button playbackToggle;
+  private TextView playbackYearLabel;
+  private int shownPlaybackTenths;
+
+  // Great-circle links between neighbouring capitals, and from each visible policy cluster to its
+  // nearest city. The spatial index over every city is only queried on the background executor.
+  private ArcLayer capitalRoutes;
+  private ArcLayer policyLinks;
+  private CompletableFuture<CitySpatialIndex> citySpatialIndexStage;
+
+  // The globe's texture, streamed in as tiles that get finer as the camera gets closer.
+  private TiledGlobeLayer globeTiles;
+
+  // Population and insured value density, draped over the globe.
+  private HeatmapLayer heatmap;
+  private int policyHeatmapSource = NO_HEATMAP_SOURCE;
+
+  // Polls the upload server for a newer policy dataset while the activity is resumed.
+  private PolicyFeedClient policyFeed;
+  private ScheduledExecutorService feedExecutor;
+  private ScheduledFuture<?> feedPoll;
+
+  // Runs data loading off the UI thread, and decodes globe tiles. Owned by the model.
+  private ExecutorService backgroundExecutor;
+  private ExecutorService tileExecutor;
+  private Executor mainExecutor;
+
   private final SolarSettings solarSettings = new SolarSettings();
 
+  // Drives every RotatingNode from the frame time.
+  private final OrbitalClock orbitalClock = new OrbitalClock(solarSettings);
+
+  // Holds the transforms of the rotating nodes and info cards, and keeps the cards facing the
+  // camera.
+  private SceneModelSystem sceneModel;
+
+  // Frame and load timings, shown on the HUD and written to a file when the activity pauses.
+  private SceneMetrics metrics;
+  private TextView metricsHud;
+  private long lastFrameStartNanos;
+  private long lastHudUpdateNanos;
+  private int framesSinceSceneCount;
+
   // True once scene is loaded
   private boolean hasFinishedLoading = false;
 
@@ -97,6 +210,44 @@ public class SolarActivity extends AppCompatActivity {
 
   public static final float EARTH_RADIUS = 0.53f;
 
+  // Places cities on the surface of the earth_obj globe.
+  static final GeoProjection CITY_PROJECTION =
+      new GeoProjection(EARTH_RADIUS, GeoProjection.EARTH_TEXTURE_LONGITUDE_OFFSET);
+
+  private static final String GLOBE_MODEL = "earth_obj.sfb";
+  private static final String MARKER_MODEL = "model.sfb";
+  private static final String LUNA_MODEL = "Luna.sfb";
+  private static final String MARS_MODEL = "Mars.sfb";
+
+  private static final Color POLICY_MARKER_COLOR = new Color(0.16f, 0.5f, 0.9f);
+  private static final float POLICY_MARKER_HALF_SIZE = 0.004f;
+  private static final int NO_HEATMAP_SOURCE = -1;
+  private static final long POLICY_POLL_SECONDS = 5;
+  private static final Color POPULATION_HEAT_COLOR = new Color(1.0f, 0.55f, 0.1f);
+  private static final Color INSURED_VALUE_HEAT_COLOR = new Color(0.2f, 0.6f, 1.0f);
+  private static final Color CAPITAL_ROUTE_COLOR = new Color(1.0f, 0.85f, 0.3f);
+  private static final Color POLICY_LINK_COLOR = new Color(0.55f, 0.8f, 1.0f);
+  private static final float ARC_HALF_WIDTH = 0.0012f;
+  private static final int CAPITAL_ROUTE_NEIGHBOURS = 2;
+  // Policy clusters further than this from any city, in radians, get no link.
+  private static final float POLICY_LINK_MAX_ANGLE = 0.05f;
+
+  // Bounds on how many city markers are drawn at once, see CityLevelOfDetail.
+  private static final int MIN_VISIBLE_CITIES = 250;
+  private static final int MAX_VISIBLE_CITIES = 3000;
+  // Bound on how many policy clusters are drawn at once.
+  private static final int MAX_VISIBLE_POLICY_CLUSTERS = 1500;
+  private static final float PLAYBACK_SECONDS_PER_YEAR = 3.0f;
+  private static final int MAX_SEARCH_RESULTS = 8;
+  // How long a kept anchor gets to track again after resuming before the scene is moved onto a
+  // new one.
+  private static final long REANCHOR_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  // Counting the scene walks every node, so only do it every so many frames.
+  private static final int SCENE_COUNT_INTERVAL_FRAMES = 30;
+  private static final long HUD_UPDATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+  private static final String METRICS_FILE = "scene-metrics.csv";
+
   public static String cityInfo = "";
 
   @Override
@@ -113,56 +264,82 @@ public class SolarActivity extends AppCompatActivity {
 
     setContentView(R.layout.activity_solar);
     arSceneView = findViewById(R.id.ar_scene_view);
+    metricsHud = findViewById(R.id.metrics_hud);
+    playbackToggle = findViewById(R.id.playback_toggle);
+    playbackYearLabel = findViewById(R.id.playback_year);
+    playbackToggle.setOnClickListener(view -> togglePlayback());
+    sceneModel = new SceneModelSystem(arSceneView.getScene());
+    // Every per-frame system runs from one listener so that each can be timed.
+    arSceneView.getScene().addOnUpdateListener(this::onSceneUpdate);
 
     cityInfoSnackbar = Snackbar.make(
             SolarActivity.this.findViewById(android.R.id.content),
             "",
             Snackbar.LENGTH_INDEFINITE);
 
-    // Build all the planet models.
-    CompletableFuture<ModelRenderable> sunStage =
-        ModelRenderable.builder().setSource(this, Uri.parse("earth_obj.sfb")).build();
-//    CompletableFuture<ModelRenderable> mercuryStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Mercury.sfb")).build();
-//    CompletableFuture<ModelRenderable> venusStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Venus.sfb")).build();
-//    CompletableFuture<ModelRenderable> earthStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Earth.sfb")).build();
-    CompletableFuture<ModelRenderable> lunaStage =
-        ModelRenderable.builder().setSource(this, Uri.parse("Luna.sfb")).build();
-    CompletableFuture<ModelRenderable> marsStage =
-        ModelRenderable.builder().setSource(this, Uri.parse("Mars.sfb")).build();
-//    CompletableFuture<ModelRenderable> jupiterStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Jupiter.sfb")).build();
-//    CompletableFuture<ModelRenderable> saturnStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Saturn.sfb")).build();
-//    CompletableFuture<ModelRenderable> uranusStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Uranus.sfb")).build();
-//    CompletableFuture<ModelRenderable> neptuneStage =
-//        ModelRenderable.builder().setSource(this, Uri.parse("Neptune.sfb")).build();
+    // The datasets and models start loading with the model, so that placing the globe doesn't
+    // have to wait on them, and they are not loaded again when the activity is recreated.
+    model =
+        new ViewModelProvider(
+                this, ViewModelProvider.AndroidViewModelFactory.getInstance(getApplication()))
+            .get(SolarViewModel.class);
+    backgroundExecutor = model.getBackgroundExecutor();
+    tileExecutor = model.getTileExecutor();
+    metrics = model.getMetrics();
+    CompletableFuture<CityTable> cityTableStage = model.getCityTableStage();
+    citySpatialIndexStage = model.getCitySpatialIndexStage();
+
+    // The policies are an extra layer, placing the globe doesn't wait for them.
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    mainExecutor = mainHandler::post;
+    RetainedScene retainedScene = model.takeRetainedScene();
+    if (retainedScene != null) {
+      restoreScene(retainedScene);
+    }
+    setUpCitySearch(model.getCitySearchIndexStage());
+    setUpFilter(model.getCityAttributesStage());
+    CompletableFuture<PolicyStore> policiesStage = model.getPoliciesStage();
+    policiesStage
+        .thenApplyAsync(SolarActivity::calculatePolicyPositions, backgroundExecutor)
+        .thenAcceptAsync(
+            positions -> {
+              // The feed may already have delivered something newer than the bundled copy.
+              if (policyStore != null) {
+                return;
+              }
+              policyStore = policiesStage.join();
+              policyPositions = positions;
+              showPolicies();
+            },
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e("SOHACKS", "Unable to load policies", throwable);
+              return null;
+            });
+
+    // Then keep up with whatever is uploaded to the server, see onResume.
+    feedExecutor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      policyFeed = new PolicyFeedClient(new URL(getString(R.string.policy_feed_url)));
+    } catch (MalformedURLException e) {
+      Log.e("SOHACKS", "Invalid policy feed url", e);
+    }
 
+    // Build all the planet models. Only the globe and the city marker are needed to place the scene,
+    // the other bodies attach themselves once they have loaded.
+    renderables = model.getRenderables();
+    CompletableFuture<ModelRenderable> sunStage =
+        renderables.load(GLOBE_MODEL, RenderableRegistry.Priority.CRITICAL);
     CompletableFuture<ModelRenderable> markerStage =
-            ModelRenderable.builder().setSource(this, Uri.parse("model.sfb")).build();
-
-    // Build a renderable from a 2D View.
-//    CompletableFuture<ViewRenderable> solarControlsStage =
-//        ViewRenderable.builder().setView(this, R.layout.solar_controls).build();
-
-    CompletableFuture.allOf(
-            sunStage,
-//            mercuryStage,
-//            venusStage,
-//            earthStage,
-            lunaStage,
-            marsStage,
-            markerStage
-//            jupiterStage,
-//            saturnStage,
-//            uranusStage,
-//            neptuneStage,
-//            solarControlsStage
-    )
-        .handle(
+        renderables.load(MARKER_MODEL, RenderableRegistry.Priority.CRITICAL);
+    renderables.load(LUNA_MODEL, RenderableRegistry.Priority.SECONDARY);
+    renderables.load(MARS_MODEL, RenderableRegistry.Priority.SECONDARY);
+
+    // The city table completes on the background executor, so handle the result on the main
+    // thread, which owns the fields below and the Toast of any error.
+    CompletableFuture.allOf(renderables.whenCriticalReady(), cityTableStage)
+        .handleAsync(
             (notUsed, throwable) -> {
               // When you build a Renderable, Sceneform loads its resources in the background while
               // returning a CompletableFuture. Call handle(), thenAccept(), or check isDone()
@@ -175,19 +352,10 @@ public class SolarActivity extends AppCompatActivity {
 
               try {
                 sunRenderable = sunStage.get();
-//                mercuryRenderable = mercuryStage.get();
-//                venusRenderable = venusStage.get();
-//                earthRenderable = earthStage.get();
-                lunaRenderable = lunaStage.get();
-                marsRenderable = marsStage.get();
                 markerRenderable = markerStage.get();
-//                jupiterRenderable = jupiterStage.get();
-//                saturnRenderable = saturnStage.get();
-//                uranusRenderable = uranusStage.get();
-//                neptuneRenderable = neptuneStage.get();
-//                solarControlsRenderable = solarControlsStage.get();
+                cityTable = cityTableStage.get();
 
-                // Everything finished loading successfully.
+                // Everything needed to place the scene finished loading successfully.
                 hasFinishedLoading = true;
 
               } catch (InterruptedException | ExecutionException ex) {
@@ -195,7 +363,8 @@ public class SolarActivity extends AppCompatActivity {
               }
 
               return null;
-            });
+            },
+            mainExecutor);
 
     // Set up a tap gesture detector.
     gestureDetector =
@@ -212,6 +381,11 @@ public class SolarActivity extends AppCompatActivity {
               public boolean onDown(MotionEvent e) {
                 return true;
               }
+
+              @Override
+              public void onLongPress(MotionEvent e) {
+                toggleMetricsHud();
+              }
             });
 
     // Set a touch listener on the Scene to listen for taps.
@@ -225,36 +399,12 @@ public class SolarActivity extends AppCompatActivity {
                 return gestureDetector.onTouchEvent(event);
               }
 
-              // Otherwise return false so that the touch event can propagate to the scene.
+              // Otherwise look for taps on the city markers, and return false so that the touch event
+              // can propagate to the scene as well.
+              gestureDetector.onTouchEvent(event);
               return false;
             });
 
-    // Set an update listener on the Scene that will hide the loading message once a Plane is
-    // detected.
-    arSceneView
-        .getScene()
-        .addOnUpdateListener(
-            frameTime -> {
-              if (loadingMessageSnackbar == null) {
-                return;
-              }
-
-              Frame frame = arSceneView.getArFrame();
-              if (frame == null) {
-                return;
-              }
-
-              if (frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
-                return;
-              }
-
-              for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
-                if (plane.getTrackingState() == TrackingState.TRACKING) {
-                  hideLoadingMessage();
-                }
-              }
-            });
-
     // Lastly request CAMERA permission which is required by ARCore.
     DemoUtils.requestCameraPermission(this, RC_PERMISSIONS);
   }
@@ -293,22 +443,44 @@ public class SolarActivity extends AppCompatActivity {
     if (arSceneView.getSession() != null) {
       showLoadingMessage();
     }
+    if (solarSystem != null && restoreStartNanos == 0) {
+      restoreStartNanos = System.nanoTime();
+    }
+
+    if (policyFeed != null && feedPoll == null) {
+      feedPoll =
+          feedExecutor.scheduleWithFixedDelay(
+              this::pollPolicyFeed, 0, POLICY_POLL_SECONDS, TimeUnit.SECONDS);
+    }
   }
 
   @Override
   public void onPause() {
     super.onPause();
     if (arSceneView != null) {
+      rememberCameraToScene();
       arSceneView.pause();
     }
+    dumpMetrics();
+    if (feedPoll != null) {
+      feedPoll.cancel(false);
+      feedPoll = null;
+    }
   }
 
   @Override
   public void onDestroy() {
     super.onDestroy();
+    // The model shuts its executors down once no activity will need them again.
+    if (model != null && isChangingConfigurations()) {
+      retainScene();
+    }
     if (arSceneView != null) {
       arSceneView.destroy();
     }
+    if (feedExecutor != null) {
+      feedExecutor.shutdownNow();
+    }
   }
 
   @Override
@@ -345,31 +517,594 @@ public class SolarActivity extends AppCompatActivity {
     }
   }
 
+  /** Runs once per frame, timing each part into {@link #metrics}. */
+  private void onSceneUpdate(FrameTime frameTime) {
+    long frameStart = System.nanoTime();
+    if (lastFrameStartNanos != 0) {
+      metrics.record(SceneMetrics.Metric.FRAME_INTERVAL, frameStart - lastFrameStartNanos);
+    }
+    lastFrameStartNanos = frameStart;
+
+    anchorSceneIfNeeded();
+    orbitalClock.advance(frameTime.getDeltaSeconds());
+    if (globeFlyTo != null) {
+      globeFlyTo.onUpdate(frameTime.getDeltaSeconds());
+    }
+    long sceneModelStart = System.nanoTime();
+    metrics.record(SceneMetrics.Metric.ORBITAL_CLOCK, sceneModelStart - frameStart);
+
+    // After the clock and the globe have moved, so the cards face the camera from where they are.
+    sceneModel.update();
+    long levelOfDetailStart = System.nanoTime();
+    metrics.record(SceneMetrics.Metric.SCENE_MODEL, levelOfDetailStart - sceneModelStart);
+
+    updateCityLevelOfDetail();
+    updatePolicyLevelOfDetail();
+    if (globeTiles != null) {
+      globeTiles.update(
+          arSceneView.getScene().getCamera().getWorldPosition(), arSceneView.getHeight());
+    }
+    metrics.recordSince(SceneMetrics.Metric.LEVEL_OF_DETAIL, levelOfDetailStart);
+
+    updatePlayback(frameTime.getDeltaSeconds());
+
+    hideLoadingMessageOncePlaneDetected();
+    updateMetricsHud(frameStart);
+    metrics.recordSince(SceneMetrics.Metric.FRAME_UPDATE, frameStart);
+  }
+
+  /** Hides the loading message once a Plane is detected. */
+  private void hideLoadingMessageOncePlaneDetected() {
+    if (loadingMessageSnackbar == null) {
+      return;
+    }
+
+    Frame frame = arSceneView.getArFrame();
+    if (frame == null) {
+      return;
+    }
+
+    if (frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
+      return;
+    }
+
+    for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
+      if (plane.getTrackingState() == TrackingState.TRACKING) {
+        hideLoadingMessage();
+      }
+    }
+  }
+
+  /** Samples the scene counts and refreshes the HUD if it is showing. */
+  private void updateMetricsHud(long frameStart) {
+    if (++framesSinceSceneCount >= SCENE_COUNT_INTERVAL_FRAMES) {
+      framesSinceSceneCount = 0;
+      int[] counts = new int[2];
+      arSceneView
+          .getScene()
+          .callOnHierarchy(
+              node -> {
+                counts[0]++;
+                if (node.getRenderable() != null) {
+                  counts[1]++;
+                }
+              });
+      metrics.setSceneCounts(counts[0], counts[1]);
+    }
+
+    if (metricsHud == null || metricsHud.getVisibility() != View.VISIBLE) {
+      return;
+    }
+    if (frameStart - lastHudUpdateNanos >= HUD_UPDATE_INTERVAL_NANOS) {
+      lastHudUpdateNanos = frameStart;
+      metricsHud.setText(metrics.summary());
+    }
+  }
+
+  private void toggleMetricsHud() {
+    if (metricsHud == null) {
+      return;
+    }
+    boolean show = metricsHud.getVisibility() != View.VISIBLE;
+    metricsHud.setVisibility(show ? View.VISIBLE : View.GONE);
+    if (show) {
+      metricsHud.setText(metrics.summary());
+    }
+  }
+
+  /** Writes the metrics collected so far to the app's external files directory. */
+  private void dumpMetrics() {
+    File directory = getExternalFilesDir(null);
+    if (directory == null || backgroundExecutor == null) {
+      return;
+    }
+    SceneMetrics snapshot = metrics.snapshot();
+    File file = new File(directory, METRICS_FILE);
+    backgroundExecutor.execute(
+        () -> {
+          try {
+            snapshot.writeCsv(file);
+            Log.i("SOHACKS", "Wrote scene metrics to " + file);
+          } catch (IOException e) {
+            Log.w("SOHACKS", "Unable to write scene metrics", e);
+          }
+        });
+  }
+
+  /** Wires the search box to an index over the cities, once it has been built. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void setUpCitySearch(CompletableFuture<CitySearchIndex> citySearchIndexStage) {
+    EditText searchQuery = findViewById(R.id.search_query);
+    searchResults = findViewById(R.id.search_results);
+    searchResultsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+    searchResults.setAdapter(searchResultsAdapter);
+    searchResults.setOnItemClickListener(
+        (parent, view, position, id) -> {
+          searchQuery.clearFocus();
+          searchResults.setVisibility(View.GONE);
+          flyToCity(searchMatches[position]);
+        });
+    searchQuery.addTextChangedListener(
+        new TextWatcher() {
+          @Override
+          public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+          @Override
+          public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+          @Override
+          public void afterTextChanged(Editable s) {
+            searchCities(s.toString());
+          }
+        });
+
+    citySearchIndexStage
+        .thenAcceptAsync(
+            searchIndex -> {
+              citySearchIndex = searchIndex;
+              // Catch up with anything typed while the index was building.
+              searchCities(searchQuery.getText().toString());
+            },
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e("SOHACKS", "Unable to index cities for search", throwable);
+              return null;
+            });
+  }
+
+  /** Wires the filter box to the attribute indexes, applying a filter when it is submitted. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void setUpFilter(CompletableFuture<AttributeIndex> cityAttributesStage) {
+    EditText filterQuery = findViewById(R.id.filter_query);
+    filterQuery.setOnEditorActionListener(
+        (view, actionId, event) -> {
+          applyFilter(view.getText().toString());
+          // Let the keyboard close as usual.
+          return false;
+        });
+
+    cityAttributesStage
+        .thenAcceptAsync(
+            attributes -> {
+              cityAttributes = attributes;
+              applyFilter(filterText);
+            },
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e("SOHACKS", "Unable to index city attributes", throwable);
+              return null;
+            });
+  }
+
+  /**
+   * Shows only the cities and policies matching {@code filter}, by changing which markers the
+   * levels of detail select. The scene itself is left as it is.
+   */
+  private void applyFilter(String filter) {
+    long start = System.nanoTime();
+    RowSet cities;
+    RowSet policies;
+    try {
+      cities = selectRows(cityAttributes, filter);
+      policies = selectRows(policyAttributes, filter);
+    } catch (IllegalArgumentException e) {
+      Toast.makeText(this, "Invalid filter: " + e.getMessage(), Toast.LENGTH_LONG).show();
+      return;
+    }
+    filterText = filter;
+    if (cityLevelOfDetail != null && cityAttributes != null) {
+      cityLevelOfDetail.setFilter(cities);
+    }
+    if (policyLevelOfDetail != null && policyAttributes != null) {
+      policyLevelOfDetail.setFilter(policies);
+    }
+    metrics.recordSince(SceneMetrics.Metric.FILTER, start);
+  }
+
+  /** Returns the rows matching {@code filter}, or null to show every row. */
+  private static RowSet selectRows(AttributeIndex attributes, String filter) {
+    if (attributes == null || filter.trim().isEmpty()) {
+      return null;
+    }
+    return attributes.select(filter);
+  }
+
+  /** Lists the most populous cities matching what has been typed so far. */
+  private void searchCities(String query) {
+    if (citySearchIndex == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    int count = citySearchIndex.search(query, MAX_SEARCH_RESULTS, searchMatches);
+    metrics.recordSince(SceneMetrics.Metric.SEARCH_QUERY, start);
+
+    CityIndex cities = citySearchIndex.getCities();
+    ArrayList<String> labels = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int city = searchMatches[i];
+      String admin = cities.getAdminName(city);
+      labels.add(
+          cities.getName(city)
+              + (admin.isEmpty() ? "" : ", " + admin)
+              + ", "
+              + cities.getCountry(city));
+    }
+    searchResultsAdapter.clear();
+    searchResultsAdapter.addAll(labels);
+    searchResultsAdapter.notifyDataSetChanged();
+    searchResults.setVisibility(count > 0 ? View.VISIBLE : View.GONE);
+  }
+
+  /**
+   * Highlights a city found by searching and turns the globe to show it. Before the globe is placed
+   * there is nothing to turn, so only its details are shown.
+   */
+  private void flyToCity(int city) {
+    if (!hasPlacedSolarSystem || cityMarkers == null) {
+      CityIndex cities = citySearchIndex.getCities();
+      updateInfoWindow(
+          cities.getName(city).toUpperCase()
+              + "\n\n"
+              + "Population: "
+              + formatPopulation(cities.getPopulation(city)));
+      return;
+    }
+
+    selectCity(city);
+    Vector3 point =
+        new Vector3(cityTable.getX(city), cityTable.getY(city), cityTable.getZ(city));
+    globeFlyTo.flyTo(point, arSceneView.getScene().getCamera().getWorldPosition());
+  }
+
+  static String formatPopulation(int population) {
+    return population < 0
+        ? "unknown"
+        : NumberFormat.getNumberInstance(Locale.US).format(population);
+  }
+
   private void onSingleTap(MotionEvent tap) {
     if (!hasFinishedLoading) {
       // We can't do anything yet.
       return;
     }
 
+    if (hasPlacedSolarSystem) {
+      tryPickCity(tap);
+      return;
+    }
+
     Frame frame = arSceneView.getArFrame();
     if (frame != null) {
-      if (!hasPlacedSolarSystem && tryPlaceSolarSystem(tap, frame)) {
+      if (tryPlaceSolarSystem(tap, frame)) {
         hasPlacedSolarSystem = true;
       }
     }
   }
 
+  private void tryPickCity(MotionEvent tap) {
+    if (cityMarkers == null) {
+      return;
+    }
+
+    Ray ray = arSceneView.getScene().getCamera().screenPointToRay(tap.getX(), tap.getY());
+    int city = cityMarkers.pick(ray);
+    if (city != CityMarkerLayer.NO_MARKER) {
+      selectCity(city);
+      return;
+    }
+
+    if (policyLevelOfDetail != null) {
+      int cluster = policyMarkers.pick(ray);
+      if (cluster != CityMarkerLayer.NO_MARKER) {
+        showPolicyCluster(policyLevelOfDetail.getHierarchy(), cluster);
+      }
+    }
+  }
+
+  /** Shows how many policies a cluster holds and what they insure. */
+  private static void showPolicyCluster(ClusterHierarchy hierarchy, int cluster) {
+    NumberFormat numberFormat = NumberFormat.getNumberInstance(Locale.US);
+    int count = hierarchy.getCount(cluster);
+    updateInfoWindow(
+        numberFormat.format(count)
+            + (count == 1 ? " POLICY" : " POLICIES")
+            + "\n\n"
+            + "Total insured value (2012): $"
+            + numberFormat.format(Math.round(hierarchy.getWeight(cluster))));
+  }
+
+  /** Highlights a city with its own interactive node and shows its details. */
+  private void selectCity(int city) {
+    long start = System.nanoTime();
+    if (selectedCity != null) {
+      selectedCity.setParent(null);
+    }
+    if (cityInfoCard == null) {
+      cityInfoCard = new InfoCard(this, sceneModel, metrics);
+    }
+
+    selectedCity = new City(cityInfoCard, markerRenderable, cityTable, city, 0.1f);
+    selectedCity.setParent(cityMarkers);
+    selectedCity.showInfo();
+    metrics.recordSince(SceneMetrics.Metric.CITY_ACTIVATION, start);
+  }
+
+  /** Reveals more or fewer cities as the camera moves relative to the globe. */
+  private void updateCityLevelOfDetail() {
+    if (cityLevelOfDetail == null) {
+      return;
+    }
+
+    Vector3 camera =
+        cityMarkers.worldToLocalPoint(arSceneView.getScene().getCamera().getWorldPosition());
+    if (cityLevelOfDetail.update(camera.x, camera.y, camera.z)) {
+      cityMarkers.setMarkers(
+          cityLevelOfDetail.getVisiblePositions(),
+          cityLevelOfDetail.getVisibleIds(),
+          cityLevelOfDetail.getVisibleCount(),
+          backgroundExecutor);
+    }
+  }
+
+  /** Splits and merges policy clusters as the camera moves relative to the globe. */
+  private void updatePolicyLevelOfDetail() {
+    if (policyLevelOfDetail == null) {
+      return;
+    }
+
+    Vector3 camera =
+        policyMarkers.worldToLocalPoint(arSceneView.getScene().getCamera().getWorldPosition());
+    if (policyLevelOfDetail.update(camera.x, camera.y, camera.z)) {
+      policyMarkers.setMarkers(
+          policyLevelOfDetail.getVisiblePositions(),
+          policyLevelOfDetail.getVisibleHalfSizes(),
+          policyLevelOfDetail.getVisibleIds(),
+          policyLevelOfDetail.getVisibleCount(),
+          backgroundExecutor);
+      updatePolicyLinks(
+          policyLevelOfDetail.getVisiblePositions(), policyLevelOfDetail.getVisibleCount());
+      if (isPlaying) {
+        showPlaybackMarkers();
+      }
+    }
+  }
+
+  /** Starts or stops playing the policy clusters back and forth between years. */
+  private void togglePlayback() {
+    isPlaying = !isPlaying;
+    showPlaybackState();
+    if (isPlaying && policyLevelOfDetail != null && playbackMarkers != null) {
+      // The clusters shown don't change until the camera moves, so start from the current ones.
+      showPlaybackMarkers();
+    }
+  }
+
+  /** Matches the controls and the visible marker layer to whether playback is on. */
+  private void showPlaybackState() {
+    playbackToggle.setText(isPlaying ? R.string.playback_stop : R.string.playback_play);
+    playbackYearLabel.setVisibility(isPlaying ? View.VISIBLE : View.GONE);
+    if (playbackMarkers != null) {
+      playbackMarkers.setEnabled(isPlaying);
+      policyMarkers.setEnabled(!isPlaying);
+    }
+  }
+
+  private void showPlaybackMarkers() {
+    playbackMarkers.setMarkers(
+        policyTimeline,
+        policyLevelOfDetail.getVisiblePositions(),
+        policyLevelOfDetail.getVisibleHalfSizes(),
+        policyLevelOfDetail.getVisibleIds(),
+        policyLevelOfDetail.getVisibleCount(),
+        backgroundExecutor);
+  }
+
+  /**
+   * Moves playback on by a frame and animates every cluster to the year reached, with one pass
+   * over the timeline's keyframes.
+   */
+  private void updatePlayback(float deltaSeconds) {
+    if (!isPlaying || policyTimeline == null || playbackMarkers == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    KeyframeTrack track = policyTimeline.getTrack();
+    playbackYear += playbackDirection * deltaSeconds / PLAYBACK_SECONDS_PER_YEAR;
+    if (playbackYear >= track.getEndTime()) {
+      playbackYear = track.getEndTime();
+      playbackDirection = -1;
+    } else if (playbackYear <= track.getStartTime()) {
+      playbackYear = track.getStartTime();
+      playbackDirection = 1;
+    }
+
+    int valueCount = track.getEntityCount() * track.getChannelCount();
+    if (playbackValues.length < valueCount) {
+      playbackValues = new float[valueCount];
+    }
+    track.evaluate(playbackYear, playbackValues);
+    playbackMarkers.animate(policyTimeline, playbackValues);
+
+    // Only format the label when the year it shows changes.
+    int tenths = Math.round(playbackYear * 10);
+    if (tenths != shownPlaybackTenths) {
+      shownPlaybackTenths = tenths;
+      playbackYearLabel.setText(String.format(Locale.US, "%.1f", tenths / 10.0f));
+    }
+    metrics.recordSince(SceneMetrics.Metric.PLAYBACK, start);
+  }
+
+  /** Links each visible policy cluster to its nearest city. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void updatePolicyLinks(float[] positions, int count) {
+    CityIndex cities = cityTable.getIndex();
+    citySpatialIndexStage
+        .thenApplyAsync(
+            citySpatialIndex ->
+                CityLinks.nearestCityLinks(
+                    positions,
+                    count,
+                    CITY_PROJECTION,
+                    cities,
+                    citySpatialIndex,
+                    POLICY_LINK_MAX_ANGLE),
+            backgroundExecutor)
+        .thenAcceptAsync(
+            endpoints -> policyLinks.setArcs(endpoints, endpoints.length / 4, backgroundExecutor),
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e("SOHACKS", "Unable to link policies to cities", throwable);
+              return null;
+            });
+  }
+
+  /** Connects every capital to its nearest neighbours. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void showCapitalRoutes() {
+    CityIndex cities = cityTable.getIndex();
+    CompletableFuture.supplyAsync(
+            () -> CityLinks.capitalRoutes(cities, CAPITAL_ROUTE_NEIGHBOURS), backgroundExecutor)
+        .thenAcceptAsync(
+            endpoints ->
+                capitalRoutes.setArcs(endpoints, endpoints.length / 4, backgroundExecutor),
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e("SOHACKS", "Unable to route capitals", throwable);
+              return null;
+            });
+  }
+
+  private static float[] calculatePolicyPositions(PolicyStore store) {
+    float[] positions = new float[store.size() * 3];
+    CITY_PROJECTION.project(store.getLatitudes(), store.getLongitudes(), store.size(), positions);
+    return positions;
+  }
+
+  /** Plots the policies once they have loaded and the globe has been placed, and on every reload. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void showPolicies() {
+    if (policyMarkers == null || policyPositions == null) {
+      return;
+    }
+
+    // Cluster by insured value in the background; the markers follow on the next frame. The
+    // playback keyframes are cheap next to clustering, so they are built along with the clusters.
+    PolicyStore store = policyStore;
+    float[] positions = policyPositions;
+    CompletableFuture<AttributeIndex> attributesStage =
+        CompletableFuture.supplyAsync(() -> AttributeIndex.forPolicies(store), backgroundExecutor);
+    CompletableFuture.supplyAsync(
+            () -> {
+              long start = System.nanoTime();
+              ClusterHierarchy hierarchy =
+                  ClusterHierarchy.build(positions, store.getTiv2012(), store.size());
+              metrics.recordSince(SceneMetrics.Metric.POLICY_CLUSTER, start);
+              return PolicyTimeline.build(store, hierarchy);
+            },
+            backgroundExecutor)
+        .thenAcceptBothAsync(
+            attributesStage,
+            (timeline, attributes) -> {
+              if (store == policyStore) {
+                policyTimeline = timeline;
+                policyAttributes = attributes;
+                policyLevelOfDetail =
+                    new ClusterLevelOfDetail(
+                        timeline.getHierarchy(),
+                        EARTH_RADIUS,
+                        POLICY_MARKER_HALF_SIZE,
+                        MAX_VISIBLE_POLICY_CLUSTERS);
+                applyFilter(filterText);
+              }
+            },
+            mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e("SOHACKS", "Unable to cluster policies", throwable);
+              return null;
+            });
+    if (policyHeatmapSource == NO_HEATMAP_SOURCE) {
+      policyHeatmapSource =
+          heatmap.addSource(
+              policyStore.getLatitudes(),
+              policyStore.getLongitudes(),
+              policyStore.getTiv2012(),
+              policyStore.size(),
+              INSURED_VALUE_HEAT_COLOR);
+    } else {
+      heatmap.setPoints(
+          policyHeatmapSource,
+          policyStore.getLatitudes(),
+          policyStore.getLongitudes(),
+          policyStore.getTiv2012(),
+          policyStore.size());
+    }
+  }
+
+  /**
+   * Runs on the feed executor. Swaps in a newer dataset from the upload server, updating the
+   * existing layers in place.
+   */
+  private void pollPolicyFeed() {
+    long start = System.nanoTime();
+    PolicyStore store;
+    try {
+      store = policyFeed.fetchIfChanged();
+    } catch (IOException e) {
+      Log.w("SOHACKS", "Unable to fetch policies: " + e.getMessage());
+      return;
+    }
+    if (store == null) {
+      return;
+    }
+
+    metrics.recordSince(SceneMetrics.Metric.POLICY_FETCH, start);
+    Log.i("SOHACKS", "Fetched " + store.size() + " updated policies");
+    float[] positions = calculatePolicyPositions(store);
+    mainExecutor.execute(
+        () -> {
+          policyStore = store;
+          policyPositions = positions;
+          showPolicies();
+        });
+  }
+
   private boolean tryPlaceSolarSystem(MotionEvent tap, Frame frame) {
     if (tap != null && frame.getCamera().getTrackingState() == TrackingState.TRACKING) {
       for (HitResult hit : frame.hitTest(tap)) {
         Trackable trackable = hit.getTrackable();
         if (trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())) {
           // Create the Anchor.
-          Anchor anchor = hit.createAnchor();
-          AnchorNode anchorNode = new AnchorNode(anchor);
-          anchorNode.setParent(arSceneView.getScene());
-          Node solarSystem = createSolarSystem();
-          anchorNode.addChild(solarSystem);
+          anchorScene(hit.createAnchor());
           return true;
         }
       }
@@ -378,6 +1113,190 @@ public class SolarActivity extends AppCompatActivity {
     return false;
   }
 
+  /** Moves the scene onto a new anchor in one step, building it first if there is none yet. */
+  private void anchorScene(Anchor anchor) {
+    AnchorNode anchorNode = new AnchorNode(anchor);
+    anchorNode.setParent(arSceneView.getScene());
+    if (solarSystem == null) {
+      long start = System.nanoTime();
+      solarSystem = createSolarSystem();
+      metrics.recordSince(SceneMetrics.Metric.SCENE_BUILD, start);
+    }
+    anchorNode.addChild(solarSystem);
+
+    if (sceneAnchorNode != null) {
+      sceneAnchorNode.setParent(null);
+      sceneAnchorNode.getAnchor().detach();
+    }
+    sceneAnchorNode = anchorNode;
+    hasPlacedSolarSystem = true;
+    if (restoreStartNanos != 0) {
+      metrics.recordSince(SceneMetrics.Metric.SCENE_RESTORE, restoreStartNanos);
+      restoreStartNanos = 0;
+    }
+  }
+
+  /**
+   * Anchors the scene again where it last was relative to the camera, if it has no anchor yet
+   * because it was kept from a destroyed activity, or if its anchor doesn't track again soon after
+   * resuming.
+   */
+  private void anchorSceneIfNeeded() {
+    if (solarSystem == null) {
+      return;
+    }
+    Frame frame = arSceneView.getArFrame();
+    Session session = arSceneView.getSession();
+    if (frame == null
+        || session == null
+        || frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
+      return;
+    }
+
+    if (sceneAnchorNode != null) {
+      TrackingState anchorState = sceneAnchorNode.getAnchor().getTrackingState();
+      if (anchorState == TrackingState.TRACKING && restoreStartNanos != 0) {
+        metrics.recordSince(SceneMetrics.Metric.SCENE_RESTORE, restoreStartNanos);
+        restoreStartNanos = 0;
+      }
+      boolean gaveUp =
+          anchorState == TrackingState.STOPPED
+              || (anchorState == TrackingState.PAUSED
+                  && restoreStartNanos != 0
+                  && System.nanoTime() - restoreStartNanos > REANCHOR_TIMEOUT_NANOS);
+      if (!gaveUp) {
+        return;
+      }
+    }
+
+    // Upright, whichever way the camera is held.
+    float[] position = frame.getCamera().getPose().transformPoint(cameraToScene);
+    anchorScene(session.createAnchor(Pose.makeTranslation(position)));
+  }
+
+  /** Notes where the scene is relative to the camera, for {@link #anchorSceneIfNeeded()}. */
+  private void rememberCameraToScene() {
+    Frame frame = arSceneView.getArFrame();
+    if (sceneAnchorNode == null
+        || frame == null
+        || frame.getCamera().getTrackingState() != TrackingState.TRACKING
+        || sceneAnchorNode.getAnchor().getTrackingState() != TrackingState.TRACKING) {
+      return;
+    }
+    float[] offset =
+        frame
+            .getCamera()
+            .getPose()
+            .inverse()
+            .transformPoint(sceneAnchorNode.getAnchor().getPose().getTranslation());
+    System.arraycopy(offset, 0, cameraToScene, 0, cameraToScene.length);
+  }
+
+  /** Detaches the placed scene and hands it to the model for the activity replacing this one. */
+  private void retainScene() {
+    if (solarSystem == null) {
+      return;
+    }
+    // The selected city's info card is an Android View of this activity.
+    if (selectedCity != null) {
+      selectedCity.setParent(null);
+      selectedCity = null;
+    }
+    solarSystem.setParent(null);
+    if (sceneAnchorNode != null) {
+      sceneAnchorNode.getAnchor().detach();
+      sceneAnchorNode = null;
+    }
+
+    RetainedScene scene = new RetainedScene();
+    scene.root = solarSystem;
+    scene.cameraToScene = cameraToScene.clone();
+    scene.markerRenderable = markerRenderable;
+    scene.cityTable = cityTable;
+    scene.globeFlyTo = globeFlyTo;
+    scene.cityMarkers = cityMarkers;
+    scene.cityLevelOfDetail = cityLevelOfDetail;
+    scene.globeTiles = globeTiles;
+    scene.heatmap = heatmap;
+    scene.policyHeatmapSource = policyHeatmapSource;
+    scene.capitalRoutes = capitalRoutes;
+    scene.policyLinks = policyLinks;
+    scene.policyStore = policyStore;
+    scene.policyPositions = policyPositions;
+    scene.policyMarkers = policyMarkers;
+    scene.policyLevelOfDetail = policyLevelOfDetail;
+    scene.playbackMarkers = playbackMarkers;
+    scene.policyTimeline = policyTimeline;
+    scene.policyAttributes = policyAttributes;
+    scene.filterText = filterText;
+    scene.isPlaying = isPlaying;
+    scene.playbackYear = playbackYear;
+    scene.playbackDirection = playbackDirection;
+    model.retainScene(scene);
+  }
+
+  /** Takes over a scene kept from a destroyed activity, anchored on the first tracked frame. */
+  private void restoreScene(RetainedScene scene) {
+    solarSystem = scene.root;
+    System.arraycopy(scene.cameraToScene, 0, cameraToScene, 0, cameraToScene.length);
+    // The scene already shows these, and the city layers and selection need them before the load
+    // below completes again.
+    markerRenderable = scene.markerRenderable;
+    cityTable = scene.cityTable;
+    globeFlyTo = scene.globeFlyTo;
+    cityMarkers = scene.cityMarkers;
+    cityLevelOfDetail = scene.cityLevelOfDetail;
+    globeTiles = scene.globeTiles;
+    heatmap = scene.heatmap;
+    policyHeatmapSource = scene.policyHeatmapSource;
+    capitalRoutes = scene.capitalRoutes;
+    policyLinks = scene.policyLinks;
+    policyStore = scene.policyStore;
+    policyPositions = scene.policyPositions;
+    policyMarkers = scene.policyMarkers;
+    policyLevelOfDetail = scene.policyLevelOfDetail;
+    playbackMarkers = scene.playbackMarkers;
+    policyTimeline = scene.policyTimeline;
+    policyAttributes = scene.policyAttributes;
+    filterText = scene.filterText;
+    isPlaying = scene.isPlaying;
+    playbackYear = scene.playbackYear;
+    playbackDirection = scene.playbackDirection;
+    showPlaybackState();
+    if (policyLevelOfDetail == null) {
+      // The previous activity was destroyed while the policies were being clustered.
+      showPolicies();
+    }
+    restoreStartNanos = System.nanoTime();
+  }
+
+  /** The placed scene and everything the activity needs to keep driving it. */
+  static final class RetainedScene {
+    private Node root;
+    private float[] cameraToScene;
+    private ModelRenderable markerRenderable;
+    private CityTable cityTable;
+    private GlobeFlyTo globeFlyTo;
+    private CityMarkerLayer cityMarkers;
+    private CityLevelOfDetail cityLevelOfDetail;
+    private TiledGlobeLayer globeTiles;
+    private HeatmapLayer heatmap;
+    private int policyHeatmapSource;
+    private ArcLayer capitalRoutes;
+    private ArcLayer policyLinks;
+    private PolicyStore policyStore;
+    private float[] policyPositions;
+    private CityMarkerLayer policyMarkers;
+    private ClusterLevelOfDetail policyLevelOfDetail;
+    private PlaybackMarkerLayer playbackMarkers;
+    private PolicyTimeline policyTimeline;
+    private AttributeIndex policyAttributes;
+    private String filterText;
+    private boolean isPlaying;
+    private float playbackYear;
+    private float playbackDirection;
+  }
+
 //  private void addMarker(City city, Node sunVisual) {
 //    Node newCity = new Node();
 //    newCity.setParent(sunVisual);
@@ -388,24 +1307,9 @@ public class SolarActivity extends AppCompatActivity {
 
   private Node createSolarSystem() {
     Log.i("SOHACKS", "createSolarSystem function");
-    Reader csv_file = null;
-    List<CSVRecord> records = new ArrayList<>();
-
-    try {
-//      csv_file = new FileReader("../../../../../../../../../sampledata/data/worldcities.csv");
-      csv_file = new InputStreamReader(getAssets().open("worldcities.csv"));
-      records = CSVFormat.EXCEL.withHeader().parse(csv_file).getRecords();
-      Log.i("CSV STATUS", "Found csv file successfully");
-      Log.i("SOHACKS", "Found csv file successfully");
-    }
-    catch (Exception e) {
-        Log.i("SOHACKS", "ERRROR");
-        if (e.equals(FileNotFoundException.class)) {
-        throw new IllegalArgumentException("File not found");
-      }else if (e.equals(IOException.class)) {
-        throw new IllegalArgumentException("CSV format cannot be passed");
-      }
-    }
+    // The scene is kept when the activity is recreated, see SolarViewModel, so it only gets the
+    // application context.
+    Context context = getApplicationContext();
 
     Node base = new Node();
 
@@ -418,16 +1322,18 @@ public class SolarActivity extends AppCompatActivity {
     sunVisual.setRenderable(sunRenderable);
     sunVisual.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
     sunVisual.setLocalScale(new Vector3(0.5f, 0.5f, 0.5f));
+    // The markers and overlays below are centred on the globe, not on sunVisual's origin.
+    globeFlyTo = new GlobeFlyTo(sunVisual, new Vector3(0.0f, 0.5f, 0.0f));
 
     Node luna = new Node();
     luna.setParent(sunVisual);
-    luna.setRenderable(lunaRenderable);
+    attachWhenLoaded(luna, LUNA_MODEL);
     luna.setLocalPosition(new Vector3(1.0f, 0.0f, 0.0f));
     luna.setLocalScale(new Vector3(0.2f, 0.2f, 0.2f));
 
     Node mars = new Node();
     mars.setParent(sunVisual);
-    mars.setRenderable(marsRenderable);
+    attachWhenLoaded(mars, MARS_MODEL);
     mars.setLocalPosition(new Vector3(0.0f, 0.5f, EARTH_RADIUS));
     mars.setLocalScale(new Vector3(0.01f, 0.01f, 0.01f));
 
@@ -435,25 +1341,58 @@ public class SolarActivity extends AppCompatActivity {
 //      addMarker(c, sunVisual);
 //    }
 
-    ArrayList<City> cities = new ArrayList<>();
-    for (CSVRecord record : records) {
-      if (record.get("capital").equals("primary")) {
-        try {
-          // Create the planet and position it relative to the sun.
-          City newCity =
-                  new City(
-                          this, markerRenderable, cityInfoSnackbar, record.get("city"), Double.parseDouble(record.get("lat")), Double.parseDouble(record.get("lng")), Long.parseLong(record.get("population")), (double)EARTH_RADIUS, 0.1f);
-          newCity.setParent(sunVisual);
-          newCity.setLocalPosition(new Vector3((float) newCity.getX(), (float) newCity.getY()+0.5f, (float) newCity.getZ()));
-          //cities.add(new City(record.get("city"), Double.parseDouble(record.get("lat")), Double.parseDouble(record.get("lng")), Double.parseDouble(record.get("population")), EARTH_RADIUS));
-        }
-        catch (Exception e){
-
-
-        }
-
-      }
-    }
+    // Cities are drawn by one batched renderable centred on the globe. Which of them get a marker
+    // is decided every frame by the level of detail, based on where the camera is.
+    cityMarkers = new CityMarkerLayer(context, EARTH_RADIUS);
+    cityMarkers.setParent(sunVisual);
+    cityMarkers.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+
+    cityLevelOfDetail =
+        new CityLevelOfDetail(
+            cityTable.getPositions(),
+            cityTable.getPopulations(),
+            cityTable.size(),
+            EARTH_RADIUS,
+            MIN_VISIBLE_CITIES,
+            MAX_VISIBLE_CITIES);
+    applyFilter(filterText);
+
+    // The model's own texture stays underneath until the tiles covering it have loaded.
+    globeTiles =
+        new TiledGlobeLayer(context, CITY_PROJECTION, backgroundExecutor, tileExecutor, metrics);
+    globeTiles.setParent(sunVisual);
+    globeTiles.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+
+    heatmap = new HeatmapLayer(context, CITY_PROJECTION, backgroundExecutor);
+    heatmap.setParent(sunVisual);
+    heatmap.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+    heatmap.addSource(
+        cityTable.getLatitudes(),
+        cityTable.getLongitudes(),
+        cityTable.getPopulationWeights(),
+        cityTable.size(),
+        POPULATION_HEAT_COLOR);
+
+    // Arcs between cities are batched per layer, so each layer is one draw call.
+    capitalRoutes = new ArcLayer(context, CITY_PROJECTION, CAPITAL_ROUTE_COLOR, ARC_HALF_WIDTH);
+    capitalRoutes.setParent(sunVisual);
+    capitalRoutes.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+    showCapitalRoutes();
+
+    policyLinks = new ArcLayer(context, CITY_PROJECTION, POLICY_LINK_COLOR, ARC_HALF_WIDTH);
+    policyLinks.setParent(sunVisual);
+    policyLinks.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+
+    policyMarkers =
+        new CityMarkerLayer(context, EARTH_RADIUS, POLICY_MARKER_COLOR, POLICY_MARKER_HALF_SIZE);
+    policyMarkers.setParent(sunVisual);
+    policyMarkers.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+
+    playbackMarkers = new PlaybackMarkerLayer(context);
+    playbackMarkers.setParent(sunVisual);
+    playbackMarkers.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
+    showPlaybackState();
+    showPolicies();
 
 //    Node solarControls = new Node();
 //    solarControls.setParent(sun);
@@ -520,6 +1459,16 @@ public class SolarActivity extends AppCompatActivity {
     return base;
   }
 
+  /**
+   * Gives {@code node} a secondary model as soon as it has loaded, which is immediately if it already
+   * has. If it fails to load the node stays empty, the failure is logged by the registry.
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void attachWhenLoaded(Node node, String uri) {
+    renderables.load(uri, RenderableRegistry.Priority.SECONDARY).thenAccept(node::setRenderable);
+  }
+
   private Node createPlanet(
       String name,
       Node parent,
@@ -531,16 +1480,26 @@ public class SolarActivity extends AppCompatActivity {
     // Orbit is a rotating node with no renderable positioned at the sun.
     // The planet is positioned relative to the orbit so that it appears to rotate around the sun.
     // This is done instead of making the sun rotate so each planet can orbit at its own speed.
-    RotatingNode orbit = new RotatingNode(solarSettings, true, false, 0);
+    RotatingNode orbit =
+        new RotatingNode(
+            sceneModel, sceneModel.getEntity(parent), orbitalClock, true, false, 0);
     orbit.setDegreesPerSecond(orbitDegreesPerSecond);
     orbit.setParent(parent);
 
     // Create the planet and position it relative to the sun.
     Planet planet =
         new Planet(
-            this, name, planetScale, orbitDegreesPerSecond, axisTilt, renderable, solarSettings);
+            this,
+            name,
+            planetScale,
+            orbitDegreesPerSecond,
+            axisTilt,
+            renderable,
+            orbitalClock,
+            sceneModel,
+            orbit.getEntity());
     planet.setParent(orbit);
-    planet.setLocalPosition(new Vector3(auFromParent * AU_TO_METERS, 0.0f, 0.0f));
+    sceneModel.setLocalPosition(planet.getEntity(), auFromParent * AU_TO_METERS, 0.0f, 0.0f);
 
     return planet;
   }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.app.Application;
+import android.arch.lifecycle.AndroidViewModel;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * What {@link SolarActivity} loads and builds, kept while the activity is recreated.
+ *
+ * <p>The datasets and models start loading as soon as the model is created. An activity recreated
+ * after a configuration change picks up the same stages, finished or not, instead of loading
+ * everything again. Once the globe has been placed, the activity hands its scene subtree over
+ * here as it is destroyed, so that the next activity can anchor it again without rebuilding it.
+ */
+public class SolarViewModel extends AndroidViewModel {
+  private static final String TAG = "SOHACKS";
+  private static final int TILE_DECODE_THREADS = 2;
+
+  // Runs data loading off the UI thread.
+  private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+  // Decodes globe tiles, separately so that a burst of tiles doesn't hold up the datasets.
+  private final ExecutorService tileExecutor = Executors.newFixedThreadPool(TILE_DECODE_THREADS);
+  private final SceneMetrics metrics = new SceneMetrics();
+  private final RenderableRegistry renderables;
+
+  private final CompletableFuture<CityTable> cityTableStage;
+  private final CompletableFuture<CitySpatialIndex> citySpatialIndexStage;
+  private final CompletableFuture<CitySearchIndex> citySearchIndexStage;
+  private final CompletableFuture<AttributeIndex> cityAttributesStage;
+  private final CompletableFuture<PolicyStore> policiesStage;
+
+  @Nullable private SolarActivity.RetainedScene retainedScene;
+
+  @SuppressWarnings("AndroidApiChecker")
+  // CompletableFuture requires api level 24
+  public SolarViewModel(Application application) {
+    super(application);
+    // Only the application context, the renderables outlive any one activity.
+    renderables = new RenderableRegistry(application);
+    renderables.setOnProgressListener(
+        (uri, settledCount, totalCount) ->
+            Log.i(TAG, "Models loaded: " + settledCount + "/" + totalCount));
+
+    // Start parsing the city dataset so that placing the globe doesn't have to wait on it.
+    CompletableFuture<CityIndex> citiesStage =
+        new CityRepository(application.getAssets(), backgroundExecutor, metrics).loadIndex();
+    cityTableStage =
+        citiesStage.thenApplyAsync(SolarViewModel::buildCityTable, backgroundExecutor);
+    citySpatialIndexStage =
+        cityTableStage.thenApplyAsync(
+            table -> CitySpatialIndex.build(table.getPositions(), table.size()),
+            backgroundExecutor);
+    citySearchIndexStage =
+        citiesStage.thenApplyAsync(
+            index -> {
+              long start = System.nanoTime();
+              CitySearchIndex searchIndex = CitySearchIndex.build(index);
+              metrics.recordSince(SceneMetrics.Metric.SEARCH_BUILD, start);
+              return searchIndex;
+            },
+            backgroundExecutor);
+    cityAttributesStage = citiesStage.thenApplyAsync(AttributeIndex::forCities, backgroundExecutor);
+    policiesStage =
+        new PolicyRepository(application.getAssets(), backgroundExecutor, metrics).loadStore();
+  }
+
+  private static CityTable buildCityTable(CityIndex index) {
+    CityTable table = CityTable.build(index, SolarActivity.CITY_PROJECTION);
+    Log.i(
+        TAG,
+        "City table of " + table.size() + " cities holds " + table.getSizeBytes() / 1024 + "KB");
+    return table;
+  }
+
+  public ExecutorService getBackgroundExecutor() {
+    return backgroundExecutor;
+  }
+
+  public ExecutorService getTileExecutor() {
+    return tileExecutor;
+  }
+
+  public SceneMetrics getMetrics() {
+    return metrics;
+  }
+
+  public RenderableRegistry getRenderables() {
+    return renderables;
+  }
+
+  public CompletableFuture<CityTable> getCityTableStage() {
+    return cityTableStage;
+  }
+
+  public CompletableFuture<CitySpatialIndex> getCitySpatialIndexStage() {
+    return citySpatialIndexStage;
+  }
+
+  public CompletableFuture<CitySearchIndex> getCitySearchIndexStage() {
+    return citySearchIndexStage;
+  }
+
+  public CompletableFuture<AttributeIndex> getCityAttributesStage() {
+    return cityAttributesStage;
+  }
+
+  public CompletableFuture<PolicyStore> getPoliciesStage() {
+    return policiesStage;
+  }
+
+  /** Keeps the placed scene of an activity being destroyed for the one that replaces it. */
+  void retainScene(SolarActivity.RetainedScene scene) {
+    retainedScene = scene;
+  }
+
+  /** Returns the scene kept by {@link #retainScene}, if any, and forgets it. */
+  @Nullable
+  SolarActivity.RetainedScene takeRetainedScene() {
+    SolarActivity.RetainedScene scene = retainedScene;
+    retainedScene = null;
+    return scene;
+  }
+
+  @Override
+  protected void onCleared() {
+    backgroundExecutor.shutdownNow();
+    tileExecutor.shutdownNow();
+  }
+}
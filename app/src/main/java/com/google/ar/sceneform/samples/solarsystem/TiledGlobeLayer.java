@@ -0,0 +1,347 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Texture;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Node that streams the globe's texture in as tiles of a {@link TilePyramid}, finer where the
+ * camera is closer.
+ *
+ * <p>The node sits at the centre of the globe. As the camera moves, the tiles it needs are decoded
+ * on a pool of tile executors and uploaded on the UI thread into a {@link TileCache} bounded by
+ * texture memory. Until a tile arrives its nearest cached ancestor is drawn in its place. All the
+ * tiles drawn are merged into one renderable, one submesh per tile, built on a background
+ * executor.
+ */
+public class TiledGlobeLayer extends Node {
+  private static final String TAG = "SOHACKS";
+  private static final int MAX_TILES = 48;
+  // Budget for decoded tiles, at four bytes a texel.
+  private static final long CACHE_BUDGET_BYTES = 16 * 1024 * 1024;
+  // A level 0 tile spans 180 degrees, each finer level gets half as many segments down to this.
+  private static final int MAX_PATCH_SEGMENTS = 32;
+  private static final int MIN_PATCH_SEGMENTS = 4;
+  // Lifts the tiles just off the globe model, and finer levels above coarser ones so that a
+  // fallback ancestor never z-fights with the tiles that replace it. Stays under the heatmap.
+  private static final float TILE_RADIUS_SCALE = 1.002f;
+  private static final float LEVEL_RADIUS_STEP = 0.0005f;
+  // The camera's vertical field of view isn't exposed, this is typical of phones.
+  private static final float FIELD_OF_VIEW_RADIANS = (float) Math.toRadians(60);
+  // How far the camera moves before the tiles are chosen again.
+  private static final float RESELECT_DEGREES = 1f;
+  private static final float RESELECT_DISTANCE = 0.02f;
+
+  private final Context context;
+  private final AssetManager assets;
+  private final GeoProjection projection;
+  private final Executor executor;
+  private final Executor tileExecutor;
+  private final Executor mainExecutor;
+  private final SceneMetrics metrics;
+
+  @Nullable private TilePyramid pyramid;
+  private final TileCache<Material> cache =
+      new TileCache<>(CACHE_BUDGET_BYTES, (key, material) -> drawnTilesChanged = true);
+  // Tiles being decoded or uploaded, so that each is only requested once.
+  private final Set<Integer> pendingTiles = new HashSet<>();
+  // The last selection, read by the tile executors to skip tiles no longer needed.
+  private volatile Set<Integer> wantedTiles = Collections.emptySet();
+  private final int[] selectedTiles = new int[MAX_TILES];
+  private int selectedCount;
+  private int[] drawnTiles = new int[0];
+  private boolean drawnTilesChanged;
+
+  private final float[] cameraLocation = new float[2];
+  private float lastLatitude = Float.NaN;
+  private float lastLongitude;
+  private float lastDistance;
+  // Incremented for every rebuild so that a slow, stale mesh build never replaces a newer one.
+  private int generation;
+
+  /**
+   * @param projection the projection used for the globe, the tiles are placed just above it
+   * @param executor where the tile meshes are generated
+   * @param tileExecutor where tiles are decoded, may run several at once
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  public TiledGlobeLayer(
+      Context context,
+      GeoProjection projection,
+      Executor executor,
+      Executor tileExecutor,
+      SceneMetrics metrics) {
+    this.context = context;
+    this.assets = context.getAssets();
+    this.projection = projection;
+    this.executor = executor;
+    this.tileExecutor = tileExecutor;
+    this.metrics = metrics;
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    this.mainExecutor = mainHandler::post;
+
+    CompletableFuture.supplyAsync(this::readPyramid, executor)
+        .thenAcceptAsync(loaded -> pyramid = loaded, mainExecutor)
+        .exceptionally(
+            throwable -> {
+              Log.e(TAG, "Unable to read the globe tile pyramid", throwable);
+              return null;
+            });
+  }
+
+  /**
+   * Chooses the tiles for the camera's position and requests any that aren't cached. Call every
+   * frame; nothing is chosen again until the camera has moved far enough.
+   *
+   * @param viewHeight height of the view the scene is drawn in, in pixels
+   */
+  public void update(Vector3 cameraWorldPosition, int viewHeight) {
+    if (pyramid == null) {
+      return;
+    }
+
+    Vector3 camera = worldToLocalPoint(cameraWorldPosition);
+    float distance = camera.length() / projection.getRadius();
+    projection.unproject(camera.x, camera.y, camera.z, cameraLocation, 0);
+    float latitude = cameraLocation[0];
+    float longitude = cameraLocation[1];
+    boolean moved =
+        Float.isNaN(lastLatitude)
+            || Math.abs(latitude - lastLatitude) > RESELECT_DEGREES
+            || Math.abs(longitude - lastLongitude) > RESELECT_DEGREES
+            || Math.abs(distance - lastDistance) > RESELECT_DISTANCE;
+    if (moved) {
+      lastLatitude = latitude;
+      lastLongitude = longitude;
+      lastDistance = distance;
+      selectedCount =
+          pyramid.select(
+              latitude,
+              longitude,
+              distance,
+              viewHeight / FIELD_OF_VIEW_RADIANS,
+              MAX_TILES,
+              selectedTiles);
+      Set<Integer> wanted = new HashSet<>();
+      for (int i = 0; i < selectedCount; i++) {
+        int key = selectedTiles[i];
+        wanted.add(key);
+        if (!cache.contains(key) && pendingTiles.add(key)) {
+          requestTile(key);
+        }
+      }
+      wantedTiles = wanted;
+      drawnTilesChanged = true;
+    }
+
+    if (drawnTilesChanged) {
+      drawnTilesChanged = false;
+      showTiles();
+    }
+  }
+
+  private TilePyramid readPyramid() {
+    try (InputStream in = assets.open(TilePyramid.MANIFEST_ASSET)) {
+      return TilePyramid.read(in);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void requestTile(int key) {
+    long bytes = 4L * pyramid.getTileSize() * pyramid.getTileSize();
+    CompletableFuture.supplyAsync(() -> decodeTile(key), tileExecutor)
+        .thenComposeAsync(
+            bitmap -> {
+              if (bitmap == null) {
+                return CompletableFuture.<Material>completedFuture(null);
+              }
+              return Texture.builder()
+                  .setSource(bitmap)
+                  .build()
+                  .thenCompose(texture -> MaterialFactory.makeOpaqueWithTexture(context, texture));
+            },
+            mainExecutor)
+        .handleAsync(
+            (material, throwable) -> {
+              pendingTiles.remove(key);
+              if (throwable != null) {
+                Log.e(TAG, "Unable to load globe tile " + TilePyramid.assetPath(key), throwable);
+              } else if (material != null) {
+                cache.put(key, material, bytes);
+                drawnTilesChanged = true;
+              }
+              return null;
+            },
+            mainExecutor);
+  }
+
+  /** Decodes a tile, or returns null if the camera has moved on since it was requested. */
+  @Nullable
+  private Bitmap decodeTile(int key) {
+    if (!wantedTiles.contains(key)) {
+      return null;
+    }
+    long start = System.nanoTime();
+    try (InputStream in = assets.open(TilePyramid.assetPath(key))) {
+      Bitmap bitmap = BitmapFactory.decodeStream(in);
+      if (bitmap == null) {
+        throw new IllegalStateException("Undecodable tile " + TilePyramid.assetPath(key));
+      }
+      metrics.recordSince(SceneMetrics.Metric.TILE_DECODE, start);
+      return bitmap;
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Draws each selected tile, or its nearest cached ancestor until it has been loaded. */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  // CompletableFuture requires api level 24
+  private void showTiles() {
+    int[] tiles = new int[selectedCount];
+    int count = 0;
+    for (int i = 0; i < selectedCount; i++) {
+      int key = selectedTiles[i];
+      while (!cache.contains(key) && TilePyramid.level(key) > 0) {
+        key = TilePyramid.parent(key);
+      }
+      if (cache.contains(key) && !contains(tiles, count, key)) {
+        tiles[count++] = key;
+      }
+    }
+    tiles = Arrays.copyOf(tiles, count);
+    Arrays.sort(tiles);
+    if (Arrays.equals(tiles, drawnTiles)) {
+      return;
+    }
+    drawnTiles = tiles;
+
+    int buildGeneration = ++generation;
+    if (count == 0) {
+      setRenderable(null);
+      return;
+    }
+    List<Material> materials = new ArrayList<>(count);
+    for (int key : tiles) {
+      materials.add(cache.get(key));
+    }
+    int[] keys = tiles;
+    CompletableFuture.supplyAsync(() -> toDefinition(keys, materials), executor)
+        .thenComposeAsync(
+            definition -> ModelRenderable.builder().setSource(definition).build(), mainExecutor)
+        .thenAccept(
+            renderable -> {
+              if (buildGeneration != generation) {
+                return;
+              }
+              renderable.setShadowCaster(false);
+              renderable.setShadowReceiver(false);
+              setRenderable(renderable);
+            })
+        .exceptionally(
+            throwable -> {
+              Log.e(TAG, "Unable to build globe tiles", throwable);
+              return null;
+            });
+  }
+
+  private static boolean contains(int[] keys, int count, int key) {
+    for (int i = 0; i < count; i++) {
+      if (keys[i] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private RenderableDefinition toDefinition(int[] keys, List<Material> materials) {
+    List<Vertex> vertices = new ArrayList<>();
+    List<RenderableDefinition.Submesh> submeshes = new ArrayList<>(keys.length);
+    for (int tile = 0; tile < keys.length; tile++) {
+      int key = keys[tile];
+      int level = TilePyramid.level(key);
+      GeoProjection tileProjection =
+          new GeoProjection(
+              projection.getRadius() * (TILE_RADIUS_SCALE + level * LEVEL_RADIUS_STEP),
+              projection.getLongitudeOffsetDegrees());
+      int segments = Math.max(MAX_PATCH_SEGMENTS >> level, MIN_PATCH_SEGMENTS);
+      OverlaySphereMesh mesh =
+          OverlaySphereMesh.buildPatch(
+              tileProjection,
+              TilePyramid.north(key),
+              TilePyramid.south(key),
+              TilePyramid.west(key),
+              TilePyramid.east(key),
+              segments,
+              segments);
+
+      int firstVertex = vertices.size();
+      float[] positions = mesh.getPositions();
+      float[] normals = mesh.getNormals();
+      float[] uvs = mesh.getUvs();
+      for (int i = 0; i < mesh.getVertexCount(); i++) {
+        vertices.add(
+            Vertex.builder()
+                .setPosition(
+                    new Vector3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+                .setNormal(new Vector3(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]))
+                .setUvCoordinate(new Vertex.UvCoordinate(uvs[i * 2], uvs[i * 2 + 1]))
+                .build());
+      }
+
+      int[] indices = mesh.getTriangleIndices();
+      List<Integer> triangleIndices = new ArrayList<>(indices.length);
+      for (int index : indices) {
+        triangleIndices.add(firstVertex + index);
+      }
+      submeshes.add(
+          RenderableDefinition.Submesh.builder()
+              .setTriangleIndices(triangleIndices)
+              .setMaterial(materials.get(tile))
+              .build());
+    }
+    return RenderableDefinition.builder().setVertices(vertices).setSubmeshes(submeshes).build();
+  }
+}
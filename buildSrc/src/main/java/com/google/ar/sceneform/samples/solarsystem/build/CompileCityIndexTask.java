@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem.build;
+
+import com.google.ar.sceneform.samples.solarsystem.CityIndex;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/** Compiles worldcities.csv into the binary {@link CityIndex} asset read by the app. */
+public class CompileCityIndexTask extends DefaultTask {
+  private File csvFile;
+  private File indexFile;
+
+  @InputFile
+  public File getCsvFile() {
+    return csvFile;
+  }
+
+  public void setCsvFile(File csvFile) {
+    this.csvFile = csvFile;
+  }
+
+  @OutputFile
+  public File getIndexFile() {
+    return indexFile;
+  }
+
+  public void setIndexFile(File indexFile) {
+    this.indexFile = indexFile;
+  }
+
+  @TaskAction
+  public void compile() {
+    CityIndex index;
+    try (Reader reader =
+        new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8)) {
+      index = CityIndex.fromCsv(reader);
+    } catch (IOException e) {
+      throw new GradleException("Unable to parse " + csvFile, e);
+    }
+
+    indexFile.getParentFile().mkdirs();
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+      index.write(out);
+    } catch (IOException e) {
+      throw new GradleException("Unable to write " + indexFile, e);
+    }
+
+    getLogger()
+        .lifecycle(
+            "Compiled {} cities into {} ({} bytes)",
+            index.size(),
+            indexFile.getName(),
+            indexFile.length());
+  }
+}
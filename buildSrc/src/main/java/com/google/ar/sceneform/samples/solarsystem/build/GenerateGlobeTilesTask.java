@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem.build;
+
+import com.google.ar.sceneform.samples.solarsystem.TilePyramid;
+import java.io.File;
+import java.io.IOException;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+/** Cuts the globe texture into the tile pyramid streamed by the app, see {@link TilePyramid}. */
+public class GenerateGlobeTilesTask extends DefaultTask {
+  private File sourceFile;
+  private File outputDirectory;
+  private int tileSize = 256;
+  private float quality = 0.85f;
+
+  @InputFile
+  public File getSourceFile() {
+    return sourceFile;
+  }
+
+  public void setSourceFile(File sourceFile) {
+    this.sourceFile = sourceFile;
+  }
+
+  @OutputDirectory
+  public File getOutputDirectory() {
+    return outputDirectory;
+  }
+
+  public void setOutputDirectory(File outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  @Input
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public void setTileSize(int tileSize) {
+    this.tileSize = tileSize;
+  }
+
+  @Input
+  public float getQuality() {
+    return quality;
+  }
+
+  public void setQuality(float quality) {
+    this.quality = quality;
+  }
+
+  @TaskAction
+  public void generate() {
+    TilePyramid pyramid;
+    try {
+      pyramid = GlobeTileGenerator.generate(sourceFile, outputDirectory, tileSize, quality);
+    } catch (IOException e) {
+      throw new GradleException("Unable to tile " + sourceFile, e);
+    }
+
+    getLogger()
+        .lifecycle(
+            "Cut {} into {} levels of {}px tiles",
+            sourceFile.getName(),
+            pyramid.getLevelCount(),
+            pyramid.getTileSize());
+  }
+}
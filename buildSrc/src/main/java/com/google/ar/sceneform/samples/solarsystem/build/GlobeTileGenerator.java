@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem.build;
+
+import com.google.ar.sceneform.samples.solarsystem.TilePyramid;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Cuts an equirectangular globe texture into the tiles of a {@link TilePyramid}.
+ *
+ * <p>Each level is resampled from the source on its own: downscaled in halving steps, which keeps
+ * bilinear filtering from skipping pixels, or upscaled bicubically for the level that first
+ * exceeds the source.
+ */
+public final class GlobeTileGenerator {
+  private GlobeTileGenerator() {}
+
+  /**
+   * Writes the tiles and the pyramid's manifest under {@code outputDirectory}, at the asset paths
+   * given by {@link TilePyramid#assetPath(int)} and {@link TilePyramid#MANIFEST_ASSET}.
+   *
+   * @param quality JPEG quality, from 0 to 1
+   */
+  public static TilePyramid generate(
+      File sourceFile, File outputDirectory, int tileSize, float quality) throws IOException {
+    BufferedImage source = ImageIO.read(sourceFile);
+    if (source == null) {
+      throw new IOException("Unsupported image " + sourceFile);
+    }
+    source = toRgb(source);
+    TilePyramid pyramid = TilePyramid.forSourceWidth(source.getWidth(), tileSize);
+
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+    ImageWriteParam parameters = writer.getDefaultWriteParam();
+    parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    parameters.setCompressionQuality(quality);
+    try {
+      for (int level = 0; level < pyramid.getLevelCount(); level++) {
+        BufferedImage image =
+            resize(
+                source,
+                TilePyramid.columns(level) * tileSize,
+                TilePyramid.rows(level) * tileSize);
+        for (int row = 0; row < TilePyramid.rows(level); row++) {
+          for (int column = 0; column < TilePyramid.columns(level); column++) {
+            BufferedImage tile =
+                image.getSubimage(column * tileSize, row * tileSize, tileSize, tileSize);
+            File file =
+                new File(
+                    outputDirectory, TilePyramid.assetPath(TilePyramid.key(level, row, column)));
+            file.getParentFile().mkdirs();
+            write(writer, parameters, tile, file);
+          }
+        }
+      }
+    } finally {
+      writer.dispose();
+    }
+
+    File manifest = new File(outputDirectory, TilePyramid.MANIFEST_ASSET);
+    try (OutputStream out = new FileOutputStream(manifest)) {
+      pyramid.write(out);
+    }
+    return pyramid;
+  }
+
+  private static BufferedImage toRgb(BufferedImage image) {
+    if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+      return image;
+    }
+    BufferedImage rgb =
+        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = rgb.createGraphics();
+    graphics.drawImage(image, 0, 0, null);
+    graphics.dispose();
+    return rgb;
+  }
+
+  private static BufferedImage resize(BufferedImage image, int width, int height) {
+    BufferedImage current = image;
+    while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+      current = draw(current, current.getWidth() / 2, current.getHeight() / 2, false);
+    }
+    if (current.getWidth() == width && current.getHeight() == height) {
+      return current;
+    }
+    return draw(current, width, height, width > current.getWidth());
+  }
+
+  private static BufferedImage draw(BufferedImage image, int width, int height, boolean bicubic) {
+    BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = resized.createGraphics();
+    graphics.setRenderingHint(
+        RenderingHints.KEY_INTERPOLATION,
+        bicubic
+            ? RenderingHints.VALUE_INTERPOLATION_BICUBIC
+            : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    graphics.drawImage(image, 0, 0, width, height, null);
+    graphics.dispose();
+    return resized;
+  }
+
+  private static void write(
+      ImageWriter writer, ImageWriteParam parameters, BufferedImage tile, File file)
+      throws IOException {
+    file.delete();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+      writer.setOutput(out);
+      writer.write(null, new IIOImage(tile, null, null), parameters);
+    }
+  }
+}
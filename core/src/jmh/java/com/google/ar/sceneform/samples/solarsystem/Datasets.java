@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic datasets of any size for the benchmarks, shaped like the real ones.
+ *
+ * <p>Points are scattered around a few hundred centres, so they cluster the way cities and insured
+ * sites do, and every tenth policy repeats the coordinates of the one before it. The same size
+ * always produces the same data. Passing {@link #WORLD_CITIES} for a size loads the real cities
+ * instead.
+ */
+final class Datasets {
+  /** The dataset of app/data/worldcities.csv, the 12,959 real cities. */
+  static final String WORLD_CITIES = "worldcities";
+
+  // Relative to the core project, which Gradle runs the benchmarks from.
+  private static final File WORLD_CITIES_CSV = new File("../app/data/worldcities.csv");
+  private static final int CENTER_COUNT = 300;
+  private static final String[] COUNTIES = {"CLAY COUNTY", "SUWANNEE COUNTY", "NASSAU COUNTY"};
+  private static final String[] LINES = {"Residential", "Commercial"};
+  private static final String[] CONSTRUCTIONS = {"Masonry", "Wood", "Reinforced Concrete"};
+  private static final String[] SYLLABLES = {
+    "ba", "ber", "ca", "dan", "el", "fo", "gar", "ha", "in", "jo", "ka", "lin", "lo", "ma", "mi",
+    "na", "nor", "o", "pa", "ra", "ren", "sa", "san", "ta", "to", "u", "va", "vil", "wa", "yo", "za"
+  };
+
+  private Datasets() {}
+
+  /** Packed latitude, longitude pairs in degrees. */
+  static float[] coordinates(int count) {
+    Random random = new Random(count);
+    float[] centers = new float[CENTER_COUNT * 2];
+    for (int i = 0; i < CENTER_COUNT; i++) {
+      centers[i * 2] = (float) Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+      centers[i * 2 + 1] = random.nextFloat() * 360 - 180;
+    }
+    float[] coordinates = new float[count * 2];
+    for (int i = 0; i < count; i++) {
+      if (i % 10 == 9) {
+        coordinates[i * 2] = coordinates[i * 2 - 2];
+        coordinates[i * 2 + 1] = coordinates[i * 2 - 1];
+        continue;
+      }
+      int center = random.nextInt(CENTER_COUNT);
+      float latitude = centers[center * 2] + (float) random.nextGaussian() * 2;
+      coordinates[i * 2] = Math.max(-90, Math.min(90, latitude));
+      coordinates[i * 2 + 1] = centers[center * 2 + 1] + (float) random.nextGaussian() * 2;
+    }
+    return coordinates;
+  }
+
+  /** Packed latitude, longitude pairs of {@code dataset}, a size or {@link #WORLD_CITIES}. */
+  static float[] coordinates(String dataset) throws IOException {
+    if (!WORLD_CITIES.equals(dataset)) {
+      return coordinates(Integer.parseInt(dataset));
+    }
+    CityIndex cities = worldCities();
+    float[] coordinates = new float[cities.size() * 2];
+    for (int i = 0; i < cities.size(); i++) {
+      coordinates[i * 2] = cities.getLatitude(i);
+      coordinates[i * 2 + 1] = cities.getLongitude(i);
+    }
+    return coordinates;
+  }
+
+  /** The cities of worldcities.csv, parsed the way the build compiles them. */
+  static CityIndex worldCities() throws IOException {
+    try (Reader reader =
+        new InputStreamReader(new FileInputStream(WORLD_CITIES_CSV), StandardCharsets.UTF_8)) {
+      return CityIndex.fromCsv(reader);
+    }
+  }
+
+  static float[] latitudes(float[] coordinates) {
+    float[] latitudes = new float[coordinates.length / 2];
+    for (int i = 0; i < latitudes.length; i++) {
+      latitudes[i] = coordinates[i * 2];
+    }
+    return latitudes;
+  }
+
+  static float[] longitudes(float[] coordinates) {
+    float[] longitudes = new float[coordinates.length / 2];
+    for (int i = 0; i < longitudes.length; i++) {
+      longitudes[i] = coordinates[i * 2 + 1];
+    }
+    return longitudes;
+  }
+
+  /** Packed xyz positions on the unit sphere. */
+  static float[] unitPositions(int count) {
+    return unitPositions(coordinates(count));
+  }
+
+  /** Unit sphere positions of {@code dataset}, a size or {@link #WORLD_CITIES}. */
+  static float[] unitPositions(String dataset) throws IOException {
+    return unitPositions(coordinates(dataset));
+  }
+
+  private static float[] unitPositions(float[] coordinates) {
+    int count = coordinates.length / 2;
+    float[] positions = new float[count * 3];
+    new GeoProjection(1, 0)
+        .project(latitudes(coordinates), longitudes(coordinates), count, positions);
+    return positions;
+  }
+
+  /** A policy CSV with the columns of data.csv. */
+  static byte[] policyCsv(int count) {
+    Random random = new Random(count);
+    float[] coordinates = coordinates(count);
+    StringBuilder csv = new StringBuilder(count * 120);
+    csv.append(
+        "policyID,statecode,county,eq_site_limit,hu_site_limit,fl_site_limit,fr_site_limit,"
+            + "tiv_2011,tiv_2012,eq_site_deductible,hu_site_deductible,fl_site_deductible,"
+            + "fr_site_deductible,point_latitude,point_longitude,line,construction,"
+            + "point_granularity\n");
+    for (int i = 0; i < count; i++) {
+      double tiv2011 = Math.round(random.nextDouble() * 1_000_000 * 100) / 100.0;
+      csv.append(100000 + i)
+          .append(",FL,")
+          .append(COUNTIES[random.nextInt(COUNTIES.length)])
+          .append(',')
+          .append(Math.round(random.nextDouble() * 500_000))
+          .append(',')
+          .append(Math.round(random.nextDouble() * 500_000))
+          .append(",0,0,")
+          .append(tiv2011)
+          .append(',')
+          .append(String.format(Locale.US, "%.2f", tiv2011 * (0.9 + random.nextDouble() * 0.3)))
+          .append(",0,0,0,0,")
+          .append(coordinates[i * 2])
+          .append(',')
+          .append(coordinates[i * 2 + 1])
+          .append(',')
+          .append(LINES[random.nextInt(LINES.length)])
+          .append(',')
+          .append(CONSTRUCTIONS[random.nextInt(CONSTRUCTIONS.length)])
+          .append(",1\n");
+    }
+    return csv.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** A compiled city index, as the app loads from worldcities.bin. */
+  static byte[] cityIndex(int count) throws IOException {
+    Random random = new Random(count);
+    float[] coordinates = coordinates(count);
+    StringBuilder csv = new StringBuilder(count * 80);
+    csv.append("city,city_ascii,lat,lng,country,iso2,iso3,admin_name,capital,population,id\n");
+    for (int i = 0; i < count; i++) {
+      String name = placeName(random);
+      csv.append(name)
+          .append(',')
+          .append(name)
+          .append(',')
+          .append(coordinates[i * 2])
+          .append(',')
+          .append(coordinates[i * 2 + 1])
+          .append(",Country ")
+          .append(i % 200)
+          .append(",CC,CCC,Admin ")
+          .append(i % 2000)
+          .append(i % 50 == 0 ? ",admin," : ",,")
+          .append(random.nextInt(10_000_000))
+          .append(',')
+          .append(i)
+          .append('\n');
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CityIndex.fromCsv(new StringReader(csv.toString())).write(out);
+    return out.toByteArray();
+  }
+
+  /** A made-up place name of one or two words, so that names share prefixes like real ones. */
+  static String placeName(Random random) {
+    StringBuilder name = new StringBuilder();
+    int words = random.nextInt(5) == 0 ? 2 : 1;
+    for (int word = 0; word < words; word++) {
+      if (word > 0) {
+        name.append(' ');
+      }
+      int syllables = 2 + random.nextInt(3);
+      int start = name.length();
+      for (int i = 0; i < syllables; i++) {
+        name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+      }
+      name.setCharAt(start, Character.toUpperCase(name.charAt(start)));
+    }
+    return name.toString();
+  }
+
+  /** Populations following a power law, in no particular order. */
+  static int[] populations(int count) {
+    Random random = new Random(count);
+    int[] population = new int[count];
+    for (int i = 0; i < count; i++) {
+      population[i] = (int) (1000 / Math.pow(random.nextDouble() + 1e-4, 1.2));
+    }
+    return population;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Building the attribute indexes, and evaluating combined filters against them. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private CityIndex cities;
+  private PolicyStore policies;
+  private AttributeIndex cityAttributes;
+  private AttributeIndex policyAttributes;
+
+  @Setup
+  public void setUp() throws IOException {
+    cities = CityIndex.read(new ByteArrayInputStream(Datasets.cityIndex(size)));
+    policies = PolicyStore.read(new ByteArrayInputStream(Datasets.policyCsv(size)));
+    cityAttributes = AttributeIndex.forCities(cities);
+    policyAttributes = AttributeIndex.forPolicies(policies);
+  }
+
+  @Benchmark
+  public AttributeIndex buildCityAttributes() {
+    return AttributeIndex.forCities(cities);
+  }
+
+  @Benchmark
+  public AttributeIndex buildPolicyAttributes() {
+    return AttributeIndex.forPolicies(policies);
+  }
+
+  /** Two common countries, each about half a percent of the cities, and a population range. */
+  @Benchmark
+  public RowSet cityFilter() {
+    return cityAttributes
+        .query()
+        .whereIn(AttributeIndex.COUNTRY, "Country 7", "Country 42")
+        .whereBetween(AttributeIndex.POPULATION, 100_000, Double.POSITIVE_INFINITY)
+        .getRows();
+  }
+
+  /** A rare value and a wide range, the slow path of each kind of column. */
+  @Benchmark
+  public RowSet cityFilterRareValue() {
+    return cityAttributes
+        .query()
+        .whereIn(AttributeIndex.ADMIN_NAME, "Admin 1234")
+        .whereBetween(AttributeIndex.POPULATION, 1000, 9_000_000)
+        .getRows();
+  }
+
+  /** Common values of two columns and a range on insured value, as typed into the filter box. */
+  @Benchmark
+  public RowSet policyFilter() {
+    return policyAttributes.select(
+        "line=Residential; construction=Wood,Masonry; tiv_2012=50000..500000");
+  }
+}
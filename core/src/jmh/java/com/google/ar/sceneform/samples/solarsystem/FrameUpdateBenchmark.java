@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The work done on the UI thread every frame for a given number of entities.
+ *
+ * <p>The camera alternates between two positions far enough apart that the levels of detail
+ * reselect on every call, so these measure the worst frame rather than the usual one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameUpdateBenchmark {
+  private static final float GLOBE_RADIUS = 0.53f;
+  private static final float FRAME_SECONDS = 1 / 60f;
+  // A 1080p screen held in portrait, over a 60 degree field of view.
+  private static final float PIXELS_PER_RADIAN = 1920 / (float) Math.toRadians(60);
+  private static final int MAX_TILES = 48;
+
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private OrbitalClock orbitalClock;
+  private CityLevelOfDetail cityLevelOfDetail;
+  private ClusterLevelOfDetail clusterLevelOfDetail;
+  // The pyramid generated from the bundled 2700 pixel wide globe texture.
+  private final TilePyramid tilePyramid = TilePyramid.forSourceWidth(2700, 256);
+  private final int[] tiles = new int[MAX_TILES];
+  private boolean flip;
+
+  /** Stands in for a RotatingNode, keeping the last rotation so the write isn't optimized away. */
+  private static final class Rotation implements OrbitalClock.Target {
+    float x;
+    float y;
+    float z;
+    float w;
+
+    @Override
+    public void setRotation(float x, float y, float z, float w) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.w = w;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    orbitalClock = new OrbitalClock(new SolarSettings());
+    for (int i = 0; i < size; i++) {
+      orbitalClock.add(new Rotation(), 10 + i % 90, i % 2 == 0, i % 3 == 0, i % 30);
+    }
+
+    float[] positions = Datasets.unitPositions(size);
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] *= GLOBE_RADIUS;
+    }
+    cityLevelOfDetail =
+        new CityLevelOfDetail(
+            positions, Datasets.populations(size), size, GLOBE_RADIUS, 250, 3000);
+    double[] weights = new double[size];
+    Arrays.fill(weights, 1);
+    clusterLevelOfDetail =
+        new ClusterLevelOfDetail(
+            ClusterHierarchy.build(positions, weights, size), GLOBE_RADIUS, 0.004f, 1500);
+  }
+
+  @Benchmark
+  public OrbitalClock orbitalClock() {
+    orbitalClock.advance(FRAME_SECONDS);
+    return orbitalClock;
+  }
+
+  @Benchmark
+  public int cityLevelOfDetail() {
+    flip = !flip;
+    cityLevelOfDetail.update(flip ? GLOBE_RADIUS * 1.6f : 0, 0, flip ? 0 : GLOBE_RADIUS * 2.4f);
+    return cityLevelOfDetail.getVisibleCount();
+  }
+
+  @Benchmark
+  public int clusterLevelOfDetail() {
+    flip = !flip;
+    clusterLevelOfDetail.update(flip ? GLOBE_RADIUS * 1.6f : 0, 0, flip ? 0 : GLOBE_RADIUS * 2.4f);
+    return clusterLevelOfDetail.getVisibleCount();
+  }
+
+  @Benchmark
+  public int tileSelection() {
+    flip = !flip;
+    return tilePyramid.select(
+        flip ? 40 : -10, flip ? 10 : 120, flip ? 1.6f : 2.4f, PIXELS_PER_RADIAN, MAX_TILES, tiles);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Projecting whole columns of coordinates, against one point at a time as City used to, and
+ * tessellating arcs between them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeoProjectionBenchmark {
+  @Param({"1000", "10000", "100000", Datasets.WORLD_CITIES})
+  public String dataset;
+
+  private int size;
+  private final GeoProjection projection =
+      new GeoProjection(0.53f, GeoProjection.EARTH_TEXTURE_LONGITUDE_OFFSET);
+  private float[] latitudes;
+  private float[] longitudes;
+  private float[] positions;
+  // One arc from each point to the next.
+  private float[] arcEndpoints;
+
+  @Setup
+  public void setUp() throws IOException {
+    float[] coordinates = Datasets.coordinates(dataset);
+    size = coordinates.length / 2;
+    latitudes = Datasets.latitudes(coordinates);
+    longitudes = Datasets.longitudes(coordinates);
+    positions = new float[size * 3];
+    arcEndpoints = new float[size * 4];
+    for (int i = 0; i < size; i++) {
+      int next = (i + 1) % size;
+      arcEndpoints[i * 4] = latitudes[i];
+      arcEndpoints[i * 4 + 1] = longitudes[i];
+      arcEndpoints[i * 4 + 2] = latitudes[next];
+      arcEndpoints[i * 4 + 3] = longitudes[next];
+    }
+  }
+
+  @Benchmark
+  public float[] projectColumns() {
+    projection.project(latitudes, longitudes, size, positions);
+    return positions;
+  }
+
+  @Benchmark
+  public float[] projectEachPoint() {
+    for (int i = 0; i < size; i++) {
+      projection.project(latitudes[i], longitudes[i], positions, i * 3);
+    }
+    return positions;
+  }
+
+  @Benchmark
+  public ArcMesh buildArcs() {
+    return ArcMesh.build(arcEndpoints, size, projection, 0.0012f);
+  }
+}
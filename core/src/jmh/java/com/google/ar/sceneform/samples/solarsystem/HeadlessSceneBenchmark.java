@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Simulated frames of a solar system with a given number of planets, run on a {@link SceneModel}
+ * instead of Sceneform.
+ *
+ * <p>Each planet is the node tree SolarActivity builds: an orbit around the sun, the planet, its
+ * counter-orbit and spinning visual, and an info card facing the camera. Every card is shown and
+ * the camera circles the sun, so every card turns on every frame. Add -PjmhProfilers=gc to see the
+ * bytes allocated per frame, which should be zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeadlessSceneBenchmark {
+  private static final float FRAME_SECONDS = 1 / 60f;
+  private static final float AU_TO_METERS = 0.5f;
+  private static final float INFO_CARD_HEIGHT = 0.1f;
+  private static final float CAMERA_DISTANCE = 2;
+
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private OrbitalClock orbitalClock;
+  private SceneModel scene;
+  private int frame;
+
+  @Setup
+  public void setUp() {
+    orbitalClock = new OrbitalClock(new SolarSettings());
+    scene = new SceneModel();
+    int sun = scene.add(SceneModel.NO_PARENT);
+    for (int i = 0; i < size; i++) {
+      float orbitDegreesPerSecond = 10 + i % 90;
+      int orbit = scene.add(sun);
+      orbitalClock.add(scene.rotationTarget(orbit), orbitDegreesPerSecond, true, false, 0);
+
+      int planet = scene.add(orbit);
+      scene.setLocalPosition(planet, (0.4f + i % 300 / 10f) * AU_TO_METERS, 0, 0);
+
+      int counterOrbit = scene.add(planet);
+      orbitalClock.add(
+          scene.rotationTarget(counterOrbit), orbitDegreesPerSecond, true, true, 0);
+      int visual = scene.add(counterOrbit);
+      scene.setLocalScale(visual, 0.05f + i % 10 / 100f);
+      orbitalClock.add(scene.rotationTarget(visual), 90, false, false, i % 30);
+
+      int infoCard = scene.add(planet);
+      scene.setLocalPosition(infoCard, 0, INFO_CARD_HEIGHT, 0);
+      scene.addBillboard(infoCard);
+    }
+    // Settle every card so the first measured frame isn't special.
+    frame();
+  }
+
+  /** One whole frame: the clock, the transforms and the billboards. */
+  @Benchmark
+  public SceneModel frame() {
+    orbitalClock.advance(FRAME_SECONDS);
+    double angle = frame++ * FRAME_SECONDS;
+    scene.update(
+        CAMERA_DISTANCE * (float) Math.sin(angle), 1, CAMERA_DISTANCE * (float) Math.cos(angle));
+    return scene;
+  }
+
+  @Benchmark
+  public SceneModel transforms() {
+    scene.updateTransforms();
+    return scene;
+  }
+
+  /** Moves the camera and turns the cards, without anything else moving. */
+  @Benchmark
+  public int billboards() {
+    double angle = frame++ * FRAME_SECONDS;
+    scene.faceCamera(
+        CAMERA_DISTANCE * (float) Math.sin(angle), 1, CAMERA_DISTANCE * (float) Math.cos(angle));
+    return scene.getFacedCount();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Time to load each dataset format from memory, so storage speed doesn't come into it. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private byte[] policyCsv;
+  private byte[] policyFeed;
+  private byte[] cityIndex;
+
+  @Setup
+  public void setUp() throws IOException {
+    policyCsv = Datasets.policyCsv(size);
+    ByteArrayOutputStream feed = new ByteArrayOutputStream();
+    PolicyFeedCodec.writeSnapshot(
+        PolicyStore.read(new ByteArrayInputStream(policyCsv)), 1, 1, feed);
+    policyFeed = feed.toByteArray();
+    cityIndex = Datasets.cityIndex(size);
+  }
+
+  @Benchmark
+  public PolicyStore policyCsv() throws IOException {
+    return PolicyStore.read(new ByteArrayInputStream(policyCsv));
+  }
+
+  @Benchmark
+  public PolicyFeedCodec.Frame policyFeedSnapshot() throws IOException {
+    return PolicyFeedCodec.read(new ByteArrayInputStream(policyFeed));
+  }
+
+  @Benchmark
+  public CityIndex cityIndex() throws IOException {
+    return CityIndex.read(ByteBuffer.wrap(cityIndex));
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Year playback of a given number of policies: building the keyframes, and the work done on the UI
+ * thread every frame while playing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaybackBenchmark {
+  private static final float GLOBE_RADIUS = 0.53f;
+  private static final float YEARS_PER_FRAME = 1 / 180f;
+
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private PolicyStore store;
+  private ClusterHierarchy hierarchy;
+  private PolicyTimeline timeline;
+  private float[] values;
+  private float year = PolicyTimeline.FIRST_YEAR;
+
+  // The clusters a camera looking at the whole globe gets, as drawn by PlaybackMarkerLayer.
+  private float[] visiblePositions;
+  private float[] visibleHalfSizes;
+  private int[] visibleIds;
+  private MarkerMesh mesh;
+
+  @Setup
+  public void setUp() throws IOException {
+    store = PolicyStore.read(new ByteArrayInputStream(Datasets.policyCsv(size)));
+    float[] positions = new float[size * 3];
+    new GeoProjection(GLOBE_RADIUS, 0)
+        .project(store.getLatitudes(), store.getLongitudes(), size, positions);
+    hierarchy = ClusterHierarchy.build(positions, store.getTiv2012(), size);
+    timeline = PolicyTimeline.build(store, hierarchy);
+    KeyframeTrack track = timeline.getTrack();
+    values = new float[track.getEntityCount() * track.getChannelCount()];
+
+    ClusterLevelOfDetail levelOfDetail =
+        new ClusterLevelOfDetail(hierarchy, GLOBE_RADIUS, 0.004f, 1500);
+    levelOfDetail.update(0, 0, GLOBE_RADIUS * 2.4f);
+    visiblePositions = levelOfDetail.getVisiblePositions();
+    visibleHalfSizes = levelOfDetail.getVisibleHalfSizes();
+    visibleIds = levelOfDetail.getVisibleIds();
+    mesh = MarkerMesh.build(visiblePositions, visibleHalfSizes, levelOfDetail.getVisibleCount(), 0);
+  }
+
+  @Benchmark
+  public PolicyTimeline buildTimeline() {
+    return PolicyTimeline.build(store, hierarchy);
+  }
+
+  /** Interpolating every cluster of every level, visible or not. */
+  @Benchmark
+  public float[] interpolate() {
+    timeline.getTrack().evaluate(nextYear(), values);
+    return values;
+  }
+
+  /** A whole frame of playback short of the upload: interpolating and resizing the markers. */
+  @Benchmark
+  public MarkerMesh animateMarkers() {
+    timeline.getTrack().evaluate(nextYear(), values);
+    int channels = timeline.getTrack().getChannelCount();
+    for (int marker = 0; marker < mesh.getMarkerCount(); marker++) {
+      mesh.setMarker(
+          marker,
+          visiblePositions[marker * 3],
+          visiblePositions[marker * 3 + 1],
+          visiblePositions[marker * 3 + 2],
+          visibleHalfSizes[marker] * values[visibleIds[marker] * channels + PolicyTimeline.SCALE]);
+    }
+    return mesh;
+  }
+
+  private float nextYear() {
+    year += YEARS_PER_FRAME;
+    if (year > PolicyTimeline.LAST_YEAR) {
+      year = PolicyTimeline.FIRST_YEAR;
+    }
+    return year;
+  }
+}
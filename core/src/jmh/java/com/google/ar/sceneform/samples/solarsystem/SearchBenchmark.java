@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Building the city search index, and the query each keystroke in the search box makes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+  private static final int QUERY_COUNT = 1024;
+  private static final int RESULT_COUNT = 10;
+
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private CityIndex cities;
+  private CitySearchIndex searchIndex;
+  private final String[] prefixes = new String[QUERY_COUNT];
+  private final String[] typos = new String[QUERY_COUNT];
+  private final int[] results = new int[RESULT_COUNT];
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    cities = CityIndex.read(ByteBuffer.wrap(Datasets.cityIndex(size)));
+    searchIndex = CitySearchIndex.build(cities);
+
+    // What is typed so far: a prefix of some city's name, and the same with one letter wrong.
+    Random random = new Random(size);
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      String name = cities.getName(random.nextInt(size));
+      String prefix = name.substring(0, 1 + random.nextInt(name.length()));
+      prefixes[i] = prefix;
+      char[] typo = prefix.toCharArray();
+      if (typo.length > 1) {
+        typo[1 + random.nextInt(typo.length - 1)] = 'q';
+      }
+      typos[i] = new String(typo);
+    }
+  }
+
+  @Benchmark
+  public CitySearchIndex build() {
+    return CitySearchIndex.build(cities);
+  }
+
+  @Benchmark
+  public int prefixSearch() {
+    return searchIndex.search(prefixes[next++ & (QUERY_COUNT - 1)], RESULT_COUNT, results);
+  }
+
+  @Benchmark
+  public int fuzzySearch() {
+    return searchIndex.search(typos[next++ & (QUERY_COUNT - 1)], RESULT_COUNT, results);
+  }
+}
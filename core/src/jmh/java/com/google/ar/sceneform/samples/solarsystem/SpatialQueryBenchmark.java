@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Building the indexes over a dataset, and the queries a tap or camera move makes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpatialQueryBenchmark {
+  private static final int QUERY_COUNT = 1024;
+  // Roughly what a tap resolves to on the phone, in radians.
+  private static final float PICK_ANGLE = 0.06f;
+
+  @Param({"1000", "10000", "100000", Datasets.WORLD_CITIES})
+  public String dataset;
+
+  private int size;
+  private float[] positions;
+  private double[] weights;
+  private CitySpatialIndex spatialIndex;
+  private final float[] queries = new float[QUERY_COUNT * 3];
+  private final int[] neighbours = new int[16];
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    positions = Datasets.unitPositions(dataset);
+    size = positions.length / 3;
+    weights = new double[size];
+    Arrays.fill(weights, 1);
+    spatialIndex = CitySpatialIndex.build(positions, size);
+
+    // Query near the data, the way taps land on markers.
+    Random random = new Random(size);
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      int point = random.nextInt(size);
+      queries[i * 3] = positions[point * 3] + (float) random.nextGaussian() * 0.01f;
+      queries[i * 3 + 1] = positions[point * 3 + 1] + (float) random.nextGaussian() * 0.01f;
+      queries[i * 3 + 2] = positions[point * 3 + 2] + (float) random.nextGaussian() * 0.01f;
+    }
+  }
+
+  @Benchmark
+  public CitySpatialIndex buildSpatialIndex() {
+    return CitySpatialIndex.build(positions, size);
+  }
+
+  @Benchmark
+  public ClusterHierarchy buildClusterHierarchy() {
+    return ClusterHierarchy.build(positions, weights, size);
+  }
+
+  @Benchmark
+  public int nearest() {
+    int query = next++ & (QUERY_COUNT - 1);
+    return spatialIndex.nearest(
+        queries[query * 3], queries[query * 3 + 1], queries[query * 3 + 2], PICK_ANGLE);
+  }
+
+  @Benchmark
+  public int nearestTen() {
+    int query = next++ & (QUERY_COUNT - 1);
+    return spatialIndex.nearest(
+        queries[query * 3], queries[query * 3 + 1], queries[query * 3 + 2], 10, neighbours);
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Geometry that packs many great-circle arcs between points on the globe into a single mesh.
+ *
+ * <p>Each arc follows the great circle between its endpoints, rising off the surface towards its
+ * middle in proportion to its length so that long routes stay clear of the short ones. It is drawn
+ * as a flat ribbon lying along the surface, with faces on both sides so that it can be seen from
+ * below as well. Arcs are split into segments of at most a few degrees, so their number of
+ * vertices grows with their length rather than being fixed.
+ */
+public final class ArcMesh {
+  // Longest segment of an arc, in radians.
+  private static final double MAX_SEGMENT_ANGLE = Math.toRadians(3);
+  private static final int MAX_SEGMENTS = 64;
+  // Height of an arc's ends above the surface, and the extra height at its middle per radian of
+  // length, both in units of the globe's radius.
+  private static final double CLEARANCE = 0.006;
+  private static final double RISE_PER_RADIAN = 0.12;
+  // Arcs shorter than this have nowhere to go, and ones this close to half way round the globe
+  // have no single great circle.
+  private static final double MIN_ANGLE = 1e-5;
+  private static final double MAX_ANGLE = Math.PI - 1e-3;
+  private static final int INDICES_PER_SEGMENT = 12;
+
+  private final int arcCount;
+  private final int vertexCount;
+  private final float[] positions;
+  private final float[] normals;
+  private final int[] triangleIndices;
+
+  private ArcMesh(int arcCount, int vertexCount, int segmentCount) {
+    this.arcCount = arcCount;
+    this.vertexCount = vertexCount;
+    this.positions = new float[vertexCount * 3];
+    this.normals = new float[vertexCount * 3];
+    this.triangleIndices = new int[segmentCount * INDICES_PER_SEGMENT];
+  }
+
+  /**
+   * Builds a mesh with one arc per pair of endpoints.
+   *
+   * @param endpoints packed latitude, longitude of the start and then the end of each arc, in
+   *     degrees
+   * @param count number of arcs to read from {@code endpoints}
+   * @param projection places the endpoints on the globe, its radius sets the size of the arcs
+   * @param halfWidth half the width of the ribbons, in the same units as the projection's radius
+   */
+  public static ArcMesh build(
+      float[] endpoints, int count, GeoProjection projection, float halfWidth) {
+    // Project every endpoint in one pass, then size the mesh from the angle of each arc.
+    float[] latitudes = new float[count * 2];
+    float[] longitudes = new float[count * 2];
+    for (int i = 0; i < count * 2; i++) {
+      latitudes[i] = endpoints[i * 2];
+      longitudes[i] = endpoints[i * 2 + 1];
+    }
+    float[] ends = new float[count * 6];
+    projection.project(latitudes, longitudes, count * 2, ends);
+
+    int[] segments = new int[count];
+    int vertexCount = 0;
+    int segmentCount = 0;
+    for (int arc = 0; arc < count; arc++) {
+      double angle = angleBetween(ends, arc * 6, arc * 6 + 3);
+      if (angle < MIN_ANGLE || angle > MAX_ANGLE) {
+        continue;
+      }
+      segments[arc] = Math.min((int) Math.ceil(angle / MAX_SEGMENT_ANGLE), MAX_SEGMENTS);
+      vertexCount += (segments[arc] + 1) * 2;
+      segmentCount += segments[arc];
+    }
+
+    ArcMesh mesh = new ArcMesh(count, vertexCount, segmentCount);
+    int vertex = 0;
+    int index = 0;
+    for (int arc = 0; arc < count; arc++) {
+      if (segments[arc] > 0) {
+        mesh.addArc(ends, arc * 6, segments[arc], projection.getRadius(), halfWidth, vertex, index);
+        vertex += (segments[arc] + 1) * 2;
+        index += segments[arc] * INDICES_PER_SEGMENT;
+      }
+    }
+    return mesh;
+  }
+
+  private static double angleBetween(float[] points, int a, int b) {
+    double cross =
+        length(
+            points[a + 1] * points[b + 2] - points[a + 2] * points[b + 1],
+            points[a + 2] * points[b] - points[a] * points[b + 2],
+            points[a] * points[b + 1] - points[a + 1] * points[b]);
+    double dot =
+        points[a] * points[b] + points[a + 1] * points[b + 1] + points[a + 2] * points[b + 2];
+    return Math.atan2(cross, dot);
+  }
+
+  private static double length(double x, double y, double z) {
+    return Math.sqrt(x * x + y * y + z * z);
+  }
+
+  /** Writes the ribbon for the arc whose endpoints start at {@code ends[offset]}. */
+  private void addArc(
+      float[] ends,
+      int offset,
+      int segments,
+      float radius,
+      float halfWidth,
+      int vertex,
+      int index) {
+    double startLength = length(ends[offset], ends[offset + 1], ends[offset + 2]);
+    double endLength = length(ends[offset + 3], ends[offset + 4], ends[offset + 5]);
+    double ax = ends[offset] / startLength;
+    double ay = ends[offset + 1] / startLength;
+    double az = ends[offset + 2] / startLength;
+    double bx = ends[offset + 3] / endLength;
+    double by = ends[offset + 4] / endLength;
+    double bz = ends[offset + 5] / endLength;
+
+    // The ribbon spans the normal of the great circle's plane, which is the same all along it.
+    double sx = ay * bz - az * by;
+    double sy = az * bx - ax * bz;
+    double sz = ax * by - ay * bx;
+    double sideLength = length(sx, sy, sz);
+    double angle = Math.atan2(sideLength, ax * bx + ay * by + az * bz);
+    double sinAngle = Math.sin(angle);
+    sx *= halfWidth / sideLength;
+    sy *= halfWidth / sideLength;
+    sz *= halfWidth / sideLength;
+
+    for (int step = 0; step <= segments; step++) {
+      double t = (double) step / segments;
+      // Spherical interpolation between the endpoints gives evenly spaced directions.
+      double wa = Math.sin((1 - t) * angle) / sinAngle;
+      double wb = Math.sin(t * angle) / sinAngle;
+      double nx = wa * ax + wb * bx;
+      double ny = wa * ay + wb * by;
+      double nz = wa * az + wb * bz;
+      double height = radius * (1 + CLEARANCE + RISE_PER_RADIAN * angle * Math.sin(Math.PI * t));
+
+      int out = (vertex + step * 2) * 3;
+      positions[out] = (float) (nx * height + sx);
+      positions[out + 1] = (float) (ny * height + sy);
+      positions[out + 2] = (float) (nz * height + sz);
+      positions[out + 3] = (float) (nx * height - sx);
+      positions[out + 4] = (float) (ny * height - sy);
+      positions[out + 5] = (float) (nz * height - sz);
+      for (int side = 0; side < 6; side += 3) {
+        normals[out + side] = (float) nx;
+        normals[out + side + 1] = (float) ny;
+        normals[out + side + 2] = (float) nz;
+      }
+    }
+
+    for (int segment = 0; segment < segments; segment++) {
+      int v0 = vertex + segment * 2;
+      int v1 = v0 + 1;
+      int v2 = v0 + 2;
+      int v3 = v0 + 3;
+      int out = index + segment * INDICES_PER_SEGMENT;
+      // Counter-clockwise seen from outside the globe, then the same triangles reversed.
+      triangleIndices[out] = v0;
+      triangleIndices[out + 1] = v1;
+      triangleIndices[out + 2] = v2;
+      triangleIndices[out + 3] = v1;
+      triangleIndices[out + 4] = v3;
+      triangleIndices[out + 5] = v2;
+      triangleIndices[out + 6] = v0;
+      triangleIndices[out + 7] = v2;
+      triangleIndices[out + 8] = v1;
+      triangleIndices[out + 9] = v1;
+      triangleIndices[out + 10] = v2;
+      triangleIndices[out + 11] = v3;
+    }
+  }
+
+  /** Number of arcs asked for, including any that were too short or too long to draw. */
+  public int getArcCount() {
+    return arcCount;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /** Packed xyz vertex positions, relative to the centre of the globe. */
+  public float[] getPositions() {
+    return positions;
+  }
+
+  /** Packed xyz vertex normals, pointing away from the centre of the globe. */
+  public float[] getNormals() {
+    return normals;
+  }
+
+  public int[] getTriangleIndices() {
+    return triangleIndices;
+  }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Filters the rows of a table, the cities or the policies, by the values of their attributes.
+ *
+ * <p>Categorical columns keep the rows of each of their values. Values covering at least {@code
+ * 1/DENSE_FRACTION} of the table also get a precomputed bitmap, which is ORed in a word at a time;
+ * rarer values are set row by row from their list, which keeps a column with thousands of values,
+ * like admin_name, to a few bytes per row. Numeric columns keep the rows sorted by value, so a
+ * range is two binary searches and then marking the rows inside it or, when that is fewer, clearing
+ * the rows outside. Values of one column are ORed and the columns ANDed, all on bitmaps of the
+ * whole table, so a combined filter takes microseconds. Category values match ignoring case.
+ *
+ * <p>A filter can also be written as text, for a search box: terms separated by semicolons, each
+ * either {@code column=value,value} or {@code column=min..max} with either bound optional, for
+ * example {@code iso3=USA,CAN; population=1000000..}.
+ */
+public final class AttributeIndex {
+  // City columns.
+  public static final String COUNTRY = "country";
+  public static final String ISO3 = "iso3";
+  public static final String ADMIN_NAME = "admin_name";
+  public static final String CAPITAL = "capital";
+  public static final String POPULATION = "population";
+
+  // Policy columns.
+  public static final String COUNTY = "county";
+  public static final String LINE = "line";
+  public static final String CONSTRUCTION = "construction";
+  public static final String TIV_2011 = "tiv_2011";
+  public static final String TIV_2012 = "tiv_2012";
+
+  private static final String[] COLUMNS = {
+    COUNTRY, ISO3, ADMIN_NAME, CAPITAL, POPULATION, COUNTY, LINE, CONSTRUCTION, TIV_2011, TIV_2012
+  };
+
+  // Names of the CityIndex.CAPITAL_* types, as in worldcities.csv.
+  private static final String[] CAPITAL_TYPES = {"", "primary", "admin", "minor"};
+
+  private static final int DENSE_FRACTION = 32;
+
+  private final int size;
+  private final Map<String, Category> categories = new HashMap<>();
+  private final Map<String, Range> ranges = new HashMap<>();
+
+  private AttributeIndex(int size) {
+    this.size = size;
+  }
+
+  /** Indexes the country, iso3, admin_name, capital and population of every city. */
+  public static AttributeIndex forCities(CityIndex cities) {
+    int count = cities.size();
+    AttributeIndex index = new AttributeIndex(count);
+    index.categories.put(COUNTRY, Category.ofStrings(count, cities::getCountry));
+    index.categories.put(ISO3, Category.ofStrings(count, cities::getIso3));
+    index.categories.put(ADMIN_NAME, Category.ofStrings(count, cities::getAdminName));
+
+    int[] capitals = new int[count];
+    double[] populations = new double[count];
+    for (int city = 0; city < count; city++) {
+      capitals[city] = cities.getCapital(city);
+      int population = cities.getPopulation(city);
+      // Cities without a population never match a population range.
+      populations[city] = population == CityIndex.UNKNOWN_POPULATION ? Double.NaN : population;
+    }
+    index.categories.put(CAPITAL, Category.of(capitals, CAPITAL_TYPES));
+    index.ranges.put(POPULATION, Range.of(populations));
+    return index;
+  }
+
+  /** Indexes the county, line, construction and insured values of every policy. */
+  public static AttributeIndex forPolicies(PolicyStore policies) {
+    AttributeIndex index = new AttributeIndex(policies.size());
+    index.categories.put(
+        COUNTY, Category.of(policies.getCountyCodes(), policies.getCounties()));
+    index.categories.put(LINE, Category.of(policies.getLineCodes(), policies.getLines()));
+    index.categories.put(
+        CONSTRUCTION,
+        Category.of(policies.getConstructionCodes(), policies.getConstructions()));
+    index.ranges.put(TIV_2011, Range.of(policies.getTiv2011()));
+    index.ranges.put(TIV_2012, Range.of(policies.getTiv2012()));
+    return index;
+  }
+
+  /** Number of rows in the table. */
+  public int size() {
+    return size;
+  }
+
+  public boolean hasColumn(String column) {
+    return categories.containsKey(column) || ranges.containsKey(column);
+  }
+
+  /** Starts a filter that matches every row until predicates are added. */
+  public Query query() {
+    return new Query();
+  }
+
+  /**
+   * Selects the rows matching a filter written as text. Terms on columns of other tables are
+   * skipped, so that one filter can be applied to the cities and the policies alike.
+   *
+   * @throws IllegalArgumentException if a term is malformed or names an unknown column
+   */
+  public RowSet select(String filter) {
+    Query query = query();
+    for (String term : filter.split(";")) {
+      term = term.trim();
+      if (term.isEmpty()) {
+        continue;
+      }
+      int equals = term.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException("Expected column=value, got " + term);
+      }
+      String column = term.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+      String value = term.substring(equals + 1).trim();
+      if (categories.containsKey(column)) {
+        String[] values = value.split(",");
+        for (int i = 0; i < values.length; i++) {
+          values[i] = values[i].trim();
+        }
+        query.whereIn(column, values);
+      } else if (ranges.containsKey(column)) {
+        int dots = value.indexOf("..");
+        if (dots < 0) {
+          double exact = Double.parseDouble(value);
+          query.whereBetween(column, exact, exact);
+        } else {
+          String min = value.substring(0, dots).trim();
+          String max = value.substring(dots + 2).trim();
+          query.whereBetween(
+              column,
+              min.isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(min),
+              max.isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(max));
+        }
+      } else if (!Arrays.asList(COLUMNS).contains(column)) {
+        throw new IllegalArgumentException("Unknown column " + column);
+      }
+    }
+    return query.getRows();
+  }
+
+  /**
+   * A filter being built. Each predicate is applied as it is added, and the result is the rows
+   * matching all of them.
+   */
+  public final class Query {
+    private final RowSet rows = new RowSet(size);
+    private final RowSet scratch = new RowSet(size);
+
+    private Query() {
+      rows.fill();
+    }
+
+    /** Keeps the rows whose {@code column} has any of {@code values}. */
+    public Query whereIn(String column, String... values) {
+      Category category = categories.get(column);
+      if (category == null) {
+        throw new IllegalArgumentException("Not a categorical column: " + column);
+      }
+      scratch.clear();
+      for (String value : values) {
+        category.addRows(value, scratch);
+      }
+      rows.retainAll(scratch);
+      return this;
+    }
+
+    /** Keeps the rows whose {@code column} is between {@code min} and {@code max}, inclusive. */
+    public Query whereBetween(String column, double min, double max) {
+      Range range = ranges.get(column);
+      if (range == null) {
+        throw new IllegalArgumentException("Not a numeric column: " + column);
+      }
+      range.select(min, max, scratch);
+      rows.retainAll(scratch);
+      return this;
+    }
+
+    /** The rows matching every predicate so far, updated as more are added. */
+    public RowSet getRows() {
+      return rows;
+    }
+  }
+
+  /** The rows of each value of a categorical column. */
+  private static final class Category {
+    // Lower case value to code.
+    private final Map<String, Integer> codes;
+    // Rows grouped by code, the rows of code c from starts[c] to starts[c + 1].
+    private final int[] rows;
+    private final int[] starts;
+    // For each code, the same rows as a bitmap if the value is common, otherwise null.
+    private final RowSet[] bitmaps;
+
+    private Category(Map<String, Integer> codes, int[] rows, int[] starts, RowSet[] bitmaps) {
+      this.codes = codes;
+      this.rows = rows;
+      this.starts = starts;
+      this.bitmaps = bitmaps;
+    }
+
+    /** Indexes a column of codes into {@code values}, merging values that differ only in case. */
+    static Category of(int[] rowCodes, String[] values) {
+      Map<String, Integer> codes = new HashMap<>();
+      int[] merged = new int[values.length];
+      for (int value = 0; value < values.length; value++) {
+        String key = values[value].toLowerCase(Locale.ROOT);
+        Integer code = codes.get(key);
+        if (code == null) {
+          code = codes.size();
+          codes.put(key, code);
+        }
+        merged[value] = code;
+      }
+
+      // Counting sort of the rows by code.
+      int codeCount = codes.size();
+      int[] starts = new int[codeCount + 1];
+      for (int rowCode : rowCodes) {
+        starts[merged[rowCode] + 1]++;
+      }
+      for (int code = 0; code < codeCount; code++) {
+        starts[code + 1] += starts[code];
+      }
+      int[] next = Arrays.copyOf(starts, codeCount);
+      int[] rows = new int[rowCodes.length];
+      for (int row = 0; row < rowCodes.length; row++) {
+        rows[next[merged[rowCodes[row]]]++] = row;
+      }
+
+      RowSet[] bitmaps = new RowSet[codeCount];
+      for (int code = 0; code < codeCount; code++) {
+        if ((long) (starts[code + 1] - starts[code]) * DENSE_FRACTION >= rowCodes.length) {
+          bitmaps[code] = new RowSet(rowCodes.length);
+          bitmaps[code].addAll(rows, starts[code], starts[code + 1]);
+        }
+      }
+      return new Category(codes, rows, starts, bitmaps);
+    }
+
+    /** Indexes a column of strings, given by row. */
+    static Category ofStrings(int size, IntFunction<String> valueOf) {
+      Map<String, Integer> codes = new HashMap<>();
+      int[] rowCodes = new int[size];
+      for (int row = 0; row < size; row++) {
+        String value = valueOf.apply(row);
+        Integer code = codes.get(value);
+        if (code == null) {
+          code = codes.size();
+          codes.put(value, code);
+        }
+        rowCodes[row] = code;
+      }
+      String[] values = new String[codes.size()];
+      for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+        values[entry.getValue()] = entry.getKey();
+      }
+      return of(rowCodes, values);
+    }
+
+    void addRows(String value, RowSet out) {
+      Integer code = codes.get(value.toLowerCase(Locale.ROOT));
+      if (code == null) {
+        return;
+      }
+      RowSet bitmap = bitmaps[code];
+      if (bitmap != null) {
+        long[] words = out.words;
+        for (int i = 0; i < words.length; i++) {
+          words[i] |= bitmap.words[i];
+        }
+      } else {
+        out.addAll(rows, starts[code], starts[code + 1]);
+      }
+    }
+  }
+
+  /** The rows of a numeric column sorted by value. */
+  private static final class Range {
+    private final double[] sorted;
+    private final int[] rows;
+    // Rows without a value, which no range matches.
+    private final int[] missing;
+
+    private Range(double[] sorted, int[] rows, int[] missing) {
+      this.sorted = sorted;
+      this.rows = rows;
+      this.missing = missing;
+    }
+
+    /** Indexes a column in which NaN marks rows without a value. */
+    static Range of(double[] values) {
+      // Sort (value as a float, row) pairs packed into longs to avoid boxing. Rounding to a float
+      // keeps the order, except among values that round the same, which the second pass fixes.
+      long[] keys = new long[values.length];
+      int count = 0;
+      int[] missing = new int[values.length];
+      int missingCount = 0;
+      for (int row = 0; row < values.length; row++) {
+        if (Double.isNaN(values[row])) {
+          missing[missingCount++] = row;
+          continue;
+        }
+        int bits = Float.floatToIntBits((float) values[row]);
+        // Flips negative floats so that the bits order like the values.
+        bits ^= (bits >> 31) & 0x7fffffff;
+        keys[count++] = ((long) bits << 32) | row;
+      }
+      Arrays.sort(keys, 0, count);
+
+      double[] sorted = new double[count];
+      int[] rows = new int[count];
+      for (int i = 0; i < count; i++) {
+        int row = (int) keys[i];
+        double value = values[row];
+        int j = i;
+        while (j > 0 && sorted[j - 1] > value) {
+          sorted[j] = sorted[j - 1];
+          rows[j] = rows[j - 1];
+          j--;
+        }
+        sorted[j] = value;
+        rows[j] = row;
+      }
+      return new Range(sorted, rows, Arrays.copyOf(missing, missingCount));
+    }
+
+    /** Sets {@code out} to the rows from {@code min} to {@code max}. */
+    void select(double min, double max, RowSet out) {
+      int start = lowerBound(min);
+      int end = upperBound(max);
+      if (end <= start) {
+        out.clear();
+        return;
+      }
+      if (end - start <= sorted.length - (end - start)) {
+        out.clear();
+        out.addAll(rows, start, end);
+      } else {
+        out.fill();
+        out.removeAll(rows, 0, start);
+        out.removeAll(rows, end, rows.length);
+        out.removeAll(missing, 0, missing.length);
+      }
+    }
+
+    /** Index of the first value at least {@code value}. */
+    private int lowerBound(double value) {
+      int low = 0;
+      int high = sorted.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (sorted[mid] < value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /** Index of the first value greater than {@code value}. */
+    private int upperBound(double value) {
+      int low = 0;
+      int high = sorted.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (sorted[mid] <= value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Decides when each billboard card has to turn towards the camera, and computes the rotation.
+ *
+ * <p>Renderer agnostic: a card is a slot number, and transforms are passed in as column-major world
+ * matrices, the layout of Sceneform's {@code Matrix.data}. {@link SceneModel} feeds it from its
+ * own transforms, on a device and off it. A card is only rotated again once the direction from it
+ * to the camera has changed by more than a small threshold, and nothing is allocated per frame.
+ */
+public class BillboardTracker {
+  // Minimum change, in meters, of the card to camera vector before a card is rotated again.
+  private static final float MOVE_THRESHOLD = 0.001f;
+
+  private int size;
+  // Card to camera vector at the last rotation of each card, packed xyz. NaN forces an update.
+  private float[] lastDirections = new float[8 * 3];
+
+  private float cameraX;
+  private float cameraY;
+  private float cameraZ;
+
+  /** Adds a card, which is rotated on its next update, and returns its slot. */
+  public int add() {
+    if (lastDirections.length < (size + 1) * 3) {
+      lastDirections = Arrays.copyOf(lastDirections, lastDirections.length * 2);
+    }
+    lastDirections[size * 3] = Float.NaN;
+    return size++;
+  }
+
+  /** Removes the card in {@code slot}, moving the last card into it. */
+  public void remove(int slot) {
+    int last = --size;
+    System.arraycopy(lastDirections, last * 3, lastDirections, slot * 3, 3);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Sets the camera's world position for the following updates. */
+  public void setCamera(float x, float y, float z) {
+    cameraX = x;
+    cameraY = y;
+    cameraZ = z;
+  }
+
+  /**
+   * Checks whether the card in {@code slot} has to turn and, if so, writes the local rotation that
+   * makes it face the camera as a quaternion (x, y, z, w) into {@code out}.
+   *
+   * @param world the card's world matrix, at {@code worldOffset}
+   * @param parentWorld the world matrix of the card's parent at {@code parentOffset}, or null if
+   *     the card's local space is world space
+   * @return whether {@code out} was written
+   */
+  public boolean update(
+      int slot,
+      float[] world,
+      int worldOffset,
+      float[] parentWorld,
+      int parentOffset,
+      float[] out) {
+    float dx = cameraX - world[worldOffset + 12];
+    float dy = cameraY - world[worldOffset + 13];
+    float dz = cameraZ - world[worldOffset + 14];
+
+    int index = slot * 3;
+    float mx = dx - lastDirections[index];
+    float my = dy - lastDirections[index + 1];
+    float mz = dz - lastDirections[index + 2];
+    // Comparisons with NaN are false, so new cards always get through.
+    if (mx * mx + my * my + mz * mz < MOVE_THRESHOLD * MOVE_THRESHOLD) {
+      return false;
+    }
+    lastDirections[index] = dx;
+    lastDirections[index + 1] = dy;
+    lastDirections[index + 2] = dz;
+
+    if (parentWorld == null) {
+      return LookRotation.compute(dx, dy, dz, 0.0f, 1.0f, 0.0f, out);
+    }
+
+    // The direction and the world up vector are brought into the parent's space using the
+    // transpose of its (normalized) rotation.
+    float[] parent = parentWorld;
+    int p = parentOffset;
+    float scaleX = length(parent[p], parent[p + 1], parent[p + 2]);
+    float scaleY = length(parent[p + 4], parent[p + 5], parent[p + 6]);
+    float scaleZ = length(parent[p + 8], parent[p + 9], parent[p + 10]);
+    if (scaleX == 0 || scaleY == 0 || scaleZ == 0) {
+      return false;
+    }
+
+    float forwardX = (parent[p] * dx + parent[p + 1] * dy + parent[p + 2] * dz) / scaleX;
+    float forwardY = (parent[p + 4] * dx + parent[p + 5] * dy + parent[p + 6] * dz) / scaleY;
+    float forwardZ = (parent[p + 8] * dx + parent[p + 9] * dy + parent[p + 10] * dz) / scaleZ;
+    float upX = parent[p + 1] / scaleX;
+    float upY = parent[p + 5] / scaleY;
+    float upZ = parent[p + 9] / scaleZ;
+    return LookRotation.compute(forwardX, forwardY, forwardZ, upX, upY, upZ, out);
+  }
+
+  private static float length(float x, float y, float z) {
+    return (float) Math.sqrt(x * x + y * y + z * z);
+  }
+}
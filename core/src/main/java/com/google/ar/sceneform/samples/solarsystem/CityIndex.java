@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Columnar, read-only view of worldcities.csv.
+ *
+ * <p>The CSV is compiled into this format at build time (see the {@code compileCityIndex} task) so
+ * that the app can load every city with a handful of bulk reads instead of tokenizing the file.
+ * The layout, all big-endian, is:
+ *
+ * <pre>
+ *   int magic, int version, int cityCount, int stringCount
+ *   int[stringCount + 1] string offsets, int stringBytesLength, byte[] UTF-8 string data
+ *   float[cityCount] latitude, float[cityCount] longitude, int[cityCount] population
+ *   int[cityCount] name, asciiName, country, iso3, adminName (string table ids)
+ *   byte[cityCount] capital type
+ * </pre>
+ */
+public final class CityIndex {
+  public static final int MAGIC = 0x43495831; // "CIX1"
+  public static final int VERSION = 1;
+
+  public static final byte CAPITAL_NONE = 0;
+  public static final byte CAPITAL_PRIMARY = 1;
+  public static final byte CAPITAL_ADMIN = 2;
+  public static final byte CAPITAL_MINOR = 3;
+
+  /** Population value for cities that have none in the dataset. */
+  public static final int UNKNOWN_POPULATION = -1;
+
+  private final float[] latitude;
+  private final float[] longitude;
+  private final int[] population;
+  private final int[] nameId;
+  private final int[] asciiNameId;
+  private final int[] countryId;
+  private final int[] iso3Id;
+  private final int[] adminNameId;
+  private final byte[] capital;
+
+  private final int[] stringOffsets;
+  private final byte[] stringData;
+  private final String[] decodedStrings;
+
+  private CityIndex(
+      float[] latitude,
+      float[] longitude,
+      int[] population,
+      int[] nameId,
+      int[] asciiNameId,
+      int[] countryId,
+      int[] iso3Id,
+      int[] adminNameId,
+      byte[] capital,
+      int[] stringOffsets,
+      byte[] stringData) {
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.population = population;
+    this.nameId = nameId;
+    this.asciiNameId = asciiNameId;
+    this.countryId = countryId;
+    this.iso3Id = iso3Id;
+    this.adminNameId = adminNameId;
+    this.capital = capital;
+    this.stringOffsets = stringOffsets;
+    this.stringData = stringData;
+    this.decodedStrings = new String[stringOffsets.length - 1];
+  }
+
+  public int size() {
+    return latitude.length;
+  }
+
+  /** The whole latitude column, which callers must not modify. */
+  public float[] getLatitudes() {
+    return latitude;
+  }
+
+  /** The whole longitude column, which callers must not modify. */
+  public float[] getLongitudes() {
+    return longitude;
+  }
+
+  public float getLatitude(int city) {
+    return latitude[city];
+  }
+
+  public float getLongitude(int city) {
+    return longitude[city];
+  }
+
+  /** The whole population column, which callers must not modify. */
+  public int[] getPopulations() {
+    return population;
+  }
+
+  /** Returns the population, or {@link #UNKNOWN_POPULATION} if the dataset has none. */
+  public int getPopulation(int city) {
+    return population[city];
+  }
+
+  public byte getCapital(int city) {
+    return capital[city];
+  }
+
+  public String getName(int city) {
+    return getString(nameId[city]);
+  }
+
+  public String getAsciiName(int city) {
+    return getString(asciiNameId[city]);
+  }
+
+  public String getCountry(int city) {
+    return getString(countryId[city]);
+  }
+
+  public String getIso3(int city) {
+    return getString(iso3Id[city]);
+  }
+
+  public String getAdminName(int city) {
+    return getString(adminNameId[city]);
+  }
+
+  /**
+   * Bytes held by the columns and the encoded strings, not counting array headers or strings
+   * decoded since. References are counted at four bytes, as compressed on ART and HotSpot.
+   */
+  public long getSizeBytes() {
+    return 4L * (latitude.length + longitude.length + population.length)
+        + 4L * (nameId.length + asciiNameId.length + countryId.length)
+        + 4L * (iso3Id.length + adminNameId.length)
+        + capital.length
+        + 4L * stringOffsets.length
+        + stringData.length
+        + 4L * decodedStrings.length;
+  }
+
+  /** Strings are decoded on first use, most of them are never looked at. */
+  private String getString(int id) {
+    String decoded = decodedStrings[id];
+    if (decoded == null) {
+      int start = stringOffsets[id];
+      decoded =
+          new String(stringData, start, stringOffsets[id + 1] - start, StandardCharsets.UTF_8);
+      decodedStrings[id] = decoded;
+    }
+    return decoded;
+  }
+
+  /** Reads an index from a buffer, which may be memory mapped. */
+  public static CityIndex read(ByteBuffer buffer) throws IOException {
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("Not a city index");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported city index version " + version);
+    }
+    int cityCount = buffer.getInt();
+    int stringCount = buffer.getInt();
+
+    int[] stringOffsets = new int[stringCount + 1];
+    buffer.asIntBuffer().get(stringOffsets);
+    buffer.position(buffer.position() + stringOffsets.length * 4);
+    byte[] stringData = new byte[buffer.getInt()];
+    buffer.get(stringData);
+
+    float[] latitude = readFloats(buffer, cityCount);
+    float[] longitude = readFloats(buffer, cityCount);
+    int[] population = readInts(buffer, cityCount);
+    int[] nameId = readInts(buffer, cityCount);
+    int[] asciiNameId = readInts(buffer, cityCount);
+    int[] countryId = readInts(buffer, cityCount);
+    int[] iso3Id = readInts(buffer, cityCount);
+    int[] adminNameId = readInts(buffer, cityCount);
+    byte[] capital = new byte[cityCount];
+    buffer.get(capital);
+
+    return new CityIndex(
+        latitude,
+        longitude,
+        population,
+        nameId,
+        asciiNameId,
+        countryId,
+        iso3Id,
+        adminNameId,
+        capital,
+        stringOffsets,
+        stringData);
+  }
+
+  /** Reads an index from a stream in one bulk read. */
+  public static CityIndex read(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = in.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    return read(ByteBuffer.wrap(bytes.toByteArray()));
+  }
+
+  private static float[] readFloats(ByteBuffer buffer, int count) {
+    float[] values = new float[count];
+    buffer.asFloatBuffer().get(values);
+    buffer.position(buffer.position() + count * 4);
+    return values;
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * 4);
+    return values;
+  }
+
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    int cityCount = size();
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(cityCount);
+    data.writeInt(decodedStrings.length);
+    for (int offset : stringOffsets) {
+      data.writeInt(offset);
+    }
+    data.writeInt(stringData.length);
+    data.write(stringData);
+    for (int i = 0; i < cityCount; i++) {
+      data.writeFloat(latitude[i]);
+    }
+    for (int i = 0; i < cityCount; i++) {
+      data.writeFloat(longitude[i]);
+    }
+    for (int[] column :
+        new int[][] {population, nameId, asciiNameId, countryId, iso3Id, adminNameId}) {
+      for (int i = 0; i < cityCount; i++) {
+        data.writeInt(column[i]);
+      }
+    }
+    data.write(capital);
+    data.flush();
+  }
+
+  /** Parses worldcities.csv. Used by the build, the app itself reads the compiled index. */
+  public static CityIndex fromCsv(Reader reader) throws IOException {
+    StringTable strings = new StringTable();
+    List<CSVRecord> rows = new ArrayList<>();
+    try (CSVParser parser = CSVFormat.EXCEL.withHeader().parse(reader)) {
+      for (CSVRecord record : parser) {
+        rows.add(record);
+      }
+    }
+
+    int cityCount = rows.size();
+    float[] latitude = new float[cityCount];
+    float[] longitude = new float[cityCount];
+    int[] population = new int[cityCount];
+    int[] nameId = new int[cityCount];
+    int[] asciiNameId = new int[cityCount];
+    int[] countryId = new int[cityCount];
+    int[] iso3Id = new int[cityCount];
+    int[] adminNameId = new int[cityCount];
+    byte[] capital = new byte[cityCount];
+
+    for (int i = 0; i < cityCount; i++) {
+      CSVRecord record = rows.get(i);
+      latitude[i] = Float.parseFloat(record.get("lat"));
+      longitude[i] = Float.parseFloat(record.get("lng"));
+      String populationText = record.get("population");
+      population[i] =
+          populationText.isEmpty()
+              ? UNKNOWN_POPULATION
+              : (int) Math.round(Double.parseDouble(populationText));
+      nameId[i] = strings.intern(record.get("city"));
+      asciiNameId[i] = strings.intern(record.get("city_ascii"));
+      countryId[i] = strings.intern(record.get("country"));
+      iso3Id[i] = strings.intern(record.get("iso3"));
+      adminNameId[i] = strings.intern(record.get("admin_name"));
+      capital[i] = parseCapital(record.get("capital"));
+    }
+
+    return new CityIndex(
+        latitude,
+        longitude,
+        population,
+        nameId,
+        asciiNameId,
+        countryId,
+        iso3Id,
+        adminNameId,
+        capital,
+        strings.offsets(),
+        strings.data());
+  }
+
+  private static byte parseCapital(String capital) {
+    switch (capital) {
+      case "primary":
+        return CAPITAL_PRIMARY;
+      case "admin":
+        return CAPITAL_ADMIN;
+      case "minor":
+        return CAPITAL_MINOR;
+      default:
+        return CAPITAL_NONE;
+    }
+  }
+
+  /** Deduplicates the strings of the CSV into one UTF-8 blob. */
+  private static final class StringTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final List<Integer> offsets = new ArrayList<>();
+
+    int intern(String value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = offsets.size();
+        ids.put(value, id);
+        offsets.add(data.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.write(bytes, 0, bytes.length);
+      }
+      return id;
+    }
+
+    int[] offsets() {
+      int[] result = new int[offsets.size() + 1];
+      for (int i = 0; i < offsets.size(); i++) {
+        result[i] = offsets.get(i);
+      }
+      result[offsets.size()] = data.size();
+      return result;
+    }
+
+    byte[] data() {
+      return data.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Chooses which cities get a marker based on where the camera is.
+ *
+ * <p>Cities are revealed in order of population: from far away only the largest cities are shown,
+ * and more appear as the camera gets closer to the globe, up to a fixed budget. Cities on the far
+ * side of the globe are never selected. Because the number of markers is capped, the cost of
+ * drawing them stays the same however large the dataset is.
+ *
+ * <p>Selecting is O(n) in the worst case, so it only runs again once the camera has moved or
+ * turned far enough for the visible set to noticeably change.
+ */
+public class CityLevelOfDetail {
+  // Camera distances, in globe radii, at which the fewest and the most cities are shown.
+  private static final float NEAR_DISTANCE = 1.5f;
+  private static final float FAR_DISTANCE = 8.0f;
+
+  // Reselect after the camera turns by this many degrees around the globe...
+  private static final float RESELECT_ANGLE_DEGREES = 5.0f;
+  // ...or gets this much closer or further away.
+  private static final float RESELECT_DISTANCE_RATIO = 1.1f;
+
+  // Lets markers right at the horizon stay up instead of popping in and out.
+  private static final float HORIZON_MARGIN = 0.05f;
+
+  private final float[] positions;
+  private final float globeRadius;
+  private final int minVisible;
+  private final int maxVisible;
+  // City indices, most populous first.
+  private final int[] byPopulation;
+  // Cities that may be selected, or null for all of them.
+  private RowSet filter;
+
+  private final float reselectCos = (float) Math.cos(Math.toRadians(RESELECT_ANGLE_DEGREES));
+  private boolean hasSelection;
+  private float lastDistance;
+  private float lastDirX;
+  private float lastDirY;
+  private float lastDirZ;
+
+  private float[] visiblePositions = new float[0];
+  private int[] visibleIds = new int[0];
+  private int visibleCount;
+
+  /**
+   * @param positions packed xyz city positions relative to the centre of the globe
+   * @param population population of each city, negative if unknown
+   * @param count number of cities
+   * @param globeRadius radius of the globe the positions lie on
+   * @param minVisible markers shown when the camera is far away
+   * @param maxVisible marker budget when the camera is close
+   */
+  public CityLevelOfDetail(
+      float[] positions,
+      int[] population,
+      int count,
+      float globeRadius,
+      int minVisible,
+      int maxVisible) {
+    this.positions = positions;
+    this.globeRadius = globeRadius;
+    this.minVisible = Math.max(1, Math.min(minVisible, maxVisible));
+    this.maxVisible = maxVisible;
+
+    // Sort on (population, index) packed into one long to avoid boxing.
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = ((long) Math.max(population[i], 0) << 32) | i;
+    }
+    Arrays.sort(keys);
+    byPopulation = new int[count];
+    for (int i = 0; i < count; i++) {
+      byPopulation[i] = (int) keys[count - 1 - i];
+    }
+  }
+
+  /**
+   * Restricts the selection to the cities in {@code cities}, or lifts the restriction if null. The
+   * selection is redone on the next {@link #update}, wherever the camera is.
+   */
+  public void setFilter(RowSet cities) {
+    filter = cities;
+    hasSelection = false;
+  }
+
+  /**
+   * Updates the selection for a camera at (x, y, z) relative to the centre of the globe.
+   *
+   * @return true if the selection changed and the markers need to be rebuilt
+   */
+  public boolean update(float cameraX, float cameraY, float cameraZ) {
+    float distance = (float) Math.sqrt(cameraX * cameraX + cameraY * cameraY + cameraZ * cameraZ);
+    if (distance == 0) {
+      return false;
+    }
+    float dirX = cameraX / distance;
+    float dirY = cameraY / distance;
+    float dirZ = cameraZ / distance;
+
+    if (hasSelection) {
+      float turn = dirX * lastDirX + dirY * lastDirY + dirZ * lastDirZ;
+      float zoom = Math.max(distance / lastDistance, lastDistance / distance);
+      if (turn > reselectCos && zoom < RESELECT_DISTANCE_RATIO) {
+        return false;
+      }
+    }
+
+    hasSelection = true;
+    lastDistance = distance;
+    lastDirX = dirX;
+    lastDirY = dirY;
+    lastDirZ = dirZ;
+    select(distance / globeRadius, dirX, dirY, dirZ);
+    return true;
+  }
+
+  private void select(float distanceInRadii, float dirX, float dirY, float dirZ) {
+    int budget = budgetForDistance(distanceInRadii);
+    // A point on the globe faces the camera when the angle between them is within the horizon.
+    float horizon = distanceInRadii > 1 ? 1 / distanceInRadii - HORIZON_MARGIN : -1;
+
+    // The previous arrays may still be in use by a mesh build, so always start new ones.
+    float[] selectedPositions = new float[budget * 3];
+    int[] selectedIds = new int[budget];
+    int selected = 0;
+    for (int i = 0; i < byPopulation.length && selected < budget; i++) {
+      int city = byPopulation[i];
+      if (filter != null && !filter.contains(city)) {
+        continue;
+      }
+      float x = positions[city * 3];
+      float y = positions[city * 3 + 1];
+      float z = positions[city * 3 + 2];
+      float facing = (x * dirX + y * dirY + z * dirZ) / globeRadius;
+      if (facing < horizon) {
+        continue;
+      }
+      selectedPositions[selected * 3] = x;
+      selectedPositions[selected * 3 + 1] = y;
+      selectedPositions[selected * 3 + 2] = z;
+      selectedIds[selected] = city;
+      selected++;
+    }
+
+    visiblePositions = selectedPositions;
+    visibleIds = selectedIds;
+    visibleCount = selected;
+  }
+
+  /** Interpolates the number of markers between the near and far distance on a log scale. */
+  private int budgetForDistance(float distanceInRadii) {
+    float t = (FAR_DISTANCE - distanceInRadii) / (FAR_DISTANCE - NEAR_DISTANCE);
+    t = Math.max(0, Math.min(1, t));
+    int budget = (int) (minVisible * Math.pow((double) maxVisible / minVisible, t));
+    return Math.min(Math.max(budget, minVisible), maxVisible);
+  }
+
+  /** Packed xyz positions of the selected cities. */
+  public float[] getVisiblePositions() {
+    return visiblePositions;
+  }
+
+  /** City index of each selected marker. */
+  public int[] getVisibleIds() {
+    return visibleIds;
+  }
+
+  public int getVisibleCount() {
+    return visibleCount;
+  }
+}
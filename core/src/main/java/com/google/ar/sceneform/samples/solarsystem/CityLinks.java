@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Chooses pairs of places to connect with arcs, returned as endpoints for {@link ArcMesh}: packed
+ * latitude and longitude of the start and then the end of each link, in degrees.
+ */
+public final class CityLinks {
+  private CityLinks() {}
+
+  /** Links every national capital to its {@code neighbours} nearest national capitals. */
+  public static float[] capitalRoutes(CityIndex cities, int neighbours) {
+    int[] capitals = new int[cities.size()];
+    int capitalCount = 0;
+    for (int city = 0; city < cities.size(); city++) {
+      if (cities.getCapital(city) == CityIndex.CAPITAL_PRIMARY) {
+        capitals[capitalCount++] = city;
+      }
+    }
+    float[] latitudes = new float[capitalCount];
+    float[] longitudes = new float[capitalCount];
+    for (int i = 0; i < capitalCount; i++) {
+      latitudes[i] = cities.getLatitude(capitals[i]);
+      longitudes[i] = cities.getLongitude(capitals[i]);
+    }
+    float[] positions = new float[capitalCount * 3];
+    new GeoProjection(1, 0).project(latitudes, longitudes, capitalCount, positions);
+    CitySpatialIndex index = CitySpatialIndex.build(positions, capitalCount);
+
+    // Each capital is its own nearest neighbour, and a pair found from both ends is drawn once.
+    int[] nearest = new int[neighbours + 1];
+    Set<Long> pairs = new HashSet<>();
+    float[] endpoints = new float[capitalCount * neighbours * 4];
+    int count = 0;
+    for (int i = 0; i < capitalCount; i++) {
+      float x = positions[i * 3];
+      float y = positions[i * 3 + 1];
+      float z = positions[i * 3 + 2];
+      int found = index.nearest(x, y, z, neighbours + 1, nearest);
+      for (int n = 0; n < found; n++) {
+        int j = nearest[n];
+        if (j == i || !pairs.add((long) Math.min(i, j) << 32 | Math.max(i, j))) {
+          continue;
+        }
+        endpoints[count * 4] = latitudes[i];
+        endpoints[count * 4 + 1] = longitudes[i];
+        endpoints[count * 4 + 2] = latitudes[j];
+        endpoints[count * 4 + 3] = longitudes[j];
+        count++;
+      }
+    }
+    return Arrays.copyOf(endpoints, count * 4);
+  }
+
+  /**
+   * Links each point to the nearest city within {@code maxAngleRadians} of it. Points with no city
+   * that close are left out.
+   *
+   * @param positions packed xyz positions of the points, relative to the centre of the globe
+   * @param projection the projection that placed the points
+   * @param citySpatialIndex index over the positions of every city in {@code cities}
+   */
+  public static float[] nearestCityLinks(
+      float[] positions,
+      int count,
+      GeoProjection projection,
+      CityIndex cities,
+      CitySpatialIndex citySpatialIndex,
+      float maxAngleRadians) {
+    float[] endpoints = new float[count * 4];
+    int links = 0;
+    for (int i = 0; i < count; i++) {
+      float x = positions[i * 3];
+      float y = positions[i * 3 + 1];
+      float z = positions[i * 3 + 2];
+      int city = citySpatialIndex.nearest(x, y, z, maxAngleRadians);
+      if (city == CitySpatialIndex.NOT_FOUND) {
+        continue;
+      }
+      projection.unproject(x, y, z, endpoints, links * 4);
+      endpoints[links * 4 + 2] = cities.getLatitude(city);
+      endpoints[links * 4 + 3] = cities.getLongitude(city);
+      links++;
+    }
+    return Arrays.copyOf(endpoints, links * 4);
+  }
+}
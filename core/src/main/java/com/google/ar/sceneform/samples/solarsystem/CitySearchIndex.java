@@ -0,0 +1,487 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Prefix search over the names, countries and admin regions of a {@link CityIndex}.
+ *
+ * <p>Every field is normalized (lower case, accents stripped, punctuation folded to spaces) and
+ * appended to one character array. The index is the start of every word in that text, sorted by
+ * the text that follows it up to the end of the field: a suffix array restricted to word starts.
+ * The entries matching a query prefix are then one contiguous range, found by binary search, so
+ * "york", "new y" and "united st" all match without a scan.
+ *
+ * <p>Results are ranked by population. A range maximum tree over the entries gives the most
+ * populous entry of any range, so the top k of a range are found by repeatedly splitting it around
+ * its maximum, in O(k log n) however many cities match. Queries that match fewer than k cities are
+ * topped up with fuzzy matches within one or two edits.
+ */
+public final class CitySearchIndex {
+  private static final char END_OF_FIELD = '\0';
+  // Fuzzy matching only starts once a query says enough to be worth correcting.
+  private static final int MIN_FUZZY_LENGTH = 3;
+  private static final int LONG_QUERY_LENGTH = 6;
+
+  private final CityIndex cities;
+  private final char[] text;
+  // Word starts in text, in suffix order, and the city and rank of each.
+  private final int[] entries;
+  private final int[] entryCities;
+  private final int[] entryRanks;
+  // Implicit range maximum tree: leaves at [size, 2 * size), each node the best entry below it.
+  private final int[] rangeBest;
+  private final int size;
+
+  // Scratch state, reused between calls. Queries are not thread safe.
+  private int[] heapEntries = new int[16];
+  private int[] heapLows = new int[16];
+  private int[] heapHighs = new int[16];
+  private int heapSize;
+  private int[] fuzzyCities = new int[0];
+  private int[] fuzzyDistances = new int[0];
+  private int[] fuzzyRanks = new int[0];
+  // Edit distance table, one column of query length + 1 costs per character of text.
+  private int[] editColumns = new int[0];
+  private int[] bestAtDepth = new int[0];
+
+  private CitySearchIndex(
+      CityIndex cities, char[] text, int[] entries, int[] entryCities, int[] entryRanks) {
+    this.cities = cities;
+    this.text = text;
+    this.entries = entries;
+    this.entryCities = entryCities;
+    this.entryRanks = entryRanks;
+    this.size = entries.length;
+    this.rangeBest = new int[Math.max(2 * size, 1)];
+    for (int i = 0; i < size; i++) {
+      rangeBest[size + i] = i;
+    }
+    for (int node = size - 1; node > 0; node--) {
+      rangeBest[node] = better(rangeBest[2 * node], rangeBest[2 * node + 1]);
+    }
+  }
+
+  /** Indexes the name, ASCII name, admin region and country of every city. */
+  public static CitySearchIndex build(CityIndex cities) {
+    StringBuilder text = new StringBuilder(cities.size() * 40);
+    // Start of every field in text, and its city.
+    int[] fieldStarts = new int[cities.size() * 4];
+    int[] fieldCities = new int[fieldStarts.length];
+    int fieldCount = 0;
+    for (int city = 0; city < cities.size(); city++) {
+      String name = normalize(cities.getName(city));
+      String asciiName = normalize(cities.getAsciiName(city));
+      String[] fields = {
+        name, asciiName.equals(name) ? "" : asciiName,
+        normalize(cities.getAdminName(city)), normalize(cities.getCountry(city))
+      };
+      for (String field : fields) {
+        if (field.isEmpty()) {
+          continue;
+        }
+        fieldStarts[fieldCount] = text.length();
+        fieldCities[fieldCount++] = city;
+        text.append(field).append(END_OF_FIELD);
+      }
+    }
+
+    char[] chars = new char[text.length()];
+    text.getChars(0, chars.length, chars, 0);
+    int wordCount = 0;
+    for (char c : chars) {
+      if (c == ' ') {
+        wordCount++;
+      }
+    }
+    Integer[] words = new Integer[fieldCount + wordCount];
+    int[] wordCities = new int[chars.length];
+    int count = 0;
+    for (int field = 0; field < fieldCount; field++) {
+      int start = fieldStarts[field];
+      for (int i = start; chars[i] != END_OF_FIELD; i++) {
+        if (i == start || chars[i - 1] == ' ') {
+          words[count++] = i;
+          wordCities[i] = fieldCities[field];
+        }
+      }
+    }
+    Arrays.sort(words, 0, count, (a, b) -> compareSuffixes(chars, a, b));
+
+    int[] entries = new int[count];
+    int[] entryCities = new int[count];
+    int[] entryRanks = new int[count];
+    for (int i = 0; i < count; i++) {
+      entries[i] = words[i];
+      entryCities[i] = wordCities[entries[i]];
+      entryRanks[i] = Math.max(cities.getPopulation(entryCities[i]), 0);
+    }
+    return new CitySearchIndex(cities, chars, entries, entryCities, entryRanks);
+  }
+
+  /** Folds text the way both the index and queries see it. */
+  static String normalize(String value) {
+    // Most names are plain ASCII and have nothing to decompose.
+    String decomposed =
+        isAscii(value) ? value : Normalizer.normalize(value, Normalizer.Form.NFD);
+    StringBuilder normalized = new StringBuilder(decomposed.length());
+    boolean pendingSpace = false;
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.getType(c) == Character.NON_SPACING_MARK) {
+        continue;
+      }
+      if (Character.isLetterOrDigit(c)) {
+        if (pendingSpace && normalized.length() > 0) {
+          normalized.append(' ');
+        }
+        pendingSpace = false;
+        normalized.append(c);
+      } else {
+        pendingSpace = true;
+      }
+    }
+    return normalized.toString().toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean isAscii(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** The cities that search results refer to. */
+  public CityIndex getCities() {
+    return cities;
+  }
+
+  /** The number of words indexed. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Finds the most populous cities with a word starting with {@code query}, followed by near
+   * misses if there are fewer than {@code limit} of those.
+   *
+   * @param out receives up to {@code limit} city ids, best first
+   * @return the number of cities written to {@code out}
+   */
+  public int search(String query, int limit, int[] out) {
+    char[] normalized = normalize(query).toCharArray();
+    if (normalized.length == 0 || limit <= 0) {
+      return 0;
+    }
+    int lo = lowerBound(normalized, 0, normalized.length);
+    int hi = upperBound(normalized, 0, normalized.length, lo);
+    int count = topCities(lo, hi, limit, out);
+    if (count < limit && normalized.length >= MIN_FUZZY_LENGTH) {
+      count = addFuzzyMatches(normalized, limit, out, count);
+    }
+    return count;
+  }
+
+  /** Writes the distinct cities of the entries in [lo, hi) to {@code out}, most populous first. */
+  private int topCities(int lo, int hi, int limit, int[] out) {
+    int count = 0;
+    heapSize = 0;
+    pushRange(lo, hi);
+    while (heapSize > 0 && count < limit) {
+      int entry = heapEntries[0];
+      int rangeLo = heapLows[0];
+      int rangeHi = heapHighs[0];
+      popRange();
+      int city = entryCities[entry];
+      if (!contains(out, count, city)) {
+        out[count++] = city;
+      }
+      pushRange(rangeLo, entry);
+      pushRange(entry + 1, rangeHi);
+    }
+    return count;
+  }
+
+  /**
+   * Appends the cities with a word within one edit of the query, or two for longer queries, ranked
+   * by edit distance and then population. Only words sharing the query's first letter are checked.
+   *
+   * <p>The entries are walked in order as if they were a trie: the edit distance table is built one
+   * text character at a time, so the rows for a prefix shared with the previous entry are reused,
+   * and once a prefix is beyond reach every entry starting with it is skipped with a binary search.
+   */
+  private int addFuzzyMatches(char[] query, int limit, int[] out, int count) {
+    int maxEdits = query.length >= LONG_QUERY_LENGTH ? 2 : 1;
+    int wanted = limit - count;
+    if (fuzzyCities.length < wanted) {
+      fuzzyCities = new int[wanted];
+      fuzzyDistances = new int[wanted];
+      fuzzyRanks = new int[wanted];
+    }
+    int maxDepth = query.length + maxEdits;
+    int columnLength = query.length + 1;
+    if (editColumns.length < (maxDepth + 1) * columnLength) {
+      editColumns = new int[(maxDepth + 1) * columnLength];
+      bestAtDepth = new int[maxDepth + 1];
+    }
+    // Column 0 is the cost of matching the query against no text at all.
+    for (int i = 0; i < columnLength; i++) {
+      editColumns[i] = i;
+    }
+    bestAtDepth[0] = query.length;
+
+    int found = 0;
+    int lo = lowerBound(query, 0, 1);
+    int hi = upperBound(query, 0, 1, lo);
+    // Depth up to which the columns hold the previous entry's text.
+    int validDepth = 0;
+    int previousStart = 0;
+    int entry = lo;
+    while (entry < hi) {
+      int start = entries[entry];
+      int depth = 0;
+      while (depth < validDepth && text[start + depth] == text[previousStart + depth]) {
+        depth++;
+      }
+      boolean pruned = false;
+      while (depth < maxDepth && text[start + depth] != END_OF_FIELD) {
+        if (extendEditColumn(query, depth, text[start + depth]) > maxEdits) {
+          pruned = true;
+          break;
+        }
+        depth++;
+      }
+      validDepth = depth;
+      previousStart = start;
+      int distance = bestAtDepth[depth];
+      if (pruned && distance > maxEdits) {
+        // No entry sharing the first depth + 1 characters can come within reach.
+        entry = upperBound(text, start, depth + 1, entry + 1);
+        continue;
+      }
+
+      int city = entryCities[entry];
+      // Exact matches were already offered by the prefix search.
+      if (distance > 0 && distance <= maxEdits && !contains(out, count, city)) {
+        found = insertFuzzyMatch(city, distance, entryRanks[entry], found, wanted);
+      }
+      entry++;
+    }
+    System.arraycopy(fuzzyCities, 0, out, count, found);
+    return count + found;
+  }
+
+  /**
+   * Fills the edit distance column for text depth {@code depth + 1} from the one before it.
+   *
+   * @return the smallest cost in the new column, a lower bound for every longer text
+   */
+  private int extendEditColumn(char[] query, int depth, char c) {
+    int columnLength = query.length + 1;
+    int previous = depth * columnLength;
+    int current = previous + columnLength;
+    editColumns[current] = depth + 1;
+    int columnMin = depth + 1;
+    for (int i = 1; i < columnLength; i++) {
+      int substitution = editColumns[previous + i - 1] + (query[i - 1] == c ? 0 : 1);
+      int gap = Math.min(editColumns[previous + i], editColumns[current + i - 1]) + 1;
+      int cost = Math.min(substitution, gap);
+      editColumns[current + i] = cost;
+      columnMin = Math.min(columnMin, cost);
+    }
+    bestAtDepth[depth + 1] = Math.min(bestAtDepth[depth], editColumns[current + query.length]);
+    return columnMin;
+  }
+
+  /** Keeps the best {@code wanted} fuzzy matches, ordered by distance and then population. */
+  private int insertFuzzyMatch(int city, int distance, int rank, int found, int wanted) {
+    for (int i = 0; i < found; i++) {
+      if (fuzzyCities[i] == city) {
+        if (distance >= fuzzyDistances[i]) {
+          return found;
+        }
+        // A closer word for a city already listed, take out its old slot.
+        found--;
+        System.arraycopy(fuzzyCities, i + 1, fuzzyCities, i, found - i);
+        System.arraycopy(fuzzyDistances, i + 1, fuzzyDistances, i, found - i);
+        System.arraycopy(fuzzyRanks, i + 1, fuzzyRanks, i, found - i);
+        break;
+      }
+    }
+    int slot = found;
+    while (slot > 0
+        && (fuzzyDistances[slot - 1] > distance
+            || (fuzzyDistances[slot - 1] == distance && fuzzyRanks[slot - 1] < rank))) {
+      slot--;
+    }
+    if (slot >= wanted) {
+      return found;
+    }
+    int moved = Math.min(found, wanted - 1) - slot;
+    System.arraycopy(fuzzyCities, slot, fuzzyCities, slot + 1, moved);
+    System.arraycopy(fuzzyDistances, slot, fuzzyDistances, slot + 1, moved);
+    System.arraycopy(fuzzyRanks, slot, fuzzyRanks, slot + 1, moved);
+    fuzzyCities[slot] = city;
+    fuzzyDistances[slot] = distance;
+    fuzzyRanks[slot] = rank;
+    return Math.min(found + 1, wanted);
+  }
+
+  /** The first entry whose text is not before {@code length} characters of source from offset. */
+  private int lowerBound(char[] source, int offset, int length) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (comparePrefix(entries[mid], source, offset, length) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** The first entry from {@code lo} on whose text does not start with those characters. */
+  private int upperBound(char[] source, int offset, int length, int lo) {
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (comparePrefix(entries[mid], source, offset, length) <= 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** Compares the text at {@code start} with a prefix, treating texts it prefixes as equal. */
+  private int comparePrefix(int start, char[] source, int offset, int length) {
+    for (int i = 0; i < length; i++) {
+      char c = text[start + i];
+      char p = source[offset + i];
+      if (c != p) {
+        // END_OF_FIELD sorts before every character, so shorter words come first.
+        return c < p ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private static int compareSuffixes(char[] text, int a, int b) {
+    while (true) {
+      char ca = text[a++];
+      char cb = text[b++];
+      if (ca != cb) {
+        return ca < cb ? -1 : 1;
+      }
+      if (ca == END_OF_FIELD) {
+        return 0;
+      }
+    }
+  }
+
+  /** The more populous of two entries, preferring the first. */
+  private int better(int a, int b) {
+    return entryRanks[b] > entryRanks[a] ? b : a;
+  }
+
+  /** The most populous entry in [lo, hi), which must not be empty. */
+  private int rangeMaximum(int lo, int hi) {
+    int best = lo;
+    for (lo += size, hi += size; lo < hi; lo >>= 1, hi >>= 1) {
+      if ((lo & 1) == 1) {
+        best = better(best, rangeBest[lo++]);
+      }
+      if ((hi & 1) == 1) {
+        best = better(best, rangeBest[--hi]);
+      }
+    }
+    return best;
+  }
+
+  /** Adds a range to the max heap, keyed by its most populous entry. */
+  private void pushRange(int lo, int hi) {
+    if (lo >= hi) {
+      return;
+    }
+    if (heapSize == heapEntries.length) {
+      heapEntries = Arrays.copyOf(heapEntries, heapSize * 2);
+      heapLows = Arrays.copyOf(heapLows, heapSize * 2);
+      heapHighs = Arrays.copyOf(heapHighs, heapSize * 2);
+    }
+    int entry = rangeMaximum(lo, hi);
+    int slot = heapSize++;
+    while (slot > 0) {
+      int parent = (slot - 1) / 2;
+      if (entryRanks[heapEntries[parent]] >= entryRanks[entry]) {
+        break;
+      }
+      moveHeapSlot(parent, slot);
+      slot = parent;
+    }
+    heapEntries[slot] = entry;
+    heapLows[slot] = lo;
+    heapHighs[slot] = hi;
+  }
+
+  private void popRange() {
+    heapSize--;
+    int entry = heapEntries[heapSize];
+    int lo = heapLows[heapSize];
+    int hi = heapHighs[heapSize];
+    int slot = 0;
+    while (true) {
+      int child = slot * 2 + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize
+          && entryRanks[heapEntries[child + 1]] > entryRanks[heapEntries[child]]) {
+        child++;
+      }
+      if (entryRanks[heapEntries[child]] <= entryRanks[entry]) {
+        break;
+      }
+      moveHeapSlot(child, slot);
+      slot = child;
+    }
+    heapEntries[slot] = entry;
+    heapLows[slot] = lo;
+    heapHighs[slot] = hi;
+  }
+
+  private void moveHeapSlot(int from, int to) {
+    heapEntries[to] = heapEntries[from];
+    heapLows[to] = heapLows[from];
+    heapHighs[to] = heapHighs[from];
+  }
+
+  private static boolean contains(int[] values, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
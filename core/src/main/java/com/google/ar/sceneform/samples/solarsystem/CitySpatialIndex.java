@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Static k-d tree over the directions of points on a sphere.
+ *
+ * <p>Points are normalized onto the unit sphere, where the straight-line (chord) distance between
+ * two points grows monotonically with the angle between them. Nearest neighbour searches in 3D
+ * therefore answer geodesic queries directly, in O(log n) for well spread data.
+ *
+ * <p>The tree is implicit: after building, the point in the middle of every range is the splitting
+ * node of that range, so it needs no node objects and is stored as plain arrays.
+ */
+public final class CitySpatialIndex {
+  public static final int NOT_FOUND = -1;
+
+  private final int size;
+  // Coordinates in tree order.
+  private final float[] xs;
+  private final float[] ys;
+  private final float[] zs;
+  // Original point index for each tree slot.
+  private final int[] ids;
+
+  // Scratch state for k-nearest queries, reused between calls. Queries are not thread safe.
+  private float[] heapDistances = new float[0];
+  private int[] heapIds = new int[0];
+  private int heapSize;
+  private float bestDistance;
+  private int bestId;
+
+  private CitySpatialIndex(int size) {
+    this.size = size;
+    this.xs = new float[size];
+    this.ys = new float[size];
+    this.zs = new float[size];
+    this.ids = new int[size];
+  }
+
+  /**
+   * Builds an index over {@code count} points.
+   *
+   * @param positions packed xyz positions, relative to the centre of the sphere
+   */
+  public static CitySpatialIndex build(float[] positions, int count) {
+    CitySpatialIndex index = new CitySpatialIndex(count);
+    for (int i = 0; i < count; i++) {
+      float x = positions[i * 3];
+      float y = positions[i * 3 + 1];
+      float z = positions[i * 3 + 2];
+      float length = (float) Math.sqrt(x * x + y * y + z * z);
+      float scale = length > 0 ? 1 / length : 0;
+      index.xs[i] = x * scale;
+      index.ys[i] = y * scale;
+      index.zs[i] = z * scale;
+      index.ids[i] = i;
+    }
+    index.buildRange(0, count, 0);
+    return index;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void buildRange(int lo, int hi, int axis) {
+    if (hi - lo <= 1) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, axis);
+    int nextAxis = (axis + 1) % 3;
+    buildRange(lo, mid, nextAxis);
+    buildRange(mid + 1, hi, nextAxis);
+  }
+
+  /** Quickselect: partially sorts [left, right] so that slot k holds the median along axis. */
+  private void select(int left, int right, int k, int axis) {
+    while (right > left) {
+      float pivot = coordinate(axis, (left + right) >>> 1);
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (coordinate(axis, i) < pivot) {
+          i++;
+        }
+        while (coordinate(axis, j) > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i, j);
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private float coordinate(int axis, int slot) {
+    switch (axis) {
+      case 0:
+        return xs[slot];
+      case 1:
+        return ys[slot];
+      default:
+        return zs[slot];
+    }
+  }
+
+  private void swap(int a, int b) {
+    float x = xs[a];
+    xs[a] = xs[b];
+    xs[b] = x;
+    float y = ys[a];
+    ys[a] = ys[b];
+    ys[b] = y;
+    float z = zs[a];
+    zs[a] = zs[b];
+    zs[b] = z;
+    int id = ids[a];
+    ids[a] = ids[b];
+    ids[b] = id;
+  }
+
+  /**
+   * Returns the point nearest to where a ray enters the unit sphere, or {@link #NOT_FOUND} if the
+   * ray misses the sphere or nothing is within {@code maxAngleRadians} of the hit.
+   *
+   * @param ox ray origin, in units of the sphere's radius
+   * @param dx ray direction, which must be normalized
+   */
+  public int nearestToRay(
+      float ox, float oy, float oz, float dx, float dy, float dz, float maxAngleRadians) {
+    // Solve |o + t * d| = 1 for the nearest t.
+    float b = ox * dx + oy * dy + oz * dz;
+    float c = ox * ox + oy * oy + oz * oz - 1;
+    float discriminant = b * b - c;
+    if (discriminant < 0) {
+      return NOT_FOUND;
+    }
+    float t = -b - (float) Math.sqrt(discriminant);
+    if (t < 0) {
+      return NOT_FOUND;
+    }
+    return nearest(ox + t * dx, oy + t * dy, oz + t * dz, maxAngleRadians);
+  }
+
+  /**
+   * Returns the point closest in angle to the direction (x, y, z), or {@link #NOT_FOUND} if none is
+   * within {@code maxAngleRadians}.
+   */
+  public int nearest(float x, float y, float z, float maxAngleRadians) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (size == 0 || length == 0) {
+      return NOT_FOUND;
+    }
+    float chord = chordForAngle(maxAngleRadians);
+    bestDistance = chord * chord;
+    bestId = NOT_FOUND;
+    searchNearest(0, size, 0, x / length, y / length, z / length);
+    return bestId;
+  }
+
+  private void searchNearest(int lo, int hi, int axis, float x, float y, float z) {
+    if (lo >= hi) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    float distance = distanceSquared(mid, x, y, z);
+    if (distance < bestDistance) {
+      bestDistance = distance;
+      bestId = ids[mid];
+    }
+
+    float delta = axisDelta(axis, mid, x, y, z);
+    int nextAxis = (axis + 1) % 3;
+    if (delta < 0) {
+      searchNearest(lo, mid, nextAxis, x, y, z);
+      if (delta * delta < bestDistance) {
+        searchNearest(mid + 1, hi, nextAxis, x, y, z);
+      }
+    } else {
+      searchNearest(mid + 1, hi, nextAxis, x, y, z);
+      if (delta * delta < bestDistance) {
+        searchNearest(lo, mid, nextAxis, x, y, z);
+      }
+    }
+  }
+
+  /**
+   * Finds the {@code k} points closest in angle to the direction (x, y, z).
+   *
+   * @param out receives the point indices, nearest first; must hold at least {@code k} entries
+   * @return the number of points written to {@code out}
+   */
+  public int nearest(float x, float y, float z, int k, int[] out) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (size == 0 || length == 0 || k <= 0) {
+      return 0;
+    }
+    if (heapIds.length < k) {
+      heapIds = new int[k];
+      heapDistances = new float[k];
+    }
+    heapSize = 0;
+    searchKNearest(0, size, 0, x / length, y / length, z / length, k);
+
+    // Pop the max-heap from the back so the output ends up nearest first.
+    int count = heapSize;
+    for (int i = count - 1; i >= 0; i--) {
+      out[i] = heapIds[0];
+      heapIds[0] = heapIds[heapSize - 1];
+      heapDistances[0] = heapDistances[heapSize - 1];
+      heapSize--;
+      siftDown(0);
+    }
+    return count;
+  }
+
+  private void searchKNearest(int lo, int hi, int axis, float x, float y, float z, int k) {
+    if (lo >= hi) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    float distance = distanceSquared(mid, x, y, z);
+    if (heapSize < k) {
+      heapIds[heapSize] = ids[mid];
+      heapDistances[heapSize] = distance;
+      heapSize++;
+      siftUp(heapSize - 1);
+    } else if (distance < heapDistances[0]) {
+      heapIds[0] = ids[mid];
+      heapDistances[0] = distance;
+      siftDown(0);
+    }
+
+    float delta = axisDelta(axis, mid, x, y, z);
+    int nextAxis = (axis + 1) % 3;
+    int nearLo = delta < 0 ? lo : mid + 1;
+    int nearHi = delta < 0 ? mid : hi;
+    int farLo = delta < 0 ? mid + 1 : lo;
+    int farHi = delta < 0 ? hi : mid;
+    searchKNearest(nearLo, nearHi, nextAxis, x, y, z, k);
+    if (heapSize < k || delta * delta < heapDistances[0]) {
+      searchKNearest(farLo, farHi, nextAxis, x, y, z, k);
+    }
+  }
+
+  private void siftUp(int slot) {
+    while (slot > 0) {
+      int parent = (slot - 1) / 2;
+      if (heapDistances[parent] >= heapDistances[slot]) {
+        return;
+      }
+      swapHeap(parent, slot);
+      slot = parent;
+    }
+  }
+
+  private void siftDown(int slot) {
+    while (true) {
+      int largest = slot;
+      int left = slot * 2 + 1;
+      int right = left + 1;
+      if (left < heapSize && heapDistances[left] > heapDistances[largest]) {
+        largest = left;
+      }
+      if (right < heapSize && heapDistances[right] > heapDistances[largest]) {
+        largest = right;
+      }
+      if (largest == slot) {
+        return;
+      }
+      swapHeap(largest, slot);
+      slot = largest;
+    }
+  }
+
+  private void swapHeap(int a, int b) {
+    float distance = heapDistances[a];
+    heapDistances[a] = heapDistances[b];
+    heapDistances[b] = distance;
+    int id = heapIds[a];
+    heapIds[a] = heapIds[b];
+    heapIds[b] = id;
+  }
+
+  /**
+   * Finds every point within {@code angleRadians} of the direction (x, y, z).
+   *
+   * @param out receives the point indices in no particular order
+   * @return the number of matching points, which may exceed the length of {@code out}; only the
+   *     first {@code out.length} are written
+   */
+  public int withinAngle(float x, float y, float z, float angleRadians, int[] out) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (size == 0 || length == 0) {
+      return 0;
+    }
+    float chord = chordForAngle(angleRadians);
+    return searchWithin(0, size, 0, x / length, y / length, z / length, chord * chord, out, 0);
+  }
+
+  private int searchWithin(
+      int lo, int hi, int axis, float x, float y, float z, float radiusSquared, int[] out,
+      int found) {
+    if (lo >= hi) {
+      return found;
+    }
+    int mid = (lo + hi) >>> 1;
+    if (distanceSquared(mid, x, y, z) <= radiusSquared) {
+      if (found < out.length) {
+        out[found] = ids[mid];
+      }
+      found++;
+    }
+
+    float delta = axisDelta(axis, mid, x, y, z);
+    int nextAxis = (axis + 1) % 3;
+    if (delta < 0 || delta * delta <= radiusSquared) {
+      found = searchWithin(lo, mid, nextAxis, x, y, z, radiusSquared, out, found);
+    }
+    if (delta >= 0 || delta * delta <= radiusSquared) {
+      found = searchWithin(mid + 1, hi, nextAxis, x, y, z, radiusSquared, out, found);
+    }
+    return found;
+  }
+
+  private float distanceSquared(int slot, float x, float y, float z) {
+    float dx = xs[slot] - x;
+    float dy = ys[slot] - y;
+    float dz = zs[slot] - z;
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  /** Signed distance of the query from the splitting plane of a node, negative on the low side. */
+  private float axisDelta(int axis, int slot, float x, float y, float z) {
+    switch (axis) {
+      case 0:
+        return x - xs[slot];
+      case 1:
+        return y - ys[slot];
+      default:
+        return z - zs[slot];
+    }
+  }
+
+  /** Straight-line distance between two unit vectors separated by the given angle. */
+  private static float chordForAngle(float angleRadians) {
+    if (angleRadians >= Math.PI) {
+      return 2;
+    }
+    return (float) (2 * Math.sin(angleRadians / 2));
+  }
+}
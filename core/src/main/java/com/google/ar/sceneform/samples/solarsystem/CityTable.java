@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Every city on the globe as parallel primitive columns: the {@link CityIndex} columns of latitude,
+ * longitude, population and string ids, plus where each city sits relative to the centre of the
+ * globe.
+ *
+ * <p>A city is just a row number. Nothing is allocated per city, so the whole dataset costs a few
+ * arrays however many rows it has. Scene nodes are only created for the few cities the user
+ * interacts with.
+ */
+public final class CityTable {
+  private final CityIndex index;
+  private final float[] positions;
+  private final double[] populationWeights;
+
+  private CityTable(CityIndex index, float[] positions, double[] populationWeights) {
+    this.index = index;
+    this.positions = positions;
+    this.populationWeights = populationWeights;
+  }
+
+  /** Places every city of {@code index} on the globe described by {@code projection}. */
+  public static CityTable build(CityIndex index, GeoProjection projection) {
+    int size = index.size();
+    float[] positions = new float[size * 3];
+    projection.project(index.getLatitudes(), index.getLongitudes(), size, positions);
+    double[] populationWeights = new double[size];
+    int[] population = index.getPopulations();
+    for (int i = 0; i < size; i++) {
+      populationWeights[i] = Math.max(population[i], 0);
+    }
+    return new CityTable(index, positions, populationWeights);
+  }
+
+  public CityIndex getIndex() {
+    return index;
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  /** The whole latitude column, which callers must not modify. */
+  public float[] getLatitudes() {
+    return index.getLatitudes();
+  }
+
+  /** The whole longitude column, which callers must not modify. */
+  public float[] getLongitudes() {
+    return index.getLongitudes();
+  }
+
+  /**
+   * Position of every city relative to the centre of the globe, packed as xyz, which callers must
+   * not modify.
+   */
+  public float[] getPositions() {
+    return positions;
+  }
+
+  public float getX(int city) {
+    return positions[city * 3];
+  }
+
+  public float getY(int city) {
+    return positions[city * 3 + 1];
+  }
+
+  public float getZ(int city) {
+    return positions[city * 3 + 2];
+  }
+
+  /** The whole population column, negative where unknown, which callers must not modify. */
+  public int[] getPopulations() {
+    return index.getPopulations();
+  }
+
+  /** Population as a weight for each city, zero where unknown. Callers must not modify it. */
+  public double[] getPopulationWeights() {
+    return populationWeights;
+  }
+
+  /** Returns the population, or {@link CityIndex#UNKNOWN_POPULATION} if the dataset has none. */
+  public int getPopulation(int city) {
+    return index.getPopulation(city);
+  }
+
+  public String getName(int city) {
+    return index.getName(city);
+  }
+
+  /** Bytes held by the columns, see {@link CityIndex#getSizeBytes()}. */
+  public long getSizeBytes() {
+    return index.getSizeBytes() + 4L * positions.length + 8L * populationWeights.length;
+  }
+}
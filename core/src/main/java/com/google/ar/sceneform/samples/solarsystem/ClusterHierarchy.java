@@ -0,0 +1,331 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Multi-level clusters of points on a sphere.
+ *
+ * <p>The sphere is covered by the six faces of a cube, and each face by a quadtree. Every point
+ * gets the key of its cell at the finest depth, and the key of any coarser cell is a prefix of it,
+ * so after one sort each level is built by merging runs of equal prefixes of the level below.
+ * Points with the same coordinates always share a leaf, however many rows repeat them.
+ *
+ * <p>Levels are {@link #DEPTH_STEP} quadtree depths apart, so a cluster has at most 16 children.
+ * Each cluster carries its point count, summed weight and the normalized mean direction of its
+ * points. Clusters of all levels are stored in flat arrays, level 0 first; the children of a
+ * cluster are contiguous, as are the points under a leaf.
+ */
+public final class ClusterHierarchy {
+  // Quadtree depth of the leaves, about 600m across.
+  private static final int MAX_DEPTH = 14;
+  private static final int DEPTH_STEP = 2;
+  private static final int LEVEL_COUNT = MAX_DEPTH / DEPTH_STEP + 1;
+
+  private final int[] levelStart = new int[LEVEL_COUNT + 1];
+  private final int[] counts;
+  private final double[] weights;
+  // Unit mean direction of each cluster, packed as xyz.
+  private final float[] directions;
+  // For leaves, the first point in pointOrder; for the rest, the first child.
+  private final int[] firstChild;
+  private final int[] childCount;
+  // Point indices sorted by leaf.
+  private final int[] pointOrder;
+
+  private ClusterHierarchy(int clusterCount, int[] pointOrder) {
+    this.counts = new int[clusterCount];
+    this.weights = new double[clusterCount];
+    this.directions = new float[clusterCount * 3];
+    this.firstChild = new int[clusterCount];
+    this.childCount = new int[clusterCount];
+    this.pointOrder = pointOrder;
+  }
+
+  /**
+   * Clusters {@code count} points.
+   *
+   * @param positions packed xyz point positions relative to the centre of the sphere, of any radius
+   * @param weights weight of each point, summed per cluster
+   */
+  public static ClusterHierarchy build(float[] positions, double[] weights, int count) {
+    // (leaf key, point) pairs, sorted so that every cell is a contiguous run at every depth.
+    long[] sorted = new long[count];
+    for (int i = 0; i < count; i++) {
+      sorted[i] = (leafKey(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]) << 32) | i;
+    }
+    Arrays.sort(sorted);
+    int[] pointOrder = new int[count];
+    for (int i = 0; i < count; i++) {
+      pointOrder[i] = (int) sorted[i];
+    }
+
+    // Count the clusters of each level to size the arrays in one go.
+    int[] levelSizes = new int[LEVEL_COUNT];
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      int shift = 32 + 2 * (MAX_DEPTH - depthOf(level));
+      for (int i = 0; i < count; i++) {
+        if (i == 0 || (sorted[i] >>> shift) != (sorted[i - 1] >>> shift)) {
+          levelSizes[level]++;
+        }
+      }
+    }
+    int total = 0;
+    for (int size : levelSizes) {
+      total += size;
+    }
+
+    ClusterHierarchy hierarchy = new ClusterHierarchy(total, pointOrder);
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      hierarchy.levelStart[level + 1] = hierarchy.levelStart[level] + levelSizes[level];
+    }
+
+    // Leaves first, straight from the sorted points.
+    int leafLevel = LEVEL_COUNT - 1;
+    int leafShift = 32 + 2 * (MAX_DEPTH - depthOf(leafLevel));
+    int leaf = hierarchy.levelStart[leafLevel] - 1;
+    long[] leafKeys = new long[levelSizes[leafLevel]];
+    for (int i = 0; i < count; i++) {
+      long key = sorted[i] >>> leafShift;
+      if (i == 0 || key != (sorted[i - 1] >>> leafShift)) {
+        leaf++;
+        leafKeys[leaf - hierarchy.levelStart[leafLevel]] = key;
+        hierarchy.firstChild[leaf] = i;
+      }
+      int point = pointOrder[i];
+      hierarchy.add(leaf, positions, point, weights[point]);
+    }
+
+    // Then each level by merging the level below.
+    long[] childKeys = leafKeys;
+    for (int level = leafLevel - 1; level >= 0; level--) {
+      int childStart = hierarchy.levelStart[level + 1];
+      long[] keys = new long[levelSizes[level]];
+      int cluster = hierarchy.levelStart[level] - 1;
+      for (int i = 0; i < childKeys.length; i++) {
+        long key = childKeys[i] >>> (2 * DEPTH_STEP);
+        if (i == 0 || key != (childKeys[i - 1] >>> (2 * DEPTH_STEP))) {
+          cluster++;
+          keys[cluster - hierarchy.levelStart[level]] = key;
+          hierarchy.firstChild[cluster] = childStart + i;
+        }
+        hierarchy.merge(cluster, childStart + i);
+      }
+      childKeys = keys;
+    }
+
+    for (int cluster = 0; cluster < total; cluster++) {
+      hierarchy.normalize(cluster);
+    }
+    return hierarchy;
+  }
+
+  private void add(int cluster, float[] positions, int point, double weight) {
+    float x = positions[point * 3];
+    float y = positions[point * 3 + 1];
+    float z = positions[point * 3 + 2];
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (length > 0) {
+      directions[cluster * 3] += x / length;
+      directions[cluster * 3 + 1] += y / length;
+      directions[cluster * 3 + 2] += z / length;
+    }
+    counts[cluster]++;
+    weights[cluster] += weight;
+    childCount[cluster]++;
+  }
+
+  /** Adds a child's totals, before either is normalized. */
+  private void merge(int cluster, int child) {
+    directions[cluster * 3] += directions[child * 3];
+    directions[cluster * 3 + 1] += directions[child * 3 + 1];
+    directions[cluster * 3 + 2] += directions[child * 3 + 2];
+    counts[cluster] += counts[child];
+    weights[cluster] += weights[child];
+    childCount[cluster]++;
+  }
+
+  private void normalize(int cluster) {
+    float x = directions[cluster * 3];
+    float y = directions[cluster * 3 + 1];
+    float z = directions[cluster * 3 + 2];
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (length > 0) {
+      directions[cluster * 3] = x / length;
+      directions[cluster * 3 + 1] = y / length;
+      directions[cluster * 3 + 2] = z / length;
+    }
+  }
+
+  /** Cube face in the top 3 bits, then the interleaved cell coordinates at the finest depth. */
+  private static long leafKey(float x, float y, float z) {
+    float ax = Math.abs(x);
+    float ay = Math.abs(y);
+    float az = Math.abs(z);
+    int face;
+    float u;
+    float v;
+    float major;
+    if (ax >= ay && ax >= az) {
+      face = x >= 0 ? 0 : 1;
+      major = ax;
+      u = y;
+      v = z;
+    } else if (ay >= az) {
+      face = y >= 0 ? 2 : 3;
+      major = ay;
+      u = x;
+      v = z;
+    } else {
+      face = z >= 0 ? 4 : 5;
+      major = az;
+      u = x;
+      v = y;
+    }
+    if (major == 0) {
+      return 0;
+    }
+    int cells = 1 << MAX_DEPTH;
+    return ((long) face << (2 * MAX_DEPTH))
+        | interleave(cellOf(u / major, cells), cellOf(v / major, cells));
+  }
+
+  /** Maps a face coordinate in [-1, 1] to a cell, warped so cells cover similar angles. */
+  private static int cellOf(float coordinate, int cells) {
+    double warped = Math.atan(coordinate) * (4 / Math.PI);
+    int cell = (int) ((warped + 1) * 0.5 * cells);
+    return Math.min(Math.max(cell, 0), cells - 1);
+  }
+
+  private static long interleave(int u, int v) {
+    long key = 0;
+    for (int bit = 0; bit < MAX_DEPTH; bit++) {
+      key |= ((long) ((u >>> bit) & 1) << (2 * bit + 1)) | ((long) ((v >>> bit) & 1) << (2 * bit));
+    }
+    return key;
+  }
+
+  private static int depthOf(int level) {
+    return level * DEPTH_STEP;
+  }
+
+  public int getLevelCount() {
+    return LEVEL_COUNT;
+  }
+
+  /** Index of the first cluster of {@code level}, 0 being the coarsest. */
+  public int getLevelStart(int level) {
+    return levelStart[level];
+  }
+
+  /** Number of clusters of all levels. */
+  public int getClusterCount() {
+    return levelStart[LEVEL_COUNT];
+  }
+
+  public boolean isLeaf(int cluster) {
+    return cluster >= levelStart[LEVEL_COUNT - 1];
+  }
+
+  /** Approximate angle, in radians, spanned by the cell of a cluster of {@code level}. */
+  public static float getCellAngle(int level) {
+    return (float) (Math.PI / 2 / (1 << depthOf(level)));
+  }
+
+  public int getCount(int cluster) {
+    return counts[cluster];
+  }
+
+  public double getWeight(int cluster) {
+    return weights[cluster];
+  }
+
+  /** Packed unit xyz mean direction of each cluster. */
+  public float[] getDirections() {
+    return directions;
+  }
+
+  /** First child of a cluster that is not a leaf. */
+  public int getFirstChild(int cluster) {
+    return firstChild[cluster];
+  }
+
+  /** Number of children, or of points for a leaf. */
+  public int getChildCount(int cluster) {
+    return childCount[cluster];
+  }
+
+  /**
+   * Sums a value per point over every cluster, such as a weight other than the one the hierarchy
+   * was built with.
+   *
+   * @param values one value per point clustered, in the order they were given to {@link #build}
+   * @return the sum of each cluster, indexed like the clusters
+   */
+  public double[] sum(double[] values) {
+    int leafStart = levelStart[LEVEL_COUNT - 1];
+    double[] sums = new double[getClusterCount()];
+    for (int leaf = leafStart; leaf < sums.length; leaf++) {
+      int end = firstChild[leaf] + childCount[leaf];
+      for (int i = firstChild[leaf]; i < end; i++) {
+        sums[leaf] += values[pointOrder[i]];
+      }
+    }
+    // Children always come after their parent, so going backwards sums each level in one pass.
+    for (int cluster = leafStart - 1; cluster >= 0; cluster--) {
+      int end = firstChild[cluster] + childCount[cluster];
+      for (int child = firstChild[cluster]; child < end; child++) {
+        sums[cluster] += sums[child];
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * Counts the points of every cluster that are in {@code points}, such as the rows matching a
+   * filter.
+   *
+   * @return the count of each cluster, indexed like the clusters
+   */
+  public int[] count(RowSet points) {
+    int leafStart = levelStart[LEVEL_COUNT - 1];
+    int[] counts = new int[getClusterCount()];
+    for (int leaf = leafStart; leaf < counts.length; leaf++) {
+      int end = firstChild[leaf] + childCount[leaf];
+      for (int i = firstChild[leaf]; i < end; i++) {
+        if (points.contains(pointOrder[i])) {
+          counts[leaf]++;
+        }
+      }
+    }
+    for (int cluster = leafStart - 1; cluster >= 0; cluster--) {
+      int end = firstChild[cluster] + childCount[cluster];
+      for (int child = firstChild[cluster]; child < end; child++) {
+        counts[cluster] += counts[child];
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Copies the indices of the points under a leaf into {@code out}, which must hold {@link
+   * #getChildCount(int)} of them.
+   */
+  public void getLeafPoints(int leaf, int[] out) {
+    System.arraycopy(pointOrder, firstChild[leaf], out, 0, childCount[leaf]);
+  }
+}
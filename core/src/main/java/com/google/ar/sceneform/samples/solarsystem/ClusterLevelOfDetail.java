@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Chooses which clusters of a {@link ClusterHierarchy} get a marker based on where the camera is.
+ *
+ * <p>Starting from the coarsest level, the cluster that looks largest from the camera is split into
+ * its children until every cluster looks small enough or the marker budget is used up. Clusters
+ * split as the camera gets closer, and the number of markers never exceeds the budget however
+ * large the dataset is. Clusters on the far side of the globe are skipped.
+ *
+ * <p>Like {@link CityLevelOfDetail}, selecting only runs again once the camera has moved or turned
+ * far enough for the clusters to noticeably change.
+ */
+public class ClusterLevelOfDetail {
+  // Clusters that span more than this angle, in radians, as seen from the camera are split.
+  private static final float SPLIT_ANGLE = 0.08f;
+
+  private static final float RESELECT_ANGLE_DEGREES = 5.0f;
+  private static final float RESELECT_DISTANCE_RATIO = 1.1f;
+  private static final float HORIZON_MARGIN = 0.05f;
+
+  private static final float MIN_MARKER_SCALE = 1.0f;
+  private static final float MAX_MARKER_SCALE = 3.0f;
+
+  private final ClusterHierarchy hierarchy;
+  private final float globeRadius;
+  private final float markerHalfSize;
+  private final int maxVisible;
+  // Points of each cluster that match the filter, or null if there is none.
+  private int[] filteredCounts;
+
+  private final float reselectCos = (float) Math.cos(Math.toRadians(RESELECT_ANGLE_DEGREES));
+  private boolean hasSelection;
+  private float lastDistance;
+  private float lastDirX;
+  private float lastDirY;
+  private float lastDirZ;
+
+  // Clusters waiting to be split or kept, as a max-heap on (apparent size, cluster).
+  private long[] heap = new long[16];
+  private int heapSize;
+
+  private float[] visiblePositions = new float[0];
+  private float[] visibleHalfSizes = new float[0];
+  private int[] visibleIds = new int[0];
+  private int visibleCount;
+
+  /**
+   * @param globeRadius radius at which the markers are placed
+   * @param markerHalfSize half size of a marker for a single point; larger clusters get up to
+   *     {@link #MAX_MARKER_SCALE} times that
+   * @param maxVisible marker budget
+   */
+  public ClusterLevelOfDetail(
+      ClusterHierarchy hierarchy, float globeRadius, float markerHalfSize, int maxVisible) {
+    this.hierarchy = hierarchy;
+    this.globeRadius = globeRadius;
+    this.markerHalfSize = markerHalfSize;
+    this.maxVisible = Math.max(hierarchy.getLevelStart(1), maxVisible);
+  }
+
+  public ClusterHierarchy getHierarchy() {
+    return hierarchy;
+  }
+
+  /**
+   * Restricts the markers to the clusters with points in {@code points}, each sized by how many it
+   * has, or lifts the restriction if null. The selection is redone on the next {@link #update},
+   * wherever the camera is.
+   */
+  public void setFilter(RowSet points) {
+    filteredCounts = points != null ? hierarchy.count(points) : null;
+    hasSelection = false;
+  }
+
+  /**
+   * Updates the selection for a camera at (x, y, z) relative to the centre of the globe.
+   *
+   * @return true if the selection changed and the markers need to be rebuilt
+   */
+  public boolean update(float cameraX, float cameraY, float cameraZ) {
+    float distance = (float) Math.sqrt(cameraX * cameraX + cameraY * cameraY + cameraZ * cameraZ);
+    if (distance == 0) {
+      return false;
+    }
+    float dirX = cameraX / distance;
+    float dirY = cameraY / distance;
+    float dirZ = cameraZ / distance;
+
+    if (hasSelection) {
+      float turn = dirX * lastDirX + dirY * lastDirY + dirZ * lastDirZ;
+      float zoom = Math.max(distance / lastDistance, lastDistance / distance);
+      if (turn > reselectCos && zoom < RESELECT_DISTANCE_RATIO) {
+        return false;
+      }
+    }
+
+    hasSelection = true;
+    lastDistance = distance;
+    lastDirX = dirX;
+    lastDirY = dirY;
+    lastDirZ = dirZ;
+    select(cameraX / globeRadius, cameraY / globeRadius, cameraZ / globeRadius);
+    return true;
+  }
+
+  /** Selects clusters for a camera at (x, y, z), in globe radii. */
+  private void select(float cameraX, float cameraY, float cameraZ) {
+    float distance = (float) Math.sqrt(cameraX * cameraX + cameraY * cameraY + cameraZ * cameraZ);
+    float horizon = distance > 1 ? 1 / distance - HORIZON_MARGIN : -1;
+    float[] directions = hierarchy.getDirections();
+
+    heapSize = 0;
+    for (int cluster = 0; cluster < hierarchy.getLevelStart(1); cluster++) {
+      push(cluster, 0, cameraX, cameraY, cameraZ, distance, horizon);
+    }
+
+    while (heapSize > 0) {
+      long top = heap[0];
+      int cluster = (int) top;
+      float apparentSize = Float.intBitsToFloat((int) (top >>> 32));
+      int children = hierarchy.isLeaf(cluster) ? 0 : hierarchy.getChildCount(cluster);
+      boolean split =
+          children > 0
+              && apparentSize > SPLIT_ANGLE
+              && heapSize - 1 + children <= maxVisible;
+      if (!split) {
+        // Every cluster left looks smaller or doesn't fit, so keep them as they are.
+        break;
+      }
+      pop();
+      int childLevel = levelOf(cluster) + 1;
+      int first = hierarchy.getFirstChild(cluster);
+      for (int child = first; child < first + children; child++) {
+        push(child, childLevel, cameraX, cameraY, cameraZ, distance, horizon);
+      }
+    }
+
+    // The previous arrays may still be in use by a mesh build, so always start new ones.
+    float[] selectedPositions = new float[heapSize * 3];
+    float[] selectedHalfSizes = new float[heapSize];
+    int[] selectedIds = new int[heapSize];
+    int selected = 0;
+    for (int i = 0; i < heapSize; i++) {
+      int cluster = (int) heap[i];
+      selectedPositions[selected * 3] = directions[cluster * 3] * globeRadius;
+      selectedPositions[selected * 3 + 1] = directions[cluster * 3 + 1] * globeRadius;
+      selectedPositions[selected * 3 + 2] = directions[cluster * 3 + 2] * globeRadius;
+      selectedHalfSizes[selected] = markerHalfSize * markerScale(countOf(cluster));
+      selectedIds[selected] = cluster;
+      selected++;
+    }
+
+    visiblePositions = selectedPositions;
+    visibleHalfSizes = selectedHalfSizes;
+    visibleIds = selectedIds;
+    visibleCount = selected;
+  }
+
+  private int countOf(int cluster) {
+    return filteredCounts != null ? filteredCounts[cluster] : hierarchy.getCount(cluster);
+  }
+
+  /** Queues a cluster unless it is behind the globe or has no points left by the filter. */
+  private void push(
+      int cluster,
+      int level,
+      float cameraX,
+      float cameraY,
+      float cameraZ,
+      float distance,
+      float horizon) {
+    if (filteredCounts != null && filteredCounts[cluster] == 0) {
+      return;
+    }
+    float[] directions = hierarchy.getDirections();
+    float x = directions[cluster * 3];
+    float y = directions[cluster * 3 + 1];
+    float z = directions[cluster * 3 + 2];
+    float cellAngle = ClusterHierarchy.getCellAngle(level);
+    // A cell may reach past the horizon even when its centre doesn't.
+    float facing = (x * cameraX + y * cameraY + z * cameraZ) / distance;
+    if (facing < horizon - cellAngle) {
+      return;
+    }
+
+    float dx = x - cameraX;
+    float dy = y - cameraY;
+    float dz = z - cameraZ;
+    float range = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    float apparentSize = cellAngle / Math.max(range, 1e-3f);
+
+    if (heapSize == heap.length) {
+      long[] grown = new long[heap.length * 2];
+      System.arraycopy(heap, 0, grown, 0, heapSize);
+      heap = grown;
+    }
+    // Positive floats order the same as their bits, so the pair sorts on size first.
+    long entry = ((long) Float.floatToIntBits(apparentSize) << 32) | cluster;
+    int i = heapSize++;
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (heap[parent] >= entry) {
+        break;
+      }
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = entry;
+  }
+
+  private void pop() {
+    long last = heap[--heapSize];
+    int i = 0;
+    while (true) {
+      int child = i * 2 + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heap[child + 1] > heap[child]) {
+        child++;
+      }
+      if (heap[child] <= last) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    if (heapSize > 0) {
+      heap[i] = last;
+    }
+  }
+
+  private int levelOf(int cluster) {
+    int level = 0;
+    while (level + 1 < hierarchy.getLevelCount() && cluster >= hierarchy.getLevelStart(level + 1)) {
+      level++;
+    }
+    return level;
+  }
+
+  /** Grows markers with the log of their count, so the largest cluster is a few times bigger. */
+  private static float markerScale(int count) {
+    float scale = MIN_MARKER_SCALE + (float) Math.log10(Math.max(count, 1)) * 0.5f;
+    return Math.min(scale, MAX_MARKER_SCALE);
+  }
+
+  /** Packed xyz positions of the selected clusters. */
+  public float[] getVisiblePositions() {
+    return visiblePositions;
+  }
+
+  /** Half size of the marker of each selected cluster. */
+  public float[] getVisibleHalfSizes() {
+    return visibleHalfSizes;
+  }
+
+  /** Cluster index, in the hierarchy, of each selected marker. */
+  public int[] getVisibleIds() {
+    return visibleIds;
+  }
+
+  public int getVisibleCount() {
+    return visibleCount;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Converts latitude and longitude into positions on the surface of the globe.
+ *
+ * <p>Y points to the north pole. Longitude is mirrored and shifted by a configurable offset so that
+ * positions line up with the texture of the globe model, which is why the default offset is what
+ * it is.
+ *
+ * <p>Whole columns are converted in one loop, computing each trigonometric term once per city.
+ */
+public final class GeoProjection {
+  /** Longitude offset, in degrees, that lines cities up with the earth_obj globe texture. */
+  public static final float EARTH_TEXTURE_LONGITUDE_OFFSET = -22.0f;
+
+  private static final double DEGREES_TO_RADIANS = Math.PI / 180.0;
+
+  private final float radius;
+  private final float longitudeOffsetDegrees;
+
+  public GeoProjection(float radius, float longitudeOffsetDegrees) {
+    this.radius = radius;
+    this.longitudeOffsetDegrees = longitudeOffsetDegrees;
+  }
+
+  public float getRadius() {
+    return radius;
+  }
+
+  public float getLongitudeOffsetDegrees() {
+    return longitudeOffsetDegrees;
+  }
+
+  /**
+   * Projects {@code count} points.
+   *
+   * @param latitudes latitude column, in degrees
+   * @param longitudes longitude column, in degrees
+   * @param out receives packed xyz positions, must hold at least {@code count * 3} floats
+   */
+  public void project(float[] latitudes, float[] longitudes, int count, float[] out) {
+    double offset = longitudeOffsetDegrees * DEGREES_TO_RADIANS;
+    for (int i = 0; i < count; i++) {
+      double latitude = latitudes[i] * DEGREES_TO_RADIANS;
+      double longitude = offset - longitudes[i] * DEGREES_TO_RADIANS;
+      // The ring radius at this latitude is shared by x and z.
+      double ring = radius * Math.cos(latitude);
+      int o = i * 3;
+      out[o] = (float) (ring * Math.cos(longitude));
+      out[o + 1] = (float) (radius * Math.sin(latitude));
+      out[o + 2] = (float) (ring * Math.sin(longitude));
+    }
+  }
+
+  /** Projects a single point into {@code out} at {@code offset}. */
+  public void project(double latitude, double longitude, float[] out, int offset) {
+    double lat = latitude * DEGREES_TO_RADIANS;
+    double lng = (longitudeOffsetDegrees - longitude) * DEGREES_TO_RADIANS;
+    double ring = radius * Math.cos(lat);
+    out[offset] = (float) (ring * Math.cos(lng));
+    out[offset + 1] = (float) (radius * Math.sin(lat));
+    out[offset + 2] = (float) (ring * Math.sin(lng));
+  }
+
+  /**
+   * Recovers the latitude and longitude, in degrees, of the direction (x, y, z) from the centre of
+   * the globe, writing them to {@code out} at {@code offset}.
+   */
+  public void unproject(float x, float y, float z, float[] out, int offset) {
+    // atan2 rather than asin(y / length), which loses most of its precision near the poles.
+    double latitude = Math.atan2(y, Math.sqrt((double) x * x + (double) z * z));
+    double longitude = longitudeOffsetDegrees * DEGREES_TO_RADIANS - Math.atan2(z, x);
+    out[offset] = (float) Math.toDegrees(latitude);
+    // Back into [-180, 180).
+    out[offset + 1] = (float) (((Math.toDegrees(longitude) + 540) % 360) - 180);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Rasterizes weighted points into an equirectangular density grid.
+ *
+ * <p>Each point is assigned its grid cell once. Changing the weights or the filter afterwards only
+ * adds the difference of each affected point to its cell, so points sharing coordinates cost
+ * nothing extra and a rebuild never walks the coordinates again. {@link #bake(float[])} then
+ * smooths the grid and maps it to intensities on a log scale, which keeps a few huge values from
+ * washing out everything else.
+ *
+ * <p>Not thread safe; use each baker from one thread at a time.
+ */
+public final class HeatmapBaker {
+  private static final int NO_CELL = -1;
+  // Radius, in cells, of the box blur that spreads each point over its neighbours.
+  private static final int BLUR_RADIUS = 2;
+
+  private final int width;
+  private final int height;
+  private final double[] cells;
+  private final float[] scratch;
+
+  private int count;
+  private int[] cellOfPoint = new int[0];
+  private double[] weights = new double[0];
+  private boolean[] included = new boolean[0];
+  private boolean dirty = true;
+  private long lastBakeNanos;
+
+  public HeatmapBaker(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.cells = new double[width * height];
+    this.scratch = new float[width * height];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Replaces the points. Every point starts with a weight of zero and included by the filter.
+   *
+   * @param latitudes latitude of each point, in degrees
+   * @param longitudes longitude of each point, in degrees
+   */
+  public void setPoints(float[] latitudes, float[] longitudes, int count) {
+    this.count = count;
+    cellOfPoint = new int[count];
+    weights = new double[count];
+    included = new boolean[count];
+    Arrays.fill(included, true);
+    Arrays.fill(cells, 0);
+    for (int i = 0; i < count; i++) {
+      cellOfPoint[i] = cellFor(latitudes[i], longitudes[i]);
+    }
+    dirty = true;
+  }
+
+  private int cellFor(float latitude, float longitude) {
+    if (Float.isNaN(latitude) || Float.isNaN(longitude)) {
+      return NO_CELL;
+    }
+    int x = (int) ((longitude + 180.0f) / 360.0f * width);
+    int y = (int) ((90.0f - latitude) / 180.0f * height);
+    x = Math.min(Math.max(x, 0), width - 1);
+    y = Math.min(Math.max(y, 0), height - 1);
+    return y * width + x;
+  }
+
+  /** Sets the weight of every point; negative weights count as zero. */
+  public void setWeights(double[] newWeights) {
+    for (int i = 0; i < count; i++) {
+      double weight = Math.max(newWeights[i], 0);
+      if (weight == weights[i]) {
+        continue;
+      }
+      if (included[i]) {
+        add(i, weight - weights[i]);
+      }
+      weights[i] = weight;
+    }
+  }
+
+  /** Chooses which points contribute; {@code newIncluded} holds one flag per point. */
+  public void setFilter(boolean[] newIncluded) {
+    for (int i = 0; i < count; i++) {
+      if (newIncluded[i] == included[i]) {
+        continue;
+      }
+      add(i, newIncluded[i] ? weights[i] : -weights[i]);
+      included[i] = newIncluded[i];
+    }
+  }
+
+  private void add(int point, double delta) {
+    int cell = cellOfPoint[point];
+    if (cell != NO_CELL && delta != 0) {
+      cells[cell] += delta;
+      dirty = true;
+    }
+  }
+
+  /** Whether anything changed since the last bake. */
+  public boolean isDirty() {
+    return dirty;
+  }
+
+  /**
+   * Writes the intensity of every texel, row by row from the north pole, into {@code out}.
+   *
+   * @param out receives values from 0 (nothing) to 1 (densest cell); must hold width * height
+   */
+  public void bake(float[] out) {
+    long start = System.nanoTime();
+
+    // Horizontal pass wraps around the date line, vertical pass clamps at the poles.
+    for (int y = 0; y < height; y++) {
+      int rowStart = y * width;
+      for (int x = 0; x < width; x++) {
+        double sum = 0;
+        for (int dx = -BLUR_RADIUS; dx <= BLUR_RADIUS; dx++) {
+          sum += Math.max(cells[rowStart + Math.floorMod(x + dx, width)], 0);
+        }
+        scratch[rowStart + x] = (float) sum;
+      }
+    }
+    float max = 0;
+    for (int y = 0; y < height; y++) {
+      int minY = Math.max(y - BLUR_RADIUS, 0);
+      int maxY = Math.min(y + BLUR_RADIUS, height - 1);
+      for (int x = 0; x < width; x++) {
+        float sum = 0;
+        for (int sy = minY; sy <= maxY; sy++) {
+          sum += scratch[sy * width + x];
+        }
+        out[y * width + x] = sum;
+        max = Math.max(max, sum);
+      }
+    }
+
+    float scale = max > 0 ? (float) (1 / Math.log1p(max)) : 0;
+    for (int i = 0; i < width * height; i++) {
+      out[i] = (float) Math.log1p(out[i]) * scale;
+    }
+
+    dirty = false;
+    lastBakeNanos = System.nanoTime() - start;
+  }
+
+  /** How long the last call to {@link #bake(float[])} took. */
+  public long getLastBakeNanos() {
+    return lastBakeNanos;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Values of many entities at a few key times shared by all of them, such as one key per year,
+ * interpolated for every entity at once.
+ *
+ * <p>Each entity has the same number of channels, for example a size and a shade. A key is one row
+ * of every channel of every entity, and rows are stored one after the other in a single array.
+ * Evaluating a time looks up the pair of keys around it once, then blends the two rows in a single
+ * pass, so animating every entity costs one multiply-add per value and allocates nothing, instead
+ * of an animator calling back into each node every frame.
+ */
+public final class KeyframeTrack {
+  private final float[] times;
+  private final int entityCount;
+  private final int channelCount;
+  // values[key * rowLength + entity * channelCount + channel]
+  private final float[] values;
+  private final int rowLength;
+
+  /**
+   * @param times key times, in increasing order
+   * @param entityCount number of entities animated
+   * @param channelCount number of values per entity
+   */
+  public KeyframeTrack(float[] times, int entityCount, int channelCount) {
+    if (times.length == 0) {
+      throw new IllegalArgumentException("A track needs at least one key");
+    }
+    for (int key = 1; key < times.length; key++) {
+      if (times[key] <= times[key - 1]) {
+        throw new IllegalArgumentException("Key times must increase: " + times[key]);
+      }
+    }
+    this.times = times.clone();
+    this.entityCount = entityCount;
+    this.channelCount = channelCount;
+    this.rowLength = entityCount * channelCount;
+    this.values = new float[times.length * rowLength];
+  }
+
+  public void setValue(int key, int entity, int channel, float value) {
+    values[key * rowLength + entity * channelCount + channel] = value;
+  }
+
+  public float getValue(int key, int entity, int channel) {
+    return values[key * rowLength + entity * channelCount + channel];
+  }
+
+  /**
+   * Writes the value of every channel of every entity at {@code time} to {@code out}, at {@code
+   * entity * getChannelCount() + channel}. Times outside the keys hold the first or last key.
+   *
+   * @param out holds at least {@code getEntityCount() * getChannelCount()} values
+   */
+  public void evaluate(float time, float[] out) {
+    int last = times.length - 1;
+    if (time <= times[0] || last == 0) {
+      System.arraycopy(values, 0, out, 0, rowLength);
+      return;
+    }
+    if (time >= times[last]) {
+      System.arraycopy(values, last * rowLength, out, 0, rowLength);
+      return;
+    }
+    int key = 0;
+    while (times[key + 1] <= time) {
+      key++;
+    }
+    float fraction = (time - times[key]) / (times[key + 1] - times[key]);
+    int from = key * rowLength;
+    int to = from + rowLength;
+    for (int i = 0; i < rowLength; i++) {
+      float start = values[from + i];
+      out[i] = start + (values[to + i] - start) * fraction;
+    }
+  }
+
+  public int getKeyCount() {
+    return times.length;
+  }
+
+  public float getTime(int key) {
+    return times[key];
+  }
+
+  public float getStartTime() {
+    return times[0];
+  }
+
+  public float getEndTime() {
+    return times[times.length - 1];
+  }
+
+  public int getEntityCount() {
+    return entityCount;
+  }
+
+  public int getChannelCount() {
+    return channelCount;
+  }
+}
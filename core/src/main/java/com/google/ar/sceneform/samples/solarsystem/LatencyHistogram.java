@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds.
+ *
+ * <p>Values are counted in log-linear buckets: every power of two is split into {@link
+ * #SUB_BUCKETS} equal buckets, so percentiles are within 1/8th of the true value at any scale.
+ * Recording is a few shifts and an increment with no allocation, which makes it cheap enough to
+ * call several times per frame.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Enough powers of two for any duration a long of nanoseconds can hold.
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final long[] buckets = new long[BUCKET_COUNT];
+  private long count;
+  private long sum;
+  private long max;
+
+  /** Adds one duration. Negative durations count as zero. */
+  public synchronized void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    buckets[bucketOf(value)]++;
+    count++;
+    sum += value;
+    max = Math.max(max, value);
+  }
+
+  public synchronized void reset() {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    sum = 0;
+    max = 0;
+  }
+
+  /** Returns a copy that can be read while this histogram keeps recording. */
+  public synchronized LatencyHistogram copy() {
+    LatencyHistogram copy = new LatencyHistogram();
+    System.arraycopy(buckets, 0, copy.buckets, 0, BUCKET_COUNT);
+    copy.count = count;
+    copy.sum = sum;
+    copy.max = max;
+    return copy;
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getMaxNanos() {
+    return max;
+  }
+
+  public synchronized long getMeanNanos() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  /**
+   * Returns the duration that {@code percentile} percent of the recorded durations don't exceed,
+   * rounded up to the end of its bucket, or 0 if nothing was recorded.
+   */
+  public synchronized long getPercentileNanos(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+    rank = Math.max(rank, 1);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += buckets[bucket];
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(bucket), max);
+      }
+    }
+    return max;
+  }
+
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Largest value that falls into {@code bucket}. */
+  private static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Allocation free look-at rotations, for code that runs every frame.
+ *
+ * <p>Follows the same convention as Sceneform's {@code Quaternion.lookRotation}: the resulting
+ * rotation turns the +Z axis towards {@code forward} and keeps +Y as close to {@code up} as
+ * possible.
+ */
+public final class LookRotation {
+  private LookRotation() {}
+
+  /**
+   * Writes the look rotation as a quaternion (x, y, z, w) into {@code out}.
+   *
+   * @return false, leaving {@code out} untouched, if {@code forward} is zero or parallel to {@code
+   *     up}
+   */
+  public static boolean compute(
+      float forwardX, float forwardY, float forwardZ, float upX, float upY, float upZ, float[] out) {
+    float forwardLength =
+        (float) Math.sqrt(forwardX * forwardX + forwardY * forwardY + forwardZ * forwardZ);
+    if (forwardLength < 1e-6f) {
+      return false;
+    }
+    float fx = forwardX / forwardLength;
+    float fy = forwardY / forwardLength;
+    float fz = forwardZ / forwardLength;
+
+    // right = up x forward
+    float rx = upY * fz - upZ * fy;
+    float ry = upZ * fx - upX * fz;
+    float rz = upX * fy - upY * fx;
+    float rightLength = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+    if (rightLength < 1e-6f) {
+      return false;
+    }
+    rx /= rightLength;
+    ry /= rightLength;
+    rz /= rightLength;
+
+    // Orthogonal up = forward x right
+    float ux = fy * rz - fz * ry;
+    float uy = fz * rx - fx * rz;
+    float uz = fx * ry - fy * rx;
+
+    // Quaternion from the rotation matrix whose columns are right, up and forward.
+    float m00 = rx;
+    float m01 = ux;
+    float m02 = fx;
+    float m10 = ry;
+    float m11 = uy;
+    float m12 = fy;
+    float m20 = rz;
+    float m21 = uz;
+    float m22 = fz;
+    float trace = m00 + m11 + m22;
+    if (trace > 0) {
+      float s = 0.5f / (float) Math.sqrt(trace + 1.0f);
+      out[0] = (m21 - m12) * s;
+      out[1] = (m02 - m20) * s;
+      out[2] = (m10 - m01) * s;
+      out[3] = 0.25f / s;
+    } else if (m00 > m11 && m00 > m22) {
+      float s = 2.0f * (float) Math.sqrt(1.0f + m00 - m11 - m22);
+      out[0] = 0.25f * s;
+      out[1] = (m01 + m10) / s;
+      out[2] = (m02 + m20) / s;
+      out[3] = (m21 - m12) / s;
+    } else if (m11 > m22) {
+      float s = 2.0f * (float) Math.sqrt(1.0f + m11 - m00 - m22);
+      out[0] = (m01 + m10) / s;
+      out[1] = 0.25f * s;
+      out[2] = (m12 + m21) / s;
+      out[3] = (m02 - m20) / s;
+    } else {
+      float s = 2.0f * (float) Math.sqrt(1.0f + m22 - m00 - m11);
+      out[0] = (m02 + m20) / s;
+      out[1] = (m12 + m21) / s;
+      out[2] = 0.25f * s;
+      out[3] = (m10 - m01) / s;
+    }
+    return true;
+  }
+}
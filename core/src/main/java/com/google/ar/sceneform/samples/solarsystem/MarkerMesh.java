@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Geometry that packs many small markers into a single mesh so they render in one draw call.
+ *
+ * <p>Every marker is an octahedron centred on its position. Marker {@code i} owns vertices {@code
+ * [i * VERTICES_PER_MARKER, (i + 1) * VERTICES_PER_MARKER)}, so anything resolved against the mesh
+ * maps straight back to the index of the marker.
+ */
+public final class MarkerMesh {
+  public static final int VERTICES_PER_MARKER = 6;
+  public static final int INDICES_PER_MARKER = 24;
+
+  // Unit octahedron: +x, -x, +y, -y, +z, -z.
+  private static final float[] CORNERS = {
+    1, 0, 0, -1, 0, 0, 0, 1, 0, 0, -1, 0, 0, 0, 1, 0, 0, -1,
+  };
+
+  // One counter-clockwise triangle per octant.
+  private static final int[] TRIANGLES = {
+    0, 2, 4, 1, 4, 2, 0, 4, 3, 1, 3, 4, 0, 5, 2, 1, 2, 5, 0, 3, 5, 1, 5, 3,
+  };
+
+  private final int markerCount;
+  private final float[] positions;
+  private final float[] normals;
+  private final int[] triangleIndices;
+
+  private MarkerMesh(int markerCount) {
+    this.markerCount = markerCount;
+    this.positions = new float[markerCount * VERTICES_PER_MARKER * 3];
+    this.normals = new float[markerCount * VERTICES_PER_MARKER * 3];
+    this.triangleIndices = new int[markerCount * INDICES_PER_MARKER];
+  }
+
+  /**
+   * Builds a mesh with one marker per centre.
+   *
+   * @param centers packed xyz marker centres
+   * @param count number of markers to read from {@code centers}
+   * @param halfSize distance from a marker's centre to its corners
+   */
+  public static MarkerMesh build(float[] centers, int count, float halfSize) {
+    return build(centers, null, count, halfSize);
+  }
+
+  /**
+   * Builds a mesh with one marker per centre, each with its own size.
+   *
+   * @param halfSizes distance from each marker's centre to its corners, or null to use {@code
+   *     halfSize} for all of them
+   */
+  public static MarkerMesh build(
+      float[] centers, float[] halfSizes, int count, float halfSize) {
+    MarkerMesh mesh = new MarkerMesh(count);
+    for (int marker = 0; marker < count; marker++) {
+      float size = halfSizes != null ? halfSizes[marker] : halfSize;
+      mesh.setMarker(
+          marker, centers[marker * 3], centers[marker * 3 + 1], centers[marker * 3 + 2], size);
+
+      int vertexBase = marker * VERTICES_PER_MARKER;
+      for (int corner = 0; corner < VERTICES_PER_MARKER; corner++) {
+        int out = (vertexBase + corner) * 3;
+        mesh.normals[out] = CORNERS[corner * 3];
+        mesh.normals[out + 1] = CORNERS[corner * 3 + 1];
+        mesh.normals[out + 2] = CORNERS[corner * 3 + 2];
+      }
+
+      int indexBase = marker * INDICES_PER_MARKER;
+      for (int i = 0; i < INDICES_PER_MARKER; i++) {
+        mesh.triangleIndices[indexBase + i] = vertexBase + TRIANGLES[i];
+      }
+    }
+    return mesh;
+  }
+
+  /**
+   * Moves the corners of a marker, for animating a mesh in place. The normals and triangles don't
+   * depend on the marker's position or size, so they stay as they are.
+   */
+  public void setMarker(int marker, float centerX, float centerY, float centerZ, float halfSize) {
+    int vertexBase = marker * VERTICES_PER_MARKER;
+    for (int corner = 0; corner < VERTICES_PER_MARKER; corner++) {
+      int out = (vertexBase + corner) * 3;
+      positions[out] = centerX + CORNERS[corner * 3] * halfSize;
+      positions[out + 1] = centerY + CORNERS[corner * 3 + 1] * halfSize;
+      positions[out + 2] = centerZ + CORNERS[corner * 3 + 2] * halfSize;
+    }
+  }
+
+  public int getMarkerCount() {
+    return markerCount;
+  }
+
+  public int getVertexCount() {
+    return markerCount * VERTICES_PER_MARKER;
+  }
+
+  /** Packed xyz vertex positions. */
+  public float[] getPositions() {
+    return positions;
+  }
+
+  /** Packed xyz vertex normals. */
+  public float[] getNormals() {
+    return normals;
+  }
+
+  public int[] getTriangleIndices() {
+    return triangleIndices;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Drives every orbit and spin in the scene from one simulated clock.
+ *
+ * <p>Simulated time advances by the frame time scaled by the speed multipliers in {@link
+ * SolarSettings}, with separate clocks for orbits and for rotation about a body's own axis. Each
+ * rotation is then a closed-form function of its clock, so changing speed never needs to pause,
+ * resume or re-time an animator, and the same sequence of frame times always produces the same
+ * rotations.
+ */
+public class OrbitalClock {
+  /** Receives the rotation computed for it on every tick, as a quaternion. */
+  public interface Target {
+    void setRotation(float x, float y, float z, float w);
+  }
+
+  private final SolarSettings solarSettings;
+
+  // Simulated seconds, kept in double precision so long sessions don't lose resolution.
+  private double orbitSeconds;
+  private double rotationSeconds;
+
+  private final ArrayList<Target> targets = new ArrayList<>();
+  private float[] degreesPerSecond = new float[8];
+  private boolean[] isOrbit = new boolean[8];
+  private boolean[] clockwise = new boolean[8];
+  // sin and cos of half the axis tilt, the tilt is a rotation about X applied before the spin.
+  private float[] tiltSin = new float[8];
+  private float[] tiltCos = new float[8];
+
+  private final float[] scratchRotation = new float[4];
+
+  public OrbitalClock(SolarSettings solarSettings) {
+    this.solarSettings = solarSettings;
+  }
+
+  /**
+   * Starts driving {@code target}.
+   *
+   * @param isOrbit whether the target follows the orbit speed or the rotation speed
+   * @param axisTiltDeg tilt of the rotation axis away from Y, about X
+   */
+  public void add(
+      Target target, float degreesPerSecond, boolean isOrbit, boolean clockwise, float axisTiltDeg) {
+    remove(target);
+    int slot = targets.size();
+    ensureCapacity(slot + 1);
+    targets.add(target);
+    this.degreesPerSecond[slot] = degreesPerSecond;
+    this.isOrbit[slot] = isOrbit;
+    this.clockwise[slot] = clockwise;
+    double halfTilt = Math.toRadians(axisTiltDeg) / 2;
+    tiltSin[slot] = (float) Math.sin(halfTilt);
+    tiltCos[slot] = (float) Math.cos(halfTilt);
+
+    // Start in the right pose instead of waiting for the next tick.
+    write(slot);
+  }
+
+  public void remove(Target target) {
+    int slot = targets.indexOf(target);
+    if (slot < 0) {
+      return;
+    }
+    int last = targets.size() - 1;
+    targets.set(slot, targets.get(last));
+    targets.remove(last);
+    degreesPerSecond[slot] = degreesPerSecond[last];
+    isOrbit[slot] = isOrbit[last];
+    clockwise[slot] = clockwise[last];
+    tiltSin[slot] = tiltSin[last];
+    tiltCos[slot] = tiltCos[last];
+  }
+
+  public int size() {
+    return targets.size();
+  }
+
+  /** Advances simulated time by one frame and writes every target's rotation. */
+  public void advance(float deltaSeconds) {
+    orbitSeconds += deltaSeconds * solarSettings.getOrbitSpeedMultiplier();
+    rotationSeconds += deltaSeconds * solarSettings.getRotationSpeedMultiplier();
+    for (int slot = 0; slot < targets.size(); slot++) {
+      write(slot);
+    }
+  }
+
+  public double getOrbitSeconds() {
+    return orbitSeconds;
+  }
+
+  public double getRotationSeconds() {
+    return rotationSeconds;
+  }
+
+  private void write(int slot) {
+    double seconds = isOrbit[slot] ? orbitSeconds : rotationSeconds;
+    rotationAt(
+        seconds,
+        degreesPerSecond[slot],
+        clockwise[slot],
+        tiltSin[slot],
+        tiltCos[slot],
+        scratchRotation);
+    targets
+        .get(slot)
+        .setRotation(scratchRotation[0], scratchRotation[1], scratchRotation[2], scratchRotation[3]);
+  }
+
+  /**
+   * Computes tilt * spin, where spin is a rotation about Y by the angle covered after {@code
+   * seconds}, and writes it as a quaternion (x, y, z, w) into {@code out}.
+   */
+  static void rotationAt(
+      double seconds,
+      float degreesPerSecond,
+      boolean clockwise,
+      float tiltSin,
+      float tiltCos,
+      float[] out) {
+    double angle = (seconds * degreesPerSecond) % 360.0;
+    if (clockwise) {
+      angle = -angle;
+    }
+    double halfAngle = Math.toRadians(angle) / 2;
+    float spinSin = (float) Math.sin(halfAngle);
+    float spinCos = (float) Math.cos(halfAngle);
+
+    // (tiltSin, 0, 0, tiltCos) * (0, spinSin, 0, spinCos)
+    out[0] = tiltSin * spinCos;
+    out[1] = tiltCos * spinSin;
+    out[2] = tiltSin * spinSin;
+    out[3] = tiltCos * spinCos;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (degreesPerSecond.length >= capacity) {
+      return;
+    }
+    int grown = Math.max(capacity, degreesPerSecond.length * 2);
+    degreesPerSecond = Arrays.copyOf(degreesPerSecond, grown);
+    isOrbit = Arrays.copyOf(isOrbit, grown);
+    clockwise = Arrays.copyOf(clockwise, grown);
+    tiltSin = Arrays.copyOf(tiltSin, grown);
+    tiltCos = Arrays.copyOf(tiltCos, grown);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Latitude/longitude sphere whose texture coordinates are equirectangular.
+ *
+ * <p>Vertices are placed with a {@link GeoProjection}, so a texture whose columns run from -180 to
+ * 180 degrees longitude and whose rows run from the north to the south pole lines up with
+ * everything else projected onto the globe. Vertices along the date line are duplicated so the
+ * texture doesn't wrap backwards across the seam.
+ */
+public final class OverlaySphereMesh {
+  private final int vertexCount;
+  private final float[] positions;
+  private final float[] normals;
+  private final float[] uvs;
+  private final int[] triangleIndices;
+
+  private OverlaySphereMesh(int slices, int stacks) {
+    vertexCount = (slices + 1) * (stacks + 1);
+    positions = new float[vertexCount * 3];
+    normals = new float[vertexCount * 3];
+    uvs = new float[vertexCount * 2];
+    triangleIndices = new int[slices * stacks * 6];
+  }
+
+  /**
+   * @param projection places the vertices, its radius is the radius of the sphere
+   * @param slices number of segments around the equator
+   * @param stacks number of segments from pole to pole
+   */
+  public static OverlaySphereMesh build(GeoProjection projection, int slices, int stacks) {
+    return buildPatch(projection, 90, -90, -180, 180, slices, stacks);
+  }
+
+  /**
+   * Builds the part of the sphere between two parallels and two meridians, with texture
+   * coordinates running from 0 to 1 across it, such as one tile of a {@link TilePyramid}.
+   *
+   * @param north latitude of the top edge, in degrees
+   * @param south latitude of the bottom edge, in degrees
+   * @param west longitude of the left edge, in degrees
+   * @param east longitude of the right edge, in degrees
+   */
+  public static OverlaySphereMesh buildPatch(
+      GeoProjection projection,
+      float north,
+      float south,
+      float west,
+      float east,
+      int slices,
+      int stacks) {
+    OverlaySphereMesh mesh = new OverlaySphereMesh(slices, stacks);
+    float radius = projection.getRadius();
+    int vertex = 0;
+    for (int stack = 0; stack <= stacks; stack++) {
+      float v = (float) stack / stacks;
+      double latitude = north + (south - north) * v;
+      for (int slice = 0; slice <= slices; slice++) {
+        float u = (float) slice / slices;
+        double longitude = west + (east - west) * u;
+        projection.project(latitude, longitude, mesh.positions, vertex * 3);
+        for (int axis = 0; axis < 3; axis++) {
+          mesh.normals[vertex * 3 + axis] = mesh.positions[vertex * 3 + axis] / radius;
+        }
+        mesh.uvs[vertex * 2] = u;
+        mesh.uvs[vertex * 2 + 1] = v;
+        vertex++;
+      }
+    }
+
+    int index = 0;
+    int row = slices + 1;
+    for (int stack = 0; stack < stacks; stack++) {
+      for (int slice = 0; slice < slices; slice++) {
+        int topLeft = stack * row + slice;
+        int bottomLeft = topLeft + row;
+        // Longitude is mirrored by the projection, so these wind counter-clockwise from outside.
+        mesh.triangleIndices[index++] = topLeft;
+        mesh.triangleIndices[index++] = bottomLeft;
+        mesh.triangleIndices[index++] = topLeft + 1;
+        mesh.triangleIndices[index++] = topLeft + 1;
+        mesh.triangleIndices[index++] = bottomLeft;
+        mesh.triangleIndices[index++] = bottomLeft + 1;
+      }
+    }
+    return mesh;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /** Packed xyz vertex positions. */
+  public float[] getPositions() {
+    return positions;
+  }
+
+  /** Packed xyz vertex normals. */
+  public float[] getNormals() {
+    return normals;
+  }
+
+  /** Packed uv texture coordinates. */
+  public float[] getUvs() {
+    return uvs;
+  }
+
+  public int[] getTriangleIndices() {
+    return triangleIndices;
+  }
+}
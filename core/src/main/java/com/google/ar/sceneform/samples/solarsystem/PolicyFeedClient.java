@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches the policy dataset from the NodeJS upload server whenever it changes.
+ *
+ * <p>Pointed at the server's /feed endpoint, the client receives {@link PolicyFeedCodec} frames:
+ * each request passes the epoch and version it already holds, so an unchanged dataset costs an
+ * empty 304 and a single upload only a gzipped delta of the changed rows. Deltas are only applied
+ * to the exact epoch and version they were made from, anything else fails the fetch. Pointed at a
+ * plain CSV file, it falls back to the ETag and Last-Modified validators of the static file server
+ * and reparses the whole file whenever it changes.
+ *
+ * <p>Fetches block, so call them from a background thread, one at a time.
+ */
+public class PolicyFeedClient {
+  private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+  private static final int READ_TIMEOUT_MILLIS = 10000;
+
+  private final URL url;
+  private String etag;
+  private String lastModified;
+  private PolicyStore current;
+  private int epoch;
+  private int version = PolicyFeedCodec.NO_VERSION;
+
+  public PolicyFeedClient(URL url) {
+    this.url = url;
+  }
+
+  /**
+   * Returns the dataset if it changed since the last successful fetch, or null if it hasn't.
+   *
+   * @throws IOException if the server can't be reached or the data can't be parsed
+   */
+  public PolicyStore fetchIfChanged() throws IOException {
+    URL requestUrl = url;
+    if (version != PolicyFeedCodec.NO_VERSION) {
+      requestUrl =
+          new URL(
+              url
+                  + (url.getQuery() == null ? "?" : "&")
+                  + "since="
+                  + version
+                  + "&epoch="
+                  + epoch);
+    }
+    HttpURLConnection connection = (HttpURLConnection) requestUrl.openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+    connection.setUseCaches(false);
+    // Set explicitly so that HttpURLConnection leaves the decompression to us.
+    connection.setRequestProperty("Accept-Encoding", "gzip");
+    if (etag != null) {
+      connection.setRequestProperty("If-None-Match", etag);
+    }
+    if (lastModified != null) {
+      connection.setRequestProperty("If-Modified-Since", lastModified);
+    }
+
+    // The connection is not disconnected, so the next poll can reuse it.
+    int status = connection.getResponseCode();
+    if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      return null;
+    }
+    if (status != HttpURLConnection.HTTP_OK) {
+      InputStream error = connection.getErrorStream();
+      if (error != null) {
+        error.close();
+      }
+      throw new IOException("Unexpected response " + status + " from " + requestUrl);
+    }
+
+    PolicyStore store;
+    int storeEpoch = 0;
+    int storeVersion = PolicyFeedCodec.NO_VERSION;
+    try (InputStream body = open(connection)) {
+      if (isFeedFrame(body)) {
+        PolicyFeedCodec.Frame frame = PolicyFeedCodec.read(body);
+        if (frame.isDelta()
+            && (version == PolicyFeedCodec.NO_VERSION
+                || frame.getEpoch() != epoch
+                || frame.getBaseVersion() != version)) {
+          throw new IOException(
+              "Delta for version "
+                  + frame.getBaseVersion()
+                  + " of epoch "
+                  + frame.getEpoch()
+                  + " but have "
+                  + version
+                  + " of epoch "
+                  + epoch);
+        }
+        store = frame.applyTo(current);
+        storeEpoch = frame.getEpoch();
+        storeVersion = frame.getVersion();
+      } else {
+        store = PolicyStore.read(body);
+      }
+    }
+    // Only remember the validators once the body has been parsed, so a failed read is retried.
+    etag = connection.getHeaderField("ETag");
+    lastModified = connection.getHeaderField("Last-Modified");
+    current = store;
+    epoch = storeEpoch;
+    version = storeVersion;
+    return store;
+  }
+
+  private static InputStream open(HttpURLConnection connection) throws IOException {
+    InputStream in = connection.getInputStream();
+    if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+      in = new GZIPInputStream(in);
+    }
+    return new BufferedInputStream(in);
+  }
+
+  /** Whether the body starts with a feed frame rather than CSV, leaving the stream unread. */
+  private static boolean isFeedFrame(InputStream in) throws IOException {
+    in.mark(4);
+    int magic = 0;
+    for (int i = 0; i < 4; i++) {
+      int b = in.read();
+      if (b < 0) {
+        in.reset();
+        return false;
+      }
+      magic = (magic << 8) | b;
+    }
+    in.reset();
+    return magic == PolicyFeedCodec.MAGIC;
+  }
+}
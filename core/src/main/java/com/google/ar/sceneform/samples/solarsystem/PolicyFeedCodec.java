@@ -0,0 +1,594 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary frames that carry a {@link PolicyStore} from the upload server to the app.
+ *
+ * <p>A frame is a schema header followed by one fixed-width chunk per column, so the decoder copies
+ * each chunk into its column array in one bulk read instead of parsing text. A snapshot frame holds
+ * the whole dataset; a delta frame holds only the rows that were added or changed since a base
+ * version, matched by policyID, followed by the ids of the rows that were removed.
+ *
+ * <p>Versions count uploads since the server started, so they are only comparable within one epoch,
+ * a random number the server picks when it starts. The layout, all big-endian, is:
+ *
+ * <pre>
+ *   int magic, byte formatVersion, byte frameType, int epoch, int version, int baseVersion,
+ *   int rowCount, short columnCount, then per column:
+ *     byte type, string name, and for dictionary columns short entryCount, string[entryCount]
+ *   per column: rowCount values of 4 (int32, float32), 8 (float64) or 2 (dictionary code) bytes
+ *   delta frames only: int removedCount, int[removedCount] removed policyIDs
+ * </pre>
+ *
+ * Strings are an unsigned short byte length followed by UTF-8, and dictionaries hold at most {@link
+ * #MAX_DICTIONARY_SIZE} entries. NodeJS/feed.js writes the same format when a file is uploaded.
+ */
+public final class PolicyFeedCodec {
+  public static final int MAGIC = 0x50464431; // "PFD1"
+  public static final int FORMAT_VERSION = 2;
+
+  public static final byte SNAPSHOT = 0;
+  public static final byte DELTA = 1;
+
+  /** Base version of snapshot frames, which don't have one. */
+  public static final int NO_VERSION = -1;
+
+  /** Most distinct values a dictionary column can hold, codes are unsigned 16 bit. */
+  public static final int MAX_DICTIONARY_SIZE = 0xffff;
+
+  private static final int MAX_STRING_BYTES = 0xffff;
+
+  private static final byte TYPE_INT32 = 1;
+  private static final byte TYPE_FLOAT32 = 2;
+  private static final byte TYPE_FLOAT64 = 3;
+  private static final byte TYPE_DICTIONARY16 = 4;
+
+  private static final String[] COLUMN_NAMES = {
+    "policyID",
+    "county",
+    "eq_site_limit",
+    "hu_site_limit",
+    "fl_site_limit",
+    "fr_site_limit",
+    "tiv_2011",
+    "tiv_2012",
+    "point_latitude",
+    "point_longitude",
+    "line",
+    "construction",
+  };
+  private static final byte[] COLUMN_TYPES = {
+    TYPE_INT32,
+    TYPE_DICTIONARY16,
+    TYPE_FLOAT64,
+    TYPE_FLOAT64,
+    TYPE_FLOAT64,
+    TYPE_FLOAT64,
+    TYPE_FLOAT64,
+    TYPE_FLOAT64,
+    TYPE_FLOAT32,
+    TYPE_FLOAT32,
+    TYPE_DICTIONARY16,
+    TYPE_DICTIONARY16,
+  };
+
+  private PolicyFeedCodec() {}
+
+  /** A decoded frame. */
+  public static final class Frame {
+    private final byte type;
+    private final int epoch;
+    private final int version;
+    private final int baseVersion;
+    private final PolicyStore rows;
+    private final int[] removedIds;
+
+    private Frame(
+        byte type, int epoch, int version, int baseVersion, PolicyStore rows, int[] removedIds) {
+      this.type = type;
+      this.epoch = epoch;
+      this.version = version;
+      this.baseVersion = baseVersion;
+      this.rows = rows;
+      this.removedIds = removedIds;
+    }
+
+    public boolean isDelta() {
+      return type == DELTA;
+    }
+
+    /** Epoch of both the version and the base version. */
+    public int getEpoch() {
+      return epoch;
+    }
+
+    public int getVersion() {
+      return version;
+    }
+
+    /** Version a delta applies to, or {@link #NO_VERSION} for a snapshot. */
+    public int getBaseVersion() {
+      return baseVersion;
+    }
+
+    /** The whole dataset for a snapshot, the added and changed rows for a delta. */
+    public PolicyStore getRows() {
+      return rows;
+    }
+
+    public int[] getRemovedIds() {
+      return removedIds;
+    }
+
+    /** Returns the dataset after this frame, given the dataset at {@link #getBaseVersion()}. */
+    public PolicyStore applyTo(PolicyStore base) {
+      return isDelta() ? applyDelta(base, rows, removedIds) : rows;
+    }
+  }
+
+  /**
+   * Writes every policy in {@code store}.
+   *
+   * @throws IllegalArgumentException if a text column doesn't fit the format
+   */
+  public static void writeSnapshot(PolicyStore store, int epoch, int version, OutputStream out)
+      throws IOException {
+    int[] rows = new int[store.size()];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = i;
+    }
+    write(SNAPSHOT, epoch, version, NO_VERSION, store, rows, new int[0], out);
+  }
+
+  /**
+   * Writes the policies that changed between {@code base} and {@code current}, two versions of the
+   * same epoch.
+   *
+   * @throws IllegalArgumentException if a text column doesn't fit the format
+   */
+  public static void writeDelta(
+      PolicyStore base,
+      int baseVersion,
+      PolicyStore current,
+      int epoch,
+      int version,
+      OutputStream out)
+      throws IOException {
+    long[] baseById = indexById(base);
+    int[] changed = new int[current.size()];
+    int changedCount = 0;
+    boolean[] kept = new boolean[base.size()];
+    int[] currentIds = current.getPolicyIds();
+    for (int row = 0; row < current.size(); row++) {
+      int baseRow = find(baseById, currentIds[row]);
+      if (baseRow < 0) {
+        changed[changedCount++] = row;
+      } else {
+        kept[baseRow] = true;
+        if (!sameRow(base, baseRow, current, row)) {
+          changed[changedCount++] = row;
+        }
+      }
+    }
+
+    int[] removed = new int[base.size()];
+    int removedCount = 0;
+    for (int row = 0; row < base.size(); row++) {
+      if (!kept[row]) {
+        removed[removedCount++] = base.getPolicyIds()[row];
+      }
+    }
+    write(
+        DELTA,
+        epoch,
+        version,
+        baseVersion,
+        current,
+        Arrays.copyOf(changed, changedCount),
+        Arrays.copyOf(removed, removedCount),
+        out);
+  }
+
+  private static boolean sameRow(PolicyStore a, int rowA, PolicyStore b, int rowB) {
+    return a.getEqSiteLimits()[rowA] == b.getEqSiteLimits()[rowB]
+        && a.getHuSiteLimits()[rowA] == b.getHuSiteLimits()[rowB]
+        && a.getFlSiteLimits()[rowA] == b.getFlSiteLimits()[rowB]
+        && a.getFrSiteLimits()[rowA] == b.getFrSiteLimits()[rowB]
+        && a.getTiv2011()[rowA] == b.getTiv2011()[rowB]
+        && a.getTiv2012()[rowA] == b.getTiv2012()[rowB]
+        && a.getLatitudes()[rowA] == b.getLatitudes()[rowB]
+        && a.getLongitudes()[rowA] == b.getLongitudes()[rowB]
+        && a.getCounty(rowA).equals(b.getCounty(rowB))
+        && a.getLine(rowA).equals(b.getLine(rowB))
+        && a.getConstruction(rowA).equals(b.getConstruction(rowB));
+  }
+
+  private static void write(
+      byte type,
+      int epoch,
+      int version,
+      int baseVersion,
+      PolicyStore store,
+      int[] rows,
+      int[] removedIds,
+      OutputStream stream)
+      throws IOException {
+    // Checked before anything is written, so a store that doesn't fit leaves no partial frame.
+    byte[][][] dictionaries = new byte[COLUMN_NAMES.length][][];
+    for (int column = 0; column < COLUMN_NAMES.length; column++) {
+      if (COLUMN_TYPES[column] == TYPE_DICTIONARY16) {
+        dictionaries[column] = encodeDictionary(COLUMN_NAMES[column], dictionary(store, column));
+      }
+    }
+
+    DataOutputStream out = new DataOutputStream(stream);
+    out.writeInt(MAGIC);
+    out.writeByte(FORMAT_VERSION);
+    out.writeByte(type);
+    out.writeInt(epoch);
+    out.writeInt(version);
+    out.writeInt(baseVersion);
+    out.writeInt(rows.length);
+
+    out.writeShort(COLUMN_NAMES.length);
+    for (int column = 0; column < COLUMN_NAMES.length; column++) {
+      out.writeByte(COLUMN_TYPES[column]);
+      writeString(out, COLUMN_NAMES[column].getBytes(StandardCharsets.UTF_8));
+      if (COLUMN_TYPES[column] == TYPE_DICTIONARY16) {
+        out.writeShort(dictionaries[column].length);
+        for (byte[] entry : dictionaries[column]) {
+          writeString(out, entry);
+        }
+      }
+    }
+
+    ByteBuffer chunk = ByteBuffer.allocate(rows.length * 8);
+    for (int column = 0; column < COLUMN_NAMES.length; column++) {
+      chunk.clear();
+      switch (COLUMN_TYPES[column]) {
+        case TYPE_INT32:
+          for (int row : rows) {
+            chunk.putInt(store.getPolicyIds()[row]);
+          }
+          break;
+        case TYPE_FLOAT32:
+          float[] floats = floatColumn(store, column);
+          for (int row : rows) {
+            chunk.putFloat(floats[row]);
+          }
+          break;
+        case TYPE_FLOAT64:
+          double[] doubles = doubleColumn(store, column);
+          for (int row : rows) {
+            chunk.putDouble(doubles[row]);
+          }
+          break;
+        default:
+          int[] codes = codeColumn(store, column);
+          // Codes index a dictionary of at most MAX_DICTIONARY_SIZE entries, so they fit.
+          for (int row : rows) {
+            chunk.putShort((short) codes[row]);
+          }
+      }
+      out.write(chunk.array(), 0, chunk.position());
+    }
+
+    if (type == DELTA) {
+      out.writeInt(removedIds.length);
+      for (int id : removedIds) {
+        out.writeInt(id);
+      }
+    }
+    out.flush();
+  }
+
+  /** Reads one frame from {@code in}. */
+  public static Frame read(InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(stream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a policy feed frame");
+    }
+    int formatVersion = in.readUnsignedByte();
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException("Unsupported policy feed version " + formatVersion);
+    }
+    byte type = in.readByte();
+    int epoch = in.readInt();
+    int version = in.readInt();
+    int baseVersion = in.readInt();
+    int rowCount = in.readInt();
+
+    int columnCount = in.readUnsignedShort();
+    byte[] types = new byte[columnCount];
+    String[] names = new String[columnCount];
+    String[][] dictionaries = new String[columnCount][];
+    for (int column = 0; column < columnCount; column++) {
+      types[column] = in.readByte();
+      names[column] = readString(in);
+      if (types[column] == TYPE_DICTIONARY16) {
+        dictionaries[column] = new String[in.readUnsignedShort()];
+        for (int entry = 0; entry < dictionaries[column].length; entry++) {
+          dictionaries[column][entry] = readString(in);
+        }
+      }
+    }
+
+    Map<String, Object> columns = new HashMap<>();
+    Map<String, String[]> columnDictionaries = new HashMap<>();
+    byte[] chunk = new byte[0];
+    for (int column = 0; column < columnCount; column++) {
+      int width = width(types[column]);
+      if (chunk.length < rowCount * width) {
+        chunk = new byte[rowCount * width];
+      }
+      in.readFully(chunk, 0, rowCount * width);
+      ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, rowCount * width);
+      switch (types[column]) {
+        case TYPE_INT32:
+          int[] ints = new int[rowCount];
+          buffer.asIntBuffer().get(ints);
+          columns.put(names[column], ints);
+          break;
+        case TYPE_FLOAT32:
+          float[] floats = new float[rowCount];
+          buffer.asFloatBuffer().get(floats);
+          columns.put(names[column], floats);
+          break;
+        case TYPE_FLOAT64:
+          double[] doubles = new double[rowCount];
+          buffer.asDoubleBuffer().get(doubles);
+          columns.put(names[column], doubles);
+          break;
+        default:
+          int[] codes = new int[rowCount];
+          for (int row = 0; row < rowCount; row++) {
+            codes[row] = buffer.getShort() & 0xffff;
+          }
+          columns.put(names[column], codes);
+          columnDictionaries.put(names[column], dictionaries[column]);
+      }
+    }
+
+    int[] removedIds = new int[0];
+    if (type == DELTA) {
+      removedIds = new int[in.readInt()];
+      for (int i = 0; i < removedIds.length; i++) {
+        removedIds[i] = in.readInt();
+      }
+    }
+
+    if (!(columns.get("policyID") instanceof int[])
+        || !(columns.get("point_latitude") instanceof float[])
+        || !(columns.get("point_longitude") instanceof float[])) {
+      throw new IOException("Policy feed needs policyID, point_latitude and point_longitude");
+    }
+    PolicyStore rows =
+        new PolicyStore(
+            (int[]) columns.get("policyID"),
+            doubles(columns, "eq_site_limit", rowCount),
+            doubles(columns, "hu_site_limit", rowCount),
+            doubles(columns, "fl_site_limit", rowCount),
+            doubles(columns, "fr_site_limit", rowCount),
+            doubles(columns, "tiv_2011", rowCount),
+            doubles(columns, "tiv_2012", rowCount),
+            (float[]) columns.get("point_latitude"),
+            (float[]) columns.get("point_longitude"),
+            codes(columns, "county", rowCount),
+            codes(columns, "line", rowCount),
+            codes(columns, "construction", rowCount),
+            entries(columnDictionaries, "county"),
+            entries(columnDictionaries, "line"),
+            entries(columnDictionaries, "construction"));
+    return new Frame(type, epoch, version, baseVersion, rows, removedIds);
+  }
+
+  private static double[] doubles(Map<String, Object> columns, String name, int rowCount) {
+    Object column = columns.get(name);
+    return column instanceof double[] ? (double[]) column : new double[rowCount];
+  }
+
+  private static int[] codes(Map<String, Object> columns, String name, int rowCount) {
+    Object column = columns.get(name);
+    return column instanceof int[] ? (int[]) column : new int[rowCount];
+  }
+
+  private static String[] entries(Map<String, String[]> dictionaries, String name) {
+    String[] entries = dictionaries.get(name);
+    return entries != null ? entries : new String[] {""};
+  }
+
+  /** Replaces and appends the rows of a delta, matched by policyID, and drops the removed ones. */
+  private static PolicyStore applyDelta(PolicyStore base, PolicyStore delta, int[] removedIds) {
+    long[] baseById = indexById(base);
+    boolean[] removed = new boolean[base.size()];
+    for (int id : removedIds) {
+      int row = find(baseById, id);
+      if (row >= 0) {
+        removed[row] = true;
+      }
+    }
+    // Which delta row replaces each base row, and which delta rows are new.
+    int[] replacement = new int[base.size()];
+    Arrays.fill(replacement, -1);
+    int[] added = new int[delta.size()];
+    int addedCount = 0;
+    for (int row = 0; row < delta.size(); row++) {
+      int baseRow = find(baseById, delta.getPolicyIds()[row]);
+      if (baseRow >= 0) {
+        replacement[baseRow] = row;
+      } else {
+        added[addedCount++] = row;
+      }
+    }
+
+    PolicyStore.Builder builder = new PolicyStore.Builder();
+    for (int row = 0; row < base.size(); row++) {
+      if (removed[row]) {
+        continue;
+      }
+      if (replacement[row] >= 0) {
+        addRow(builder, delta, replacement[row]);
+      } else {
+        addRow(builder, base, row);
+      }
+    }
+    for (int i = 0; i < addedCount; i++) {
+      addRow(builder, delta, added[i]);
+    }
+    return builder.build();
+  }
+
+  private static void addRow(PolicyStore.Builder builder, PolicyStore store, int row) {
+    builder.add(
+        store.getPolicyIds()[row],
+        builder.counties.encode(store.getCounty(row)),
+        store.getEqSiteLimits()[row],
+        store.getHuSiteLimits()[row],
+        store.getFlSiteLimits()[row],
+        store.getFrSiteLimits()[row],
+        store.getTiv2011()[row],
+        store.getTiv2012()[row],
+        store.getLatitudes()[row],
+        store.getLongitudes()[row],
+        builder.lines.encode(store.getLine(row)),
+        builder.constructions.encode(store.getConstruction(row)));
+  }
+
+  /** Sorted (policyID, row) pairs packed into longs, for binary search by id. */
+  private static long[] indexById(PolicyStore store) {
+    long[] keys = new long[store.size()];
+    for (int row = 0; row < keys.length; row++) {
+      keys[row] = ((long) store.getPolicyIds()[row] << 32) | row;
+    }
+    Arrays.sort(keys);
+    return keys;
+  }
+
+  /** Returns the row of {@code id}, or -1. */
+  private static int find(long[] keys, int id) {
+    int index = Arrays.binarySearch(keys, (long) id << 32);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    if (index < keys.length && (int) (keys[index] >> 32) == id) {
+      return (int) keys[index];
+    }
+    return -1;
+  }
+
+  private static int width(byte type) throws IOException {
+    switch (type) {
+      case TYPE_INT32:
+      case TYPE_FLOAT32:
+        return 4;
+      case TYPE_FLOAT64:
+        return 8;
+      case TYPE_DICTIONARY16:
+        return 2;
+      default:
+        throw new IOException("Unknown policy feed column type " + type);
+    }
+  }
+
+  private static String[] dictionary(PolicyStore store, int column) {
+    switch (COLUMN_NAMES[column]) {
+      case "county":
+        return store.getCounties();
+      case "line":
+        return store.getLines();
+      default:
+        return store.getConstructions();
+    }
+  }
+
+  private static int[] codeColumn(PolicyStore store, int column) {
+    switch (COLUMN_NAMES[column]) {
+      case "county":
+        return store.getCountyCodes();
+      case "line":
+        return store.getLineCodes();
+      default:
+        return store.getConstructionCodes();
+    }
+  }
+
+  private static float[] floatColumn(PolicyStore store, int column) {
+    return COLUMN_NAMES[column].equals("point_latitude")
+        ? store.getLatitudes()
+        : store.getLongitudes();
+  }
+
+  private static double[] doubleColumn(PolicyStore store, int column) {
+    switch (COLUMN_NAMES[column]) {
+      case "eq_site_limit":
+        return store.getEqSiteLimits();
+      case "hu_site_limit":
+        return store.getHuSiteLimits();
+      case "fl_site_limit":
+        return store.getFlSiteLimits();
+      case "fr_site_limit":
+        return store.getFrSiteLimits();
+      case "tiv_2011":
+        return store.getTiv2011();
+      default:
+        return store.getTiv2012();
+    }
+  }
+
+  /** The UTF-8 bytes of every entry, checking that they fit the format. */
+  private static byte[][] encodeDictionary(String column, String[] entries) {
+    if (entries.length > MAX_DICTIONARY_SIZE) {
+      throw new IllegalArgumentException(
+          column
+              + " has "
+              + entries.length
+              + " distinct values, a feed holds at most "
+              + MAX_DICTIONARY_SIZE);
+    }
+    byte[][] encoded = new byte[entries.length][];
+    for (int i = 0; i < entries.length; i++) {
+      encoded[i] = entries[i].getBytes(StandardCharsets.UTF_8);
+      if (encoded[i].length > MAX_STRING_BYTES) {
+        throw new IllegalArgumentException(
+            "A " + column + " value is " + encoded[i].length + " bytes long");
+      }
+    }
+    return encoded;
+  }
+
+  private static void writeString(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readUnsignedShort()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,628 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar, read-only view of the policy exposure dataset uploaded through the NodeJS server.
+ *
+ * <p>Every field is kept in a primitive column indexed by policy: limits and insured values as
+ * doubles, coordinates as floats, and the county, line and construction text as codes into a small
+ * dictionary. The CSV is tokenized straight from bytes, so loading creates no object per row or per
+ * field, and aggregating is a loop over arrays.
+ *
+ * <p>Columns returned by the getters are the store's own arrays and must not be modified.
+ */
+public final class PolicyStore {
+  private final int size;
+  private final int[] policyId;
+  private final double[] eqSiteLimit;
+  private final double[] huSiteLimit;
+  private final double[] flSiteLimit;
+  private final double[] frSiteLimit;
+  private final double[] tiv2011;
+  private final double[] tiv2012;
+  private final float[] latitude;
+  private final float[] longitude;
+  private final int[] countyCode;
+  private final int[] lineCode;
+  private final int[] constructionCode;
+  private final String[] counties;
+  private final String[] lines;
+  private final String[] constructions;
+
+  private PolicyStore(Builder builder) {
+    this(
+        Arrays.copyOf(builder.policyId, builder.size),
+        Arrays.copyOf(builder.eqSiteLimit, builder.size),
+        Arrays.copyOf(builder.huSiteLimit, builder.size),
+        Arrays.copyOf(builder.flSiteLimit, builder.size),
+        Arrays.copyOf(builder.frSiteLimit, builder.size),
+        Arrays.copyOf(builder.tiv2011, builder.size),
+        Arrays.copyOf(builder.tiv2012, builder.size),
+        Arrays.copyOf(builder.latitude, builder.size),
+        Arrays.copyOf(builder.longitude, builder.size),
+        Arrays.copyOf(builder.countyCode, builder.size),
+        Arrays.copyOf(builder.lineCode, builder.size),
+        Arrays.copyOf(builder.constructionCode, builder.size),
+        builder.counties.toArray(),
+        builder.lines.toArray(),
+        builder.constructions.toArray());
+  }
+
+  /** Wraps existing columns, which must all have the same length, without copying them. */
+  PolicyStore(
+      int[] policyId,
+      double[] eqSiteLimit,
+      double[] huSiteLimit,
+      double[] flSiteLimit,
+      double[] frSiteLimit,
+      double[] tiv2011,
+      double[] tiv2012,
+      float[] latitude,
+      float[] longitude,
+      int[] countyCode,
+      int[] lineCode,
+      int[] constructionCode,
+      String[] counties,
+      String[] lines,
+      String[] constructions) {
+    this.size = policyId.length;
+    this.policyId = policyId;
+    this.eqSiteLimit = eqSiteLimit;
+    this.huSiteLimit = huSiteLimit;
+    this.flSiteLimit = flSiteLimit;
+    this.frSiteLimit = frSiteLimit;
+    this.tiv2011 = tiv2011;
+    this.tiv2012 = tiv2012;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.countyCode = countyCode;
+    this.lineCode = lineCode;
+    this.constructionCode = constructionCode;
+    this.counties = counties;
+    this.lines = lines;
+    this.constructions = constructions;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int[] getPolicyIds() {
+    return policyId;
+  }
+
+  public double[] getEqSiteLimits() {
+    return eqSiteLimit;
+  }
+
+  public double[] getHuSiteLimits() {
+    return huSiteLimit;
+  }
+
+  public double[] getFlSiteLimits() {
+    return flSiteLimit;
+  }
+
+  public double[] getFrSiteLimits() {
+    return frSiteLimit;
+  }
+
+  public double[] getTiv2011() {
+    return tiv2011;
+  }
+
+  public double[] getTiv2012() {
+    return tiv2012;
+  }
+
+  public float[] getLatitudes() {
+    return latitude;
+  }
+
+  public float[] getLongitudes() {
+    return longitude;
+  }
+
+  /** Code of each policy's county, an index into {@link #getCounties()}. */
+  public int[] getCountyCodes() {
+    return countyCode;
+  }
+
+  public String[] getCounties() {
+    return counties;
+  }
+
+  /** Code of each policy's line of business, an index into {@link #getLines()}. */
+  public int[] getLineCodes() {
+    return lineCode;
+  }
+
+  public String[] getLines() {
+    return lines;
+  }
+
+  /** Code of each policy's construction type, an index into {@link #getConstructions()}. */
+  public int[] getConstructionCodes() {
+    return constructionCode;
+  }
+
+  public String[] getConstructions() {
+    return constructions;
+  }
+
+  public String getCounty(int policy) {
+    return counties[countyCode[policy]];
+  }
+
+  public String getLine(int policy) {
+    return lines[lineCode[policy]];
+  }
+
+  public String getConstruction(int policy) {
+    return constructions[constructionCode[policy]];
+  }
+
+  /** Sums {@code column}, one of this store's value columns, per county. */
+  public double[] sumByCounty(double[] column) {
+    return sumByCode(column, countyCode, counties.length);
+  }
+
+  /** Sums {@code column}, one of this store's value columns, per line of business. */
+  public double[] sumByLine(double[] column) {
+    return sumByCode(column, lineCode, lines.length);
+  }
+
+  private double[] sumByCode(double[] column, int[] codes, int codeCount) {
+    double[] sums = new double[codeCount];
+    for (int i = 0; i < size; i++) {
+      sums[codes[i]] += column[i];
+    }
+    return sums;
+  }
+
+  /** Parses the dataset from {@code in}, which is read to the end but not closed. */
+  public static PolicyStore read(InputStream in) throws IOException {
+    Builder builder = new Builder();
+    new CsvTokenizer(builder).parse(in);
+    return builder.build();
+  }
+
+  /** Grows the columns of a store one policy at a time. */
+  static final class Builder {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] policyId = new int[INITIAL_CAPACITY];
+    private double[] eqSiteLimit = new double[INITIAL_CAPACITY];
+    private double[] huSiteLimit = new double[INITIAL_CAPACITY];
+    private double[] flSiteLimit = new double[INITIAL_CAPACITY];
+    private double[] frSiteLimit = new double[INITIAL_CAPACITY];
+    private double[] tiv2011 = new double[INITIAL_CAPACITY];
+    private double[] tiv2012 = new double[INITIAL_CAPACITY];
+    private float[] latitude = new float[INITIAL_CAPACITY];
+    private float[] longitude = new float[INITIAL_CAPACITY];
+    private int[] countyCode = new int[INITIAL_CAPACITY];
+    private int[] lineCode = new int[INITIAL_CAPACITY];
+    private int[] constructionCode = new int[INITIAL_CAPACITY];
+    final Dictionary counties = new Dictionary();
+    final Dictionary lines = new Dictionary();
+    final Dictionary constructions = new Dictionary();
+
+    void add(
+        int id,
+        int county,
+        double eqLimit,
+        double huLimit,
+        double flLimit,
+        double frLimit,
+        double insuredValue2011,
+        double insuredValue2012,
+        float lat,
+        float lng,
+        int line,
+        int construction) {
+      if (size == policyId.length) {
+        grow(size * 2);
+      }
+      policyId[size] = id;
+      countyCode[size] = county;
+      eqSiteLimit[size] = eqLimit;
+      huSiteLimit[size] = huLimit;
+      flSiteLimit[size] = flLimit;
+      frSiteLimit[size] = frLimit;
+      tiv2011[size] = insuredValue2011;
+      tiv2012[size] = insuredValue2012;
+      latitude[size] = lat;
+      longitude[size] = lng;
+      lineCode[size] = line;
+      constructionCode[size] = construction;
+      size++;
+    }
+
+    private void grow(int capacity) {
+      policyId = Arrays.copyOf(policyId, capacity);
+      eqSiteLimit = Arrays.copyOf(eqSiteLimit, capacity);
+      huSiteLimit = Arrays.copyOf(huSiteLimit, capacity);
+      flSiteLimit = Arrays.copyOf(flSiteLimit, capacity);
+      frSiteLimit = Arrays.copyOf(frSiteLimit, capacity);
+      tiv2011 = Arrays.copyOf(tiv2011, capacity);
+      tiv2012 = Arrays.copyOf(tiv2012, capacity);
+      latitude = Arrays.copyOf(latitude, capacity);
+      longitude = Arrays.copyOf(longitude, capacity);
+      countyCode = Arrays.copyOf(countyCode, capacity);
+      lineCode = Arrays.copyOf(lineCode, capacity);
+      constructionCode = Arrays.copyOf(constructionCode, capacity);
+    }
+
+    PolicyStore build() {
+      return new PolicyStore(this);
+    }
+  }
+
+  /** Assigns consecutive codes to distinct strings. */
+  static final class Dictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    // The dataset is sorted by county and has few distinct values in the other columns, so most
+    // fields repeat the previous one and are resolved without decoding a String.
+    private byte[] lastBytes = new byte[64];
+    private int lastLength = -1;
+    private int lastCode;
+
+    int encode(String value) {
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = values.size();
+        codes.put(value, code);
+        values.add(value);
+      }
+      return code;
+    }
+
+    int encode(byte[] bytes, int length) {
+      if (length == lastLength && equalBytes(bytes, lastBytes, length)) {
+        return lastCode;
+      }
+      lastCode = encode(new String(bytes, 0, length, StandardCharsets.UTF_8));
+      if (lastBytes.length < length) {
+        lastBytes = new byte[length];
+      }
+      System.arraycopy(bytes, 0, lastBytes, 0, length);
+      lastLength = length;
+      return lastCode;
+    }
+
+    private static boolean equalBytes(byte[] a, byte[] b, int length) {
+      for (int i = 0; i < length; i++) {
+        if (a[i] != b[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    int size() {
+      return values.size();
+    }
+
+    String[] toArray() {
+      return values.toArray(new String[0]);
+    }
+  }
+
+  /**
+   * Streams CSV bytes into a {@link Builder}.
+   *
+   * <p>Accepts \n, \r\n and bare \r line endings (the uploader keeps whatever the spreadsheet
+   * wrote) and quoted fields. Columns are matched by header name, unknown ones are skipped.
+   */
+  private static final class CsvTokenizer {
+    private static final int IGNORED = -1;
+    private static final int POLICY_ID = 0;
+    private static final int COUNTY = 1;
+    private static final int EQ_SITE_LIMIT = 2;
+    private static final int HU_SITE_LIMIT = 3;
+    private static final int FL_SITE_LIMIT = 4;
+    private static final int FR_SITE_LIMIT = 5;
+    private static final int TIV_2011 = 6;
+    private static final int TIV_2012 = 7;
+    private static final int LATITUDE = 8;
+    private static final int LONGITUDE = 9;
+    private static final int LINE = 10;
+    private static final int CONSTRUCTION = 11;
+    private static final int FIELD_COUNT = 12;
+
+    private static final int NO_CODE = -1;
+
+    // Exact powers of ten, see parseDouble.
+    private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+      1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Builder builder;
+    private final List<String> header = new ArrayList<>();
+    // Which field each CSV column holds, filled in from the header.
+    private int[] columnFields = new int[0];
+
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private int column;
+    private int lineNumber = 1;
+    private boolean inHeader = true;
+    private boolean quoted;
+    private boolean closedQuote;
+
+    // The row being read.
+    private final double[] numbers = new double[FIELD_COUNT];
+    private final int[] codes = new int[FIELD_COUNT];
+
+    CsvTokenizer(Builder builder) {
+      this.builder = builder;
+      Arrays.fill(codes, NO_CODE);
+    }
+
+    void parse(InputStream in) throws IOException {
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++) {
+          accept(buffer[i]);
+        }
+      }
+      if (column > 0 || fieldLength > 0) {
+        endLine();
+      }
+      if (inHeader) {
+        throw new IOException("Policy data has no header");
+      }
+    }
+
+    private void accept(byte c) throws IOException {
+      if (quoted) {
+        if (c == '"') {
+          quoted = false;
+          closedQuote = true;
+        } else {
+          append(c);
+        }
+        return;
+      }
+
+      switch (c) {
+        case '"':
+          if (closedQuote) {
+            // A doubled quote inside a quoted field.
+            append(c);
+          }
+          quoted = true;
+          break;
+        case ',':
+          endField();
+          break;
+        case '\r':
+        case '\n':
+          if (column > 0 || fieldLength > 0) {
+            endLine();
+          }
+          break;
+        default:
+          append(c);
+      }
+      closedQuote = false;
+    }
+
+    private void append(byte c) {
+      if (fieldLength == field.length) {
+        field = Arrays.copyOf(field, field.length * 2);
+      }
+      field[fieldLength++] = c;
+    }
+
+    private void endField() throws IOException {
+      if (inHeader) {
+        String name = new String(field, 0, fieldLength, StandardCharsets.UTF_8).trim();
+        // Spreadsheets often start the file with a byte order mark.
+        header.add(column == 0 ? name.replace("\uFEFF", "") : name);
+      } else {
+        int target = column < columnFields.length ? columnFields[column] : IGNORED;
+        switch (target) {
+          case IGNORED:
+            break;
+          case COUNTY:
+            codes[COUNTY] = builder.counties.encode(field, fieldLength);
+            break;
+          case LINE:
+            codes[LINE] = builder.lines.encode(field, fieldLength);
+            break;
+          case CONSTRUCTION:
+            codes[CONSTRUCTION] = builder.constructions.encode(field, fieldLength);
+            break;
+          default:
+            numbers[target] = parseDouble();
+        }
+      }
+      fieldLength = 0;
+      column++;
+    }
+
+    private void endLine() throws IOException {
+      endField();
+      if (inHeader) {
+        mapHeader();
+        inHeader = false;
+      } else {
+        builder.add(
+            (int) numbers[POLICY_ID],
+            codeOrBlank(codes[COUNTY], builder.counties),
+            numbers[EQ_SITE_LIMIT],
+            numbers[HU_SITE_LIMIT],
+            numbers[FL_SITE_LIMIT],
+            numbers[FR_SITE_LIMIT],
+            numbers[TIV_2011],
+            numbers[TIV_2012],
+            (float) numbers[LATITUDE],
+            (float) numbers[LONGITUDE],
+            codeOrBlank(codes[LINE], builder.lines),
+            codeOrBlank(codes[CONSTRUCTION], builder.constructions));
+      }
+      Arrays.fill(numbers, 0);
+      Arrays.fill(codes, NO_CODE);
+      column = 0;
+      lineNumber++;
+    }
+
+    /** Rows that are missing a text column get the code of the empty string. */
+    private static int codeOrBlank(int code, Dictionary dictionary) {
+      return code == NO_CODE ? dictionary.encode("") : code;
+    }
+
+    private void mapHeader() throws IOException {
+      columnFields = new int[header.size()];
+      boolean hasId = false;
+      boolean hasLatitude = false;
+      boolean hasLongitude = false;
+      for (int i = 0; i < columnFields.length; i++) {
+        int target = fieldForColumn(header.get(i));
+        columnFields[i] = target;
+        hasId |= target == POLICY_ID;
+        hasLatitude |= target == LATITUDE;
+        hasLongitude |= target == LONGITUDE;
+      }
+      if (!hasId || !hasLatitude || !hasLongitude) {
+        throw new IOException("Policy data needs policyID, point_latitude and point_longitude");
+      }
+    }
+
+    private static int fieldForColumn(String name) {
+      switch (name) {
+        case "policyID":
+          return POLICY_ID;
+        case "county":
+          return COUNTY;
+        case "eq_site_limit":
+          return EQ_SITE_LIMIT;
+        case "hu_site_limit":
+          return HU_SITE_LIMIT;
+        case "fl_site_limit":
+          return FL_SITE_LIMIT;
+        case "fr_site_limit":
+          return FR_SITE_LIMIT;
+        case "tiv_2011":
+          return TIV_2011;
+        case "tiv_2012":
+          return TIV_2012;
+        case "point_latitude":
+          return LATITUDE;
+        case "point_longitude":
+          return LONGITUDE;
+        case "line":
+          return LINE;
+        case "construction":
+          return CONSTRUCTION;
+        default:
+          return IGNORED;
+      }
+    }
+
+    /**
+     * Parses the current field as a decimal number without creating a String.
+     *
+     * <p>When the digits fit in 15 significant figures and the power of ten is small, both are exact
+     * doubles and one multiplication or division rounds correctly. That covers every value in the
+     * dataset; anything else falls back to {@link Double#parseDouble}.
+     */
+    private double parseDouble() throws IOException {
+      int i = 0;
+      int end = fieldLength;
+      while (i < end && field[i] == ' ') {
+        i++;
+      }
+      while (end > i && field[end - 1] == ' ') {
+        end--;
+      }
+      if (i == end) {
+        return 0;
+      }
+
+      int start = i;
+      boolean negative = false;
+      if (field[i] == '-' || field[i] == '+') {
+        negative = field[i] == '-';
+        i++;
+      }
+      long mantissa = 0;
+      int digits = 0;
+      int exponent = 0;
+      boolean seenPoint = false;
+      boolean seenDigit = false;
+      for (; i < end; i++) {
+        byte c = field[i];
+        if (c >= '0' && c <= '9') {
+          seenDigit = true;
+          if (mantissa == 0 && c == '0') {
+            // Leading zeros are not significant.
+          } else if (digits < 15) {
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+          } else {
+            return parseSlow(start, end);
+          }
+          if (seenPoint) {
+            exponent--;
+          }
+        } else if (c == '.' && !seenPoint) {
+          seenPoint = true;
+        } else if (c == 'e' || c == 'E') {
+          return parseSlow(start, end);
+        } else {
+          throw new IOException(
+              "Bad number '"
+                  + new String(field, start, end - start, StandardCharsets.UTF_8)
+                  + "' on line "
+                  + lineNumber);
+        }
+      }
+      if (!seenDigit) {
+        return parseSlow(start, end);
+      }
+      if (-exponent >= POWERS_OF_TEN.length) {
+        return parseSlow(start, end);
+      }
+      double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+      return negative ? -value : value;
+    }
+
+    private double parseSlow(int start, int end) throws IOException {
+      String text = new String(field, start, end - start, StandardCharsets.UTF_8);
+      try {
+        return Double.parseDouble(text);
+      } catch (NumberFormatException e) {
+        throw new IOException("Bad number '" + text + "' on line " + lineNumber, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * How the policy clusters of a {@link ClusterHierarchy} change from year to year, as keyframes
+ * for playback.
+ *
+ * <p>data.csv has the total insured value of each policy for 2011 and 2012, giving one key per
+ * year. Every cluster gets two channels: {@link #SCALE}, the cluster's total insured value that
+ * year relative to its largest year, square rooted so that the area of its marker follows the
+ * value; and {@link #SHADE}, the mean insured value per policy on a log scale, from 0 for the
+ * lowest of any cluster in any year to 1 for the highest.
+ */
+public final class PolicyTimeline {
+  public static final int SCALE = 0;
+  public static final int SHADE = 1;
+  public static final int CHANNEL_COUNT = 2;
+
+  public static final float FIRST_YEAR = 2011;
+  public static final float LAST_YEAR = 2012;
+
+  // Keeps clusters that lost nearly all their value visible.
+  private static final float MIN_SCALE = 0.25f;
+
+  private final ClusterHierarchy hierarchy;
+  private final KeyframeTrack track;
+
+  private PolicyTimeline(ClusterHierarchy hierarchy, KeyframeTrack track) {
+    this.hierarchy = hierarchy;
+    this.track = track;
+  }
+
+  /** Builds the keyframes of every cluster of {@code hierarchy}, built from {@code store}. */
+  public static PolicyTimeline build(PolicyStore store, ClusterHierarchy hierarchy) {
+    double[][] totals = {hierarchy.sum(store.getTiv2011()), hierarchy.sum(store.getTiv2012())};
+    int clusterCount = hierarchy.getClusterCount();
+    KeyframeTrack track =
+        new KeyframeTrack(new float[] {FIRST_YEAR, LAST_YEAR}, clusterCount, CHANNEL_COUNT);
+
+    // The range of the mean value per policy, to spread the shades over.
+    double minMean = Double.POSITIVE_INFINITY;
+    double maxMean = Double.NEGATIVE_INFINITY;
+    for (double[] yearTotals : totals) {
+      for (int cluster = 0; cluster < clusterCount; cluster++) {
+        double mean = logMean(yearTotals[cluster], hierarchy.getCount(cluster));
+        minMean = Math.min(minMean, mean);
+        maxMean = Math.max(maxMean, mean);
+      }
+    }
+    double meanRange = maxMean > minMean ? maxMean - minMean : 1;
+
+    for (int cluster = 0; cluster < clusterCount; cluster++) {
+      double largest = 0;
+      for (double[] yearTotals : totals) {
+        largest = Math.max(largest, yearTotals[cluster]);
+      }
+      for (int key = 0; key < totals.length; key++) {
+        double total = totals[key][cluster];
+        float scale = largest > 0 ? (float) Math.sqrt(total / largest) : 1;
+        float shade =
+            (float) ((logMean(total, hierarchy.getCount(cluster)) - minMean) / meanRange);
+        track.setValue(key, cluster, SCALE, Math.max(scale, MIN_SCALE));
+        track.setValue(key, cluster, SHADE, shade);
+      }
+    }
+    return new PolicyTimeline(hierarchy, track);
+  }
+
+  private static double logMean(double total, int count) {
+    return Math.log10(Math.max(total / Math.max(count, 1), 1));
+  }
+
+  /** The hierarchy whose clusters are the entities of the track. */
+  public ClusterHierarchy getHierarchy() {
+    return hierarchy;
+  }
+
+  public KeyframeTrack getTrack() {
+    return track;
+  }
+}
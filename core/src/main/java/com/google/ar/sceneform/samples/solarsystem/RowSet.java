@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/** A set of row indices of a table, as a bitmap of one bit per row. */
+public final class RowSet {
+  private final int size;
+  final long[] words;
+
+  /** Creates an empty set over a table of {@code size} rows. */
+  public RowSet(int size) {
+    this.size = size;
+    this.words = new long[(size + 63) >>> 6];
+  }
+
+  /** Number of rows in the table, not in the set. */
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(int row) {
+    return (words[row >>> 6] & (1L << row)) != 0;
+  }
+
+  public void add(int row) {
+    words[row >>> 6] |= 1L << row;
+  }
+
+  public void remove(int row) {
+    words[row >>> 6] &= ~(1L << row);
+  }
+
+  /** Number of rows in the set. */
+  public int count() {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  void clear() {
+    Arrays.fill(words, 0);
+  }
+
+  /** Adds every row of the table. */
+  void fill() {
+    Arrays.fill(words, -1L);
+    int tail = size & 63;
+    if (tail != 0) {
+      words[words.length - 1] = (1L << tail) - 1;
+    }
+  }
+
+  /** Keeps only the rows also in {@code other}. */
+  void retainAll(RowSet other) {
+    for (int i = 0; i < words.length; i++) {
+      words[i] &= other.words[i];
+    }
+  }
+
+  /** Adds the rows from {@code start} to {@code end} of {@code rows}. */
+  void addAll(int[] rows, int start, int end) {
+    for (int i = start; i < end; i++) {
+      words[rows[i] >>> 6] |= 1L << rows[i];
+    }
+  }
+
+  /** Removes the rows from {@code start} to {@code end} of {@code rows}. */
+  void removeAll(int[] rows, int start, int end) {
+    for (int i = start; i < end; i++) {
+      words[rows[i] >>> 6] &= ~(1L << rows[i]);
+    }
+  }
+}
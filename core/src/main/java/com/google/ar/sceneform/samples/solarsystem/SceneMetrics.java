@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Where the time goes in the scene: one {@link LatencyHistogram} per {@link Metric}, plus the
+ * latest node and renderable counts.
+ *
+ * <p>Per-frame metrics are recorded on the UI thread and one-off durations such as parsing may be
+ * recorded from any thread. {@link #summary()} formats the percentiles for the on-screen HUD and
+ * {@link #snapshot()} copies everything so it can be written to a file off the UI thread.
+ */
+public final class SceneMetrics {
+  /** What is being timed. */
+  public enum Metric {
+    /** Everything the scene's update listeners do in one frame. */
+    FRAME_UPDATE("frame update"),
+    /** Time between frames, the inverse of the frame rate. */
+    FRAME_INTERVAL("frame interval"),
+    ORBITAL_CLOCK("orbital clock"),
+    /** Updating the scene model's transforms and billboards, and copying them out to the nodes. */
+    SCENE_MODEL("scene model"),
+    LEVEL_OF_DETAIL("level of detail"),
+    CITY_LOAD("city load"),
+    /** Selecting a city: creating and activating its node and moving the info card onto it. */
+    CITY_ACTIVATION("city activation"),
+    /** Inflating the info card's view, which happens once however many cities are selected. */
+    INFO_CARD_BUILD("info card build"),
+    POLICY_PARSE("policy parse"),
+    /** Polls of the upload server that returned a new dataset, including the download. */
+    POLICY_FETCH("policy fetch"),
+    POLICY_CLUSTER("policy cluster"),
+    SCENE_BUILD("scene build"),
+    /** From resuming with the scene already built until it is anchored and tracking again. */
+    SCENE_RESTORE("scene restore"),
+    SEARCH_BUILD("search build"),
+    /** One keystroke's worth of city search. */
+    SEARCH_QUERY("search query"),
+    /** Selecting the cities and policies matching a filter, and handing them to the markers. */
+    FILTER("filter"),
+    /** Decoding one globe tile, on one of several tile executors. */
+    TILE_DECODE("tile decode"),
+    /** One frame of year playback: interpolating every cluster and updating their markers. */
+    PLAYBACK("playback");
+
+    private final String label;
+
+    Metric(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  private static final Metric[] METRICS = Metric.values();
+
+  private final LatencyHistogram[] histograms = new LatencyHistogram[METRICS.length];
+  private volatile int nodeCount;
+  private volatile int renderableCount;
+
+  public SceneMetrics() {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+  }
+
+  private SceneMetrics(LatencyHistogram[] histograms, int nodeCount, int renderableCount) {
+    System.arraycopy(histograms, 0, this.histograms, 0, histograms.length);
+    this.nodeCount = nodeCount;
+    this.renderableCount = renderableCount;
+  }
+
+  /** Records a duration measured with {@link System#nanoTime()}. */
+  public void record(Metric metric, long nanos) {
+    histograms[metric.ordinal()].record(nanos);
+  }
+
+  /** Records the time since {@code startNanos}, a value of {@link System#nanoTime()}. */
+  public void recordSince(Metric metric, long startNanos) {
+    histograms[metric.ordinal()].record(System.nanoTime() - startNanos);
+  }
+
+  public LatencyHistogram get(Metric metric) {
+    return histograms[metric.ordinal()];
+  }
+
+  /** Updates the number of nodes in the scene and how many of them have a renderable. */
+  public void setSceneCounts(int nodeCount, int renderableCount) {
+    this.nodeCount = nodeCount;
+    this.renderableCount = renderableCount;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  public int getRenderableCount() {
+    return renderableCount;
+  }
+
+  /** Copies every histogram and count as they are now. */
+  public SceneMetrics snapshot() {
+    LatencyHistogram[] copies = new LatencyHistogram[histograms.length];
+    for (int i = 0; i < histograms.length; i++) {
+      copies[i] = histograms[i].copy();
+    }
+    return new SceneMetrics(copies, nodeCount, renderableCount);
+  }
+
+  /** A few lines for the HUD: counts, then p50/p95/p99 in milliseconds per recorded metric. */
+  public String summary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(
+        String.format(Locale.US, "nodes %d, renderables %d\n", nodeCount, renderableCount));
+    summary.append("ms                p50   p95   p99\n");
+    for (Metric metric : METRICS) {
+      LatencyHistogram histogram = histograms[metric.ordinal()];
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      summary.append(
+          String.format(
+              Locale.US,
+              "%-15s %5.1f %5.1f %5.1f\n",
+              metric.getLabel(),
+              histogram.getPercentileNanos(50) / 1e6,
+              histogram.getPercentileNanos(95) / 1e6,
+              histogram.getPercentileNanos(99) / 1e6));
+    }
+    return summary.toString();
+  }
+
+  /**
+   * Writes one CSV row per metric, with durations in microseconds, followed by the scene counts.
+   */
+  public void writeCsv(File file) throws IOException {
+    try (Writer out =
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      out.write("metric,count,mean_us,p50_us,p95_us,p99_us,max_us\n");
+      for (Metric metric : METRICS) {
+        LatencyHistogram histogram = histograms[metric.ordinal()];
+        out.write(
+            String.format(
+                Locale.US,
+                "%s,%d,%d,%d,%d,%d,%d\n",
+                metric.getLabel(),
+                histogram.getCount(),
+                histogram.getMeanNanos() / 1000,
+                histogram.getPercentileNanos(50) / 1000,
+                histogram.getPercentileNanos(95) / 1000,
+                histogram.getPercentileNanos(99) / 1000,
+                histogram.getMaxNanos() / 1000));
+      }
+      out.write(String.format(Locale.US, "nodes,%d,,,,,\n", nodeCount));
+      out.write(String.format(Locale.US, "renderables,%d,,,,,\n", renderableCount));
+    }
+  }
+}
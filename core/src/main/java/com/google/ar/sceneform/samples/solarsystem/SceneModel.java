@@ -0,0 +1,308 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * A transform hierarchy with no renderer behind it, which runs the scene's per-frame logic on a
+ * device and off it alike.
+ *
+ * <p>An entity is a row number with a parent, a local position, rotation and uniform scale, and an
+ * enabled flag. World matrices are kept column-major, the layout of Sceneform's {@code
+ * Matrix.data}. On a device the app's {@code SceneModelSystem} makes Sceneform nodes views over
+ * entities, copying their rotations out every frame; off device the same frames run on their own.
+ * A frame is {@link OrbitalClock#advance} followed by {@link #update}, and steady-state frames do
+ * not allocate.
+ *
+ * <p>Entities are never removed, disable them instead. A parent must be added before its children,
+ * so one pass in row order updates every world matrix. An entity can also be placed with {@link
+ * #setWorldMatrix}, for one that is moved by something outside the model, like a node that the app
+ * positions itself.
+ */
+public class SceneModel {
+  /** Parent of entities at the root of the scene. */
+  public static final int NO_PARENT = -1;
+
+  private static final int MATRIX_SIZE = 16;
+
+  private int size;
+  private int[] parents = new int[8];
+  private float[] positions = new float[8 * 3];
+  // Quaternions, packed xyzw.
+  private float[] rotations = new float[8 * 4];
+  private float[] scales = new float[8];
+  private boolean[] enabled = new boolean[8];
+  // Placed by setWorldMatrix rather than by its local transform.
+  private boolean[] placed = new boolean[8];
+  // Enabled, and so are all its ancestors. Only active entities have an up to date world matrix.
+  private boolean[] active = new boolean[8];
+  private float[] worldMatrices = new float[8 * MATRIX_SIZE];
+
+  private final BillboardTracker billboards = new BillboardTracker();
+  // Entity of each billboard slot.
+  private int[] billboardEntities = new int[8];
+  private int facedCount;
+
+  private final float[] scratchRotation = new float[4];
+
+  /** Receives the rotation of one entity from an {@link OrbitalClock}. */
+  private final class RotationTarget implements OrbitalClock.Target {
+    private final int entity;
+
+    RotationTarget(int entity) {
+      this.entity = entity;
+    }
+
+    @Override
+    public void setRotation(float x, float y, float z, float w) {
+      setLocalRotation(entity, x, y, z, w);
+    }
+  }
+
+  /**
+   * Adds an enabled entity at the origin of {@code parent} and returns it.
+   *
+   * @param parent an entity that was already added, or {@link #NO_PARENT}
+   */
+  public int add(int parent) {
+    if (parent < NO_PARENT || parent >= size) {
+      throw new IllegalArgumentException("Unknown parent " + parent);
+    }
+    ensureCapacity(size + 1);
+    int entity = size++;
+    parents[entity] = parent;
+    setLocalPosition(entity, 0, 0, 0);
+    setLocalRotation(entity, 0, 0, 0, 1);
+    scales[entity] = 1;
+    enabled[entity] = true;
+    return entity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getParent(int entity) {
+    return parents[entity];
+  }
+
+  public void setLocalPosition(int entity, float x, float y, float z) {
+    int index = entity * 3;
+    positions[index] = x;
+    positions[index + 1] = y;
+    positions[index + 2] = z;
+  }
+
+  public void setLocalRotation(int entity, float x, float y, float z, float w) {
+    int index = entity * 4;
+    rotations[index] = x;
+    rotations[index + 1] = y;
+    rotations[index + 2] = z;
+    rotations[index + 3] = w;
+  }
+
+  /** Writes the local rotation of {@code entity} as a quaternion (x, y, z, w) into {@code out}. */
+  public void getLocalRotation(int entity, float[] out) {
+    System.arraycopy(rotations, entity * 4, out, 0, 4);
+  }
+
+  public void setLocalScale(int entity, float scale) {
+    scales[entity] = scale;
+  }
+
+  public void setEnabled(int entity, boolean enabled) {
+    this.enabled[entity] = enabled;
+  }
+
+  /**
+   * Places {@code entity} at a world matrix, 16 floats in column-major order from {@code offset},
+   * instead of at its local transform. It keeps that matrix until it is placed again.
+   */
+  public void setWorldMatrix(int entity, float[] matrix, int offset) {
+    placed[entity] = true;
+    System.arraycopy(matrix, offset, worldMatrices, entity * MATRIX_SIZE, MATRIX_SIZE);
+  }
+
+  /** Whether {@code entity} and all its ancestors were enabled at the last {@link #update}. */
+  public boolean isActive(int entity) {
+    return active[entity];
+  }
+
+  /** Returns a target that writes a clock's rotation into the local rotation of {@code entity}. */
+  public OrbitalClock.Target rotationTarget(int entity) {
+    return new RotationTarget(entity);
+  }
+
+  /** Keeps {@code entity} facing the camera, like an info card. It should have no children. */
+  public void addBillboard(int entity) {
+    int slot = billboards.add();
+    if (billboardEntities.length <= slot) {
+      billboardEntities = Arrays.copyOf(billboardEntities, billboardEntities.length * 2);
+    }
+    billboardEntities[slot] = entity;
+  }
+
+  /**
+   * Every world matrix, 16 floats per entity in column-major order, which callers must not modify.
+   */
+  public float[] getWorldMatrices() {
+    return worldMatrices;
+  }
+
+  /** Number of billboards that were turned by the last {@link #update}. */
+  public int getFacedCount() {
+    return facedCount;
+  }
+
+  /** Updates every world matrix, then turns the billboards towards the camera. */
+  public void update(float cameraX, float cameraY, float cameraZ) {
+    updateTransforms();
+    faceCamera(cameraX, cameraY, cameraZ);
+  }
+
+  /** Recomputes the active flag and world matrix of every entity from the local transforms. */
+  public void updateTransforms() {
+    for (int entity = 0; entity < size; entity++) {
+      int parent = parents[entity];
+      active[entity] = enabled[entity] && (parent == NO_PARENT || active[parent]);
+      if (active[entity] && !placed[entity]) {
+        updateWorldMatrix(entity);
+      }
+    }
+  }
+
+  /**
+   * Turns the active billboards towards the camera, updating their world matrices. Expects the
+   * world matrices to be up to date.
+   */
+  public void faceCamera(float cameraX, float cameraY, float cameraZ) {
+    billboards.setCamera(cameraX, cameraY, cameraZ);
+    facedCount = 0;
+    for (int slot = 0; slot < billboards.size(); slot++) {
+      int entity = billboardEntities[slot];
+      if (!active[entity]) {
+        continue;
+      }
+      int parent = parents[entity];
+      if (billboards.update(
+          slot,
+          worldMatrices,
+          entity * MATRIX_SIZE,
+          parent == NO_PARENT ? null : worldMatrices,
+          parent * MATRIX_SIZE,
+          scratchRotation)) {
+        setLocalRotation(
+            entity, scratchRotation[0], scratchRotation[1], scratchRotation[2], scratchRotation[3]);
+        updateWorldMatrix(entity);
+        facedCount++;
+      }
+    }
+  }
+
+  /** World = parent world * translation * rotation * scale. */
+  private void updateWorldMatrix(int entity) {
+    int r = entity * 4;
+    float x = rotations[r];
+    float y = rotations[r + 1];
+    float z = rotations[r + 2];
+    float w = rotations[r + 3];
+    float scale = scales[entity];
+
+    // Local rotation * scale, column by column.
+    float l00 = (1 - 2 * (y * y + z * z)) * scale;
+    float l01 = 2 * (x * y + w * z) * scale;
+    float l02 = 2 * (x * z - w * y) * scale;
+    float l10 = 2 * (x * y - w * z) * scale;
+    float l11 = (1 - 2 * (x * x + z * z)) * scale;
+    float l12 = 2 * (y * z + w * x) * scale;
+    float l20 = 2 * (x * z + w * y) * scale;
+    float l21 = 2 * (y * z - w * x) * scale;
+    float l22 = (1 - 2 * (x * x + y * y)) * scale;
+    int t = entity * 3;
+    float tx = positions[t];
+    float ty = positions[t + 1];
+    float tz = positions[t + 2];
+
+    float[] m = worldMatrices;
+    int o = entity * MATRIX_SIZE;
+    int parent = parents[entity];
+    if (parent == NO_PARENT) {
+      setColumn(o, l00, l01, l02, 0);
+      setColumn(o + 4, l10, l11, l12, 0);
+      setColumn(o + 8, l20, l21, l22, 0);
+      setColumn(o + 12, tx, ty, tz, 1);
+      return;
+    }
+
+    int p = parent * MATRIX_SIZE;
+    float p00 = m[p];
+    float p01 = m[p + 1];
+    float p02 = m[p + 2];
+    float p10 = m[p + 4];
+    float p11 = m[p + 5];
+    float p12 = m[p + 6];
+    float p20 = m[p + 8];
+    float p21 = m[p + 9];
+    float p22 = m[p + 10];
+    setColumn(
+        o,
+        p00 * l00 + p10 * l01 + p20 * l02,
+        p01 * l00 + p11 * l01 + p21 * l02,
+        p02 * l00 + p12 * l01 + p22 * l02,
+        0);
+    setColumn(
+        o + 4,
+        p00 * l10 + p10 * l11 + p20 * l12,
+        p01 * l10 + p11 * l11 + p21 * l12,
+        p02 * l10 + p12 * l11 + p22 * l12,
+        0);
+    setColumn(
+        o + 8,
+        p00 * l20 + p10 * l21 + p20 * l22,
+        p01 * l20 + p11 * l21 + p21 * l22,
+        p02 * l20 + p12 * l21 + p22 * l22,
+        0);
+    setColumn(
+        o + 12,
+        p00 * tx + p10 * ty + p20 * tz + m[p + 12],
+        p01 * tx + p11 * ty + p21 * tz + m[p + 13],
+        p02 * tx + p12 * ty + p22 * tz + m[p + 14],
+        1);
+  }
+
+  private void setColumn(int offset, float x, float y, float z, float w) {
+    worldMatrices[offset] = x;
+    worldMatrices[offset + 1] = y;
+    worldMatrices[offset + 2] = z;
+    worldMatrices[offset + 3] = w;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (parents.length >= capacity) {
+      return;
+    }
+    int grown = Math.max(capacity, parents.length * 2);
+    parents = Arrays.copyOf(parents, grown);
+    positions = Arrays.copyOf(positions, grown * 3);
+    rotations = Arrays.copyOf(rotations, grown * 4);
+    scales = Arrays.copyOf(scales, grown);
+    enabled = Arrays.copyOf(enabled, grown);
+    placed = Arrays.copyOf(placed, grown);
+    active = Arrays.copyOf(active, grown);
+    worldMatrices = Arrays.copyOf(worldMatrices, grown * MATRIX_SIZE);
+  }
+}
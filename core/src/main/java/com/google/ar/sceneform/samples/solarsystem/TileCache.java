@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of decoded tiles, bounded by their size in bytes rather than count.
+ *
+ * <p>Adding a tile evicts the least recently used ones until the total fits the budget again, but
+ * never the tile just added, so a single tile larger than the budget is still kept until the next
+ * one arrives. Evicted values are handed to an {@link EvictionListener} so that their owner can
+ * release them. Not thread safe.
+ *
+ * @param <V> the decoded tile, such as a texture
+ */
+public final class TileCache<V> {
+  /** Told about every value the cache lets go of. */
+  public interface EvictionListener<V> {
+    void onEvicted(int key, V value);
+  }
+
+  private static final class Entry<V> {
+    final V value;
+    final long bytes;
+
+    Entry(V value, long bytes) {
+      this.value = value;
+      this.bytes = bytes;
+    }
+  }
+
+  private final long budgetBytes;
+  private final EvictionListener<V> evictionListener;
+  // Iterates from least to most recently used.
+  private final LinkedHashMap<Integer, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long sizeBytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  public TileCache(long budgetBytes, EvictionListener<V> evictionListener) {
+    this.budgetBytes = budgetBytes;
+    this.evictionListener = evictionListener;
+  }
+
+  /** Returns the tile, marking it as the most recently used, or null if it isn't cached. */
+  public V get(int key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.value;
+  }
+
+  /** Whether the tile is cached, without counting as a use. */
+  public boolean contains(int key) {
+    return entries.containsKey(key);
+  }
+
+  /** Adds or replaces a tile, then evicts older tiles until the cache fits its budget. */
+  public void put(int key, V value, long bytes) {
+    Entry<V> previous = entries.put(key, new Entry<>(value, bytes));
+    sizeBytes += bytes;
+    if (previous != null) {
+      sizeBytes -= previous.bytes;
+      if (previous.value != value) {
+        evictionListener.onEvicted(key, previous.value);
+      }
+    }
+
+    Iterator<Map.Entry<Integer, Entry<V>>> eldest = entries.entrySet().iterator();
+    while (sizeBytes > budgetBytes && entries.size() > 1) {
+      Map.Entry<Integer, Entry<V>> evicted = eldest.next();
+      eldest.remove();
+      sizeBytes -= evicted.getValue().bytes;
+      evictionCount++;
+      evictionListener.onEvicted(evicted.getKey(), evicted.getValue().value);
+    }
+  }
+
+  /** Drops every tile, telling the listener about each. */
+  public void clear() {
+    for (Map.Entry<Integer, Entry<V>> entry : entries.entrySet()) {
+      evictionListener.onEvicted(entry.getKey(), entry.getValue().value);
+    }
+    entries.clear();
+    sizeBytes = 0;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  public long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Layout of the globe texture as a pyramid of equirectangular tiles, and the choice of which tiles
+ * to draw for a camera position.
+ *
+ * <p>Level {@code L} covers the whole globe with {@code 2^(L+1)} columns from -180 to 180 degrees
+ * longitude and {@code 2^L} rows from the north to the south pole, each tile {@link #getTileSize()}
+ * pixels square. Every tile has four children covering the same area at the next level.
+ *
+ * <p>Tiles are identified by a key packing the level, row and column, see {@link #key(int, int,
+ * int)}. The pyramid is generated at build time, along with a small properties file describing it.
+ */
+public final class TilePyramid {
+  public static final String MANIFEST_ASSET = "tiles/pyramid.properties";
+
+  private static final int COORDINATE_BITS = 12;
+  private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+  // Closer than this to the surface, in units of the globe's radius, needs no extra detail.
+  private static final float MIN_DISTANCE_ABOVE_SURFACE = 0.05f;
+
+  private final int tileSize;
+  private final int levelCount;
+
+  public TilePyramid(int tileSize, int levelCount) {
+    this.tileSize = tileSize;
+    this.levelCount = levelCount;
+  }
+
+  /** The pyramid whose finest level is the first to be at least as wide as the source image. */
+  public static TilePyramid forSourceWidth(int sourceWidth, int tileSize) {
+    int levels = 1;
+    while (columns(levels - 1) * tileSize < sourceWidth && levels < COORDINATE_BITS) {
+      levels++;
+    }
+    return new TilePyramid(tileSize, levels);
+  }
+
+  public static TilePyramid read(InputStream in) throws IOException {
+    Properties properties = new Properties();
+    properties.load(in);
+    try {
+      return new TilePyramid(
+          Integer.parseInt(properties.getProperty("tileSize")),
+          Integer.parseInt(properties.getProperty("levelCount")));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid tile pyramid manifest", e);
+    }
+  }
+
+  public void write(OutputStream out) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("tileSize", Integer.toString(tileSize));
+    properties.setProperty("levelCount", Integer.toString(levelCount));
+    properties.store(out, "Globe tile pyramid");
+  }
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public int getLevelCount() {
+    return levelCount;
+  }
+
+  public static int columns(int level) {
+    return 2 << level;
+  }
+
+  public static int rows(int level) {
+    return 1 << level;
+  }
+
+  public static int key(int level, int row, int column) {
+    return (level << (2 * COORDINATE_BITS)) | (row << COORDINATE_BITS) | column;
+  }
+
+  public static int level(int key) {
+    return key >>> (2 * COORDINATE_BITS);
+  }
+
+  public static int row(int key) {
+    return (key >>> COORDINATE_BITS) & COORDINATE_MASK;
+  }
+
+  public static int column(int key) {
+    return key & COORDINATE_MASK;
+  }
+
+  /** The tile one level up that covers this one. Level 0 tiles have no parent. */
+  public static int parent(int key) {
+    return key(level(key) - 1, row(key) / 2, column(key) / 2);
+  }
+
+  public static float north(int key) {
+    return 90f - 180f * row(key) / rows(level(key));
+  }
+
+  public static float south(int key) {
+    return 90f - 180f * (row(key) + 1) / rows(level(key));
+  }
+
+  public static float west(int key) {
+    return -180f + 360f * column(key) / columns(level(key));
+  }
+
+  public static float east(int key) {
+    return -180f + 360f * (column(key) + 1) / columns(level(key));
+  }
+
+  /** Path of a tile's image relative to the assets directory. */
+  public static String assetPath(int key) {
+    return String.format(Locale.US, "tiles/%d/%d_%d.jpg", level(key), row(key), column(key));
+  }
+
+  /**
+   * The coarsest level whose texels are no larger than a screen pixel, for a patch of the globe
+   * seen head on from {@code distance} away.
+   *
+   * @param distance from the camera to the patch, in units of the globe's radius
+   * @param pixelsPerRadian how many screen pixels a radian of the camera's field of view spans
+   */
+  public int levelFor(float distance, float pixelsPerRadian) {
+    // Screen pixels covered by one radian of the globe's surface, against texels per radian.
+    float needed = pixelsPerRadian / Math.max(distance, MIN_DISTANCE_ABOVE_SURFACE);
+    for (int level = 0; level < levelCount; level++) {
+      if (columns(level) * tileSize / (2 * Math.PI) >= needed) {
+        return level;
+      }
+    }
+    return levelCount - 1;
+  }
+
+  /**
+   * Chooses tiles that cover the whole globe between them, finest where the camera looks closest.
+   *
+   * <p>Starting from level 0, a tile is split into its children while it is at least partly in
+   * view and coarser than {@link #levelFor} its distance from the camera asks for. Coarse tiles are
+   * split before fine ones, so when {@code maxTiles} runs out the detail is spread evenly.
+   *
+   * @param cameraLatitude latitude of the point under the camera, in degrees
+   * @param cameraLongitude longitude of the point under the camera, in degrees
+   * @param cameraDistance from the camera to the centre of the globe, in units of its radius
+   * @param out receives the tile keys, must hold at least {@code maxTiles} entries
+   * @return the number of keys written to {@code out}
+   */
+  public int select(
+      float cameraLatitude,
+      float cameraLongitude,
+      float cameraDistance,
+      float pixelsPerRadian,
+      int maxTiles,
+      int[] out) {
+    double[] camera = direction(cameraLatitude, cameraLongitude);
+    // Angle from the point under the camera to its horizon.
+    double horizon = cameraDistance > 1 ? Math.acos(1 / cameraDistance) : 0;
+
+    int count = 0;
+    out[count++] = key(0, 0, 0);
+    out[count++] = key(0, 0, 1);
+    // Tiles before this one in out are final. Children are queued behind the current level.
+    for (int next = 0; next < count; ) {
+      int tile = out[next];
+      if (count + 3 > maxTiles
+          || !shouldSplit(tile, camera, cameraDistance, horizon, pixelsPerRadian)) {
+        next++;
+        continue;
+      }
+      int level = level(tile) + 1;
+      int row = row(tile) * 2;
+      int column = column(tile) * 2;
+      System.arraycopy(out, next + 1, out, next, count - next - 1);
+      count--;
+      out[count++] = key(level, row, column);
+      out[count++] = key(level, row, column + 1);
+      out[count++] = key(level, row + 1, column);
+      out[count++] = key(level, row + 1, column + 1);
+    }
+    return count;
+  }
+
+  private boolean shouldSplit(
+      int tile, double[] camera, float cameraDistance, double horizon, float pixelsPerRadian) {
+    if (level(tile) + 1 >= levelCount) {
+      return false;
+    }
+    // The tile's centre, and the angle from it to its farthest corner.
+    double[] centre = direction((north(tile) + south(tile)) / 2, (west(tile) + east(tile)) / 2);
+    double extent = 0;
+    for (int corner = 0; corner < 4; corner++) {
+      float latitude = corner < 2 ? north(tile) : south(tile);
+      float longitude = corner % 2 == 0 ? west(tile) : east(tile);
+      double[] point = direction(latitude, longitude);
+      extent = Math.max(extent, angleBetween(centre, point));
+    }
+
+    double nearest = Math.max(0, angleBetween(centre, camera) - extent);
+    if (nearest > horizon) {
+      // Entirely over the horizon.
+      return false;
+    }
+    // Distance from the camera to the nearest point of the tile, by the law of cosines.
+    double distanceSquared =
+        1 + cameraDistance * cameraDistance - 2 * cameraDistance * Math.cos(nearest);
+    float distance = (float) Math.sqrt(Math.max(0, distanceSquared));
+    return level(tile) < levelFor(distance, pixelsPerRadian);
+  }
+
+  private static double[] direction(double latitudeDegrees, double longitudeDegrees) {
+    double latitude = Math.toRadians(latitudeDegrees);
+    double longitude = Math.toRadians(longitudeDegrees);
+    return new double[] {
+      Math.cos(latitude) * Math.cos(longitude),
+      Math.sin(latitude),
+      Math.cos(latitude) * Math.sin(longitude)
+    };
+  }
+
+  private static double angleBetween(double[] a, double[] b) {
+    double dot = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    return Math.acos(Math.max(-1, Math.min(1, dot)));
+  }
+}
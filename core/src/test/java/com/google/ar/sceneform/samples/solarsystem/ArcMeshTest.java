@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Checks arcs between the real cities against their projected endpoints. */
+public class ArcMeshTest {
+  // The projection and ribbon width the app draws routes with.
+  private static final GeoProjection PROJECTION =
+      new GeoProjection(0.53f, GeoProjection.EARTH_TEXTURE_LONGITUDE_OFFSET);
+  private static final float HALF_WIDTH = 0.0012f;
+  // Mirror ArcMesh's segment and arc length limits and clearance.
+  private static final double MAX_SEGMENT_ANGLE = Math.toRadians(3);
+  private static final double MIN_ANGLE = 1e-5;
+  private static final double MAX_ANGLE = Math.PI - 1e-3;
+  private static final int MAX_SEGMENTS = 64;
+  private static final double CLEARANCE = 0.006;
+  private static final float TOLERANCE = 1e-5f;
+
+  private static CityIndex cities;
+
+  @BeforeClass
+  public static void readCities() throws IOException {
+    try (Reader reader =
+        new InputStreamReader(
+            new FileInputStream("../app/data/worldcities.csv"), StandardCharsets.UTF_8)) {
+      cities = CityIndex.fromCsv(reader);
+    }
+  }
+
+  @Test
+  public void arcs_startAndEndAtTheProjectedCities() {
+    int count = 2000;
+    Random random = new Random(1);
+    float[] endpoints = new float[count * 4];
+    for (int arc = 0; arc < count; arc++) {
+      int from = random.nextInt(cities.size());
+      int to = random.nextInt(cities.size());
+      endpoints[arc * 4] = cities.getLatitude(from);
+      endpoints[arc * 4 + 1] = cities.getLongitude(from);
+      endpoints[arc * 4 + 2] = cities.getLatitude(to);
+      endpoints[arc * 4 + 3] = cities.getLongitude(to);
+    }
+
+    ArcMesh mesh = ArcMesh.build(endpoints, count, PROJECTION, HALF_WIDTH);
+
+    assertEquals(count, mesh.getArcCount());
+    float[] start = new float[3];
+    float[] end = new float[3];
+    int vertex = 0;
+    int index = 0;
+    for (int arc = 0; arc < count; arc++) {
+      PROJECTION.project(endpoints[arc * 4], endpoints[arc * 4 + 1], start, 0);
+      PROJECTION.project(endpoints[arc * 4 + 2], endpoints[arc * 4 + 3], end, 0);
+      int segments = segmentsBetween(start, end);
+      if (segments == 0) {
+        continue;
+      }
+      String message = "arc " + arc;
+
+      assertCentre(message + " start", mesh, vertex, start);
+      assertCentre(message + " end", mesh, vertex + segments * 2, end);
+      assertRibbon(message, mesh, vertex, segments, start, end);
+      assertTriangles(message, mesh, vertex, index, segments);
+      vertex += (segments + 1) * 2;
+      index += segments * 12;
+    }
+    assertEquals(vertex, mesh.getVertexCount());
+    assertEquals(index, mesh.getTriangleIndices().length);
+  }
+
+  @Test
+  public void arcsWithNoSingleGreatCircle_areSkipped() {
+    float[] endpoints = {
+      // The same city twice.
+      48.8566f, 2.3522f, 48.8566f, 2.3522f,
+      // Antipodes.
+      0, 0, 0, 180,
+      // A hop short enough for one segment.
+      48.8566f, 2.3522f, 48.8049f, 2.1204f,
+    };
+
+    ArcMesh mesh = ArcMesh.build(endpoints, 3, PROJECTION, HALF_WIDTH);
+
+    assertEquals(3, mesh.getArcCount());
+    assertEquals(4, mesh.getVertexCount());
+    assertEquals(12, mesh.getTriangleIndices().length);
+  }
+
+  private static int segmentsBetween(float[] a, float[] b) {
+    float[] cross = {
+      a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0],
+    };
+    double angle = Math.atan2(length(cross, 0), dot(a, 0, b, 0));
+    if (angle < MIN_ANGLE || angle > MAX_ANGLE) {
+      return 0;
+    }
+    return Math.min((int) Math.ceil(angle / MAX_SEGMENT_ANGLE), MAX_SEGMENTS);
+  }
+
+  /** Checks that the pair of vertices at {@code vertex} is centred just above {@code city}. */
+  private static void assertCentre(String message, ArcMesh mesh, int vertex, float[] city) {
+    float[] positions = mesh.getPositions();
+    double scale = 1 + CLEARANCE;
+    for (int axis = 0; axis < 3; axis++) {
+      float centre = (positions[vertex * 3 + axis] + positions[vertex * 3 + 3 + axis]) / 2;
+      assertEquals(message, city[axis] * scale, centre, TOLERANCE);
+    }
+  }
+
+  /**
+   * Checks that every pair of vertices straddles the great circle through both cities, half the
+   * width either side and above the surface, with normals pointing straight out.
+   */
+  private static void assertRibbon(
+      String message, ArcMesh mesh, int vertex, int segments, float[] start, float[] end) {
+    float[] plane = {
+      start[1] * end[2] - start[2] * end[1],
+      start[2] * end[0] - start[0] * end[2],
+      start[0] * end[1] - start[1] * end[0],
+    };
+    float planeLength = length(plane, 0);
+    float[] positions = mesh.getPositions();
+    float[] normals = mesh.getNormals();
+    float[] centre = new float[3];
+    for (int pair = vertex; pair <= vertex + segments * 2; pair += 2) {
+      for (int axis = 0; axis < 3; axis++) {
+        centre[axis] = (positions[pair * 3 + axis] + positions[pair * 3 + 3 + axis]) / 2;
+      }
+      float width =
+          (float)
+              Math.sqrt(
+                  square(positions[pair * 3] - positions[pair * 3 + 3])
+                      + square(positions[pair * 3 + 1] - positions[pair * 3 + 4])
+                      + square(positions[pair * 3 + 2] - positions[pair * 3 + 5]));
+
+      assertEquals(message, 0, dot(centre, 0, plane, 0) / planeLength, TOLERANCE);
+      assertEquals(message, HALF_WIDTH * 2, width, TOLERANCE);
+      assertTrue(message, length(centre, 0) >= PROJECTION.getRadius() * (1 + CLEARANCE) - 1e-5);
+      for (int side = pair; side <= pair + 1; side++) {
+        assertEquals(message, 1, length(normals, side), TOLERANCE);
+        assertEquals(message, length(centre, 0), dot(normals, side, centre, 0), TOLERANCE);
+      }
+    }
+  }
+
+  /** Checks that an arc's triangles only use its own vertices, two per side of each segment. */
+  private static void assertTriangles(
+      String message, ArcMesh mesh, int vertex, int index, int segments) {
+    int[] indices = mesh.getTriangleIndices();
+    for (int segment = 0; segment < segments; segment++) {
+      int first = vertex + segment * 2;
+      for (int i = 0; i < 12; i++) {
+        int used = indices[index + segment * 12 + i];
+        assertTrue(message, used >= first && used < first + 4);
+      }
+    }
+  }
+
+  private static float dot(float[] a, int i, float[] b, int j) {
+    return a[i * 3] * b[j * 3] + a[i * 3 + 1] * b[j * 3 + 1] + a[i * 3 + 2] * b[j * 3 + 2];
+  }
+
+  private static float length(float[] packed, int index) {
+    return (float) Math.sqrt(dot(packed, index, packed, index));
+  }
+
+  private static float square(float value) {
+    return value * value;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntPredicate;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Checks attribute filters against a brute force scan of the sample datasets. */
+public class AttributeIndexTest {
+  private static CityIndex cities;
+  private static PolicyStore policies;
+  private static AttributeIndex cityAttributes;
+  private static AttributeIndex policyAttributes;
+
+  @BeforeClass
+  public static void buildIndexes() throws IOException {
+    try (Reader reader =
+        new InputStreamReader(
+            new FileInputStream("../app/data/worldcities.csv"), StandardCharsets.UTF_8)) {
+      cities = CityIndex.fromCsv(reader);
+    }
+    try (InputStream in = new FileInputStream("../NodeJS/public/data.csv")) {
+      policies = PolicyStore.read(in);
+    }
+    cityAttributes = AttributeIndex.forCities(cities);
+    policyAttributes = AttributeIndex.forPolicies(policies);
+  }
+
+  @Test
+  public void select_categoriesIgnoreCase() {
+    assertSelects(
+        cityAttributes,
+        "iso3=usa, CAN ; population=100000..",
+        city ->
+            (cities.getIso3(city).equals("USA") || cities.getIso3(city).equals("CAN"))
+                && cities.getPopulation(city) >= 100000);
+  }
+
+  @Test
+  public void select_rangeSkipsUnknownPopulations() {
+    assertSelects(
+        cityAttributes,
+        "capital=primary,admin; population=..50000",
+        city ->
+            (cities.getCapital(city) == CityIndex.CAPITAL_PRIMARY
+                    || cities.getCapital(city) == CityIndex.CAPITAL_ADMIN)
+                && cities.getPopulation(city) != CityIndex.UNKNOWN_POPULATION
+                && cities.getPopulation(city) <= 50000);
+  }
+
+  @Test
+  public void select_wideRangeClearsTheRowsOutside() {
+    assertSelects(
+        cityAttributes,
+        "country=Japan;population=0..",
+        city ->
+            cities.getCountry(city).equals("Japan")
+                && cities.getPopulation(city) != CityIndex.UNKNOWN_POPULATION);
+  }
+
+  @Test
+  public void select_skipsColumnsOfTheOtherTable() {
+    assertSelects(
+        cityAttributes,
+        "admin_name=california; tiv_2012=5",
+        city -> cities.getAdminName(city).equalsIgnoreCase("California"));
+    assertSelects(
+        policyAttributes,
+        "iso3=USA; line=Commercial",
+        policy -> policies.getLine(policy).equals("Commercial"));
+  }
+
+  @Test
+  public void select_combinesPolicyColumns() {
+    double[] tiv2012 = policies.getTiv2012();
+    assertSelects(
+        policyAttributes,
+        "line=residential; construction=Wood,Masonry; tiv_2012=50000..500000.5",
+        policy ->
+            policies.getLine(policy).equals("Residential")
+                && (policies.getConstruction(policy).equals("Wood")
+                    || policies.getConstruction(policy).equals("Masonry"))
+                && tiv2012[policy] >= 50000
+                && tiv2012[policy] <= 500000.5);
+  }
+
+  @Test
+  public void select_exactValue() {
+    double[] tiv2011 = policies.getTiv2011();
+    double value = tiv2011[7];
+    assertSelects(policyAttributes, "tiv_2011=" + value, policy -> tiv2011[policy] == value);
+  }
+
+  @Test
+  public void select_emptyFilter_matchesEveryRow() {
+    assertSelects(cityAttributes, " ; ", city -> true);
+  }
+
+  @Test
+  public void select_unknownValueOrEmptyRange_matchesNothing() {
+    assertSelects(cityAttributes, "country=Atlantis", city -> false);
+    assertSelects(policyAttributes, "tiv_2012=10..5", policy -> false);
+  }
+
+  @Test
+  public void query_matchesSelect() {
+    RowSet rows =
+        cityAttributes
+            .query()
+            .whereIn(AttributeIndex.ISO3, "USA", "CAN")
+            .whereBetween(AttributeIndex.POPULATION, 100000, Double.POSITIVE_INFINITY)
+            .getRows();
+    RowSet selected = cityAttributes.select("iso3=USA,CAN; population=100000..");
+    assertEquals(selected.count(), rows.count());
+    for (int city = 0; city < cities.size(); city++) {
+      assertEquals(selected.contains(city), rows.contains(city));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void select_rejectsUnknownColumns() {
+    cityAttributes.select("foo=1");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void select_rejectsTermsWithoutValue() {
+    cityAttributes.select("population");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void select_rejectsMalformedNumbers() {
+    cityAttributes.select("population=abc..");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void whereIn_rejectsNumericColumns() {
+    cityAttributes.query().whereIn(AttributeIndex.POPULATION, "1");
+  }
+
+  private static void assertSelects(AttributeIndex index, String filter, IntPredicate expected) {
+    RowSet rows = index.select(filter);
+    int count = 0;
+    for (int row = 0; row < index.size(); row++) {
+      assertEquals(filter + ", row " + row, expected.test(row), rows.contains(row));
+      if (expected.test(row)) {
+        count++;
+      }
+    }
+    assertEquals(filter, count, rows.count());
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.junit.Test;
+
+public class BillboardTrackerTest {
+  private static final int CARD_COUNT = 500;
+  private static final int WARM_UP_FRAMES = 2000;
+  private static final int MEASURED_FRAMES = 1000;
+  private static final int MEASURED_ROUNDS = 3;
+
+  private final float[] rotation = new float[4];
+
+  @Test
+  public void update_facesTheCamera() {
+    BillboardTracker tracker = new BillboardTracker();
+    int slot = tracker.add();
+    tracker.setCamera(1, 2, 3);
+
+    assertTrue(tracker.update(slot, translation(0, 1, 0), 0, null, 0, rotation));
+    // The rotated +Z axis points from the card at (0, 1, 0) to the camera.
+    float length = (float) Math.sqrt(1 + 1 + 9);
+    float[] forward = rotateForward(rotation);
+    assertEquals(1 / length, forward[0], 1e-5f);
+    assertEquals(1 / length, forward[1], 1e-5f);
+    assertEquals(3 / length, forward[2], 1e-5f);
+  }
+
+  @Test
+  public void update_skipsCardsThatHaveNotMoved() {
+    BillboardTracker tracker = new BillboardTracker();
+    int slot = tracker.add();
+    float[] world = translation(0, 0, 0);
+    tracker.setCamera(0, 0, 1);
+    assertTrue(tracker.update(slot, world, 0, null, 0, rotation));
+    assertFalse(tracker.update(slot, world, 0, null, 0, rotation));
+
+    tracker.setCamera(0, 0, 1.0001f);
+    assertFalse(tracker.update(slot, world, 0, null, 0, rotation));
+    tracker.setCamera(0, 1, 1);
+    assertTrue(tracker.update(slot, world, 0, null, 0, rotation));
+  }
+
+  @Test
+  public void remove_movesTheLastCard() {
+    BillboardTracker tracker = new BillboardTracker();
+    float[] world = translation(0, 0, 0);
+    tracker.setCamera(0, 0, 1);
+    int first = tracker.add();
+    assertTrue(tracker.update(first, world, 0, null, 0, rotation));
+    int second = tracker.add();
+
+    tracker.remove(first);
+    assertEquals(1, tracker.size());
+    // The never rotated second card is now in the first slot.
+    assertTrue(tracker.update(first, world, 0, null, 0, rotation));
+    assertEquals(1, second);
+  }
+
+  @Test
+  public void update_doesNotAllocate() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+    allocations.setThreadAllocatedMemoryEnabled(true);
+    long thread = Thread.currentThread().getId();
+
+    // Cards with and without a rotated, scaled parent, all in one matrix array.
+    Random random = new Random(7);
+    BillboardTracker tracker = new BillboardTracker();
+    float[] matrices = new float[CARD_COUNT * 2 * 16];
+    for (int i = 0; i < CARD_COUNT; i++) {
+      tracker.add();
+      float[] card = translation(random.nextFloat(), random.nextFloat(), random.nextFloat());
+      System.arraycopy(card, 0, matrices, i * 32, 16);
+      float scale = 0.5f + random.nextFloat();
+      float angle = random.nextFloat() * 6;
+      float[] parent = translation(0, 0, 0);
+      parent[0] = scale * (float) Math.cos(angle);
+      parent[2] = -scale * (float) Math.sin(angle);
+      parent[5] = scale;
+      parent[8] = scale * (float) Math.sin(angle);
+      parent[10] = scale * (float) Math.cos(angle);
+      System.arraycopy(parent, 0, matrices, i * 32 + 16, 16);
+    }
+
+    int rotated = 0;
+    for (int frame = 0; frame < WARM_UP_FRAMES; frame++) {
+      rotated += frame(tracker, matrices, frame);
+    }
+    // A JIT compilation can now and then allocate on this thread, so take the best of a few rounds.
+    long allocated = Long.MAX_VALUE;
+    int frame = WARM_UP_FRAMES;
+    for (int round = 0; round < MEASURED_ROUNDS && allocated > 0; round++) {
+      long before = allocations.getThreadAllocatedBytes(thread);
+      for (int end = frame + MEASURED_FRAMES; frame < end; frame++) {
+        rotated += frame(tracker, matrices, frame);
+      }
+      long after = allocations.getThreadAllocatedBytes(thread);
+      allocated = Math.min(allocated, after - before);
+    }
+
+    // The camera moves far enough every frame that every card turns.
+    assertEquals(CARD_COUNT * frame, rotated);
+    assertEquals("Bytes allocated over " + MEASURED_FRAMES + " frames", 0, allocated);
+  }
+
+  /** Moves the camera around a circle and updates every card, returning how many turned. */
+  private int frame(BillboardTracker tracker, float[] matrices, int frame) {
+    float angle = frame * 0.01f;
+    tracker.setCamera(2 * (float) Math.sin(angle), 1, 2 * (float) Math.cos(angle));
+    int rotated = 0;
+    for (int i = 0; i < tracker.size(); i++) {
+      boolean hasParent = i % 2 == 0;
+      if (tracker.update(
+          i, matrices, i * 32, hasParent ? matrices : null, i * 32 + 16, rotation)) {
+        rotated++;
+      }
+    }
+    return rotated;
+  }
+
+  private static float[] translation(float x, float y, float z) {
+    float[] matrix = new float[16];
+    matrix[0] = 1;
+    matrix[5] = 1;
+    matrix[10] = 1;
+    matrix[12] = x;
+    matrix[13] = y;
+    matrix[14] = z;
+    matrix[15] = 1;
+    return matrix;
+  }
+
+  /** The +Z axis rotated by the quaternion (x, y, z, w) in {@code q}. */
+  private static float[] rotateForward(float[] q) {
+    float x = q[0];
+    float y = q[1];
+    float z = q[2];
+    float w = q[3];
+    return new float[] {2 * (x * z + w * y), 2 * (y * z - w * x), 1 - 2 * (x * x + y * y)};
+  }
+}
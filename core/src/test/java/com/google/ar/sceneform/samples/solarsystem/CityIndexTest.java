@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Round-trips the compiled city index against worldcities.csv. */
+public class CityIndexTest {
+  private static final File CSV_FILE = new File("../app/data/worldcities.csv");
+
+  private static List<CSVRecord> records;
+  private static CityIndex fromCsv;
+
+  @BeforeClass
+  public static void readCsv() throws IOException {
+    records = new ArrayList<>();
+    try (CSVParser parser = CSVFormat.EXCEL.withHeader().parse(openCsv())) {
+      for (CSVRecord record : parser) {
+        records.add(record);
+      }
+    }
+    try (Reader reader = openCsv()) {
+      fromCsv = CityIndex.fromCsv(reader);
+    }
+  }
+
+  @Test
+  public void fromCsv_matchesEveryRow() {
+    assertMatchesCsv(fromCsv);
+  }
+
+  @Test
+  public void writeThenReadStream_matchesEveryRow() throws IOException {
+    assertMatchesCsv(CityIndex.read(new ByteArrayInputStream(write(fromCsv))));
+  }
+
+  @Test
+  public void writeThenReadBuffer_matchesEveryRow() throws IOException {
+    assertMatchesCsv(CityIndex.read(ByteBuffer.wrap(write(fromCsv))));
+  }
+
+  @Test
+  public void write_isStable() throws IOException {
+    byte[] written = write(fromCsv);
+    assertArrayEquals(written, write(CityIndex.read(new ByteArrayInputStream(written))));
+  }
+
+  @Test(expected = IOException.class)
+  public void read_rejectsOtherData() throws IOException {
+    CityIndex.read(new ByteArrayInputStream("city,lat,lng\n".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static void assertMatchesCsv(CityIndex index) {
+    assertEquals(records.size(), index.size());
+    int unknownPopulations = 0;
+    for (int i = 0; i < records.size(); i++) {
+      CSVRecord record = records.get(i);
+      String row = "row " + i;
+      assertEquals(row, Float.parseFloat(record.get("lat")), index.getLatitude(i), 0);
+      assertEquals(row, Float.parseFloat(record.get("lng")), index.getLongitude(i), 0);
+      assertEquals(row, record.get("city"), index.getName(i));
+      assertEquals(row, record.get("city_ascii"), index.getAsciiName(i));
+      assertEquals(row, record.get("country"), index.getCountry(i));
+      assertEquals(row, record.get("iso3"), index.getIso3(i));
+      assertEquals(row, record.get("admin_name"), index.getAdminName(i));
+      assertEquals(row, capitalOf(record.get("capital")), index.getCapital(i));
+
+      String population = record.get("population");
+      if (population.isEmpty()) {
+        assertEquals(row, CityIndex.UNKNOWN_POPULATION, index.getPopulation(i));
+        unknownPopulations++;
+      } else {
+        assertEquals(row, Math.round(Double.parseDouble(population)), index.getPopulation(i));
+      }
+    }
+    // The dataset has cities without a population, make sure they were covered.
+    assertTrue(unknownPopulations > 0);
+  }
+
+  private static byte capitalOf(String capital) {
+    switch (capital) {
+      case "primary":
+        return CityIndex.CAPITAL_PRIMARY;
+      case "admin":
+        return CityIndex.CAPITAL_ADMIN;
+      case "minor":
+        return CityIndex.CAPITAL_MINOR;
+      default:
+        return CityIndex.CAPITAL_NONE;
+    }
+  }
+
+  private static byte[] write(CityIndex index) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    return out.toByteArray();
+  }
+
+  private static Reader openCsv() throws IOException {
+    return new InputStreamReader(new FileInputStream(CSV_FILE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Checks the city selection over the real cities against a brute force ranking. */
+public class CityLevelOfDetailTest {
+  private static final float RADIUS = 0.53f;
+  private static final int MIN_VISIBLE = 250;
+  private static final int MAX_VISIBLE = 3000;
+  // Horizon margin of CityLevelOfDetail, as a cosine.
+  private static final float HORIZON_MARGIN = 0.05f;
+
+  private static CityTable cities;
+
+  @BeforeClass
+  public static void readCities() throws IOException {
+    try (Reader reader =
+        new InputStreamReader(
+            new FileInputStream("../app/data/worldcities.csv"), StandardCharsets.UTF_8)) {
+      cities = CityTable.build(CityIndex.fromCsv(reader), new GeoProjection(RADIUS, 0));
+    }
+  }
+
+  @Test
+  public void update_picksTheMostPopulousFacingCities() {
+    Random random = new Random(5);
+    for (int i = 0; i < 200; i++) {
+      CityLevelOfDetail levelOfDetail = newLevelOfDetail();
+      float distance = 1.2f + random.nextFloat() * 10;
+      float[] camera = camera(random, distance);
+
+      assertTrue(levelOfDetail.update(camera[0], camera[1], camera[2]));
+
+      assertSelection("camera " + i, levelOfDetail, camera, null);
+    }
+  }
+
+  @Test
+  public void update_revealsMoreCitiesCloserIn() {
+    // Above Europe, where there are cities to spare at every distance.
+    float[] direction = new float[3];
+    new GeoProjection(1, 0).project(48, 10, direction, 0);
+    CityLevelOfDetail levelOfDetail = newLevelOfDetail();
+    int previous = 0;
+    for (float distance : new float[] {10, 5, 3, 2}) {
+      float scale = distance * RADIUS;
+      levelOfDetail.update(direction[0] * scale, direction[1] * scale, direction[2] * scale);
+      int visible = levelOfDetail.getVisibleCount();
+      if (previous == 0) {
+        assertEquals(MIN_VISIBLE, visible);
+      }
+      assertTrue(visible > previous && visible <= MAX_VISIBLE);
+      previous = visible;
+    }
+  }
+
+  @Test
+  public void update_skipsSmallCameraMoves() {
+    CityLevelOfDetail levelOfDetail = newLevelOfDetail();
+    assertTrue(levelOfDetail.update(0, 0, 2));
+    // About 3 degrees around the globe, and 5% closer.
+    assertFalse(levelOfDetail.update(0.1f, 0, 2));
+    assertFalse(levelOfDetail.update(0, 0, 1.9f));
+    // About 8 degrees, then 20% further away.
+    assertTrue(levelOfDetail.update(0.28f, 0, 2));
+    assertTrue(levelOfDetail.update(0.34f, 0, 2.4f));
+  }
+
+  @Test
+  public void setFilter_onlySelectsFilteredCities() {
+    Random random = new Random(6);
+    RowSet filter = new RowSet(cities.size());
+    for (int city = 0; city < cities.size(); city++) {
+      if (random.nextInt(7) == 0) {
+        filter.add(city);
+      }
+    }
+    CityLevelOfDetail levelOfDetail = newLevelOfDetail();
+    float[] camera = {0, 0, 3 * RADIUS};
+    levelOfDetail.update(camera[0], camera[1], camera[2]);
+
+    levelOfDetail.setFilter(filter);
+    // Reselects without moving the camera.
+    assertTrue(levelOfDetail.update(camera[0], camera[1], camera[2]));
+    assertSelection("filtered", levelOfDetail, camera, filter);
+
+    levelOfDetail.setFilter(null);
+    assertTrue(levelOfDetail.update(camera[0], camera[1], camera[2]));
+    assertSelection("unfiltered", levelOfDetail, camera, null);
+  }
+
+  private static CityLevelOfDetail newLevelOfDetail() {
+    return new CityLevelOfDetail(
+        cities.getPositions(),
+        cities.getPopulations(),
+        cities.size(),
+        RADIUS,
+        MIN_VISIBLE,
+        MAX_VISIBLE);
+  }
+
+  /** A camera {@code distance} radii from the centre of the globe, in a random direction. */
+  private static float[] camera(Random random, float distance) {
+    double x = random.nextGaussian();
+    double y = random.nextGaussian();
+    double z = random.nextGaussian();
+    double scale = distance * RADIUS / Math.sqrt(x * x + y * y + z * z);
+    return new float[] {(float) (x * scale), (float) (y * scale), (float) (z * scale)};
+  }
+
+  /**
+   * Asserts that the selection is within the budget, on the camera's side of the horizon, and the
+   * most populous of the cities there, in order.
+   */
+  private static void assertSelection(
+      String message, CityLevelOfDetail levelOfDetail, float[] camera, RowSet filter) {
+    float distance =
+        (float) Math.sqrt(camera[0] * camera[0] + camera[1] * camera[1] + camera[2] * camera[2]);
+    float horizon = RADIUS / distance - HORIZON_MARGIN;
+    int count = levelOfDetail.getVisibleCount();
+    assertTrue(message, count <= MAX_VISIBLE);
+
+    // Brute force: every eligible city, most populous first, ties by higher index.
+    int[] population = cities.getPopulations();
+    float[] positions = cities.getPositions();
+    int previous = -1;
+    int expectedCount = 0;
+    int[] ids = levelOfDetail.getVisibleIds();
+    float[] visiblePositions = levelOfDetail.getVisiblePositions();
+    for (int rank = 0; rank < count; rank++) {
+      int city = ids[rank];
+      String selected = message + " rank " + rank;
+      assertEquals(selected, positions[city * 3], visiblePositions[rank * 3], 0);
+      assertEquals(selected, positions[city * 3 + 1], visiblePositions[rank * 3 + 1], 0);
+      assertEquals(selected, positions[city * 3 + 2], visiblePositions[rank * 3 + 2], 0);
+      assertTrue(selected + " filtered out", filter == null || filter.contains(city));
+      // Nothing from the far hemisphere, or beyond the horizon.
+      assertTrue(selected + " hidden", facing(city, camera, distance) >= horizon);
+      if (previous >= 0) {
+        assertTrue(selected + " out of order", outranks(previous, city, population));
+      }
+      previous = city;
+    }
+
+    // No eligible city was left out for a smaller one.
+    for (int city = 0; city < cities.size(); city++) {
+      if ((filter != null && !filter.contains(city))
+          || facing(city, camera, distance) < horizon) {
+        continue;
+      }
+      expectedCount++;
+      if (count > 0 && outranks(city, ids[count - 1], population)) {
+        assertTrue(message + " left out " + city, contains(ids, count, city));
+      }
+    }
+    if (expectedCount < MIN_VISIBLE) {
+      assertEquals(message, expectedCount, count);
+    } else {
+      assertTrue(message, count >= MIN_VISIBLE);
+    }
+  }
+
+  /** The cosine of the angle between a city and the camera, seen from the centre of the globe. */
+  private static float facing(int city, float[] camera, float distance) {
+    float[] positions = cities.getPositions();
+    return (positions[city * 3] * camera[0]
+            + positions[city * 3 + 1] * camera[1]
+            + positions[city * 3 + 2] * camera[2])
+        / distance
+        / RADIUS;
+  }
+
+  private static boolean outranks(int a, int b, int[] population) {
+    int populationA = Math.max(population[a], 0);
+    int populationB = Math.max(population[b], 0);
+    return populationA != populationB ? populationA > populationB : a > b;
+  }
+
+  private static boolean contains(int[] ids, int count, int city) {
+    for (int i = 0; i < count; i++) {
+      if (ids[i] == city) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Checks city search against a linear scan over worldcities.csv. */
+public class CitySearchIndexTest {
+  private static final File CSV_FILE = new File("../app/data/worldcities.csv");
+  private static final int LIMIT = 10;
+
+  private static CityIndex cities;
+  private static CitySearchIndex index;
+  /** Every word of every city, running to the end of its field. */
+  private static List<List<String>> words;
+
+  @BeforeClass
+  public static void buildIndex() throws IOException {
+    try (Reader reader =
+        new InputStreamReader(new FileInputStream(CSV_FILE), StandardCharsets.UTF_8)) {
+      cities = CityIndex.fromCsv(reader);
+    }
+    index = CitySearchIndex.build(cities);
+    words = new ArrayList<>(cities.size());
+    for (int city = 0; city < cities.size(); city++) {
+      String name = CitySearchIndex.normalize(cities.getName(city));
+      String asciiName = CitySearchIndex.normalize(cities.getAsciiName(city));
+      List<String> cityWords = new ArrayList<>();
+      for (String field :
+          Arrays.asList(
+              name,
+              asciiName,
+              CitySearchIndex.normalize(cities.getAdminName(city)),
+              CitySearchIndex.normalize(cities.getCountry(city)))) {
+        for (int i = 0; i < field.length(); i++) {
+          if (i == 0 || field.charAt(i - 1) == ' ') {
+            cityWords.add(field.substring(i));
+          }
+        }
+      }
+      words.add(cityWords);
+    }
+  }
+
+  @Test
+  public void normalize_foldsAccentsCaseAndPunctuation() {
+    assertEquals("sao paulo", CitySearchIndex.normalize("S\u00e3o  Paulo"));
+    assertEquals("washington d c", CitySearchIndex.normalize(" Washington, D.C."));
+    assertEquals("", CitySearchIndex.normalize("--"));
+  }
+
+  @Test
+  public void search_matchesLinearScan() {
+    String[] queries = {
+      "new", "new y", "san", "lon", "tok", "st", "a", "z", "united", "united k", "india",
+      "sao", "S\u00e3o P", "mumbai", "londn", "tokio", "pariss", "berlni", "xqzvw", "qq"
+    };
+    for (String query : queries) {
+      assertMatchesLinearScan(query);
+    }
+  }
+
+  @Test
+  public void search_randomWordsMatchLinearScan() {
+    Random random = new Random(18);
+    for (int i = 0; i < 300; i++) {
+      List<String> cityWords = words.get(random.nextInt(cities.size()));
+      String word = cityWords.get(random.nextInt(cityWords.size()));
+      int length = 1 + random.nextInt(Math.min(word.length(), 9));
+      char[] query = word.substring(0, length).toCharArray();
+      if (query.length > 3 && random.nextBoolean()) {
+        // A typo away from the word, to exercise the fuzzy top-up.
+        query[1 + random.nextInt(query.length - 1)] = (char) ('a' + random.nextInt(26));
+      }
+      assertMatchesLinearScan(new String(query));
+    }
+  }
+
+  @Test
+  public void search_withoutQueryOrLimit_findsNothing() {
+    int[] out = new int[LIMIT];
+    assertEquals(0, index.search("", LIMIT, out));
+    assertEquals(0, index.search(" ,.", LIMIT, out));
+    assertEquals(0, index.search("london", 0, out));
+  }
+
+  /**
+   * Compares a search with the most populous prefix matches, then the closest near misses. Cities
+   * with equal keys may come in either order, so the keys are compared position by position and
+   * every city is checked to hold the key it is listed under.
+   */
+  private static void assertMatchesLinearScan(String query) {
+    String normalized = CitySearchIndex.normalize(query);
+    List<long[]> prefixMatches = new ArrayList<>();
+    Map<Integer, Integer> fuzzyDistances = new HashMap<>();
+    int maxEdits = normalized.length() >= 6 ? 2 : 1;
+    for (int city = 0; city < cities.size(); city++) {
+      int distance = Integer.MAX_VALUE;
+      for (String word : words.get(city)) {
+        if (word.startsWith(normalized)) {
+          distance = 0;
+          break;
+        }
+        if (word.charAt(0) == normalized.charAt(0)) {
+          distance = Math.min(distance, prefixDistance(normalized, word, maxEdits));
+        }
+      }
+      if (distance == 0) {
+        prefixMatches.add(new long[] {city, 0, rank(city)});
+      } else if (distance <= maxEdits && normalized.length() >= 3) {
+        fuzzyDistances.put(city, distance);
+      }
+    }
+    List<long[]> expected = new ArrayList<>(prefixMatches);
+    expected.sort((a, b) -> Long.compare(b[2], a[2]));
+    if (expected.size() < LIMIT) {
+      List<long[]> fuzzy = new ArrayList<>();
+      for (Map.Entry<Integer, Integer> entry : fuzzyDistances.entrySet()) {
+        fuzzy.add(new long[] {entry.getKey(), entry.getValue(), rank(entry.getKey())});
+      }
+      fuzzy.sort((a, b) -> a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(b[2], a[2]));
+      expected.addAll(fuzzy);
+    }
+    Map<Integer, long[]> keys = new HashMap<>();
+    for (long[] match : expected) {
+      keys.put((int) match[0], match);
+    }
+
+    int[] out = new int[LIMIT];
+    int count = index.search(query, LIMIT, out);
+    assertEquals(query, Math.min(LIMIT, expected.size()), count);
+    for (int i = 0; i < count; i++) {
+      long[] key = keys.get(out[i]);
+      assertTrue(query + ": unexpected city " + cities.getName(out[i]), key != null);
+      assertEquals(query + " distance at " + i, expected.get(i)[1], key[1]);
+      assertEquals(query + " population at " + i, expected.get(i)[2], key[2]);
+      for (int j = 0; j < i; j++) {
+        assertTrue(query + ": repeated city " + cities.getName(out[i]), out[j] != out[i]);
+      }
+    }
+  }
+
+  /** The fewest edits turning {@code query} into some prefix of {@code word}. */
+  private static int prefixDistance(String query, String word, int maxEdits) {
+    int length = Math.min(word.length(), query.length() + maxEdits);
+    int[] previous = new int[query.length() + 1];
+    int[] current = new int[query.length() + 1];
+    for (int i = 0; i <= query.length(); i++) {
+      previous[i] = i;
+    }
+    int best = query.length();
+    for (int j = 1; j <= length; j++) {
+      current[0] = j;
+      for (int i = 1; i <= query.length(); i++) {
+        int substitution = previous[i - 1] + (query.charAt(i - 1) == word.charAt(j - 1) ? 0 : 1);
+        current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+      }
+      best = Math.min(best, current[query.length()]);
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return best;
+  }
+
+  private static long rank(int city) {
+    return Math.max(cities.getPopulation(city), 0);
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Checks spatial queries over the real cities against a brute force scan. */
+public class CitySpatialIndexTest {
+  private static final int QUERY_COUNT = 500;
+  private static final float[] ANGLES = {0.002f, 0.06f, 0.5f, 3.2f};
+  // Chord distances closer than this to a query's limit may land on either side of it in float.
+  private static final double EPSILON = 1e-5;
+
+  private static int count;
+  private static float[] positions;
+  // The positions normalized in double precision, packed xyz.
+  private static double[] directions;
+  private static CitySpatialIndex index;
+
+  @BeforeClass
+  public static void buildIndex() throws IOException {
+    CityIndex cities;
+    try (Reader reader =
+        new InputStreamReader(
+            new FileInputStream("../app/data/worldcities.csv"), StandardCharsets.UTF_8)) {
+      cities = CityIndex.fromCsv(reader);
+    }
+    count = cities.size();
+    // Not on the unit sphere, the index should normalize.
+    positions = new float[count * 3];
+    new GeoProjection(0.53f, GeoProjection.EARTH_TEXTURE_LONGITUDE_OFFSET)
+        .project(cities.getLatitudes(), cities.getLongitudes(), count, positions);
+    directions = new double[count * 3];
+    for (int i = 0; i < count; i++) {
+      double[] direction = normalize(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+      System.arraycopy(direction, 0, directions, i * 3, 3);
+    }
+    index = CitySpatialIndex.build(positions, count);
+  }
+
+  @Test
+  public void nearest_matchesBruteForce() {
+    Random random = new Random(4);
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      float[] query = query(random, i);
+      for (float angle : ANGLES) {
+        assertNearest(
+            "query " + i + " within " + angle,
+            query,
+            angle,
+            index.nearest(query[0], query[1], query[2], angle));
+      }
+    }
+  }
+
+  @Test
+  public void nearestToRay_matchesBruteForceAtTheHit() {
+    Random random = new Random(5);
+    int hits = 0;
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      // A camera a few radii out, looking roughly at the sphere.
+      double[] origin =
+          normalize(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+      double distance = 1.5 + random.nextDouble() * 3;
+      double[] target = {
+        random.nextGaussian() * 0.6, random.nextGaussian() * 0.6, random.nextGaussian() * 0.6
+      };
+      double[] direction =
+          normalize(
+              target[0] - origin[0] * distance,
+              target[1] - origin[1] * distance,
+              target[2] - origin[2] * distance);
+      float ox = (float) (origin[0] * distance);
+      float oy = (float) (origin[1] * distance);
+      float oz = (float) (origin[2] * distance);
+      float dx = (float) direction[0];
+      float dy = (float) direction[1];
+      float dz = (float) direction[2];
+
+      // Where the ray enters the unit sphere, solved in double precision.
+      double b = ox * direction[0] + oy * direction[1] + oz * direction[2];
+      double c = (double) ox * ox + (double) oy * oy + (double) oz * oz - 1;
+      double discriminant = b * b - c;
+      for (float angle : ANGLES) {
+        int found = index.nearestToRay(ox, oy, oz, dx, dy, dz, angle);
+        String message = "ray " + i + " within " + angle;
+        if (discriminant < 1e-4) {
+          // A miss, or too close to grazing to tell.
+          if (discriminant < -1e-4) {
+            assertEquals(message, CitySpatialIndex.NOT_FOUND, found);
+          }
+          continue;
+        }
+        double t = -b - Math.sqrt(discriminant);
+        float[] hit = {(float) (ox + t * dx), (float) (oy + t * dy), (float) (oz + t * dz)};
+        assertNearest(message, hit, angle, found);
+        hits++;
+      }
+    }
+    // Most rays should have hit the sphere.
+    assertTrue(hits > QUERY_COUNT);
+  }
+
+  @Test
+  public void kNearest_matchesBruteForce() {
+    Random random = new Random(6);
+    int[] out = new int[64];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      float[] query = query(random, i);
+      int k = 1 + random.nextInt(out.length);
+      int found = index.nearest(query[0], query[1], query[2], k, out);
+
+      String message = "query " + i + " k " + k;
+      assertEquals(message, k, found);
+      double[] expected = sortedDistances(query);
+      for (int j = 0; j < k; j++) {
+        // Equally distant cities may come in either order, so compare the distances.
+        assertEquals(message + " rank " + j, expected[j], distance(query, out[j]), EPSILON);
+      }
+    }
+  }
+
+  @Test
+  public void kNearest_beyondTheSize_returnsEveryPoint() {
+    int[] out = new int[count + 10];
+
+    int found = index.nearest(0, 1, 0, out.length, out);
+
+    assertEquals(count, found);
+    int[] ids = Arrays.copyOf(out, found);
+    Arrays.sort(ids);
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, ids[i]);
+    }
+  }
+
+  @Test
+  public void withinAngle_matchesBruteForce() {
+    Random random = new Random(7);
+    int[] out = new int[count];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      float[] query = query(random, i);
+      for (float angle : ANGLES) {
+        String message = "query " + i + " within " + angle;
+        int found = index.withinAngle(query[0], query[1], query[2], angle, out);
+        boolean[] isFound = new boolean[count];
+        for (int j = 0; j < found; j++) {
+          assertTrue(message + " reported twice", !isFound[out[j]]);
+          isFound[out[j]] = true;
+        }
+
+        double limit = chord(angle);
+        for (int city = 0; city < count; city++) {
+          double distance = distance(query, city);
+          if (distance < limit - EPSILON) {
+            assertTrue(message + " missed " + city, isFound[city]);
+          } else if (distance > limit + EPSILON) {
+            assertTrue(message + " included " + city, !isFound[city]);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void withinAngle_countsPastTheOutput() {
+    int[] all = new int[count];
+    int expected = index.withinAngle(0, 0, 1, 0.8f, all);
+    assertTrue(expected > 10);
+
+    int[] out = new int[10];
+    assertEquals(expected, index.withinAngle(0, 0, 1, 0.8f, out));
+    for (int city : out) {
+      assertTrue(distance(new float[] {0, 0, 1}, city) <= chord(0.8f) + EPSILON);
+    }
+  }
+
+  /** Alternates random directions with directions just off a city, where taps land. */
+  private static float[] query(Random random, int i) {
+    if (i % 2 == 0) {
+      return new float[] {
+        (float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()
+      };
+    }
+    int city = random.nextInt(count);
+    return new float[] {
+      positions[city * 3] + (float) random.nextGaussian() * 0.01f,
+      positions[city * 3 + 1] + (float) random.nextGaussian() * 0.01f,
+      positions[city * 3 + 2] + (float) random.nextGaussian() * 0.01f
+    };
+  }
+
+  /** Asserts that {@code found} is a nearest city to {@code query} within {@code angle}. */
+  private static void assertNearest(String message, float[] query, float angle, int found) {
+    double[] distances = sortedDistances(query);
+    double limit = chord(angle);
+    if (Math.abs(distances[0] - limit) < EPSILON) {
+      // On the edge, either answer is right.
+      return;
+    }
+    if (distances[0] > limit) {
+      assertEquals(message, CitySpatialIndex.NOT_FOUND, found);
+      return;
+    }
+    assertTrue(message, found != CitySpatialIndex.NOT_FOUND);
+    assertEquals(message, distances[0], distance(query, found), EPSILON);
+  }
+
+  /** The chord distances from {@code query} to every city, nearest first. */
+  private static double[] sortedDistances(float[] query) {
+    double[] distances = new double[count];
+    for (int city = 0; city < count; city++) {
+      distances[city] = distance(query, city);
+    }
+    Arrays.sort(distances);
+    return distances;
+  }
+
+  /** The straight-line distance between the directions of {@code query} and {@code city}. */
+  private static double distance(float[] query, int city) {
+    double[] direction = normalize(query[0], query[1], query[2]);
+    double dx = direction[0] - directions[city * 3];
+    double dy = direction[1] - directions[city * 3 + 1];
+    double dz = direction[2] - directions[city * 3 + 2];
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  private static double chord(float angle) {
+    return 2 * Math.sin(Math.min(angle, Math.PI) / 2);
+  }
+
+  private static double[] normalize(double x, double y, double z) {
+    double length = Math.sqrt(x * x + y * y + z * z);
+    return new double[] {x / length, y / length, z / length};
+  }
+}
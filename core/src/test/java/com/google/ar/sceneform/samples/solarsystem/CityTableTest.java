@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CityTableTest {
+  // The projection the app places cities with.
+  private static final GeoProjection PROJECTION =
+      new GeoProjection(0.53f, GeoProjection.EARTH_TEXTURE_LONGITUDE_OFFSET);
+
+  private static CityIndex index;
+  private static CityTable cities;
+
+  @BeforeClass
+  public static void readCities() throws IOException {
+    try (Reader reader =
+        new InputStreamReader(
+            new FileInputStream("../app/data/worldcities.csv"), StandardCharsets.UTF_8)) {
+      index = CityIndex.fromCsv(reader);
+    }
+    cities = CityTable.build(index, PROJECTION);
+  }
+
+  @Test
+  public void build_placesEveryCityAtItsProjection() {
+    float[] expected = new float[3];
+    float[] positions = cities.getPositions();
+
+    assertEquals(index.size(), cities.size());
+    assertEquals(index.size() * 3, positions.length);
+    for (int city = 0; city < cities.size(); city++) {
+      PROJECTION.project(index.getLatitude(city), index.getLongitude(city), expected, 0);
+
+      assertEquals("city " + city, expected[0], cities.getX(city), 1e-6f);
+      assertEquals("city " + city, expected[1], cities.getY(city), 1e-6f);
+      assertEquals("city " + city, expected[2], cities.getZ(city), 1e-6f);
+      assertEquals(cities.getX(city), positions[city * 3], 0);
+      assertEquals(cities.getY(city), positions[city * 3 + 1], 0);
+      assertEquals(cities.getZ(city), positions[city * 3 + 2], 0);
+    }
+  }
+
+  @Test
+  public void populationWeights_areZeroWhereUnknown() {
+    double[] weights = cities.getPopulationWeights();
+    int unknown = 0;
+
+    for (int city = 0; city < cities.size(); city++) {
+      int population = index.getPopulation(city);
+      assertEquals(population, cities.getPopulation(city));
+      if (population == CityIndex.UNKNOWN_POPULATION) {
+        assertEquals("city " + city, 0, weights[city], 0);
+        unknown++;
+      } else {
+        assertEquals("city " + city, population, weights[city], 0);
+      }
+    }
+    // The dataset has cities without a population, such as the first row.
+    assertEquals(CityIndex.UNKNOWN_POPULATION, cities.getPopulation(0));
+    assertTrue(unknown > 0);
+  }
+
+  @Test
+  public void columns_areTheIndexColumns() {
+    assertSame(index, cities.getIndex());
+    assertSame(index.getLatitudes(), cities.getLatitudes());
+    assertSame(index.getLongitudes(), cities.getLongitudes());
+    assertSame(index.getPopulations(), cities.getPopulations());
+    for (int city = 0; city < cities.size(); city += 97) {
+      assertEquals(index.getName(city), cities.getName(city));
+    }
+  }
+
+  @Test
+  public void sizeBytes_addsThePositionsAndWeights() {
+    assertEquals(index.getSizeBytes() + 20L * cities.size(), cities.getSizeBytes());
+  }
+}
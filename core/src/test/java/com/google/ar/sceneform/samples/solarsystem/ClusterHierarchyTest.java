@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class ClusterHierarchyTest {
+  private static final int POINT_COUNT = 20000;
+
+  @Test
+  public void everyLevel_holdsEveryPointOnce() {
+    float[] positions = randomPositions(POINT_COUNT, 1);
+    double[] weights = randomWeights(POINT_COUNT, 2);
+    ClusterHierarchy hierarchy = ClusterHierarchy.build(positions, weights, POINT_COUNT);
+
+    assertConserved(hierarchy, weights, POINT_COUNT);
+  }
+
+  @Test
+  public void sampleDataset_isConserved() throws IOException {
+    PolicyStore store;
+    try (InputStream in = new FileInputStream("../NodeJS/public/data.csv")) {
+      store = PolicyStore.read(in);
+    }
+    float[] positions = new float[store.size() * 3];
+    new GeoProjection(0.53f, 0)
+        .project(store.getLatitudes(), store.getLongitudes(), store.size(), positions);
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(positions, store.getTiv2012(), store.size());
+
+    assertConserved(hierarchy, store.getTiv2012(), store.size());
+  }
+
+  @Test
+  public void pointsAtTheSamePosition_shareALeaf() {
+    float[] positions = randomPositions(1000, 3);
+    // Every tenth point repeats the one before it.
+    for (int i = 10; i < 1000; i += 10) {
+      System.arraycopy(positions, (i - 1) * 3, positions, i * 3, 3);
+    }
+    ClusterHierarchy hierarchy = ClusterHierarchy.build(positions, new double[1000], 1000);
+
+    int[] leafOf = leafOfEachPoint(hierarchy, 1000);
+    for (int i = 10; i < 1000; i += 10) {
+      assertEquals("point " + i, leafOf[i - 1], leafOf[i]);
+    }
+  }
+
+  @Test
+  public void sum_matchesLeafPoints() {
+    float[] positions = randomPositions(POINT_COUNT, 4);
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(positions, randomWeights(POINT_COUNT, 5), POINT_COUNT);
+    double[] values = randomWeights(POINT_COUNT, 6);
+
+    double[] sums = hierarchy.sum(values);
+
+    double[] expected = new double[hierarchy.getClusterCount()];
+    int[] leafOf = leafOfEachPoint(hierarchy, POINT_COUNT);
+    for (int point = 0; point < POINT_COUNT; point++) {
+      expected[leafOf[point]] += values[point];
+    }
+    sumUp(hierarchy, expected);
+    for (int cluster = 0; cluster < sums.length; cluster++) {
+      assertEquals("cluster " + cluster, expected[cluster], sums[cluster], 1e-6);
+    }
+  }
+
+  @Test
+  public void count_matchesLeafPoints() {
+    float[] positions = randomPositions(POINT_COUNT, 7);
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(positions, new double[POINT_COUNT], POINT_COUNT);
+    RowSet points = new RowSet(POINT_COUNT);
+    Random random = new Random(8);
+    for (int point = 0; point < POINT_COUNT; point++) {
+      if (random.nextInt(3) == 0) {
+        points.add(point);
+      }
+    }
+
+    int[] counts = hierarchy.count(points);
+
+    double[] expected = new double[hierarchy.getClusterCount()];
+    int[] leafOf = leafOfEachPoint(hierarchy, POINT_COUNT);
+    for (int point = 0; point < POINT_COUNT; point++) {
+      if (points.contains(point)) {
+        expected[leafOf[point]]++;
+      }
+    }
+    sumUp(hierarchy, expected);
+    int total = 0;
+    for (int cluster = 0; cluster < counts.length; cluster++) {
+      assertEquals("cluster " + cluster, expected[cluster], counts[cluster], 0);
+      if (cluster < hierarchy.getLevelStart(1)) {
+        total += counts[cluster];
+      }
+    }
+    assertEquals(points.count(), total);
+  }
+
+  @Test
+  public void noPoints_buildsAnEmptyHierarchy() {
+    ClusterHierarchy hierarchy = ClusterHierarchy.build(new float[0], new double[0], 0);
+
+    assertEquals(0, hierarchy.getClusterCount());
+  }
+
+  /**
+   * Checks that each level's clusters partition the points: counts and weights add up from the
+   * leaves to the top, every point is under exactly one leaf, and directions are unit vectors.
+   */
+  private static void assertConserved(ClusterHierarchy hierarchy, double[] weights, int count) {
+    double totalWeight = 0;
+    for (int point = 0; point < count; point++) {
+      totalWeight += weights[point];
+    }
+
+    for (int level = 0; level < hierarchy.getLevelCount(); level++) {
+      int levelCount = 0;
+      double levelWeight = 0;
+      for (int cluster = hierarchy.getLevelStart(level);
+          cluster < hierarchy.getLevelStart(level + 1);
+          cluster++) {
+        levelCount += hierarchy.getCount(cluster);
+        levelWeight += hierarchy.getWeight(cluster);
+        assertTrue(hierarchy.getCount(cluster) > 0);
+        assertEquals(1, length(hierarchy.getDirections(), cluster), 1e-4);
+        if (hierarchy.isLeaf(cluster)) {
+          assertEquals(hierarchy.getCount(cluster), hierarchy.getChildCount(cluster));
+          continue;
+        }
+
+        int childCount = 0;
+        int first = hierarchy.getFirstChild(cluster);
+        assertTrue(hierarchy.getChildCount(cluster) <= 16);
+        for (int child = first; child < first + hierarchy.getChildCount(cluster); child++) {
+          assertTrue(child >= hierarchy.getLevelStart(level + 1));
+          assertTrue(child < hierarchy.getLevelStart(level + 2));
+          childCount += hierarchy.getCount(child);
+        }
+        assertEquals("cluster " + cluster, hierarchy.getCount(cluster), childCount);
+      }
+      assertEquals("level " + level, count, levelCount);
+      assertEquals("level " + level, totalWeight, levelWeight, Math.abs(totalWeight) * 1e-9);
+    }
+
+    int[] leafOf = leafOfEachPoint(hierarchy, count);
+    for (int point = 0; point < count; point++) {
+      assertTrue("point " + point, leafOf[point] >= 0);
+    }
+  }
+
+  /** The leaf each point is under, checking that no point is under two. */
+  private static int[] leafOfEachPoint(ClusterHierarchy hierarchy, int count) {
+    int[] leafOf = new int[count];
+    Arrays.fill(leafOf, -1);
+    int leafStart = hierarchy.getLevelStart(hierarchy.getLevelCount() - 1);
+    for (int leaf = leafStart; leaf < hierarchy.getClusterCount(); leaf++) {
+      int[] points = new int[hierarchy.getChildCount(leaf)];
+      hierarchy.getLeafPoints(leaf, points);
+      for (int point : points) {
+        assertFalse("point " + point + " is under two leaves", leafOf[point] >= 0);
+        leafOf[point] = leaf;
+      }
+    }
+    return leafOf;
+  }
+
+  /** Adds the leaf values in {@code values} up the hierarchy. */
+  private static void sumUp(ClusterHierarchy hierarchy, double[] values) {
+    int leafStart = hierarchy.getLevelStart(hierarchy.getLevelCount() - 1);
+    for (int cluster = leafStart - 1; cluster >= 0; cluster--) {
+      int first = hierarchy.getFirstChild(cluster);
+      for (int child = first; child < first + hierarchy.getChildCount(cluster); child++) {
+        values[cluster] += values[child];
+      }
+    }
+  }
+
+  /** Points spread over the sphere, with a dense patch so some leaves hold many. */
+  private static float[] randomPositions(int count, long seed) {
+    Random random = new Random(seed);
+    float[] positions = new float[count * 3];
+    GeoProjection projection = new GeoProjection(1, 0);
+    for (int i = 0; i < count; i++) {
+      double latitude;
+      double longitude;
+      if (i % 4 == 0) {
+        latitude = 30 + random.nextDouble() * 0.01;
+        longitude = -81 + random.nextDouble() * 0.01;
+      } else {
+        latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+        longitude = random.nextDouble() * 360 - 180;
+      }
+      projection.project(latitude, longitude, positions, i * 3);
+    }
+    return positions;
+  }
+
+  private static double[] randomWeights(int count, long seed) {
+    Random random = new Random(seed);
+    double[] weights = new double[count];
+    for (int i = 0; i < count; i++) {
+      weights[i] = random.nextInt(1000000) / 100.0;
+    }
+    return weights;
+  }
+
+  private static double length(float[] packed, int index) {
+    float x = packed[index * 3];
+    float y = packed[index * 3 + 1];
+    float z = packed[index * 3 + 2];
+    return Math.sqrt(x * x + y * y + z * z);
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class ClusterLevelOfDetailTest {
+  private static final float RADIUS = 0.53f;
+  private static final float HALF_SIZE = 0.004f;
+  private static final int POINT_COUNT = 20000;
+  private static final int BUDGET = 1500;
+  // Mirrors ClusterLevelOfDetail.HORIZON_MARGIN.
+  private static final float HORIZON_MARGIN = 0.05f;
+
+  @Test
+  public void update_staysWithinBudgetAndCoversFacingPoints() {
+    float[] positions = randomPositions(1);
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(positions, new double[POINT_COUNT], POINT_COUNT);
+    Random random = new Random(2);
+    for (int round = 0; round < 100; round++) {
+      float[] camera = randomCamera(random);
+      ClusterLevelOfDetail levelOfDetail =
+          new ClusterLevelOfDetail(hierarchy, RADIUS, HALF_SIZE, BUDGET);
+
+      assertTrue(levelOfDetail.update(camera[0], camera[1], camera[2]));
+
+      assertSelection(hierarchy, levelOfDetail, positions, null, camera, "round " + round);
+    }
+  }
+
+  @Test
+  public void update_showsNothingOverAnEmptyHemisphere() {
+    float[] positions = randomPositions(3);
+    // Moves every point to the northern hemisphere.
+    for (int i = 0; i < POINT_COUNT; i++) {
+      positions[i * 3 + 1] = Math.abs(positions[i * 3 + 1]);
+    }
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(positions, new double[POINT_COUNT], POINT_COUNT);
+    ClusterLevelOfDetail levelOfDetail =
+        new ClusterLevelOfDetail(hierarchy, RADIUS, HALF_SIZE, BUDGET);
+
+    levelOfDetail.update(0, -RADIUS * 1.5f, 0);
+
+    assertEquals(0, levelOfDetail.getVisibleCount());
+
+    levelOfDetail.update(0, RADIUS * 1.5f, 0);
+
+    assertTrue(levelOfDetail.getVisibleCount() > 0);
+  }
+
+  @Test
+  public void update_splitsClustersCloserIn() {
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(randomPositions(4), new double[POINT_COUNT], POINT_COUNT);
+    ClusterLevelOfDetail levelOfDetail =
+        new ClusterLevelOfDetail(hierarchy, RADIUS, HALF_SIZE, BUDGET);
+
+    int previous = 0;
+    for (float distance : new float[] {10, 5, 3, 2, 1.5f}) {
+      levelOfDetail.update(0, 0, RADIUS * distance);
+      int visible = levelOfDetail.getVisibleCount();
+
+      assertTrue(distance + " radii: " + visible, visible > previous);
+      assertTrue(visible <= BUDGET);
+      previous = visible;
+    }
+  }
+
+  @Test
+  public void update_skipsSmallCameraMoves() {
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(randomPositions(5), new double[POINT_COUNT], POINT_COUNT);
+    ClusterLevelOfDetail levelOfDetail =
+        new ClusterLevelOfDetail(hierarchy, RADIUS, HALF_SIZE, BUDGET);
+
+    assertTrue(levelOfDetail.update(0, 0, RADIUS * 3));
+    assertFalse(levelOfDetail.update(0.01f, 0, RADIUS * 3.1f));
+    assertTrue(levelOfDetail.update(0, 0, RADIUS * 4));
+  }
+
+  @Test
+  public void setFilter_sizesClustersByFilteredPoints() {
+    float[] positions = randomPositions(6);
+    ClusterHierarchy hierarchy =
+        ClusterHierarchy.build(positions, new double[POINT_COUNT], POINT_COUNT);
+    RowSet points = new RowSet(POINT_COUNT);
+    for (int point = 0; point < POINT_COUNT; point += 7) {
+      points.add(point);
+    }
+    int[] counts = hierarchy.count(points);
+    ClusterLevelOfDetail levelOfDetail =
+        new ClusterLevelOfDetail(hierarchy, RADIUS, HALF_SIZE, BUDGET);
+    float[] camera = {0, 0, RADIUS * 2};
+    levelOfDetail.update(camera[0], camera[1], camera[2]);
+
+    levelOfDetail.setFilter(points);
+
+    assertTrue(levelOfDetail.update(camera[0], camera[1], camera[2]));
+    int[] ids = levelOfDetail.getVisibleIds();
+    for (int i = 0; i < levelOfDetail.getVisibleCount(); i++) {
+      assertTrue("cluster " + ids[i], counts[ids[i]] > 0);
+    }
+    assertSelection(hierarchy, levelOfDetail, positions, points, camera, "filtered");
+  }
+
+  /**
+   * Checks a selection by brute force: it fits the budget, no cluster is wholly behind the
+   * horizon, no point is under two markers, and every point of {@code points}, or every point if
+   * null, that is well in front of the horizon is under one.
+   */
+  private static void assertSelection(
+      ClusterHierarchy hierarchy,
+      ClusterLevelOfDetail levelOfDetail,
+      float[] positions,
+      RowSet points,
+      float[] camera,
+      String message) {
+    int visible = levelOfDetail.getVisibleCount();
+    assertTrue(message + ": " + visible, visible > 0 && visible <= BUDGET);
+
+    float horizon = RADIUS / length(camera, 0) - HORIZON_MARGIN;
+    float[] directions = hierarchy.getDirections();
+    int[] ids = levelOfDetail.getVisibleIds();
+    float[] markers = levelOfDetail.getVisiblePositions();
+    int[] markerOf = new int[POINT_COUNT];
+    Arrays.fill(markerOf, -1);
+    for (int i = 0; i < visible; i++) {
+      int cluster = ids[i];
+      for (int axis = 0; axis < 3; axis++) {
+        assertEquals(directions[cluster * 3 + axis] * RADIUS, markers[i * 3 + axis], 1e-6f);
+      }
+      float cellAngle = ClusterHierarchy.getCellAngle(levelOf(hierarchy, cluster));
+      float facing = facing(directions, cluster, camera);
+      assertTrue(message + ": cluster " + cluster, facing >= horizon - cellAngle);
+      for (int point : pointsOf(hierarchy, cluster)) {
+        assertEquals(message + ": point " + point + " has two markers", -1, markerOf[point]);
+        markerOf[point] = cluster;
+      }
+    }
+
+    for (int point = 0; point < POINT_COUNT; point++) {
+      if ((points == null || points.contains(point))
+          && facing(positions, point, camera) > horizon + 0.1f) {
+        assertTrue(message + ": point " + point + " has no marker", markerOf[point] >= 0);
+      }
+    }
+  }
+
+  /** Cosine of the angle between a packed direction or position and the camera. */
+  private static float facing(float[] packed, int index, float[] camera) {
+    float dot =
+        packed[index * 3] * camera[0]
+            + packed[index * 3 + 1] * camera[1]
+            + packed[index * 3 + 2] * camera[2];
+    return dot / (length(packed, index) * length(camera, 0));
+  }
+
+  private static float length(float[] packed, int index) {
+    float x = packed[index * 3];
+    float y = packed[index * 3 + 1];
+    float z = packed[index * 3 + 2];
+    return (float) Math.sqrt(x * x + y * y + z * z);
+  }
+
+  private static int levelOf(ClusterHierarchy hierarchy, int cluster) {
+    int level = 0;
+    while (cluster >= hierarchy.getLevelStart(level + 1)) {
+      level++;
+    }
+    return level;
+  }
+
+  /** Every point under a cluster, found by walking down to its leaves. */
+  private static List<Integer> pointsOf(ClusterHierarchy hierarchy, int cluster) {
+    List<Integer> points = new ArrayList<>();
+    if (hierarchy.isLeaf(cluster)) {
+      int[] leafPoints = new int[hierarchy.getChildCount(cluster)];
+      hierarchy.getLeafPoints(cluster, leafPoints);
+      for (int point : leafPoints) {
+        points.add(point);
+      }
+      return points;
+    }
+    int first = hierarchy.getFirstChild(cluster);
+    for (int child = first; child < first + hierarchy.getChildCount(cluster); child++) {
+      points.addAll(pointsOf(hierarchy, child));
+    }
+    return points;
+  }
+
+  /** A camera in a random direction, from just above the globe to 11 radii out. */
+  private static float[] randomCamera(Random random) {
+    double z = 2 * random.nextDouble() - 1;
+    double angle = random.nextDouble() * 2 * Math.PI;
+    double ring = Math.sqrt(1 - z * z);
+    float distance = RADIUS * (1.2f + random.nextFloat() * 9.8f);
+    return new float[] {
+      (float) (ring * Math.cos(angle)) * distance,
+      (float) z * distance,
+      (float) (ring * Math.sin(angle)) * distance
+    };
+  }
+
+  /** Points spread over the globe, with a dense patch so some leaves hold many. */
+  private static float[] randomPositions(long seed) {
+    Random random = new Random(seed);
+    float[] positions = new float[POINT_COUNT * 3];
+    GeoProjection projection = new GeoProjection(RADIUS, 0);
+    for (int i = 0; i < POINT_COUNT; i++) {
+      double latitude;
+      double longitude;
+      if (i % 4 == 0) {
+        latitude = 30 + random.nextDouble() * 0.01;
+        longitude = -81 + random.nextDouble() * 0.01;
+      } else {
+        latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+        longitude = random.nextDouble() * 360 - 180;
+      }
+      projection.project(latitude, longitude, positions, i * 3);
+    }
+    return positions;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Checks the column projection against the per-point formula City used, and its inverse. */
+public class GeoProjectionTest {
+  private static final float RADIUS = 0.53f;
+  private static final int RANDOM_COUNT = 20000;
+
+  private static final GeoProjection PROJECTION =
+      new GeoProjection(RADIUS, GeoProjection.EARTH_TEXTURE_LONGITUDE_OFFSET);
+
+  private static float[] latitudes;
+  private static float[] longitudes;
+  private static int count;
+
+  @BeforeClass
+  public static void readCoordinates() throws IOException {
+    CityIndex cities;
+    try (Reader reader =
+        new InputStreamReader(
+            new FileInputStream("../app/data/worldcities.csv"), StandardCharsets.UTF_8)) {
+      cities = CityIndex.fromCsv(reader);
+    }
+    // The real cities, then random points including the poles and the antimeridian.
+    count = cities.size() + RANDOM_COUNT;
+    latitudes = new float[count];
+    longitudes = new float[count];
+    System.arraycopy(cities.getLatitudes(), 0, latitudes, 0, cities.size());
+    System.arraycopy(cities.getLongitudes(), 0, longitudes, 0, cities.size());
+    Random random = new Random(9);
+    for (int i = cities.size(); i < count; i++) {
+      switch (i % 4) {
+        case 0:
+          latitudes[i] = random.nextBoolean() ? 90 : -90;
+          longitudes[i] = random.nextFloat() * 360 - 180;
+          break;
+        case 1:
+          latitudes[i] = random.nextFloat() * 180 - 90;
+          longitudes[i] = random.nextBoolean() ? 180 : -180;
+          break;
+        default:
+          latitudes[i] = random.nextFloat() * 180 - 90;
+          longitudes[i] = random.nextFloat() * 360 - 180;
+      }
+    }
+  }
+
+  @Test
+  public void projectColumns_matchesPerPointFormula() {
+    float[] positions = new float[count * 3];
+    PROJECTION.project(latitudes, longitudes, count, positions);
+
+    float[] single = new float[3];
+    for (int i = 0; i < count; i++) {
+      // City.calculateXYZ, with City's mirrored and offset longitude.
+      double latitude = Math.toRadians(latitudes[i]);
+      double longitude = Math.toRadians(-1 * longitudes[i] - 22);
+      double x = RADIUS * Math.cos(latitude) * Math.cos(longitude);
+      double y = RADIUS * Math.sin(latitude);
+      double z = RADIUS * Math.cos(latitude) * Math.sin(longitude);
+
+      String point = "point " + i + " at " + latitudes[i] + ", " + longitudes[i];
+      assertEquals(point, x, positions[i * 3], 1e-6);
+      assertEquals(point, y, positions[i * 3 + 1], 1e-6);
+      assertEquals(point, z, positions[i * 3 + 2], 1e-6);
+
+      PROJECTION.project(latitudes[i], longitudes[i], single, 0);
+      assertEquals(point, positions[i * 3], single[0], 1e-6);
+      assertEquals(point, positions[i * 3 + 1], single[1], 1e-6);
+      assertEquals(point, positions[i * 3 + 2], single[2], 1e-6);
+    }
+  }
+
+  @Test
+  public void unproject_roundTrips() {
+    float[] positions = new float[count * 3];
+    PROJECTION.project(latitudes, longitudes, count, positions);
+
+    float[] coordinates = new float[2];
+    for (int i = 0; i < count; i++) {
+      String point = "point " + i + " at " + latitudes[i] + ", " + longitudes[i];
+      // The direction is all that matters, not the distance from the centre.
+      float scale = 1 + i % 3;
+      PROJECTION.unproject(
+          positions[i * 3] * scale,
+          positions[i * 3 + 1] * scale,
+          positions[i * 3 + 2] * scale,
+          coordinates,
+          0);
+
+      assertEquals(point, latitudes[i], coordinates[0], 1e-3);
+      assertTrue(point, coordinates[1] >= -180 && coordinates[1] <= 180);
+      if (Math.abs(latitudes[i]) < 89.9f) {
+        // At the poles every longitude is the same point.
+        double difference = Math.abs(longitudes[i] - coordinates[1]) % 360;
+        assertEquals(point, 0, Math.min(difference, 360 - difference), 1e-3);
+      }
+    }
+  }
+
+  @Test
+  public void unproject_ofTheCentre_isTheEquator() {
+    float[] coordinates = new float[4];
+
+    PROJECTION.unproject(0, 0, 0, coordinates, 2);
+
+    assertEquals(0, coordinates[2], 0);
+  }
+}
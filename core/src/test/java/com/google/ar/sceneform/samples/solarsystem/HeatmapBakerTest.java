@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HeatmapBakerTest {
+  // The size HeatmapLayer bakes at.
+  private static final int WIDTH = 512;
+  private static final int HEIGHT = 256;
+  private static final int BLUR_RADIUS = 2;
+
+  private static PolicyStore store;
+
+  @BeforeClass
+  public static void readPolicies() throws IOException {
+    try (InputStream in = new FileInputStream("../NodeJS/public/data.csv")) {
+      store = PolicyStore.read(in);
+    }
+  }
+
+  @Test
+  public void incrementalRebake_equalsAFullBake() {
+    int count = store.size();
+    double[][] columns = {
+      store.getTiv2011(),
+      store.getTiv2012(),
+      store.getEqSiteLimits(),
+      store.getHuSiteLimits(),
+      store.getFlSiteLimits(),
+    };
+    HeatmapBaker incremental = new HeatmapBaker(WIDTH, HEIGHT);
+    incremental.setPoints(store.getLatitudes(), store.getLongitudes(), count);
+    float[] out = new float[WIDTH * HEIGHT];
+    Random random = new Random(1);
+    double[] weights = columns[0];
+    boolean[] filter = filter(count, 1, random);
+    incremental.setWeights(weights);
+    incremental.setFilter(filter);
+
+    for (int step = 0; step < 20; step++) {
+      if (random.nextBoolean()) {
+        weights = columns[random.nextInt(columns.length)];
+        incremental.setWeights(weights);
+      } else {
+        filter = filter(count, random.nextInt(4), random);
+        incremental.setFilter(filter);
+      }
+      incremental.bake(out);
+
+      HeatmapBaker full = new HeatmapBaker(WIDTH, HEIGHT);
+      full.setPoints(store.getLatitudes(), store.getLongitudes(), count);
+      full.setWeights(weights);
+      full.setFilter(filter);
+      float[] expected = new float[WIDTH * HEIGHT];
+      full.bake(expected);
+
+      assertArrayEquals("step " + step, expected, out, 1e-6f);
+    }
+  }
+
+  @Test
+  public void bake_matchesABruteForceBlur() {
+    int width = 36;
+    int height = 18;
+    int count = 500;
+    Random random = new Random(2);
+    float[] latitudes = new float[count];
+    float[] longitudes = new float[count];
+    double[] weights = new double[count];
+    for (int i = 0; i < count; i++) {
+      latitudes[i] = random.nextFloat() * 180 - 90;
+      longitudes[i] = random.nextFloat() * 360 - 180;
+      weights[i] = random.nextInt(1000);
+    }
+    HeatmapBaker baker = new HeatmapBaker(width, height);
+    baker.setPoints(latitudes, longitudes, count);
+    baker.setWeights(weights);
+    float[] out = new float[width * height];
+
+    baker.bake(out);
+
+    double[] cells = new double[width * height];
+    for (int i = 0; i < count; i++) {
+      int x = Math.min((int) ((longitudes[i] + 180) / 360 * width), width - 1);
+      int y = Math.min((int) ((90 - latitudes[i]) / 180 * height), height - 1);
+      cells[y * width + x] += weights[i];
+    }
+    double[] blurred = new double[width * height];
+    double max = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        double sum = 0;
+        for (int dy = -BLUR_RADIUS; dy <= BLUR_RADIUS; dy++) {
+          for (int dx = -BLUR_RADIUS; dx <= BLUR_RADIUS; dx++) {
+            int sy = Math.min(Math.max(y + dy, 0), height - 1);
+            if (sy != y + dy) {
+              continue;
+            }
+            sum += cells[sy * width + Math.floorMod(x + dx, width)];
+          }
+        }
+        blurred[y * width + x] = sum;
+        max = Math.max(max, sum);
+      }
+    }
+    for (int i = 0; i < width * height; i++) {
+      assertEquals("texel " + i, Math.log1p(blurred[i]) / Math.log1p(max), out[i], 1e-5);
+    }
+  }
+
+  @Test
+  public void pointsWithoutCoordinates_areSkipped() {
+    HeatmapBaker baker = new HeatmapBaker(8, 4);
+    baker.setPoints(new float[] {Float.NaN, 90, -90}, new float[] {0, 180, -180}, 3);
+    baker.setWeights(new double[] {1000, 1, 1});
+    float[] out = new float[8 * 4];
+
+    baker.bake(out);
+
+    // The poles land in opposite corners, whose blurs overlap across the date line in the middle
+    // rows. Had the point without coordinates counted, it would outweigh both.
+    float scale = (float) (1 / Math.log1p(2));
+    assertEquals(Math.log1p(1) * scale, out[7], 1e-6f);
+    assertEquals(Math.log1p(1) * scale, out[3 * 8], 1e-6f);
+    assertEquals(1, out[8], 1e-6f);
+    assertEquals(1, out[2 * 8 + 7], 1e-6f);
+    assertEquals(0, out[3], 0);
+  }
+
+  @Test
+  public void isDirty_tracksChangesSinceTheLastBake() {
+    HeatmapBaker baker = new HeatmapBaker(8, 4);
+    baker.setPoints(new float[] {10, 20}, new float[] {30, 40}, 2);
+    float[] out = new float[8 * 4];
+    assertTrue(baker.isDirty());
+
+    baker.bake(out);
+    assertFalse(baker.isDirty());
+    baker.setWeights(new double[] {0, -5});
+    assertFalse(baker.isDirty());
+    baker.setWeights(new double[] {0, 5});
+    assertTrue(baker.isDirty());
+
+    baker.bake(out);
+    baker.setFilter(new boolean[] {false, true});
+    assertFalse(baker.isDirty());
+    baker.setFilter(new boolean[] {true, false});
+    assertTrue(baker.isDirty());
+
+    baker.bake(out);
+    for (float texel : out) {
+      assertEquals(0, texel, 0);
+    }
+  }
+
+  /** Includes every point if {@code kind} is 0, otherwise a random one in {@code kind} + 1. */
+  private static boolean[] filter(int count, int kind, Random random) {
+    boolean[] included = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      included[i] = kind == 0 || random.nextInt(kind + 1) == 0;
+    }
+    return included;
+  }
+}
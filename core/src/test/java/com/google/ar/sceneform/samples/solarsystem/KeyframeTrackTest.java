@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class KeyframeTrackTest {
+  private static final int ENTITY_COUNT = 1000;
+  private static final int CHANNEL_COUNT = 3;
+
+  @Test
+  public void evaluate_matchesAPerEntityLerp() {
+    Random random = new Random(1);
+    KeyframeTrack track = randomTrack(random, 6);
+    float[] out = new float[ENTITY_COUNT * CHANNEL_COUNT];
+
+    for (int round = 0; round < 500; round++) {
+      float time =
+          track.getStartTime() + random.nextFloat() * (track.getEndTime() - track.getStartTime());
+
+      track.evaluate(time, out);
+
+      for (int entity = 0; entity < ENTITY_COUNT; entity++) {
+        for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+          assertEquals(
+              "time " + time + " entity " + entity,
+              lerp(track, time, entity, channel),
+              out[entity * CHANNEL_COUNT + channel],
+              1e-4);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void evaluate_atAKeyReturnsItsValues() {
+    KeyframeTrack track = randomTrack(new Random(2), 4);
+    float[] out = new float[ENTITY_COUNT * CHANNEL_COUNT];
+
+    for (int key = 0; key < track.getKeyCount(); key++) {
+      track.evaluate(track.getTime(key), out);
+
+      assertArrayEquals("key " + key, row(track, key), out, 0);
+    }
+  }
+
+  @Test
+  public void evaluate_clampsOutsideTheKeys() {
+    KeyframeTrack track = randomTrack(new Random(3), 4);
+    float[] out = new float[ENTITY_COUNT * CHANNEL_COUNT];
+    float[] first = row(track, 0);
+    float[] last = row(track, track.getKeyCount() - 1);
+
+    for (float before : new float[] {track.getStartTime() - 0.001f, -1e9f}) {
+      track.evaluate(before, out);
+      assertArrayEquals("time " + before, first, out, 0);
+    }
+    for (float after : new float[] {track.getEndTime() + 0.001f, 1e9f}) {
+      track.evaluate(after, out);
+      assertArrayEquals("time " + after, last, out, 0);
+    }
+  }
+
+  @Test
+  public void evaluate_holdsASingleKey() {
+    KeyframeTrack track = new KeyframeTrack(new float[] {2011}, 2, 1);
+    track.setValue(0, 0, 0, 3);
+    track.setValue(0, 1, 0, 4);
+    float[] out = new float[2];
+
+    for (float time : new float[] {2000, 2011, 2020}) {
+      track.evaluate(time, out);
+
+      assertArrayEquals(new float[] {3, 4}, out, 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsNoKeys() {
+    new KeyframeTrack(new float[0], 1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsKeysOutOfOrder() {
+    new KeyframeTrack(new float[] {2011, 2013, 2012}, 1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsRepeatedKeys() {
+    new KeyframeTrack(new float[] {2011, 2011}, 1, 1);
+  }
+
+  /** A track with unevenly spaced keys and random values. */
+  private static KeyframeTrack randomTrack(Random random, int keyCount) {
+    float[] times = new float[keyCount];
+    times[0] = 2000 + random.nextFloat();
+    for (int key = 1; key < keyCount; key++) {
+      times[key] = times[key - 1] + 0.1f + random.nextFloat() * 3;
+    }
+    KeyframeTrack track = new KeyframeTrack(times, ENTITY_COUNT, CHANNEL_COUNT);
+    for (int key = 0; key < keyCount; key++) {
+      for (int entity = 0; entity < ENTITY_COUNT; entity++) {
+        for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+          track.setValue(key, entity, channel, random.nextFloat() * 200 - 100);
+        }
+      }
+    }
+    return track;
+  }
+
+  /** Interpolates one value between the keys around {@code time}, found by a linear scan. */
+  private static double lerp(KeyframeTrack track, float time, int entity, int channel) {
+    int key = 0;
+    while (key + 2 < track.getKeyCount() && track.getTime(key + 1) <= time) {
+      key++;
+    }
+    double fraction =
+        ((double) time - track.getTime(key)) / (track.getTime(key + 1) - track.getTime(key));
+    double from = track.getValue(key, entity, channel);
+    double to = track.getValue(key + 1, entity, channel);
+    return from + (to - from) * fraction;
+  }
+
+  private static float[] row(KeyframeTrack track, int key) {
+    float[] row = new float[ENTITY_COUNT * CHANNEL_COUNT];
+    for (int entity = 0; entity < ENTITY_COUNT; entity++) {
+      for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+        row[entity * CHANNEL_COUNT + channel] = track.getValue(key, entity, channel);
+      }
+    }
+    return row;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+  private static final double[] PERCENTILES = {0, 1, 10, 25, 50, 75, 90, 95, 99, 99.9, 100};
+
+  @Test
+  public void percentiles_stayWithinBucketError() {
+    Random random = new Random(1);
+    for (int round = 0; round < 20; round++) {
+      int count = 1 + random.nextInt(20000);
+      long[] values = new long[count];
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (int i = 0; i < count; i++) {
+        // Spread over 1 ns to about 17 s, evenly on a log scale like frame and load times.
+        values[i] = (long) Math.pow(2, random.nextDouble() * 34);
+        histogram.record(values[i]);
+      }
+      Arrays.sort(values);
+
+      for (double percentile : PERCENTILES) {
+        assertWithinBucketError(
+            "round " + round + " p" + percentile,
+            exactPercentile(values, percentile),
+            histogram.getPercentileNanos(percentile));
+      }
+      assertEquals(count, histogram.getCount());
+      assertEquals(values[count - 1], histogram.getMaxNanos());
+      assertEquals(values[count - 1], histogram.getPercentileNanos(100));
+      assertEquals(mean(values), histogram.getMeanNanos());
+    }
+  }
+
+  @Test
+  public void smallValues_areExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 0; value < 8; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(0, histogram.getPercentileNanos(0));
+    assertEquals(3, histogram.getPercentileNanos(50));
+    assertEquals(6, histogram.getPercentileNanos(87.5));
+    assertEquals(7, histogram.getPercentileNanos(100));
+  }
+
+  @Test
+  public void largestDurations_areWithinBucketError() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE - 1);
+    histogram.record(Long.MAX_VALUE / 3);
+
+    assertWithinBucketError("p50", Long.MAX_VALUE / 3, histogram.getPercentileNanos(50));
+    assertEquals(Long.MAX_VALUE - 1, histogram.getPercentileNanos(100));
+  }
+
+  @Test
+  public void negativeDurations_countAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getMaxNanos());
+    assertEquals(0, histogram.getPercentileNanos(50));
+  }
+
+  @Test
+  public void emptyHistogram_reportsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertEquals(0, histogram.getPercentileNanos(50));
+    assertEquals(0, histogram.getMeanNanos());
+    assertEquals(0, histogram.getMaxNanos());
+  }
+
+  @Test
+  public void copy_isUnaffectedByLaterRecordsAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100; value++) {
+      histogram.record(value * 1000);
+    }
+
+    LatencyHistogram copy = histogram.copy();
+    histogram.record(1_000_000_000);
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentileNanos(99));
+    assertEquals(100, copy.getCount());
+    assertEquals(100_000, copy.getMaxNanos());
+    assertWithinBucketError("copy p50", 50_000, copy.getPercentileNanos(50));
+  }
+
+  /**
+   * Checks that a percentile is at least the exact one and less than an eighth above it, as every
+   * bucket is narrower than an eighth of its smallest value.
+   */
+  private static void assertWithinBucketError(String message, long exact, long reported) {
+    assertTrue(message + ": " + reported + " < " + exact, reported >= exact);
+    assertTrue(message + ": " + reported + " > " + exact, reported - exact <= exact / 8);
+  }
+
+  /** The smallest value that at least {@code percentile} percent of the values don't exceed. */
+  private static long exactPercentile(long[] sorted, double percentile) {
+    int rank = (int) Math.ceil(sorted.length * percentile / 100);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  private static long mean(long[] values) {
+    long sum = 0;
+    for (long value : values) {
+      sum += value;
+    }
+    return sum / values.length;
+  }
+}
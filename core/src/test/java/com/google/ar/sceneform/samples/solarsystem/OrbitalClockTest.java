@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class OrbitalClockTest {
+  private static final int TARGET_COUNT = 40;
+  private static final int FRAME_COUNT = 5000;
+
+  @Test
+  public void advance_sameDeltas_giveIdenticalRotations() {
+    float[] deltas = new float[FRAME_COUNT];
+    Random random = new Random(8);
+    for (int i = 0; i < deltas.length; i++) {
+      // Frame times jitter around 60 Hz, with the odd long frame.
+      deltas[i] = random.nextInt(50) == 0 ? 0.1f : 1 / 60f + random.nextFloat() * 0.004f;
+    }
+
+    Recorder[] first = runClock(deltas);
+    Recorder[] second = runClock(deltas);
+    for (int i = 0; i < TARGET_COUNT; i++) {
+      assertArrayEquals("target " + i, first[i].rotation, second[i].rotation, 0);
+    }
+  }
+
+  @Test
+  public void rotationAt_matchesTiltTimesSpin() {
+    Random random = new Random(9);
+    float[] rotation = new float[4];
+    for (int i = 0; i < 10000; i++) {
+      double seconds = random.nextDouble() * (i % 2 == 0 ? 100 : 1e6);
+      float degreesPerSecond = random.nextFloat() * 400 - 200;
+      boolean clockwise = random.nextBoolean();
+      float tiltDeg = random.nextFloat() * 180 - 90;
+      double halfTilt = Math.toRadians(tiltDeg) / 2;
+
+      OrbitalClock.rotationAt(
+          seconds,
+          degreesPerSecond,
+          clockwise,
+          (float) Math.sin(halfTilt),
+          (float) Math.cos(halfTilt),
+          rotation);
+
+      double spinDeg = seconds * degreesPerSecond * (clockwise ? -1 : 1);
+      double[] tilt = axisAngle(1, 0, 0, tiltDeg);
+      double[] spin = axisAngle(0, 1, 0, spinDeg);
+      assertSameRotation("case " + i, multiply(tilt, spin), rotation);
+    }
+  }
+
+  @Test
+  public void add_writesTheStartingPose() {
+    OrbitalClock clock = new OrbitalClock(new SolarSettings());
+    clock.advance(2);
+    Recorder target = new Recorder();
+
+    clock.add(target, 15, true, false, 20);
+
+    assertSameRotation("pose", multiply(axisAngle(1, 0, 0, 20), axisAngle(0, 1, 0, 30)), target);
+  }
+
+  @Test
+  public void speedChange_keepsAngleContinuous() {
+    SolarSettings settings = new SolarSettings();
+    OrbitalClock clock = new OrbitalClock(settings);
+    Recorder orbit = new Recorder();
+    Recorder spin = new Recorder();
+    clock.add(orbit, 10, true, false, 0);
+    clock.add(spin, 10, false, false, 0);
+
+    clock.advance(1);
+    assertEquals(10, yDegrees(orbit), 1e-3);
+    assertEquals(10, yDegrees(spin), 1e-3);
+
+    settings.setOrbitSpeedMultiplier(3);
+    // Nothing jumps until the next tick, which covers three times the angle.
+    assertEquals(10, yDegrees(orbit), 1e-3);
+    clock.advance(1);
+    assertEquals(40, yDegrees(orbit), 1e-3);
+    assertEquals(20, yDegrees(spin), 1e-3);
+    clock.advance(0.5f);
+    assertEquals(55, yDegrees(orbit), 1e-3);
+    assertEquals(25, yDegrees(spin), 1e-3);
+
+    settings.setRotationSpeedMultiplier(0);
+    clock.advance(1);
+    assertEquals(85, yDegrees(orbit), 1e-3);
+    assertEquals(25, yDegrees(spin), 1e-3);
+    assertEquals(8.5, clock.getOrbitSeconds(), 1e-6);
+    assertEquals(2.5, clock.getRotationSeconds(), 1e-6);
+  }
+
+  @Test
+  public void remove_stopsDrivingTheTarget() {
+    OrbitalClock clock = new OrbitalClock(new SolarSettings());
+    Recorder kept = new Recorder();
+    Recorder removed = new Recorder();
+    clock.add(removed, 10, true, false, 0);
+    clock.add(kept, 20, true, false, 0);
+
+    clock.remove(removed);
+    clock.advance(1);
+
+    assertEquals(1, clock.size());
+    assertEquals(0, yDegrees(removed), 1e-3);
+    assertEquals(20, yDegrees(kept), 1e-3);
+  }
+
+  /** Runs a clock with a fixed set of targets through {@code deltas}. */
+  private static Recorder[] runClock(float[] deltas) {
+    Random random = new Random(80);
+    OrbitalClock clock = new OrbitalClock(new SolarSettings());
+    Recorder[] targets = new Recorder[TARGET_COUNT];
+    for (int i = 0; i < TARGET_COUNT; i++) {
+      targets[i] = new Recorder();
+      clock.add(
+          targets[i],
+          random.nextFloat() * 100,
+          random.nextBoolean(),
+          random.nextBoolean(),
+          random.nextFloat() * 90);
+    }
+    for (float delta : deltas) {
+      clock.advance(delta);
+    }
+    return targets;
+  }
+
+  /** The angle about Y of a rotation without tilt, in degrees from 0 to 360. */
+  private static double yDegrees(Recorder target) {
+    double degrees = Math.toDegrees(2 * Math.atan2(target.rotation[1], target.rotation[3]));
+    return (degrees + 720) % 360;
+  }
+
+  private static double[] axisAngle(double x, double y, double z, double degrees) {
+    double half = Math.toRadians(degrees) / 2;
+    double sin = Math.sin(half);
+    return new double[] {x * sin, y * sin, z * sin, Math.cos(half)};
+  }
+
+  /** The Hamilton product a * b of quaternions (x, y, z, w). */
+  private static double[] multiply(double[] a, double[] b) {
+    return new double[] {
+      a[3] * b[0] + a[0] * b[3] + a[1] * b[2] - a[2] * b[1],
+      a[3] * b[1] - a[0] * b[2] + a[1] * b[3] + a[2] * b[0],
+      a[3] * b[2] + a[0] * b[1] - a[1] * b[0] + a[2] * b[3],
+      a[3] * b[3] - a[0] * b[0] - a[1] * b[1] - a[2] * b[2]
+    };
+  }
+
+  private static void assertSameRotation(String message, double[] expected, Recorder target) {
+    assertSameRotation(message, expected, target.rotation);
+  }
+
+  /** Asserts that two unit quaternions describe the same rotation, q and -q being the same. */
+  private static void assertSameRotation(String message, double[] expected, float[] actual) {
+    double dot = 0;
+    for (int i = 0; i < 4; i++) {
+      dot += expected[i] * actual[i];
+    }
+    assertEquals(message, 1, Math.abs(dot), 1e-6);
+  }
+
+  private static final class Recorder implements OrbitalClock.Target {
+    final float[] rotation = {0, 0, 0, 1};
+
+    @Override
+    public void setRotation(float x, float y, float z, float w) {
+      rotation[0] = x;
+      rotation[1] = y;
+      rotation[2] = z;
+      rotation[3] = w;
+    }
+  }
+}
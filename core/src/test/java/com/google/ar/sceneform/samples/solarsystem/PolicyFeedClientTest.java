@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static com.google.ar.sceneform.samples.solarsystem.TestPolicies.assertSamePolicies;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the client against a local stand-in for the NodeJS upload server.
+ *
+ * <p>The stand-in is a bare socket server that answers one request per connection, so the test
+ * only needs java.net.
+ */
+public class PolicyFeedClientTest {
+  private static final String LAST_MODIFIED = "Thu, 01 Oct 2026 10:00:00 GMT";
+  private static final int EPOCH = 0x5eed;
+
+  private ServerSocket server;
+  private Thread serverThread;
+  private URL url;
+
+  // What the stand-in answers, set by each test.
+  private volatile int status = 200;
+  private volatile byte[] body;
+  private volatile boolean gzip;
+  private volatile String etag;
+
+  // The last request the stand-in received, header names in lower case.
+  private volatile String requestQuery;
+  private volatile Map<String, String> requestHeaders;
+
+  @Before
+  public void startServer() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    serverThread = new Thread(this::serve, "policy-feed-stand-in");
+    serverThread.start();
+    url = new URL("http://127.0.0.1:" + server.getLocalPort() + "/feed");
+  }
+
+  @After
+  public void stopServer() throws IOException, InterruptedException {
+    server.close();
+    serverThread.join();
+  }
+
+  private void serve() {
+    while (!server.isClosed()) {
+      try (Socket socket = server.accept()) {
+        handle(socket);
+      } catch (IOException e) {
+        // Closed by stopServer, or the client went away.
+      }
+    }
+  }
+
+  private void handle(Socket socket) throws IOException {
+    BufferedReader in =
+        new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+    // For example "GET /feed?since=1 HTTP/1.1".
+    String target = in.readLine().split(" ")[1];
+    int query = target.indexOf('?');
+    Map<String, String> headers = new HashMap<>();
+    for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+      int colon = line.indexOf(':');
+      headers.put(
+          line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+          line.substring(colon + 1).trim());
+    }
+    requestQuery = query < 0 ? null : target.substring(query + 1);
+    requestHeaders = headers;
+
+    StringBuilder head = new StringBuilder();
+    int responseStatus = status;
+    byte[] response = body;
+    if (etag != null) {
+      head.append("ETag: ").append(etag).append("\r\n");
+      head.append("Last-Modified: ").append(LAST_MODIFIED).append("\r\n");
+      if (etag.equals(headers.get("if-none-match"))) {
+        responseStatus = 304;
+        response = new byte[0];
+      }
+    }
+    if (gzip && response.length > 0) {
+      head.append("Content-Encoding: gzip\r\n");
+      response = gzip(response);
+    }
+    head.append("Content-Length: ").append(response.length).append("\r\n");
+    head.append("Connection: close\r\n\r\n");
+    String statusLine = "HTTP/1.1 " + responseStatus + " " + reason(responseStatus) + "\r\n";
+    OutputStream out = socket.getOutputStream();
+    out.write((statusLine + head).getBytes(StandardCharsets.ISO_8859_1));
+    out.write(response);
+    out.flush();
+  }
+
+  @Test
+  public void csv_isFetchedOnceUntilItChanges() throws IOException {
+    String csv = TestPolicies.csv(50, 4, 1);
+    body = TestPolicies.bytes(csv);
+    etag = "\"v1\"";
+    PolicyFeedClient client = new PolicyFeedClient(url);
+
+    assertSamePolicies(TestPolicies.parse(csv), client.fetchIfChanged());
+    assertNull(requestHeaders.get("if-none-match"));
+
+    assertNull(client.fetchIfChanged());
+    assertEquals("\"v1\"", requestHeaders.get("if-none-match"));
+    assertEquals(LAST_MODIFIED, requestHeaders.get("if-modified-since"));
+    // Without a feed frame there is no version to pass.
+    assertNull(requestQuery);
+
+    String changed = TestPolicies.csv(60, 4, 2);
+    body = TestPolicies.bytes(changed);
+    etag = "\"v2\"";
+    assertSamePolicies(TestPolicies.parse(changed), client.fetchIfChanged());
+  }
+
+  @Test
+  public void gzippedCsv_withoutFrameMagic_isParsedAsCsv() throws IOException {
+    String csv = TestPolicies.csv(50, 4, 3);
+    body = TestPolicies.bytes(csv);
+    gzip = true;
+
+    assertSamePolicies(TestPolicies.parse(csv), new PolicyFeedClient(url).fetchIfChanged());
+    assertEquals("gzip", requestHeaders.get("accept-encoding"));
+  }
+
+  @Test
+  public void frames_snapshotThenDelta() throws IOException {
+    PolicyStore first = TestPolicies.parse(TestPolicies.csv(200, 5, 4));
+    PolicyStore second = TestPolicies.parse(TestPolicies.csv(180, 5, 5));
+    body = TestPolicies.snapshot(first, EPOCH, 1);
+    gzip = true;
+    PolicyFeedClient client = new PolicyFeedClient(url);
+
+    assertSamePolicies(first, client.fetchIfChanged());
+    assertNull(requestQuery);
+
+    body = TestPolicies.delta(first, 1, second, EPOCH, 2);
+    assertSamePolicies(second, client.fetchIfChanged());
+    assertEquals("since=1&epoch=" + EPOCH, requestQuery);
+
+    status = 304;
+    body = new byte[0];
+    assertNull(client.fetchIfChanged());
+    assertEquals("since=2&epoch=" + EPOCH, requestQuery);
+  }
+
+  @Test
+  public void delta_forAnotherBase_isRejected() throws IOException {
+    PolicyStore first = TestPolicies.parse(TestPolicies.csv(100, 5, 6));
+    PolicyStore second = TestPolicies.parse(TestPolicies.csv(100, 5, 7));
+    body = TestPolicies.snapshot(first, EPOCH, 1);
+    PolicyFeedClient client = new PolicyFeedClient(url);
+    client.fetchIfChanged();
+
+    body = TestPolicies.delta(second, 5, first, EPOCH, 6);
+    assertRejected(client);
+
+    body = TestPolicies.snapshot(second, EPOCH, 6);
+    assertSamePolicies(second, client.fetchIfChanged());
+    assertEquals("since=1&epoch=" + EPOCH, requestQuery);
+  }
+
+  @Test
+  public void delta_fromAnotherEpoch_isRejected() throws IOException {
+    PolicyStore first = TestPolicies.parse(TestPolicies.csv(100, 5, 8));
+    PolicyStore second = TestPolicies.parse(TestPolicies.csv(100, 5, 9));
+    body = TestPolicies.snapshot(first, EPOCH, 1);
+    PolicyFeedClient client = new PolicyFeedClient(url);
+    client.fetchIfChanged();
+
+    // A restarted server counts versions from 1 again.
+    body = TestPolicies.delta(second, 1, first, EPOCH + 1, 2);
+    assertRejected(client);
+
+    body = TestPolicies.snapshot(second, EPOCH + 1, 1);
+    assertSamePolicies(second, client.fetchIfChanged());
+    body = TestPolicies.delta(second, 1, first, EPOCH + 1, 2);
+    assertSamePolicies(first, client.fetchIfChanged());
+    assertEquals("since=1&epoch=" + (EPOCH + 1), requestQuery);
+  }
+
+  @Test(expected = IOException.class)
+  public void serverError_throws() throws IOException {
+    status = 500;
+    body = TestPolicies.bytes("oops");
+    new PolicyFeedClient(url).fetchIfChanged();
+  }
+
+  /** Asserts that the next fetch fails. */
+  private static void assertRejected(PolicyFeedClient client) {
+    try {
+      client.fetchIfChanged();
+      fail("Applied a delta that was made from other data");
+    } catch (IOException expected) {
+      // The client keeps what it had.
+    }
+  }
+
+  private static String reason(int status) {
+    switch (status) {
+      case 200:
+        return "OK";
+      case 304:
+        return "Not Modified";
+      default:
+        return "Error";
+    }
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(data);
+    }
+    return bytes.toByteArray();
+  }
+}
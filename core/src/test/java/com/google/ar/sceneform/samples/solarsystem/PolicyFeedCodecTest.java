@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static com.google.ar.sceneform.samples.solarsystem.TestPolicies.assertSamePolicies;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Test;
+
+public class PolicyFeedCodecTest {
+  private static final File SAMPLE_CSV = new File("../NodeJS/public/data.csv");
+  private static final int EPOCH = 42;
+
+  @Test
+  public void snapshot_roundTripsTheSampleDataset() throws IOException {
+    PolicyStore store = PolicyStore.read(new ByteArrayInputStream(readSample()));
+
+    PolicyFeedCodec.Frame frame = read(TestPolicies.snapshot(store, EPOCH, 3));
+
+    assertFalse(frame.isDelta());
+    assertEquals(EPOCH, frame.getEpoch());
+    assertEquals(3, frame.getVersion());
+    assertEquals(PolicyFeedCodec.NO_VERSION, frame.getBaseVersion());
+    assertSamePolicies(store, frame.applyTo(null));
+  }
+
+  @Test
+  public void delta_carriesOnlyChangedRows() throws IOException {
+    Random random = new Random(11);
+    StringBuilder baseCsv = new StringBuilder(TestPolicies.HEADER).append('\n');
+    StringBuilder currentCsv = new StringBuilder(TestPolicies.HEADER).append('\n');
+    int changed = 0;
+    int removed = 0;
+    for (int id = 1; id <= 1000; id++) {
+      String row = TestPolicies.row(id, "COUNTY " + id % 7, random);
+      baseCsv.append(row).append('\n');
+      if (id % 50 == 0) {
+        removed++;
+      } else if (id % 20 == 0) {
+        currentCsv.append(TestPolicies.row(id, "COUNTY " + id % 7, random)).append('\n');
+        changed++;
+      } else {
+        currentCsv.append(row).append('\n');
+      }
+    }
+    // New policies, one in a county the base doesn't have.
+    for (int id = 1001; id <= 1010; id++) {
+      currentCsv.append(TestPolicies.row(id, "NEW COUNTY", random)).append('\n');
+    }
+    PolicyStore base = TestPolicies.parse(baseCsv.toString());
+    PolicyStore current = TestPolicies.parse(currentCsv.toString());
+
+    PolicyFeedCodec.Frame frame = read(TestPolicies.delta(base, 1, current, EPOCH, 2));
+
+    assertTrue(frame.isDelta());
+    assertEquals(EPOCH, frame.getEpoch());
+    assertEquals(1, frame.getBaseVersion());
+    assertEquals(2, frame.getVersion());
+    assertEquals(changed + 10, frame.getRows().size());
+    assertEquals(removed, frame.getRemovedIds().length);
+    assertSamePolicies(current, frame.applyTo(base));
+  }
+
+  @Test
+  public void delta_betweenEqualStores_isEmpty() throws IOException {
+    PolicyStore store = TestPolicies.parse(TestPolicies.csv(300, 5, 12));
+
+    PolicyFeedCodec.Frame frame = read(TestPolicies.delta(store, 4, store, EPOCH, 5));
+
+    assertEquals(0, frame.getRows().size());
+    assertEquals(0, frame.getRemovedIds().length);
+    assertSamePolicies(store, frame.applyTo(store));
+  }
+
+  @Test
+  public void emptyTable_roundTrips() throws IOException {
+    PolicyStore empty = TestPolicies.parse(TestPolicies.HEADER + "\n");
+    PolicyStore full = TestPolicies.parse(TestPolicies.csv(100, 5, 13));
+
+    assertEquals(0, read(TestPolicies.snapshot(empty, EPOCH, 1)).applyTo(null).size());
+    assertSamePolicies(full, read(TestPolicies.delta(empty, 1, full, EPOCH, 2)).applyTo(empty));
+    PolicyFeedCodec.Frame removeAll = read(TestPolicies.delta(full, 2, empty, EPOCH, 3));
+    assertEquals(100, removeAll.getRemovedIds().length);
+    assertEquals(0, removeAll.applyTo(full).size());
+  }
+
+  @Test
+  public void dictionary_atTheLimit_roundTrips() throws IOException {
+    PolicyStore store = storeWithCounties(PolicyFeedCodec.MAX_DICTIONARY_SIZE);
+
+    PolicyStore decoded = read(TestPolicies.snapshot(store, EPOCH, 1)).applyTo(null);
+
+    assertSamePolicies(store, decoded);
+  }
+
+  @Test
+  public void dictionary_overTheLimit_isRejectedBeforeWriting() throws IOException {
+    PolicyStore store = storeWithCounties(PolicyFeedCodec.MAX_DICTIONARY_SIZE + 1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try {
+      PolicyFeedCodec.writeSnapshot(store, EPOCH, 1, out);
+      fail("Wrote " + store.getCounties().length + " counties");
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().startsWith("county"));
+    }
+    assertEquals(0, out.size());
+  }
+
+  @Test(expected = IOException.class)
+  public void read_rejectsCsv() throws IOException {
+    read(readSample());
+  }
+
+  /** The point of the format: decoding the sample dataset beats parsing its CSV many times over. */
+  @Test
+  public void snapshot_decodesFasterThanCsv() throws IOException {
+    byte[] csv = readSample();
+    PolicyStore store = PolicyStore.read(new ByteArrayInputStream(csv));
+    byte[] snapshot = TestPolicies.snapshot(store, EPOCH, 1);
+    assertTrue(snapshot.length < csv.length);
+
+    long csvNanos = Long.MAX_VALUE;
+    long snapshotNanos = Long.MAX_VALUE;
+    for (int run = 0; run < 10; run++) {
+      long start = System.nanoTime();
+      PolicyStore.read(new ByteArrayInputStream(csv));
+      long middle = System.nanoTime();
+      read(snapshot);
+      long end = System.nanoTime();
+      csvNanos = Math.min(csvNanos, middle - start);
+      snapshotNanos = Math.min(snapshotNanos, end - middle);
+    }
+    // Typically 15-30x, asserted with a wide margin so a loaded machine doesn't fail it.
+    assertTrue(
+        "snapshot " + snapshotNanos / 1000 + "us, csv " + csvNanos / 1000 + "us",
+        snapshotNanos * 4 < csvNanos);
+  }
+
+  /** A store whose policies are each in a county of their own. */
+  private static PolicyStore storeWithCounties(int countyCount) throws IOException {
+    Random random = new Random(countyCount);
+    StringBuilder csv = new StringBuilder(TestPolicies.HEADER).append('\n');
+    for (int id = 1; id <= countyCount; id++) {
+      csv.append(TestPolicies.row(id, "COUNTY " + id, random)).append('\n');
+    }
+    PolicyStore store = TestPolicies.parse(csv.toString());
+    assertEquals(countyCount, store.getCounties().length);
+    return store;
+  }
+
+  private static PolicyFeedCodec.Frame read(byte[] frame) throws IOException {
+    return PolicyFeedCodec.read(new ByteArrayInputStream(frame));
+  }
+
+  private static byte[] readSample() throws IOException {
+    return Files.readAllBytes(SAMPLE_CSV.toPath());
+  }
+}
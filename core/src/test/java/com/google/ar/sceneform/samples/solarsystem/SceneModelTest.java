@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class SceneModelTest {
+  private static final int ENTITY_COUNT = 2000;
+
+  @Test
+  public void updateTransforms_composesParentMatrices() {
+    Random random = new Random(25);
+    SceneModel scene = new SceneModel();
+    // Row-major 4x4 reference matrices in double precision.
+    double[][] expected = new double[ENTITY_COUNT][];
+    for (int entity = 0; entity < ENTITY_COUNT; entity++) {
+      int parent = entity == 0 ? SceneModel.NO_PARENT : random.nextInt(entity + 1) - 1;
+      scene.add(parent);
+      double[] q = randomRotation(random);
+      double scale = 0.5 + random.nextDouble();
+      double[] t = {random.nextGaussian(), random.nextGaussian(), random.nextGaussian()};
+      scene.setLocalRotation(entity, (float) q[0], (float) q[1], (float) q[2], (float) q[3]);
+      scene.setLocalScale(entity, (float) scale);
+      scene.setLocalPosition(entity, (float) t[0], (float) t[1], (float) t[2]);
+      double[] local = localMatrix(q, scale, t);
+      expected[entity] = parent == SceneModel.NO_PARENT ? local : multiply(expected[parent], local);
+    }
+
+    scene.updateTransforms();
+
+    float[] world = scene.getWorldMatrices();
+    for (int entity = 0; entity < ENTITY_COUNT; entity++) {
+      for (int row = 0; row < 4; row++) {
+        for (int column = 0; column < 4; column++) {
+          double value = expected[entity][row * 4 + column];
+          assertEquals(
+              "entity " + entity,
+              value,
+              world[entity * 16 + column * 4 + row],
+              1e-4 * (1 + Math.abs(value)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void disabledEntity_deactivatesItsDescendants() {
+    SceneModel scene = new SceneModel();
+    int root = scene.add(SceneModel.NO_PARENT);
+    int child = scene.add(root);
+    int grandchild = scene.add(child);
+    int sibling = scene.add(root);
+
+    scene.setEnabled(child, false);
+    scene.updateTransforms();
+
+    assertTrue(scene.isActive(root));
+    assertFalse(scene.isActive(child));
+    assertFalse(scene.isActive(grandchild));
+    assertTrue(scene.isActive(sibling));
+  }
+
+  @Test
+  public void placedEntity_keepsItsMatrixAndCarriesItsChildren() {
+    SceneModel scene = new SceneModel();
+    int placed = scene.add(SceneModel.NO_PARENT);
+    int child = scene.add(placed);
+    scene.setLocalPosition(child, 1, 0, 0);
+    // Turned a quarter turn about Y, doubled and moved to (0, 2, 0), in column-major order.
+    float[] matrix = {0, 0, -2, 0, 0, 2, 0, 0, 2, 0, 0, 0, 0, 2, 0, 1};
+    scene.setWorldMatrix(placed, matrix, 0);
+    // The local transform no longer matters.
+    scene.setLocalPosition(placed, 5, 5, 5);
+
+    scene.updateTransforms();
+
+    float[] world = scene.getWorldMatrices();
+    for (int i = 0; i < 16; i++) {
+      assertEquals(matrix[i], world[placed * 16 + i], 0);
+    }
+    assertEquals(0, world[child * 16 + 12], 1e-6f);
+    assertEquals(2, world[child * 16 + 13], 1e-6f);
+    assertEquals(-2, world[child * 16 + 14], 1e-6f);
+  }
+
+  @Test
+  public void billboardUnderPlacedParent_facesTheCamera() {
+    SceneModel scene = new SceneModel();
+    OrbitalClock clock = new OrbitalClock(new SolarSettings());
+    int placed = scene.add(SceneModel.NO_PARENT);
+    int orbit = scene.add(placed);
+    clock.add(scene.rotationTarget(orbit), 30, true, false, 0);
+    int planet = scene.add(orbit);
+    scene.setLocalPosition(planet, 1, 0, 0);
+    scene.setLocalScale(planet, 0.5f);
+    int card = scene.add(planet);
+    scene.setLocalPosition(card, 0, 0.1f, 0);
+    scene.addBillboard(card);
+    float[] matrix = {0, 0, -2, 0, 0, 2, 0, 0, 2, 0, 0, 0, 0, 2, 0, 1};
+    scene.setWorldMatrix(placed, matrix, 0);
+
+    for (int frame = 0; frame < 30; frame++) {
+      clock.advance(1 / 60f);
+      double angle = frame * 0.1;
+      float cameraX = 3 * (float) Math.sin(angle);
+      float cameraZ = 3 * (float) Math.cos(angle);
+      scene.update(cameraX, 1, cameraZ);
+
+      // The card's +Z axis points at the camera.
+      float[] world = scene.getWorldMatrices();
+      int o = card * 16;
+      double[] forward = {world[o + 8], world[o + 9], world[o + 10]};
+      double[] toCamera = {cameraX - world[o + 12], 1 - world[o + 13], cameraZ - world[o + 14]};
+      double cosine =
+          dot(forward, toCamera) / Math.sqrt(dot(forward, forward) * dot(toCamera, toCamera));
+      assertEquals("frame " + frame, 1, cosine, 1e-4);
+    }
+  }
+
+  private static double dot(double[] a, double[] b) {
+    return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+  }
+
+  private static double[] randomRotation(Random random) {
+    double[] q = {
+      random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), random.nextGaussian()
+    };
+    double length = Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+    for (int i = 0; i < 4; i++) {
+      q[i] /= length;
+    }
+    return q;
+  }
+
+  /** Translation * rotation * scale, row-major. */
+  private static double[] localMatrix(double[] q, double scale, double[] t) {
+    double x = q[0];
+    double y = q[1];
+    double z = q[2];
+    double w = q[3];
+    double[] rotation = {
+      1 - 2 * (y * y + z * z), 2 * (x * y - w * z), 2 * (x * z + w * y),
+      2 * (x * y + w * z), 1 - 2 * (x * x + z * z), 2 * (y * z - w * x),
+      2 * (x * z - w * y), 2 * (y * z + w * x), 1 - 2 * (x * x + y * y)
+    };
+    double[] matrix = new double[16];
+    for (int row = 0; row < 3; row++) {
+      for (int column = 0; column < 3; column++) {
+        matrix[row * 4 + column] = rotation[row * 3 + column] * scale;
+      }
+      matrix[row * 4 + 3] = t[row];
+    }
+    matrix[15] = 1;
+    return matrix;
+  }
+
+  private static double[] multiply(double[] a, double[] b) {
+    double[] product = new double[16];
+    for (int row = 0; row < 4; row++) {
+      for (int column = 0; column < 4; column++) {
+        double sum = 0;
+        for (int k = 0; k < 4; k++) {
+          sum += a[row * 4 + k] * b[k * 4 + column];
+        }
+        product[row * 4 + column] = sum;
+      }
+    }
+    return product;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/** Small policy datasets and comparisons shared by the policy tests. */
+final class TestPolicies {
+  static final String HEADER =
+      "policyID,statecode,county,eq_site_limit,hu_site_limit,fl_site_limit,fr_site_limit,"
+          + "tiv_2011,tiv_2012,point_latitude,point_longitude,line,construction";
+
+  private static final String[] LINES = {"Residential", "Commercial"};
+  private static final String[] CONSTRUCTIONS = {"Wood", "Masonry", "Reinforced Concrete"};
+
+  private TestPolicies() {}
+
+  /** CSV of {@code count} random policies, with ids from 1 and {@code countyCount} counties. */
+  static String csv(int count, int countyCount, long seed) {
+    Random random = new Random(seed);
+    StringBuilder csv = new StringBuilder(HEADER).append('\n');
+    for (int id = 1; id <= count; id++) {
+      csv.append(row(id, "COUNTY " + random.nextInt(countyCount), random)).append('\n');
+    }
+    return csv.toString();
+  }
+
+  /** One CSV row of random values for policy {@code id} in {@code county}. */
+  static String row(int id, String county, Random random) {
+    return id
+        + ",FL,"
+        + county
+        + ","
+        + random.nextInt(1000000)
+        + ","
+        + random.nextInt(1000000)
+        + ",0,"
+        + random.nextInt(1000)
+        + ","
+        + random.nextInt(2000000) / 100.0
+        + ","
+        + random.nextInt(2000000) / 100.0
+        + ","
+        + (25 + random.nextInt(500000) / 100000f)
+        + ","
+        + (-87 + random.nextInt(700000) / 100000f)
+        + ","
+        + LINES[random.nextInt(LINES.length)]
+        + ","
+        + CONSTRUCTIONS[random.nextInt(CONSTRUCTIONS.length)];
+  }
+
+  static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  static PolicyStore parse(String csv) throws IOException {
+    return PolicyStore.read(new ByteArrayInputStream(bytes(csv)));
+  }
+
+  static byte[] snapshot(PolicyStore store, int epoch, int version) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PolicyFeedCodec.writeSnapshot(store, epoch, version, out);
+    return out.toByteArray();
+  }
+
+  static byte[] delta(
+      PolicyStore base, int baseVersion, PolicyStore current, int epoch, int version)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PolicyFeedCodec.writeDelta(base, baseVersion, current, epoch, version, out);
+    return out.toByteArray();
+  }
+
+  /** Asserts that both stores hold the same policies in the same order. */
+  static void assertSamePolicies(PolicyStore expected, PolicyStore actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      String row = "row " + i;
+      assertEquals(row, expected.getPolicyIds()[i], actual.getPolicyIds()[i]);
+      assertEquals(row, expected.getCounty(i), actual.getCounty(i));
+      assertEquals(row, expected.getEqSiteLimits()[i], actual.getEqSiteLimits()[i], 0);
+      assertEquals(row, expected.getHuSiteLimits()[i], actual.getHuSiteLimits()[i], 0);
+      assertEquals(row, expected.getFlSiteLimits()[i], actual.getFlSiteLimits()[i], 0);
+      assertEquals(row, expected.getFrSiteLimits()[i], actual.getFrSiteLimits()[i], 0);
+      assertEquals(row, expected.getTiv2011()[i], actual.getTiv2011()[i], 0);
+      assertEquals(row, expected.getTiv2012()[i], actual.getTiv2012()[i], 0);
+      assertEquals(row, expected.getLatitudes()[i], actual.getLatitudes()[i], 0);
+      assertEquals(row, expected.getLongitudes()[i], actual.getLongitudes()[i], 0);
+      assertEquals(row, expected.getLine(i), actual.getLine(i));
+      assertEquals(row, expected.getConstruction(i), actual.getConstruction(i));
+    }
+  }
+}
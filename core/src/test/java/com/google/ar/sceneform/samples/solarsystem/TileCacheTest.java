@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class TileCacheTest {
+  private static final long BUDGET = 1000;
+
+  @Test
+  public void put_evictsLeastRecentlyUsedUntilWithinBytes() {
+    List<String> evicted = new ArrayList<>();
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> evicted.add(value));
+    // Reference cache: keys from least to most recently used, with their sizes.
+    List<Integer> order = new ArrayList<>();
+    long[] sizes = new long[64];
+    List<String> expectedEvicted = new ArrayList<>();
+    Random random = new Random(1);
+
+    for (int step = 0; step < 10000; step++) {
+      int key = random.nextInt(sizes.length);
+      if (random.nextInt(3) == 0) {
+        String value = cache.get(key);
+        if (order.remove((Integer) key)) {
+          order.add(key);
+          assertEquals(valueOf(key, sizes[key]), value);
+        } else {
+          assertNull(value);
+        }
+        continue;
+      }
+
+      long bytes = 1 + random.nextInt(400);
+      cache.put(key, valueOf(key, bytes), bytes);
+
+      if (order.remove((Integer) key)) {
+        expectedEvicted.add(valueOf(key, sizes[key]));
+      }
+      order.add(key);
+      sizes[key] = bytes;
+      long total = 0;
+      for (int cached : order) {
+        total += sizes[cached];
+      }
+      while (total > BUDGET && order.size() > 1) {
+        int eldest = order.remove(0);
+        total -= sizes[eldest];
+        expectedEvicted.add(valueOf(eldest, sizes[eldest]));
+      }
+
+      assertEquals("step " + step, expectedEvicted, evicted);
+      assertEquals("step " + step, total, cache.getSizeBytes());
+      assertEquals("step " + step, order.size(), cache.size());
+      assertTrue("step " + step, cache.getSizeBytes() <= BUDGET);
+    }
+  }
+
+  @Test
+  public void put_evictsSeveralSmallTilesForALargeOne() {
+    List<Integer> evicted = new ArrayList<>();
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> evicted.add(key));
+    for (int key = 0; key < 10; key++) {
+      cache.put(key, "small", 100);
+    }
+    cache.get(0);
+
+    cache.put(10, "large", 450);
+
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), evicted);
+    assertEquals(950, cache.getSizeBytes());
+    assertTrue(cache.contains(0));
+    assertEquals(5, cache.getEvictionCount());
+  }
+
+  @Test
+  public void put_keepsATileLargerThanTheBudgetUntilTheNextOne() {
+    List<Integer> evicted = new ArrayList<>();
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> evicted.add(key));
+    cache.put(1, "small", 100);
+
+    cache.put(2, "huge", BUDGET * 3);
+
+    assertEquals(Arrays.asList(1), evicted);
+    assertTrue(cache.contains(2));
+    assertEquals(BUDGET * 3, cache.getSizeBytes());
+
+    cache.put(3, "small", 100);
+
+    assertEquals(Arrays.asList(1, 2), evicted);
+    assertEquals(100, cache.getSizeBytes());
+  }
+
+  @Test
+  public void contains_doesNotCountAsAUse() {
+    List<Integer> evicted = new ArrayList<>();
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> evicted.add(key));
+    cache.put(1, "a", 500);
+    cache.put(2, "b", 500);
+
+    assertTrue(cache.contains(1));
+    cache.put(3, "c", 500);
+
+    assertEquals(Arrays.asList(1), evicted);
+    assertEquals(0, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void put_withTheSameValueDoesNotEvictIt() {
+    List<String> evicted = new ArrayList<>();
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> evicted.add(value));
+    String value = "tile";
+    cache.put(1, value, 100);
+
+    cache.put(1, value, 200);
+
+    assertTrue(evicted.isEmpty());
+    assertEquals(200, cache.getSizeBytes());
+  }
+
+  @Test
+  public void clear_evictsEverything() {
+    List<Integer> evicted = new ArrayList<>();
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> evicted.add(key));
+    cache.put(1, "a", 100);
+    cache.put(2, "b", 100);
+
+    cache.clear();
+
+    assertEquals(Arrays.asList(1, 2), evicted);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getSizeBytes());
+    assertFalse(cache.contains(1));
+  }
+
+  @Test
+  public void get_countsHitsAndMisses() {
+    TileCache<String> cache = new TileCache<>(BUDGET, (key, value) -> {});
+    cache.put(1, "a", 100);
+
+    cache.get(1);
+    cache.get(1);
+    cache.get(2);
+
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  private static String valueOf(int key, long bytes) {
+    return key + ":" + bytes;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class TilePyramidTest {
+  // The app's tile budget, and the pixels per radian of a 60 degree view 1920 pixels high.
+  private static final int MAX_TILES = 48;
+  private static final float PIXELS_PER_RADIAN = 1920 / (float) Math.toRadians(60);
+
+  @Test
+  public void select_coversTheWholeGlobeOnce() {
+    Random random = new Random(1);
+    for (TilePyramid pyramid :
+        new TilePyramid[] {
+          TilePyramid.forSourceWidth(2700, 256), TilePyramid.forSourceWidth(21600, 256)
+        }) {
+      int[] out = new int[MAX_TILES];
+      for (int round = 0; round < 200; round++) {
+        float latitude = (float) Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+        float longitude = random.nextFloat() * 360 - 180;
+        float distance = 1.01f + random.nextFloat() * 10;
+
+        int count =
+            pyramid.select(latitude, longitude, distance, PIXELS_PER_RADIAN, MAX_TILES, out);
+
+        assertTrue(count <= MAX_TILES);
+        assertCoversOnce(pyramid, out, count, "round " + round);
+      }
+    }
+  }
+
+  @Test
+  public void select_isFinestUnderTheCameraAndCoarseBehindTheGlobe() {
+    TilePyramid pyramid = TilePyramid.forSourceWidth(21600, 256);
+    for (int maxTiles : new int[] {MAX_TILES, 1024}) {
+      int[] out = new int[maxTiles];
+
+      int count = pyramid.select(30, 45, 1.05f, PIXELS_PER_RADIAN, maxTiles, out);
+
+      int finest = 0;
+      for (int i = 0; i < count; i++) {
+        finest = Math.max(finest, TilePyramid.level(out[i]));
+      }
+      assertEquals(finest, TilePyramid.level(tileAt(out, count, 30, 45)));
+      assertTrue(TilePyramid.level(tileAt(out, count, -30, -135)) <= 1);
+      if (maxTiles > MAX_TILES) {
+        assertEquals(pyramid.getLevelCount() - 1, finest);
+      }
+    }
+  }
+
+  @Test
+  public void select_isCoarseFromFarAway() {
+    TilePyramid pyramid = TilePyramid.forSourceWidth(21600, 256);
+    int[] out = new int[MAX_TILES];
+
+    int near = pyramid.select(0, 0, 1.1f, PIXELS_PER_RADIAN, MAX_TILES, out);
+    int far = pyramid.select(0, 0, 1000, PIXELS_PER_RADIAN, MAX_TILES, out);
+
+    assertEquals(2, far);
+    assertTrue(near > far);
+  }
+
+  @Test
+  public void levelFor_growsAsTheCameraClosesIn() {
+    TilePyramid pyramid = TilePyramid.forSourceWidth(21600, 256);
+    int previous = 0;
+    for (float distance = 100; distance > 0.01f; distance /= 1.5f) {
+      int level = pyramid.levelFor(distance, PIXELS_PER_RADIAN);
+
+      assertTrue(level >= previous);
+      assertTrue(level < pyramid.getLevelCount());
+      previous = level;
+    }
+    assertEquals(pyramid.getLevelCount() - 1, previous);
+  }
+
+  @Test
+  public void forSourceWidth_hasAFinestLevelAsWideAsTheSource() {
+    TilePyramid pyramid = TilePyramid.forSourceWidth(2700, 256);
+
+    assertEquals(4, pyramid.getLevelCount());
+    assertEquals(16 * 256, TilePyramid.columns(3) * pyramid.getTileSize());
+  }
+
+  @Test
+  public void key_roundTripsAndHasParents() {
+    for (int level = 0; level < 12; level++) {
+      for (int row = 0; row < TilePyramid.rows(level); row += 1 + TilePyramid.rows(level) / 7) {
+        for (int column = 0; column < TilePyramid.columns(level); column += 1 + row) {
+          int key = TilePyramid.key(level, row, column);
+
+          assertEquals(level, TilePyramid.level(key));
+          assertEquals(row, TilePyramid.row(key));
+          assertEquals(column, TilePyramid.column(key));
+          if (level > 0) {
+            int parent = TilePyramid.parent(key);
+            assertTrue(TilePyramid.north(parent) >= TilePyramid.north(key));
+            assertTrue(TilePyramid.south(parent) <= TilePyramid.south(key));
+            assertTrue(TilePyramid.west(parent) <= TilePyramid.west(key));
+            assertTrue(TilePyramid.east(parent) >= TilePyramid.east(key));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void manifest_roundTrips() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TilePyramid(256, 5).write(out);
+
+    TilePyramid read = TilePyramid.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(256, read.getTileSize());
+    assertEquals(5, read.getLevelCount());
+  }
+
+  /** Checks that every cell of the finest level is under exactly one of the tiles. */
+  private static void assertCoversOnce(
+      TilePyramid pyramid, int[] tiles, int count, String message) {
+    int finest = pyramid.getLevelCount() - 1;
+    int columns = TilePyramid.columns(finest);
+    int[] covered = new int[TilePyramid.rows(finest) * columns];
+    for (int i = 0; i < count; i++) {
+      int tile = tiles[i];
+      int scale = 1 << (finest - TilePyramid.level(tile));
+      int firstRow = TilePyramid.row(tile) * scale;
+      int firstColumn = TilePyramid.column(tile) * scale;
+      for (int row = firstRow; row < firstRow + scale; row++) {
+        for (int column = firstColumn; column < firstColumn + scale; column++) {
+          covered[row * columns + column]++;
+        }
+      }
+    }
+    for (int cell = 0; cell < covered.length; cell++) {
+      assertEquals(message + ": cell " + cell, 1, covered[cell]);
+    }
+  }
+
+  /** The selected tile covering a point. */
+  private static int tileAt(int[] tiles, int count, float latitude, float longitude) {
+    for (int i = 0; i < count; i++) {
+      int tile = tiles[i];
+      if (latitude <= TilePyramid.north(tile)
+          && latitude > TilePyramid.south(tile)
+          && longitude >= TilePyramid.west(tile)
+          && longitude < TilePyramid.east(tile)) {
+        return tile;
+      }
+    }
+    throw new AssertionError("No tile covers " + latitude + ", " + longitude);
+  }
+}